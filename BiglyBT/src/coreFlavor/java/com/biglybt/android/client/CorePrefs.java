@@ -79,6 +79,24 @@ public class CorePrefs
 
 	public static final String PREF_CORE_PROXY_PW = "core_proxy_pw";
 
+	/**
+	 * UI talks to the core over a binder instead of loopback HTTP.  Read on
+	 * every request, so it can be flipped at runtime
+	 */
+	public static final String PREF_CORE_DIRECT_RPC = "core_direct_rpc";
+
+	/**
+	 * Written by the core process: {@link com.biglybt.android.core.az.CoreTuning}
+	 * profile in use.  Display only
+	 */
+	public static final String PREF_CORE_TUNING_PROFILE = "core_tuning_profile";
+
+	/**
+	 * Written by the core process: whether the tuning was applied for external
+	 * power.  Display only
+	 */
+	public static final String PREF_CORE_TUNING_PLUGGEDIN = "core_tuning_pluggedin";
+
 	@Thunk
 	static final String TAG = "BiglyBTCorePrefs";
 
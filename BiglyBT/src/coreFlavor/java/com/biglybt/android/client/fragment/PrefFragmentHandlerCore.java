@@ -26,6 +26,7 @@ import com.biglybt.android.client.dialog.DialogFragmentRemoteAccessQR;
 import com.biglybt.android.client.rpc.RPC;
 import com.biglybt.android.client.session.Session;
 import com.biglybt.android.client.session.SessionSettings;
+import com.biglybt.android.core.az.CoreTuning;
 
 import android.content.DialogInterface;
 import android.content.pm.PackageManager;
@@ -58,6 +59,8 @@ public class PrefFragmentHandlerCore
 
 	private static final String KEY_ONLY_PLUGGEDIN = "core_only_transfer_data_when_plugged_in";
 
+	private static final String KEY_TUNING_PROFILE = "core_tuning_profile";
+
 	private final static String KEY_ALLOW_LAN_ACCESS = "core_allow_lan_access";
 
 	private static final String KEY_PROXY_ENABLED_TRACKER = "core_tracker_proxy_enabled";
@@ -393,6 +396,34 @@ public class PrefFragmentHandlerCore
 			}
 		}
 
+		final Preference prefTuning = findPreference(KEY_TUNING_PROFILE);
+		if (prefTuning != null) {
+			// Written by the core process when it applies the profile
+			TrayPreferences prefs = BiglyBTApp.getAppPreferences().getPreferences();
+			String profile = prefs.getString(CorePrefs.PREF_CORE_TUNING_PROFILE,
+					null);
+			int profileID;
+			if (CoreTuning.PROFILE_LOW.equals(profile)) {
+				profileID = R.string.core_tuning_profile_low;
+			} else if (CoreTuning.PROFILE_BALANCED.equals(profile)) {
+				profileID = R.string.core_tuning_profile_balanced;
+			} else if (CoreTuning.PROFILE_HIGH.equals(profile)) {
+				profileID = R.string.core_tuning_profile_high;
+			} else {
+				profileID = 0;
+			}
+			if (profileID == 0) {
+				prefTuning.setSummary(R.string.core_tuning_summary_unknown);
+			} else {
+				boolean pluggedIn = prefs.getBoolean(
+						CorePrefs.PREF_CORE_TUNING_PLUGGEDIN, true);
+				prefTuning.setSummary(activity.getString(
+						pluggedIn ? R.string.core_tuning_summary_plugged
+								: R.string.core_tuning_summary_battery,
+						activity.getString(profileID)));
+			}
+		}
+
 		final Preference prefProxyScreen = findPreference(KEY_PROXY_SCREEN);
 		if (prefProxyScreen != null) {
 			CorePrefs corePrefs = CorePrefs.getInstance();
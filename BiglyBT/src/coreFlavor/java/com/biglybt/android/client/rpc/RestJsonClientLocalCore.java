@@ -0,0 +1,290 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.rpc;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.BiglyBTApp;
+import com.biglybt.android.client.CorePrefs;
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.client.service.BiglyBTService;
+import com.biglybt.android.client.service.LocalRPCBinder;
+import com.biglybt.util.Thunk;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Talks to the local core through {@link LocalRPCBinder} instead of
+ * loopback HTTP.  Request and reply maps are passed as Parcel values, so
+ * there's no HTTP framing and no JSON encoding/decoding on either side.
+ * <p/>
+ * Anything the binder can't handle (not bound yet, core restarting, reply
+ * too large for a binder transaction, xmwebui without a direct handler) goes
+ * through the regular {@link RestJsonClientOkHttp}.  Direct requests carry
+ * the HTTP client's session id, so xmwebui answers recently-active
+ * torrent-gets from the same baseline whichever way they arrive.
+ * <p/>
+ * Once a request may have reached the core, only read-only methods are sent
+ * again; a torrent-remove or torrent-add that failed mid-call is reported,
+ * not repeated.
+ */
+public class RestJsonClientLocalCore
+	extends RestJsonClient
+	implements ServiceConnection
+{
+	private static final String TAG = "RPC.Local";
+
+	/** Safe to resend over HTTP after the core may have run them */
+	private static final Set<String> READ_ONLY_METHODS = new HashSet<>(
+			Arrays.asList(TransmissionVars.METHOD_SESSION_GET,
+					TransmissionVars.METHOD_SESSION_STATS,
+					TransmissionVars.METHOD_TORRENT_GET,
+					TransmissionVars.METHOD_SUBSCRIPTION_GET,
+					TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
+					TransmissionVars.METHOD_RCM_IS_ENABLED,
+					TransmissionVars.METHOD_RCM_GET_LIST,
+					TransmissionVars.METHOD_FREE_SPACE,
+					TransmissionVars.METHOD_TAGS_LOOKUP_GET_RESULTS,
+					"tags-get-list"));
+
+	/**
+	 * Requests larger than this go through HTTP without trying the binder.
+	 * Binder transactions share a 1MB buffer per process.
+	 */
+	private static final int MAX_DIRECT_REQUEST_BYTES = 256 * 1024;
+
+	private static final String HEADER_SESSION_ID = "X-Transmission-Session-Id";
+
+	private static final int TRANSPORT_NONE = 0;
+
+	private static final int TRANSPORT_DIRECT = 1;
+
+	private static final int TRANSPORT_HTTP = 2;
+
+	private final RestJsonClient fallback;
+
+	@Thunk
+	volatile IBinder binder;
+
+	private volatile boolean unsupported;
+
+	private boolean bound;
+
+	private final AtomicLong numDirect = new AtomicLong();
+
+	private final AtomicLong numFallback = new AtomicLong();
+
+	private final AtomicInteger lastTransport = new AtomicInteger(
+			TRANSPORT_NONE);
+
+	RestJsonClientLocalCore(RestJsonClient fallback) {
+		this.fallback = fallback;
+		bind();
+	}
+
+	private synchronized void bind() {
+		if (bound) {
+			return;
+		}
+		Context context = BiglyBTApp.getContext();
+		Intent intent = new Intent(context, BiglyBTService.class);
+		intent.setAction(LocalRPCBinder.INTENT_ACTION_LOCAL_RPC);
+		// No BIND_AUTO_CREATE: we don't want to start the core, or keep it
+		// alive, just because the UI would like a faster pipe to it
+		bound = context.bindService(intent, this, 0);
+		if (CorePrefs.DEBUG_CORE) {
+			Log.d(TAG, "bind: " + bound);
+		}
+	}
+
+	@Override
+	public void onServiceConnected(ComponentName name, IBinder service) {
+		if (CorePrefs.DEBUG_CORE) {
+			Log.d(TAG, "onServiceConnected");
+		}
+		// new core process, maybe with a different xmwebui
+		unsupported = false;
+		binder = service;
+	}
+
+	@Override
+	public void onServiceDisconnected(ComponentName name) {
+		if (CorePrefs.DEBUG_CORE) {
+			Log.d(TAG, "onServiceDisconnected");
+		}
+		binder = null;
+	}
+
+	@Override
+	synchronized void release() {
+		if (!bound) {
+			return;
+		}
+		bound = false;
+		binder = null;
+		try {
+			BiglyBTApp.getContext().unbindService(this);
+		} catch (IllegalArgumentException ignore) {
+			// not registered
+		}
+	}
+
+	@Override
+	Object connect(String url)
+			throws RPCException {
+		return fallback.connect(url);
+	}
+
+	@Override
+	void setSupportsSendingGzip(boolean supportsSendingGzip,
+			boolean supportsSendingChunk) {
+		fallback.setSupportsSendingGzip(supportsSendingGzip, supportsSendingChunk);
+	}
+
+	@Override
+	Map<?, ?> connect(String id, String url, @Nullable Map<?, ?> jsonPost,
+			Map<String, String> headers, String username, String password)
+			throws RPCException {
+		// Until xmwebui has handed HTTP a session id, stay on HTTP.  Direct
+		// requests use the same id, so switching transports never changes
+		// which recently-active baseline a torrent-get is answered from
+		String sessionID = headers == null ? null : headers.get(HEADER_SESSION_ID);
+		if (jsonPost != null && sessionID != null && isDirectEnabled()) {
+			Map<?, ?> reply = connectDirect(id, sessionID, jsonPost);
+			if (reply != null) {
+				numDirect.incrementAndGet();
+				logTransport(TRANSPORT_DIRECT);
+				return reply;
+			}
+		}
+		numFallback.incrementAndGet();
+		logTransport(TRANSPORT_HTTP);
+		if (AndroidUtils.DEBUG_RPC) {
+			Log.d(TAG, id + "] via HTTP. direct=" + numDirect.get() + ", http="
+					+ numFallback.get());
+		}
+		return fallback.connect(id, url, jsonPost, headers, username, password);
+	}
+
+	/**
+	 * Logs which transport is in use, once, and again only when it changes
+	 */
+	private void logTransport(int transport) {
+		if (lastTransport.getAndSet(transport) == transport) {
+			return;
+		}
+		Log.i(TAG, "Local core RPC "
+				+ (transport == TRANSPORT_DIRECT ? "direct" : "via HTTP")
+				+ (unsupported ? " (xmwebui has no direct handler)" : "")
+				+ ". direct=" + numDirect.get() + ", http=" + numFallback.get());
+	}
+
+	private boolean isDirectEnabled() {
+		if (unsupported) {
+			return false;
+		}
+		if (!BiglyBTApp.getAppPreferences().getBoolean(
+				CorePrefs.PREF_CORE_DIRECT_RPC, true)) {
+			return false;
+		}
+		if (binder == null) {
+			bind();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return reply map, or null if the request should go through HTTP
+	 * @throws RPCException if the core may have run the request but we have
+	 * no reply, and the request isn't safe to send again
+	 */
+	@Nullable
+	private Map<?, ?> connectDirect(String id, String sessionID,
+			Map<?, ?> jsonPost)
+			throws RPCException {
+		IBinder binder = this.binder;
+		if (binder == null || !binder.isBinderAlive()) {
+			return null;
+		}
+		Object method = jsonPost.get("method");
+		boolean readOnly = READ_ONLY_METHODS.contains(method);
+		long start = AndroidUtils.DEBUG_RPC ? System.currentTimeMillis() : 0;
+		Parcel data = Parcel.obtain();
+		Parcel reply = Parcel.obtain();
+		try {
+			data.writeInterfaceToken(LocalRPCBinder.DESCRIPTOR);
+			data.writeString(sessionID);
+			data.writeMap(LocalRPCBinder.toParcelable(jsonPost));
+			if (data.dataSize() > MAX_DIRECT_REQUEST_BYTES) {
+				// Would likely fail to send; don't find out the hard way
+				return null;
+			}
+			binder.transact(LocalRPCBinder.TRANSACTION_RPC, data, reply, 0);
+
+			int status = reply.readInt();
+			if (status == LocalRPCBinder.STATUS_UNSUPPORTED) {
+				// Not run; handler missing or doesn't match
+				unsupported = true;
+				return null;
+			}
+			if (status == LocalRPCBinder.STATUS_ERROR) {
+				String error = reply.readString();
+				if (readOnly) {
+					return null;
+				}
+				throw new RPCException(method + ": " + error);
+			}
+			if (status != LocalRPCBinder.STATUS_OK) {
+				// STATUS_UNAVAILABLE: not run
+				return null;
+			}
+			Map<?, ?> map = reply.readHashMap(
+					RestJsonClientLocalCore.class.getClassLoader());
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, id + "] direct " + reply.dataSize() + " bytes in "
+						+ (System.currentTimeMillis() - start) + "ms");
+			}
+			return map;
+		} catch (RemoteException e) {
+			// TransactionTooLargeException (huge torrent list) or
+			// DeadObjectException (core went away).  Either can happen after
+			// xmwebui ran the request, so only resend what's harmless to repeat
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, id + "] direct failed", e);
+			}
+			if (readOnly) {
+				return null;
+			}
+			throw new RPCException(method + ": lost connection to core", e);
+		} finally {
+			data.recycle();
+			reply.recycle();
+		}
+	}
+}
@@ -25,7 +25,9 @@ import com.biglybt.android.client.CorePrefs.CorePrefsChangedListener;
 import com.biglybt.android.client.activity.IntentHandler;
 import com.biglybt.android.client.rpc.RPC;
 import com.biglybt.android.core.az.BiglyBTManager;
+import com.biglybt.android.core.az.CoreTuning;
 import com.biglybt.android.util.NetworkState;
+import com.biglybt.android.util.StorageVolumeRegistry;
 import com.biglybt.android.util.NetworkState.NetworkStateListener;
 import com.biglybt.core.*;
 import com.biglybt.core.config.COConfigurationManager;
@@ -50,7 +52,9 @@ import android.content.*;
 import android.content.res.Resources;
 import android.net.wifi.WifiManager;
 import android.os.*;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.app.ActivityManagerCompat;
 import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 
@@ -239,9 +243,12 @@ public class BiglyBTService
 			}
 			if (action.equals(Intent.ACTION_SCREEN_OFF)) {
 				screenOff = true;
+				// No point waking up to refresh a notification nobody sees
+				stopNotificationTimer();
 			} else if (action.equals(Intent.ACTION_SCREEN_ON)) {
 				screenOff = false;
 				updateNotification();
+				startNotificationTimer();
 			}
 		}
 	}
@@ -254,6 +261,9 @@ public class BiglyBTService
 	@Thunk
 	final Messenger mMessenger = new Messenger(new IncomingHandler());
 
+	@Thunk
+	final LocalRPCBinder localRPCBinder = new LocalRPCBinder();
+
 	private boolean skipBind = false;
 
 	@Thunk
@@ -264,6 +274,18 @@ public class BiglyBTService
 
 	private BiglyBTManager biglyBTManager;
 
+	/**
+	 * Created with {@link #biglyBTManager}, updated on power changes
+	 */
+	@Thunk
+	CoreTuning coreTuning;
+
+	/**
+	 * Re-applies {@link #coreTuning} on power changes.  Config writes run the
+	 * core's parameter listeners, which don't belong on the main thread.
+	 */
+	private Handler tuningHandler;
+
 	@Thunk
 	boolean isCoreStopping;
 
@@ -290,6 +312,32 @@ public class BiglyBTService
 
 	private boolean allowNotificationUpdate = true;
 
+	private final Object notificationLock = new Object();
+
+	/**
+	 * What the notification currently shows.  null when nothing was posted yet
+	 */
+	private CoreNotificationState lastNotificationState = null;
+
+	/**
+	 * Refreshes speeds in the notification while the screen is on.
+	 * Guarded by notificationLock
+	 */
+	private TimerEventPeriodic notificationTimer = null;
+
+	/**
+	 * Core is up and wants {@link #notificationTimer} whenever the screen is
+	 * on.  Guarded by notificationLock
+	 */
+	private boolean notificationTimerWanted = false;
+
+	private long statsNotificationUpdates = 0;
+
+	/**
+	 * Updates skipped because the screen was off or nothing visible changed
+	 */
+	private long statsNotificationSuppressed = 0;
+
 	@Thunk
 	boolean isServiceStopping;
 
@@ -478,7 +526,7 @@ public class BiglyBTService
 	public void corePrefOnlyPluggedInChanged(boolean onlyPluggedIn) {
 		if (onlyPluggedIn) {
 			enableBatteryMonitoring(BiglyBTApp.getContext());
-		} else {
+		} else if (coreTuning == null) {
 			disableBatteryMonitoring(BiglyBTApp.getContext());
 		}
 	}
@@ -611,6 +659,10 @@ public class BiglyBTService
 			Log.d(TAG, "onBind " + intent);
 		}
 
+		if (LocalRPCBinder.INTENT_ACTION_LOCAL_RPC.equals(intent.getAction())) {
+			return localRPCBinder;
+		}
+
 		return mMessenger.getBinder();
 	}
 
@@ -672,7 +724,8 @@ public class BiglyBTService
 
 			buildCustomFile();
 			try {
-				biglyBTManager = new BiglyBTManager(biglybtCoreConfigRoot);
+				coreTuning = createCoreTuning();
+				biglyBTManager = new BiglyBTManager(biglybtCoreConfigRoot, coreTuning);
 			} catch (CoreException ex) {
 				Log.e(TAG, "startCore: ", ex);
 				AnalyticsTracker.getInstance(this).logError(ex,
@@ -685,6 +738,10 @@ public class BiglyBTService
 
 			core = biglyBTManager.getCore();
 
+			publishCoreTuning(coreTuning);
+			// Always monitor, tuning depends on power state
+			enableBatteryMonitoring(BiglyBTApp.getContext());
+
 			if (BiglyBTManager.isShuttingDown()) {
 				if (restartService) {
 					if (CorePrefs.DEBUG_CORE) {
@@ -708,13 +765,12 @@ public class BiglyBTService
 				}));
 			}
 
-			SimpleTimer.addPeriodicEvent("Update Notification", 10000,
-					new TimerEventPerformer() {
-						@Override
-						public void perform(TimerEvent event) {
-							updateNotification();
-						}
-					});
+			synchronized (notificationLock) {
+				notificationTimerWanted = true;
+			}
+			if (!screenOff) {
+				startNotificationTimer();
+			}
 
 			PairingManager pairingManager = PairingManagerFactory.getSingleton();
 			if (pairingManager != null) {
@@ -840,11 +896,13 @@ public class BiglyBTService
 								}
 							}
 
+							// active count may have changed
+							updateNotification();
 						}
 
 						@Override
 						public void downloadManagerRemoved(DownloadManager dm) {
-
+							updateNotification();
 						}
 
 						@Override
@@ -869,6 +927,7 @@ public class BiglyBTService
 							} else {
 								adjustPowerLock();
 							}
+							updateNotification();
 						}
 					});
 				}
@@ -891,6 +950,7 @@ public class BiglyBTService
 						}
 
 						if (pluginID.equals("xmwebui")) {
+							localRPCBinder.setWebUIPlugin((PluginInterface) component);
 							webUIStarted = true;
 							sendStuff(MSG_OUT_WEBUI_STARTED, "MSG_OUT_WEBUI_STARTED");
 							updateNotification();
@@ -908,6 +968,7 @@ public class BiglyBTService
 					}
 
 					core.removeLifecycleListener(this);
+					localRPCBinder.setWebUIPlugin(null);
 
 					NetworkState networkState = BiglyBTApp.getNetworkState();
 					networkState.removeListener(BiglyBTService.this);
@@ -949,26 +1010,60 @@ public class BiglyBTService
 		}
 	}
 
+	@Thunk
+	void startNotificationTimer() {
+		synchronized (notificationLock) {
+			if (!notificationTimerWanted || notificationTimer != null) {
+				return;
+			}
+			notificationTimer = SimpleTimer.addPeriodicEvent("Update Notification",
+					10000, new TimerEventPerformer() {
+						@Override
+						public void perform(TimerEvent event) {
+							updateNotification();
+						}
+					});
+		}
+	}
+
+	@Thunk
+	void stopNotificationTimer() {
+		synchronized (notificationLock) {
+			if (notificationTimer != null) {
+				notificationTimer.cancel();
+				notificationTimer = null;
+			}
+		}
+	}
+
 	@Thunk
 	void updateNotification() {
 		if (!allowNotificationUpdate) {
 			return;
 		}
 
-//		if (CorePrefs.DEBUG_CORE) {
-//			Log.d(TAG, "updateNotification " + (screenOff ? "ScreenOff" : "ScreenOn"));
-//		}
 		if (screenOff) {
+			// Nobody can see it.  ACTION_SCREEN_ON triggers a fresh update
+			statsNotificationSuppressed++;
 			return;
 		}
-		try {
-			NotificationManager mNotificationManager = (NotificationManager) getSystemService(
-					Context.NOTIFICATION_SERVICE);
-			if (mNotificationManager != null) {
-				Notification notification = getNotificationBuilder().build();
-				mNotificationManager.notify(1, notification);
+		CoreNotificationState state = buildNotificationState();
+		synchronized (notificationLock) {
+			if (state.rendersSameAs(lastNotificationState)) {
+				statsNotificationSuppressed++;
+				return;
+			}
+			try {
+				NotificationManager mNotificationManager = (NotificationManager) getSystemService(
+						Context.NOTIFICATION_SERVICE);
+				if (mNotificationManager != null) {
+					Notification notification = getNotificationBuilder(state).build();
+					mNotificationManager.notify(1, notification);
+					lastNotificationState = state;
+					statsNotificationUpdates++;
+				}
+			} catch (IllegalArgumentException ignore) {
 			}
-		} catch (IllegalArgumentException ignore) {
 		}
 	}
 
@@ -1121,8 +1216,13 @@ public class BiglyBTService
 		 * swipes it away. The cleanup is triggered via a dedicated local service
 		 * that notifies the app onTaskRemoved.
 		 */
-		Notification notification = getNotificationBuilder().build();
-		startForeground(1, notification);
+		CoreNotificationState state = buildNotificationState();
+		synchronized (notificationLock) {
+			Notification notification = getNotificationBuilder(state).build();
+			startForeground(1, notification);
+			lastNotificationState = state;
+			statsNotificationUpdates++;
+		}
 
 		if (CorePrefs.DEBUG_CORE) {
 			Log.d(TAG, "onStartCommand: Start Sticky; flags=" + flags + ";startID="
@@ -1191,7 +1291,67 @@ public class BiglyBTService
 
 	}
 
-	private NotificationCompat.Builder getNotificationBuilder() {
+	/**
+	 * Gathers what the notification would show right now.  Cheap enough to call
+	 * on every timer tick or core event; the Notification itself is only
+	 * rebuilt when this differs from {@link #lastNotificationState}
+	 */
+	@NonNull
+	private CoreNotificationState buildNotificationState() {
+		Resources resources = getResources();
+
+		GlobalManager gm = null;
+		if (core != null && core.isStarted()) {
+			gm = core.getGlobalManager();
+		}
+
+		int actions = CoreNotificationState.ACTIONS_NONE;
+		if (!isCoreStopping && !isServiceStopping) {
+			if (gm == null) {
+				actions = CoreNotificationState.ACTIONS_STOP;
+			} else {
+				actions = gm.canPauseDownloads()
+						? CoreNotificationState.ACTIONS_STOP_PAUSE
+						: CoreNotificationState.ACTIONS_STOP_RESUME;
+			}
+		}
+
+		String subTitle;
+		if (isCoreStopping || isServiceStopping) {
+			int id = restartService ? R.string.core_noti_restarting
+					: R.string.core_noti_stopping;
+			subTitle = resources.getString(id);
+		} else {
+			if (bindToLocalHost) {
+				subTitle = resources.getString(bindToLocalHostReasonID);
+			} else {
+				GlobalManagerStats stats = gm == null ? null : gm.getStats();
+
+				if (stats != null) {
+					String downSpeed = com.biglybt.util.DisplayFormatters.formatByteCountToKiBEtcPerSec(
+							stats.getDataAndProtocolReceiveRate());
+					String upSpeed = com.biglybt.util.DisplayFormatters.formatByteCountToKiBEtcPerSec(
+							stats.getDataAndProtocolSendRate());
+					TagManager tagManager = TagManagerFactory.getTagManager();
+					Tag tagActive = tagManager.getTagType(
+							TagType.TT_DOWNLOAD_STATE).getTag(7);// active
+					int numActive = tagActive == null ? 0
+							: tagActive.getTaggedCount();
+					subTitle = resources.getQuantityString(R.plurals.core_noti_running,
+							numActive, downSpeed, upSpeed,
+							com.biglybt.util.DisplayFormatters.formatNumber(numActive));
+				} else {
+					subTitle = resources.getString(R.string.core_noti_starting);
+				}
+
+			}
+		}
+
+		return new CoreNotificationState(subTitle, actions);
+	}
+
+	private NotificationCompat.Builder getNotificationBuilder(
+			@NonNull CoreNotificationState state) {
 		Resources resources = getResources();
 		final Intent notificationIntent = new Intent(this, IntentHandler.class);
 		final PendingIntent pi = PendingIntent.getActivity(this, 0,
@@ -1208,7 +1368,7 @@ public class BiglyBTService
 		builder.setContentIntent(pi);
 		builder.setPriority(Notification.PRIORITY_LOW);
 
-		if (!isCoreStopping && !isServiceStopping) {
+		if (state.actions != CoreNotificationState.ACTIONS_NONE) {
 			Intent intentStop = new Intent(this, BiglyBTService.class);
 			intentStop.setAction(INTENT_ACTION_STOP);
 			PendingIntent piStop = PendingIntent.getService(this, 0, intentStop,
@@ -1217,23 +1377,20 @@ public class BiglyBTService
 			builder.addAction(R.drawable.ic_power_settings_new_white_24dp,
 					resources.getString(R.string.core_noti_stop_button), piStop);
 
-			if (core != null && core.isStarted()) {
-				GlobalManager gm = core.getGlobalManager();
-				if (gm != null) {
-					boolean canPause = gm.canPauseDownloads();
-					Intent intentPR = new Intent(this, BiglyBTService.class);
-					intentPR.setAction(
-							canPause ? INTENT_ACTION_PAUSE : INTENT_ACTION_RESUME);
-					PendingIntent piPR = PendingIntent.getService(this, 0, intentPR,
-							PendingIntent.FLAG_CANCEL_CURRENT);
-
-					builder.addAction(
-							canPause ? R.drawable.ic_playlist_pause_n
-									: R.drawable.ic_playlist_play_white_n,
-							resources.getString(canPause ? R.string.core_noti_pause_button
-									: R.string.core_noti_resume_button),
-							piPR);
-				}
+			if (state.actions != CoreNotificationState.ACTIONS_STOP) {
+				boolean canPause = state.actions == CoreNotificationState.ACTIONS_STOP_PAUSE;
+				Intent intentPR = new Intent(this, BiglyBTService.class);
+				intentPR.setAction(
+						canPause ? INTENT_ACTION_PAUSE : INTENT_ACTION_RESUME);
+				PendingIntent piPR = PendingIntent.getService(this, 0, intentPR,
+						PendingIntent.FLAG_CANCEL_CURRENT);
+
+				builder.addAction(
+						canPause ? R.drawable.ic_playlist_pause_n
+								: R.drawable.ic_playlist_play_white_n,
+						resources.getString(canPause ? R.string.core_noti_pause_button
+								: R.string.core_noti_resume_button),
+						piPR);
 			}
 
 			if (CorePrefs.DEBUG_CORE) {
@@ -1247,42 +1404,7 @@ public class BiglyBTService
 
 		}
 
-		String subTitle;
-		if (isCoreStopping || isServiceStopping) {
-			int id = restartService ? R.string.core_noti_restarting
-					: R.string.core_noti_stopping;
-			subTitle = resources.getString(id);
-		} else {
-			if (bindToLocalHost) {
-				subTitle = resources.getString(bindToLocalHostReasonID);
-			} else {
-				GlobalManagerStats stats = null;
-				if (core != null && core.isStarted()) {
-					GlobalManager gm = core.getGlobalManager();
-					if (gm != null) {
-						stats = gm.getStats();
-					}
-				}
-
-				if (stats != null) {
-					String downSpeed = com.biglybt.util.DisplayFormatters.formatByteCountToKiBEtcPerSec(
-							stats.getDataAndProtocolReceiveRate());
-					String upSpeed = com.biglybt.util.DisplayFormatters.formatByteCountToKiBEtcPerSec(
-							stats.getDataAndProtocolSendRate());
-					TagManager tagManager = TagManagerFactory.getTagManager();
-					Tag tagActive = tagManager.getTagType(
-							TagType.TT_DOWNLOAD_STATE).getTag(7);// active
-					int numActive = tagActive == null ? 0 : tagActive.getTaggedCount();
-					subTitle = resources.getQuantityString(R.plurals.core_noti_running,
-							numActive, downSpeed, upSpeed,
-							com.biglybt.util.DisplayFormatters.formatNumber(numActive));
-				} else {
-					subTitle = resources.getString(R.string.core_noti_starting);
-				}
-
-			}
-		}
-		builder.setContentText(subTitle).setShowWhen(false);
+		builder.setContentText(state.subTitle).setShowWhen(false);
 
 		return builder;
 	}
@@ -1331,6 +1453,10 @@ public class BiglyBTService
 		if (screenReceiver != null) {
 			unregisterReceiver(screenReceiver);
 		}
+		synchronized (notificationLock) {
+			notificationTimerWanted = false;
+		}
+		stopNotificationTimer();
 
 		boolean hadBiglyBTManager = biglyBTManager != null;
 		if (hadBiglyBTManager) {
@@ -1361,6 +1487,10 @@ public class BiglyBTService
 		if (mNotificationManager != null) {
 			mNotificationManager.cancel(1);
 		}
+		if (CorePrefs.DEBUG_CORE) {
+			Log.d(TAG, "onDestroy: notification updates=" + statsNotificationUpdates
+					+ ", suppressed=" + statsNotificationSuppressed);
+		}
 
 		//staticVar = null;
 
@@ -1522,6 +1652,55 @@ public class BiglyBTService
 		}
 	}
 
+	private static CoreTuning createCoreTuning() {
+		Context context = BiglyBTApp.getContext();
+		ActivityManager activityManager = (ActivityManager) context.getSystemService(
+				Context.ACTIVITY_SERVICE);
+		boolean lowRamDevice = activityManager != null
+				&& ActivityManagerCompat.isLowRamDevice(activityManager);
+		long totalRamMB = -1;
+		if (activityManager != null
+				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+			activityManager.getMemoryInfo(memoryInfo);
+			totalRamMB = memoryInfo.totalMem / (1024 * 1024);
+		}
+		CoreTuning.StorageInfo storageInfo = new CoreTuning.StorageInfo() {
+			@Override
+			public boolean isRemovable(File dir) {
+				StorageVolumeRegistry.Volume volume = BiglyBTApp.getStorageVolumes().findVolume(
+						dir);
+				if (volume != null) {
+					return volume.isRemovable;
+				}
+				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+					try {
+						return Environment.isExternalStorageRemovable(dir);
+					} catch (IllegalArgumentException ignore) {
+						// not on a storage device
+					}
+				}
+				return false;
+			}
+		};
+		return new CoreTuning(lowRamDevice, totalRamMB, storageInfo,
+				AndroidUtils.isPowerConnected(context));
+	}
+
+	/**
+	 * Store the chosen tuning profile so the UI process can display it
+	 */
+	@Thunk
+	static void publishCoreTuning(CoreTuning tuning) {
+		if (tuning == null) {
+			return;
+		}
+		TrayPreferences prefs = BiglyBTApp.getAppPreferences().getPreferences();
+		prefs.batch().put(CorePrefs.PREF_CORE_TUNING_PROFILE,
+				tuning.getProfile()).put(CorePrefs.PREF_CORE_TUNING_PLUGGEDIN,
+						tuning.isPluggedIn()).commit();
+	}
+
 	public void adjustPowerLock() {
 		if (corePrefs.getPrefDisableSleep()) {
 			acquirePowerLock();
@@ -1530,6 +1709,16 @@ public class BiglyBTService
 		}
 	}
 
+	@Thunk
+	synchronized Handler getTuningHandler() {
+		if (tuningHandler == null) {
+			HandlerThread thread = new HandlerThread("CoreTuning");
+			thread.start();
+			tuningHandler = new Handler(thread.getLooper());
+		}
+		return tuningHandler;
+	}
+
 	private void disableBatteryMonitoring(Context context) {
 		if (batteryReceiver != null) {
 			context.unregisterReceiver(batteryReceiver);
@@ -1566,6 +1755,19 @@ public class BiglyBTService
 
 					return;
 				}
+				final CoreTuning tuning = coreTuning;
+				if (tuning != null && intent.getAction() != null) {
+					final boolean isConnected = intent.getAction().equals(
+							Intent.ACTION_POWER_CONNECTED);
+					getTuningHandler().post(new Runnable() {
+						@Override
+						public void run() {
+							if (tuning.setPluggedIn(isConnected)) {
+								publishCoreTuning(tuning);
+							}
+						}
+					});
+				}
 				if (corePrefs.getPrefOnlyPluggedIn()) {
 					checkForSleepModeChange();
 				}
@@ -0,0 +1,71 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.service;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Everything that ends up in the core's foreground notification, in rendered
+ * form.  Two states that are {@link #equals(Object)} produce the same
+ * notification, so the Notification only needs rebuilding when the state
+ * changes.
+ */
+final class CoreNotificationState
+{
+	static final int ACTIONS_NONE = 0;
+
+	/** Stop only; core not started yet */
+	static final int ACTIONS_STOP = 1;
+
+	static final int ACTIONS_STOP_PAUSE = 2;
+
+	static final int ACTIONS_STOP_RESUME = 3;
+
+	@NonNull
+	final String subTitle;
+
+	final int actions;
+
+	CoreNotificationState(@NonNull String subTitle, int actions) {
+		this.subTitle = subTitle;
+		this.actions = actions;
+	}
+
+	/**
+	 * Compares only what is visible in the notification
+	 */
+	boolean rendersSameAs(CoreNotificationState other) {
+		return other != null && actions == other.actions
+				&& subTitle.equals(other.subTitle);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return (obj instanceof CoreNotificationState)
+				&& rendersSameAs((CoreNotificationState) obj);
+	}
+
+	@Override
+	public int hashCode() {
+		return subTitle.hashCode() * 31 + actions;
+	}
+
+	@Override
+	public String toString() {
+		return "CoreNotificationState{" + subTitle + ", actions=" + actions + "}";
+	}
+}
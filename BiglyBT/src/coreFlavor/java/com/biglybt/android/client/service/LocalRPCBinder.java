@@ -0,0 +1,300 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+import com.biglybt.android.client.CorePrefs;
+import com.biglybt.pif.PluginInterface;
+
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Binder living in the core process that hands Transmission RPC request maps
+ * straight to the xmwebui plugin, skipping HTTP framing and JSON on both
+ * sides.  Maps cross the process boundary as Parcel values.
+ * <p/>
+ * Bound via {@link #INTENT_ACTION_LOCAL_RPC}, see
+ * {@link com.biglybt.android.client.rpc.RestJsonClientLocalCore}
+ */
+public class LocalRPCBinder
+	extends Binder
+{
+	private static final String TAG = "LocalRPC";
+
+	public static final String INTENT_ACTION_LOCAL_RPC = "com.biglybt.android.client.LOCAL_RPC";
+
+	public static final String DESCRIPTOR = "com.biglybt.android.client.LocalRPC";
+
+	public static final int TRANSACTION_RPC = IBinder.FIRST_CALL_TRANSACTION;
+
+	public static final int STATUS_OK = 0;
+
+	/** Direct calls aren't possible (yet); caller should use HTTP */
+	public static final int STATUS_UNAVAILABLE = 1;
+
+	/** Direct calls will never work with this core; stop trying */
+	public static final int STATUS_UNSUPPORTED = 2;
+
+	/**
+	 * The request was run, and failed part way.  Followed by a message.
+	 * The caller must not assume nothing happened.
+	 */
+	public static final int STATUS_ERROR = 3;
+
+	private static final String METHOD_PROCESS_REQUEST = "processRequest";
+
+	/**
+	 * Parameters of xmwebui's processRequest: session id, view-only, and the
+	 * decoded request body.  Anything else isn't called.
+	 */
+	private static final Class<?>[] PROCESS_REQUEST_PARAMS = {
+		String.class,
+		boolean.class,
+		Map.class
+	};
+
+	/** xmwebui (WebPlugin) config key and value for View-Only mode */
+	private static final String CONFIG_MODE = "Mode";
+
+	private static final String CONFIG_MODE_VIEW = "view";
+
+	private PluginInterface pluginInterface;
+
+	private Method methodProcessRequest;
+
+	private boolean unsupported;
+
+	/**
+	 * Looks up xmwebui's handler right away, so a signature mismatch shows up
+	 * in the log when the plugin loads rather than as a quiet switch to HTTP.
+	 */
+	void setWebUIPlugin(@Nullable PluginInterface pi) {
+		Method method = null;
+		if (pi != null) {
+			Class<?> cla = pi.getPlugin().getClass();
+			method = findProcessRequest(cla);
+			if (method == null) {
+				Log.w(TAG, "xmwebui " + pi.getPluginVersion()
+						+ " has no processRequest(String, boolean, Map); found "
+						+ describeCandidates(cla) + ". Local RPC will use HTTP");
+			} else {
+				Log.i(TAG, "xmwebui " + pi.getPluginVersion()
+						+ " accepts direct requests");
+			}
+		}
+		synchronized (this) {
+			pluginInterface = pi;
+			methodProcessRequest = method;
+			unsupported = pi != null && method == null;
+		}
+	}
+
+	@Override
+	protected boolean onTransact(int code, Parcel data, Parcel reply, int flags)
+			throws RemoteException {
+		if (code != TRANSACTION_RPC) {
+			return super.onTransact(code, data, reply, flags);
+		}
+		data.enforceInterface(DESCRIPTOR);
+		// The HTTP client's X-Transmission-Session-Id.  xmwebui keeps its
+		// recently-active baseline per session, so both transports share one
+		String sessionID = data.readString();
+		Map request = data.readHashMap(LocalRPCBinder.class.getClassLoader());
+
+		Object plugin;
+		Method method;
+		boolean viewOnly;
+		synchronized (this) {
+			if (pluginInterface == null || sessionID == null) {
+				reply.writeInt(STATUS_UNAVAILABLE);
+				return true;
+			}
+			if (unsupported || methodProcessRequest == null) {
+				reply.writeInt(STATUS_UNSUPPORTED);
+				return true;
+			}
+			plugin = pluginInterface.getPlugin();
+			method = methodProcessRequest;
+			viewOnly = isViewOnly(pluginInterface);
+		}
+
+		Object result;
+		try {
+			result = method.invoke(plugin, sessionID, viewOnly, request);
+		} catch (InvocationTargetException e) {
+			// xmwebui ran the request and it threw; it may have done some of it
+			Throwable cause = e.getCause() == null ? e : e.getCause();
+			Log.w(TAG, "Direct request failed", cause);
+			reply.writeInt(STATUS_ERROR);
+			reply.writeString(cause.toString());
+			return true;
+		} catch (Throwable t) {
+			// Not called at all
+			Log.w(TAG, "Direct request not possible, using HTTP", t);
+			synchronized (this) {
+				unsupported = true;
+			}
+			reply.writeInt(STATUS_UNSUPPORTED);
+			return true;
+		}
+
+		if (!(result instanceof Map)) {
+			reply.writeInt(STATUS_UNAVAILABLE);
+			return true;
+		}
+
+		reply.writeInt(STATUS_OK);
+		reply.writeMap(toParcelable((Map) result));
+		if (CorePrefs.DEBUG_CORE) {
+			Log.d(TAG, "onTransact: " + request.get("method") + " -> "
+					+ reply.dataSize() + " bytes");
+		}
+		return true;
+	}
+
+	/**
+	 * xmwebui parses the JSON body and hands the resulting map to
+	 * processRequest(String, boolean, Map).  Find it without a compile time
+	 * dependency on the plugin.  Only that exact signature is accepted, so a
+	 * different xmwebui never gets guessed arguments.
+	 */
+	@Nullable
+	private static Method findProcessRequest(Class<?> cla) {
+		while (cla != null && cla != Object.class) {
+			try {
+				Method method = cla.getDeclaredMethod(METHOD_PROCESS_REQUEST,
+						PROCESS_REQUEST_PARAMS);
+				if (Modifier.isStatic(method.getModifiers())
+						|| !Map.class.isAssignableFrom(method.getReturnType())) {
+					return null;
+				}
+				method.setAccessible(true);
+				return method;
+			} catch (NoSuchMethodException ignore) {
+			}
+			cla = cla.getSuperclass();
+		}
+		return null;
+	}
+
+	/** For the log: every processRequest xmwebui does have */
+	@NonNull
+	private static String describeCandidates(Class<?> cla) {
+		List<String> list = new ArrayList<>();
+		while (cla != null && cla != Object.class) {
+			for (Method method : cla.getDeclaredMethods()) {
+				if (METHOD_PROCESS_REQUEST.equals(method.getName())) {
+					list.add(method.toGenericString());
+				}
+			}
+			cla = cla.getSuperclass();
+		}
+		return list.isEmpty() ? "none" : list.toString();
+	}
+
+	/**
+	 * Same restriction HTTP requests get.  When in doubt, view-only.
+	 */
+	private static boolean isViewOnly(@NonNull PluginInterface pi) {
+		try {
+			String mode = pi.getPluginconfig().getPluginStringParameter(CONFIG_MODE,
+					"");
+			return CONFIG_MODE_VIEW.equalsIgnoreCase(mode);
+		} catch (Throwable t) {
+			Log.w(TAG, "isViewOnly", t);
+			return true;
+		}
+	}
+
+	/**
+	 * Converts a map into something {@link Parcel#writeMap(Map)} can write and
+	 * that reads back with the same types JSON decoding would produce:
+	 * arrays become Lists, integer types become Long, unknown objects Strings.
+	 */
+	@NonNull
+	public static Map<String, Object> toParcelable(@NonNull Map<?, ?> map) {
+		Map<String, Object> out = new HashMap<>(map.size() * 4 / 3 + 1);
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			out.put(String.valueOf(entry.getKey()), toParcelableValue(entry.getValue()));
+		}
+		return out;
+	}
+
+	private static Object toParcelableValue(Object o) {
+		if (o == null || o instanceof String || o instanceof Boolean
+				|| o instanceof Long || o instanceof Double) {
+			return o;
+		}
+		if (o instanceof Integer || o instanceof Short || o instanceof Byte) {
+			return ((Number) o).longValue();
+		}
+		if (o instanceof Float) {
+			return ((Float) o).doubleValue();
+		}
+		if (o instanceof Number) {
+			Number n = (Number) o;
+			return n.doubleValue() == n.longValue() ? (Object) n.longValue()
+					: (Object) n.doubleValue();
+		}
+		if (o instanceof Map) {
+			return toParcelable((Map<?, ?>) o);
+		}
+		if (o instanceof Collection) {
+			Collection<?> c = (Collection<?>) o;
+			List<Object> list = new ArrayList<>(c.size());
+			for (Object item : c) {
+				list.add(toParcelableValue(item));
+			}
+			return list;
+		}
+		if (o instanceof Object[]) {
+			Object[] array = (Object[]) o;
+			List<Object> list = new ArrayList<>(array.length);
+			for (Object item : array) {
+				list.add(toParcelableValue(item));
+			}
+			return list;
+		}
+		if (o instanceof long[]) {
+			long[] array = (long[]) o;
+			List<Object> list = new ArrayList<>(array.length);
+			for (long item : array) {
+				list.add(item);
+			}
+			return list;
+		}
+		if (o instanceof int[]) {
+			int[] array = (int[]) o;
+			List<Object> list = new ArrayList<>(array.length);
+			for (int item : array) {
+				list.add((long) item);
+			}
+			return list;
+		}
+		return String.valueOf(o);
+	}
+}
@@ -24,7 +24,6 @@ import java.util.Arrays;
 
 import com.biglybt.android.client.BiglyBTApp;
 import com.biglybt.android.client.CorePrefs;
-import com.biglybt.android.util.FileUtils;
 import com.biglybt.core.*;
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.config.impl.ConfigurationDefaults;
@@ -132,7 +131,11 @@ public class BiglyBTManager
 
 	// C:\Projects\adt-bundle-windows\sdk\platform-tools>dx --dex --output fred.jar azutp_0.3.0.jar
 
-	public BiglyBTManager(File core_root) {
+	/**
+	 * @param tuning Device dependent parameters, applied before the core is
+	 *               created
+	 */
+	public BiglyBTManager(File core_root, CoreTuning tuning) {
 
 		if (CoreFactory.isCoreAvailable()) {
 			core = CoreFactory.getSingleton();
@@ -143,6 +146,8 @@ public class BiglyBTManager
 			if (isShuttingDown()) {
 				return;
 			}
+			// Config of the existing core is already initialised
+			tuning.apply();
 
 			core.addLifecycleListener(new CoreLifecycleAdapter() {
 				@Override
@@ -262,7 +267,6 @@ public class BiglyBTManager
 		COConfigurationManager.setParameter("Logging Dir", "C:\\temp");
 		COConfigurationManager.setParameter("Logger.DebugFiles.Enabled", false);
 
-		COConfigurationManager.setParameter("Start In Low Resource Mode", true);
 		COConfigurationManager.setParameter("DHT.protocol.version.min", 51);
 		COConfigurationManager.setParameter("network.tcp.enable_safe_selector_mode",
 				false);
@@ -315,36 +319,8 @@ public class BiglyBTManager
 		COConfigurationManager.setParameter("dht.net.main_v6.enable", false);
 
 		coreDefaults.addParameter("Listen.Port.Randomize.Enable", true);
-		COConfigurationManager.setParameter("network.tcp.read.select.time", 500);
-		COConfigurationManager.setParameter("network.tcp.read.select.min.time",
-				500);
-		COConfigurationManager.setParameter("network.tcp.write.select.time", 500);
-		COConfigurationManager.setParameter("network.tcp.write.select.min.time",
-				500);
-		COConfigurationManager.setParameter("network.tcp.connect.select.time", 500);
-		COConfigurationManager.setParameter("network.tcp.connect.select.min.time",
-				500);
-
-		COConfigurationManager.setParameter("network.udp.poll.time", 100);
-
-		COConfigurationManager.setParameter("network.utp.poll.time", 100);
-
-		COConfigurationManager.setParameter("network.control.read.idle.time", 100);
-		COConfigurationManager.setParameter("network.control.write.idle.time", 100);
-
-		COConfigurationManager.setParameter("diskmanager.perf.cache.enable", true);
-		COConfigurationManager.setParameter("diskmanager.perf.cache.size", 2);
-		COConfigurationManager.setParameter("diskmanager.perf.cache.flushpieces",
-				false);
-		COConfigurationManager.setParameter("diskmanager.perf.cache.enable.read",
-				false);
-
-		COConfigurationManager.setParameter("diskmanager.perf.read.maxthreads", 2);
-		COConfigurationManager.setParameter("diskmanager.perf.read.maxmb", 2);
-		COConfigurationManager.setParameter("diskmanager.perf.write.maxthreads", 2);
-		COConfigurationManager.setParameter("diskmanager.perf.write.maxmb", 2);
-
-		COConfigurationManager.setParameter("peermanager.schedule.time", 500);
+		// select/poll times, disk cache and disk threads
+		tuning.apply();
 
 		PluginManagerDefaults defaults = PluginManager.getDefaults();
 
@@ -492,21 +468,9 @@ public class BiglyBTManager
 	static void preinstallPlugins() {
 		// Copy <assets>/plugins to <userpath>/plugins
 		// (<userpath> is usually "<internal storage>/.biglybt")
-
-		try {
-			if (CorePrefs.DEBUG_CORE) {
-				Log.d("Core", "unzip plugins.zip");
-			}
-			InputStream inputStream = BiglyBTApp.getContext().getAssets().open(
-					"plugins.zip");
-			FileUtils.unzip(inputStream, new File(SystemProperties.getUserPath()),
-					false);
-			if (CorePrefs.DEBUG_CORE) {
-				Log.d("Core", "unzip plugins.zip done");
-			}
-		} catch (IOException e) {
-			Log.e(TAG, "preinstallPlugins: ", e);
-		}
+		// Skipped when plugins.zip hasn't changed since the last run
+		PluginPreinstaller.preinstall(BiglyBTApp.getContext(),
+				new File(SystemProperties.getUserPath()));
 	}
 
 	@Thunk
@@ -0,0 +1,254 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.core.az;
+
+import java.io.File;
+
+import com.biglybt.android.client.CorePrefs;
+import com.biglybt.core.config.COConfigurationManager;
+
+import android.util.Log;
+
+/**
+ * Picks disk cache, disk thread and network polling parameters for the core
+ * based on the device, instead of using the most conservative values
+ * everywhere.
+ * <p/>
+ * Device RAM and core count decide the profile (how big buffers and caches
+ * may get); the java heap caps the disk cache.  Power state only decides
+ * how often the core may wake up: on battery, select and poll times never go
+ * below the old conservative values.
+ * <p/>
+ * Like {@link BiglyBTManager}, Android specific calls should be avoided here.
+ * Device facts that need Android APIs are passed in by the service.
+ */
+public class CoreTuning
+{
+	private static final String TAG = "CoreTuning";
+
+	public static final String PROFILE_LOW = "low";
+
+	public static final String PROFILE_BALANCED = "balanced";
+
+	public static final String PROFILE_HIGH = "high";
+
+	/** Select/poll floors used while on battery.  Same as the old defaults */
+	private static final int BATTERY_SELECT_TIME = 500;
+
+	private static final int BATTERY_POLL_TIME = 100;
+
+	private static final int BATTERY_SCHEDULE_TIME = 500;
+
+	/**
+	 * Answers questions about storage that need Android APIs
+	 */
+	public interface StorageInfo
+	{
+		/**
+		 * @return true if dir is on removable storage (SD card, USB)
+		 */
+		boolean isRemovable(File dir);
+	}
+
+	private final String profile;
+
+	private final long maxHeapMB;
+
+	private final int numCores;
+
+	/** -1 if unknown */
+	private final long totalRamMB;
+
+	private final StorageInfo storageInfo;
+
+	/** Of the save path, as of the last {@link #apply()} */
+	private boolean storageRemovable;
+
+	private boolean pluggedIn;
+
+	/**
+	 * Power state the parameters were last applied for, null if never applied
+	 */
+	private Boolean appliedPluggedIn = null;
+
+	/**
+	 * @param lowRamDevice Device reports itself as low RAM (ActivityManager)
+	 * @param totalRamMB Device RAM, or -1 if unknown (API &lt; 16), in which
+	 *                   case the java heap size is used instead
+	 * @param storageInfo Checks whether the save path is on removable storage
+	 *                    (SD card), which handles parallel writes badly
+	 * @param pluggedIn Device is on external power
+	 */
+	public CoreTuning(boolean lowRamDevice, long totalRamMB,
+			StorageInfo storageInfo, boolean pluggedIn) {
+		this.totalRamMB = totalRamMB;
+		this.storageInfo = storageInfo;
+		this.pluggedIn = pluggedIn;
+
+		Runtime runtime = Runtime.getRuntime();
+		maxHeapMB = runtime.maxMemory() / (1024 * 1024);
+		numCores = runtime.availableProcessors();
+
+		boolean lowMemory;
+		boolean highMemory;
+		if (totalRamMB > 0) {
+			lowMemory = totalRamMB < 1536;
+			highMemory = totalRamMB >= 3072;
+		} else {
+			lowMemory = maxHeapMB < 96;
+			highMemory = maxHeapMB >= 192;
+		}
+
+		if (lowRamDevice || lowMemory || numCores <= 2) {
+			profile = PROFILE_LOW;
+		} else if (highMemory && numCores >= 4) {
+			profile = PROFILE_HIGH;
+		} else {
+			profile = PROFILE_BALANCED;
+		}
+	}
+
+	/**
+	 * @return One of {@link #PROFILE_LOW}, {@link #PROFILE_BALANCED},
+	 * {@link #PROFILE_HIGH}
+	 */
+	public String getProfile() {
+		return profile;
+	}
+
+	public synchronized boolean isPluggedIn() {
+		return pluggedIn;
+	}
+
+	/**
+	 * Re-applies parameters if the power state changed since the last
+	 * {@link #apply()}
+	 *
+	 * @return true if parameters were changed
+	 */
+	public synchronized boolean setPluggedIn(boolean pluggedIn) {
+		this.pluggedIn = pluggedIn;
+		if (appliedPluggedIn == null || appliedPluggedIn == pluggedIn) {
+			return false;
+		}
+		apply();
+		return true;
+	}
+
+	/**
+	 * Writes the chosen parameters to the core config.  Safe to call before
+	 * and after the core is started, as long as the config is initialised.
+	 * "Start In Low Resource Mode" is only written by the first call.
+	 */
+	public synchronized void apply() {
+		storageRemovable = false;
+		String savePath = COConfigurationManager.getStringParameter(
+				"Default save path", null);
+		if (savePath != null && storageInfo != null) {
+			try {
+				storageRemovable = storageInfo.isRemovable(new File(savePath));
+			} catch (Throwable t) {
+				Log.e(TAG, "isRemovable " + savePath, t);
+			}
+		}
+
+		boolean isLow = PROFILE_LOW.equals(profile);
+		boolean isHigh = PROFILE_HIGH.equals(profile);
+
+		// Disk cache comes out of the java heap, never let it take more than
+		// 1/16th of it
+		int cacheSizeMB = isLow ? 2 : isHigh ? 16 : 4;
+		cacheSizeMB = (int) Math.max(2, Math.min(cacheSizeMB, maxHeapMB / 16));
+		int diskThreads = isHigh ? 4 : 2;
+		int writeThreads = storageRemovable ? 1 : diskThreads;
+		int diskMaxMB = isLow ? 2 : isHigh ? 8 : 4;
+
+		int selectTime = isLow ? 500 : isHigh ? 100 : 250;
+		int pollTime = isLow ? 100 : isHigh ? 25 : 50;
+		int scheduleTime = isLow ? 500 : isHigh ? 100 : 250;
+		if (!pluggedIn) {
+			selectTime = Math.max(selectTime, BATTERY_SELECT_TIME);
+			pollTime = Math.max(pollTime, BATTERY_POLL_TIME);
+			scheduleTime = Math.max(scheduleTime, BATTERY_SCHEDULE_TIME);
+		}
+
+		if (appliedPluggedIn == null) {
+			// Only read when the core starts, so only set on the first apply
+			COConfigurationManager.setParameter("Start In Low Resource Mode",
+					!isHigh || !pluggedIn);
+		}
+
+		COConfigurationManager.setParameter("network.tcp.read.select.time",
+				selectTime);
+		COConfigurationManager.setParameter("network.tcp.read.select.min.time",
+				selectTime);
+		COConfigurationManager.setParameter("network.tcp.write.select.time",
+				selectTime);
+		COConfigurationManager.setParameter("network.tcp.write.select.min.time",
+				selectTime);
+		COConfigurationManager.setParameter("network.tcp.connect.select.time",
+				selectTime);
+		COConfigurationManager.setParameter("network.tcp.connect.select.min.time",
+				selectTime);
+
+		COConfigurationManager.setParameter("network.udp.poll.time", pollTime);
+
+		COConfigurationManager.setParameter("network.utp.poll.time", pollTime);
+
+		COConfigurationManager.setParameter("network.control.read.idle.time",
+				pollTime);
+		COConfigurationManager.setParameter("network.control.write.idle.time",
+				pollTime);
+
+		COConfigurationManager.setParameter("diskmanager.perf.cache.enable", true);
+		COConfigurationManager.setParameter("diskmanager.perf.cache.size",
+				cacheSizeMB);
+		COConfigurationManager.setParameter("diskmanager.perf.cache.flushpieces",
+				false);
+		COConfigurationManager.setParameter("diskmanager.perf.cache.enable.read",
+				false);
+
+		COConfigurationManager.setParameter("diskmanager.perf.read.maxthreads",
+				diskThreads);
+		COConfigurationManager.setParameter("diskmanager.perf.read.maxmb",
+				diskMaxMB);
+		COConfigurationManager.setParameter("diskmanager.perf.write.maxthreads",
+				writeThreads);
+		COConfigurationManager.setParameter("diskmanager.perf.write.maxmb",
+				diskMaxMB);
+
+		COConfigurationManager.setParameter("peermanager.schedule.time",
+				scheduleTime);
+
+		appliedPluggedIn = pluggedIn;
+
+		if (CorePrefs.DEBUG_CORE) {
+			Log.d(TAG, "apply: " + this + "; cache=" + cacheSizeMB + "MB, threads="
+					+ diskThreads + "/" + writeThreads + ", maxmb=" + diskMaxMB
+					+ ", select=" + selectTime + ", poll=" + pollTime + ", schedule="
+					+ scheduleTime);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CoreTuning{" + profile + (pluggedIn ? ", plugged" : ", battery")
+				+ ", ram=" + totalRamMB + "MB, heap=" + maxHeapMB + "MB, cores="
+				+ numCores
+				+ (storageRemovable ? ", removable" : "") + "}";
+	}
+}
@@ -0,0 +1,381 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.core.az;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.biglybt.android.client.BuildConfig;
+import com.biglybt.android.client.CorePrefs;
+import com.biglybt.android.util.FileUtils;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Copies the bundled <code>assets/plugins.zip</code> into the core's user
+ * path.
+ * <p/>
+ * A manifest next to the plugins remembers a fingerprint of the bundled zip
+ * (app version, install time, zip size) and the CRC of every entry
+ * extracted.  When the fingerprint matches, nothing is opened or stat'd.
+ * When it doesn't, the zip is read with random access and only entries whose
+ * CRC changed (or whose file is missing) are extracted, in parallel.
+ */
+class PluginPreinstaller
+{
+	private static final String TAG = "PluginPreinstall";
+
+	private static final String ASSET_NAME = "plugins.zip";
+
+	private static final String MANIFEST_NAME = ".plugins.manifest";
+
+	private static final String MANIFEST_FINGERPRINT = "fingerprint";
+
+	private static final int MAX_THREADS = 4;
+
+	private PluginPreinstaller() {
+	}
+
+	/**
+	 * @return true if plugins were (or already are) installed
+	 */
+	static boolean preinstall(@NonNull Context context,
+			@NonNull File destination) {
+		long start = SystemClock.uptimeMillis();
+
+		long assetLength = -1;
+		try {
+			AssetFileDescriptor fd = context.getAssets().openFd(ASSET_NAME);
+			assetLength = fd.getLength();
+			fd.close();
+		} catch (IOException ignore) {
+			// compressed in the APK, can't get an fd
+		}
+		String fingerprint = buildFingerprint(context, assetLength);
+
+		File manifestFile = new File(destination, MANIFEST_NAME);
+		Map<String, String> manifest = readManifest(manifestFile);
+		if (fingerprint.equals(manifest.get(MANIFEST_FINGERPRINT))) {
+			if (CorePrefs.DEBUG_CORE) {
+				Log.d(TAG, "preinstall: unchanged, skipped in "
+						+ (SystemClock.uptimeMillis() - start) + "ms");
+			}
+			return true;
+		}
+
+		File zipCopy = new File(context.getCacheDir(), ASSET_NAME);
+		ZipFile zipFile = null;
+		try {
+			copyAsset(context, zipCopy, assetLength);
+			long copied = SystemClock.uptimeMillis();
+
+			zipFile = new ZipFile(zipCopy);
+			Map<String, String> newManifest = new HashMap<>();
+			List<ZipEntry> changedEntries = new ArrayList<>();
+
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				File file = FileUtils.getZipEntryFile(destination, entry.getName());
+				if (file == null) {
+					throw new IOException("Entry outside of destination: "
+							+ entry.getName());
+				}
+				if (entry.isDirectory()) {
+					mkdirs(file);
+					continue;
+				}
+				String crc = Long.toHexString(entry.getCrc());
+				newManifest.put(entry.getName(), crc);
+				if (crc.equals(manifest.get(entry.getName()))
+						&& file.length() == entry.getSize()) {
+					continue;
+				}
+				changedEntries.add(entry);
+			}
+
+			int numFailed = extract(zipFile, changedEntries, destination,
+					newManifest);
+
+			if (numFailed == 0) {
+				newManifest.put(MANIFEST_FINGERPRINT, fingerprint);
+			}
+			writeManifest(manifestFile, newManifest);
+
+			if (CorePrefs.DEBUG_CORE) {
+				Log.d(TAG,
+						"preinstall: " + changedEntries.size() + " of "
+								+ zipFile.size() + " entries changed, " + numFailed
+								+ " failed. copy " + (copied - start) + "ms, total "
+								+ (SystemClock.uptimeMillis() - start) + "ms");
+			}
+			return numFailed == 0;
+		} catch (IOException e) {
+			Log.e(TAG, "preinstall: ", e);
+			return false;
+		} finally {
+			if (zipFile != null) {
+				try {
+					zipFile.close();
+				} catch (IOException ignore) {
+				}
+			}
+			//noinspection ResultOfMethodCallIgnored
+			zipCopy.delete();
+		}
+	}
+
+	/**
+	 * @return number of entries that failed.  Failed entries are removed from
+	 * newManifest
+	 */
+	private static int extract(final ZipFile zipFile, List<ZipEntry> entries,
+			final File destination, Map<String, String> newManifest) {
+		if (entries.size() == 0) {
+			return 0;
+		}
+		int numThreads = Math.max(1, Math.min(MAX_THREADS,
+				Math.min(entries.size(), Runtime.getRuntime().availableProcessors())));
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		Map<ZipEntry, Future<?>> futures = new HashMap<>();
+		try {
+			for (final ZipEntry entry : entries) {
+				futures.put(entry, executor.submit(new Callable<Void>() {
+					@Override
+					public Void call()
+							throws Exception {
+						extractEntry(zipFile, entry, destination);
+						return null;
+					}
+				}));
+			}
+			int numFailed = 0;
+			for (ZipEntry entry : futures.keySet()) {
+				try {
+					futures.get(entry).get();
+				} catch (Exception e) {
+					Log.e(TAG, "extract " + entry.getName(), e);
+					newManifest.remove(entry.getName());
+					numFailed++;
+				}
+			}
+			return numFailed;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void extractEntry(ZipFile zipFile, ZipEntry entry,
+			File destination)
+			throws IOException {
+		File file = FileUtils.getZipEntryFile(destination, entry.getName());
+		if (file == null) {
+			throw new IOException("Entry outside of destination: " + entry.getName());
+		}
+		mkdirs(file.getParentFile());
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+		InputStream is = null;
+		FileOutputStream fos = null;
+		try {
+			is = zipFile.getInputStream(entry);
+			ReadableByteChannel in = Channels.newChannel(
+					new BufferedInputStream(is, 65536));
+			fos = new FileOutputStream(tmp);
+			FileChannel out = fos.getChannel();
+			long size = entry.getSize();
+			if (size >= 0) {
+				long pos = 0;
+				while (pos < size) {
+					long count = out.transferFrom(in, pos, size - pos);
+					if (count <= 0) {
+						break;
+					}
+					pos += count;
+				}
+			} else {
+				ByteBuffer buffer = ByteBuffer.allocate(65536);
+				while (in.read(buffer) >= 0) {
+					buffer.flip();
+					out.write(buffer);
+					buffer.clear();
+				}
+			}
+			fos.close();
+			fos = null;
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Can't rename to " + file);
+			}
+			//noinspection ResultOfMethodCallIgnored
+			file.setLastModified(entry.getTime());
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException ignore) {
+				}
+			}
+			if (fos != null) {
+				try {
+					fos.close();
+				} catch (IOException ignore) {
+				}
+				//noinspection ResultOfMethodCallIgnored
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * ZipFile needs a real file, so copy the asset out of the APK in one go.
+	 */
+	private static void copyAsset(Context context, File target, long assetLength)
+			throws IOException {
+		mkdirs(target.getParentFile());
+		FileOutputStream fos = new FileOutputStream(target);
+		InputStream is = null;
+		try {
+			FileChannel out = fos.getChannel();
+			if (assetLength >= 0) {
+				// Uncompressed in the APK: channel to channel, no buffers on our side
+				AssetFileDescriptor fd = context.getAssets().openFd(ASSET_NAME);
+				FileInputStream fis = fd.createInputStream();
+				is = fis;
+				FileChannel in = fis.getChannel();
+				long pos = 0;
+				while (pos < assetLength) {
+					long count = out.transferFrom(in, pos, assetLength - pos);
+					if (count <= 0) {
+						break;
+					}
+					pos += count;
+				}
+			} else {
+				is = context.getAssets().open(ASSET_NAME);
+				ReadableByteChannel in = Channels.newChannel(is);
+				ByteBuffer buffer = ByteBuffer.allocate(65536);
+				while (in.read(buffer) >= 0) {
+					buffer.flip();
+					out.write(buffer);
+					buffer.clear();
+				}
+			}
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException ignore) {
+				}
+			}
+			fos.close();
+		}
+	}
+
+	@NonNull
+	private static String buildFingerprint(Context context, long assetLength) {
+		long lastUpdateTime = 0;
+		try {
+			lastUpdateTime = context.getPackageManager().getPackageInfo(
+					context.getPackageName(), 0).lastUpdateTime;
+		} catch (Throwable ignore) {
+		}
+		// lastUpdateTime changes on every install, even with the same version
+		// code (debug builds)
+		return BuildConfig.VERSION_CODE + "/" + lastUpdateTime + "/" + assetLength;
+	}
+
+	@NonNull
+	private static Map<String, String> readManifest(File file) {
+		Map<String, String> map = new HashMap<>();
+		if (!file.exists()) {
+			return map;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(file), "utf-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int i = line.lastIndexOf('\t');
+				if (i > 0) {
+					map.put(line.substring(0, i), line.substring(i + 1));
+				}
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "readManifest", e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+		return map;
+	}
+
+	private static void writeManifest(File file, Map<String, String> map) {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(
+					new OutputStreamWriter(new FileOutputStream(tmp), "utf-8"));
+			for (String key : map.keySet()) {
+				writer.write(key);
+				writer.write('\t');
+				writer.write(map.get(key));
+				writer.write('\n');
+			}
+			writer.close();
+			writer = null;
+			if (!tmp.renameTo(file)) {
+				//noinspection ResultOfMethodCallIgnored
+				tmp.delete();
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "writeManifest", e);
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	private static void mkdirs(@Nullable File dir) {
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			Log.d(TAG, "Failed to create folder " + dir);
+		}
+	}
+}
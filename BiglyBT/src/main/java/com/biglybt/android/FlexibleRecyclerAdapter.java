@@ -553,6 +553,43 @@ public abstract class FlexibleRecyclerAdapter<VH extends RecyclerView.ViewHolder
 		notifyItemInserted(position);
 	}
 
+	/**
+	 * Insert items into the already sorted list at their sorted positions,
+	 * instead of rebuilding the whole list via {@link #setItems}.
+	 * <p/>
+	 * Must be called on the UI thread.  Items must not already be in the list.
+	 *
+	 * @return false if the items were not added because a {@link #setItems}
+	 * is still in progress.  Caller should fall back to a full setItems.
+	 */
+	public boolean insertItemsSorted(List<T> items,
+			Comparator<? super T> sorter) {
+		if (neverSetItems || (setItemsAsyncTask != null
+				&& setItemsAsyncTask.getStatus() != AsyncTask.Status.FINISHED)) {
+			return false;
+		}
+		for (T item : items) {
+			int position;
+			synchronized (mLock) {
+				try {
+					position = Collections.binarySearch(mItems, item, sorter);
+				} catch (Throwable t) {
+					// Comparison method violates its general contract, etc
+					Log.e(TAG, "insertItemsSorted: ", t);
+					return false;
+				}
+			}
+			if (position < 0) {
+				position = -(position + 1);
+			}
+			addItem(position, item);
+		}
+		if (AndroidUtils.DEBUG_ADAPTER) {
+			log("insertItemsSorted: " + items.size());
+		}
+		return true;
+	}
+
 	@SuppressWarnings("WeakerAccess")
 	public void removeItem(final int position) {
 		if (position < 0) {
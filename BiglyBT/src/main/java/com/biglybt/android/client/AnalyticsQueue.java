@@ -0,0 +1,434 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import com.biglybt.android.util.JSONUtils;
+import com.biglybt.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import okhttp3.*;
+
+/**
+ * Queue of analytics commands, sent to the server in batches over one shared
+ * {@link OkHttpClient}.
+ * <p/>
+ * Commands are appended to a journal file as they come in, so a crash or
+ * process kill doesn't lose them, and the journal is compacted after every
+ * send attempt.  Identical errors queued more than once are sent once, with
+ * a repeat count.
+ * <p/>
+ * Sends happen {@link #FLUSH_DELAY_MS} after the first queued command, or
+ * right away once {@link #FLUSH_THRESHOLD} commands are waiting.
+ */
+class AnalyticsQueue
+{
+	private static final String TAG = "ATqueue";
+
+	static final long FLUSH_DELAY_MS = 60 * 1000L;
+
+	static final int FLUSH_THRESHOLD = 20;
+
+	/** Oldest commands are dropped past this, ex. when offline for a while */
+	private static final int MAX_QUEUED_COMMANDS = 200;
+
+	static final String KEY_LISTENER_ID = "listener-id";
+
+	static final String KEY_OP_ID = "op-id";
+
+	static final String KEY_SEQ_ID = "seq-id";
+
+	static final String KEY_VALUES = "values";
+
+	static final String KEY_COMMANDS = "commands";
+
+	static final String KEY_REPEAT_COUNT = "repeat-count";
+
+	/** Command key, not sent.  Identical commands have the same signature */
+	private static final String KEY_SIGNATURE = "sig";
+
+	private static final String PARAM_PAYLOAD = "payload";
+
+	private static OkHttpClient client;
+
+	@Nullable
+	private final File journalFile;
+
+	@NonNull
+	private final String url;
+
+	private final long flushDelayMs;
+
+	/** Guards everything below, and the journal file */
+	private final Object lock = new Object();
+
+	/** Commands not yet sent, oldest first */
+	private final List<Map> listPending = new ArrayList<>();
+
+	/** signature -> pending command with that signature */
+	private final Map<String, Map> mapPendingBySignature = new HashMap<>();
+
+	/** Commands in {@link #listPending} not yet appended to the journal */
+	private final List<Map> listUnjournaled = new ArrayList<>();
+
+	private Timer timer;
+
+	private boolean journalTaskScheduled;
+
+	private boolean flushScheduled;
+
+	/**
+	 * @param journalFile null to keep commands in memory only
+	 * @param url Where to POST the payloads.  Can point at a local stand-in
+	 *            server when testing.
+	 */
+	AnalyticsQueue(@Nullable File journalFile, @NonNull String url) {
+		this(journalFile, url, FLUSH_DELAY_MS);
+	}
+
+	/**
+	 * @param flushDelayMs Time from first queued command to send.  Shorter
+	 *            than {@link #FLUSH_DELAY_MS} only in tests.
+	 */
+	AnalyticsQueue(@Nullable File journalFile, @NonNull String url,
+			long flushDelayMs) {
+		this.journalFile = journalFile;
+		this.url = url;
+		this.flushDelayMs = flushDelayMs;
+	}
+
+	@NonNull
+	static synchronized OkHttpClient getClient() {
+		if (client == null) {
+			client = new OkHttpClient.Builder().retryOnConnectionFailure(
+					true).connectTimeout(15, TimeUnit.SECONDS).readTimeout(120L,
+							TimeUnit.SECONDS).writeTimeout(15L, TimeUnit.SECONDS).build();
+		}
+		return client;
+	}
+
+	/**
+	 * Loads commands left over from a previous run and schedules sending them
+	 */
+	void start() {
+		getTimer().schedule(new TimerTask() {
+			@Override
+			public void run() {
+				boolean havePending;
+				synchronized (lock) {
+					loadJournal();
+					havePending = listPending.size() > 0;
+				}
+				if (havePending) {
+					scheduleFlush(false);
+				}
+			}
+		}, 0);
+	}
+
+	/**
+	 * @param signature Commands with the same non-null signature are merged.
+	 */
+	void add(@NonNull String listenerID, @NonNull String opID,
+			@NonNull Map mapValues, @Nullable String signature) {
+		Map mapCommand = new HashMap();
+		mapCommand.put(KEY_LISTENER_ID, listenerID);
+		mapCommand.put(KEY_OP_ID, opID);
+		mapCommand.put(KEY_VALUES, mapValues);
+		if (signature != null) {
+			mapCommand.put(KEY_SIGNATURE, signature);
+		}
+
+		int numPending;
+		synchronized (lock) {
+			if (!addPending(mapCommand)) {
+				return;
+			}
+			listUnjournaled.add(mapCommand);
+			numPending = listPending.size();
+
+			if (!journalTaskScheduled) {
+				journalTaskScheduled = true;
+				getTimer().schedule(new TimerTask() {
+					@Override
+					public void run() {
+						synchronized (lock) {
+							journalTaskScheduled = false;
+							appendToJournal();
+						}
+					}
+				}, 0);
+			}
+		}
+
+		scheduleFlush(numPending >= FLUSH_THRESHOLD);
+	}
+
+	/**
+	 * Send everything now, on the calling thread.  For when the process is
+	 * about to die.
+	 */
+	@WorkerThread
+	void flushNow() {
+		synchronized (lock) {
+			appendToJournal();
+		}
+		flush();
+	}
+
+	/**
+	 * @return true if nothing was pending, or the send succeeded
+	 */
+	@WorkerThread
+	boolean flush() {
+		List<Map> listToSend;
+		synchronized (lock) {
+			flushScheduled = false;
+			if (listPending.size() == 0) {
+				return true;
+			}
+			listToSend = new ArrayList<>(listPending);
+			listPending.clear();
+			mapPendingBySignature.clear();
+		}
+
+		boolean sent = send(listToSend);
+
+		synchronized (lock) {
+			if (!sent) {
+				// Put back in front of anything queued while we were sending
+				List<Map> listNewer = new ArrayList<>(listPending);
+				listPending.clear();
+				mapPendingBySignature.clear();
+				for (Map mapCommand : listToSend) {
+					addPending(mapCommand);
+				}
+				for (Map mapCommand : listNewer) {
+					addPending(mapCommand);
+				}
+			}
+			rewriteJournal();
+		}
+		return sent;
+	}
+
+	private void scheduleFlush(boolean now) {
+		synchronized (lock) {
+			if (flushScheduled && !now) {
+				return;
+			}
+			flushScheduled = true;
+		}
+		getTimer().schedule(new TimerTask() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, now ? 0 : flushDelayMs);
+	}
+
+	private Timer getTimer() {
+		synchronized (lock) {
+			if (timer == null) {
+				timer = new Timer(TAG, true);
+			}
+			return timer;
+		}
+	}
+
+	/**
+	 * @return false if merged into an existing pending command
+	 */
+	private boolean addPending(Map mapCommand) {
+		Object signature = mapCommand.get(KEY_SIGNATURE);
+		if (signature instanceof String) {
+			Map mapExisting = mapPendingBySignature.get(signature);
+			if (mapExisting != null) {
+				Map mapExistingValues = (Map) mapExisting.get(KEY_VALUES);
+				mapExistingValues.put(KEY_REPEAT_COUNT, getRepeatCount(mapExisting)
+						+ getRepeatCount(mapCommand));
+				return false;
+			}
+			mapPendingBySignature.put((String) signature, mapCommand);
+		}
+
+		listPending.add(mapCommand);
+		while (listPending.size() > MAX_QUEUED_COMMANDS) {
+			Map mapRemoved = listPending.remove(0);
+			Object removedSignature = mapRemoved.get(KEY_SIGNATURE);
+			if (removedSignature != null) {
+				mapPendingBySignature.remove(removedSignature);
+			}
+			listUnjournaled.remove(mapRemoved);
+		}
+		return true;
+	}
+
+	private static long getRepeatCount(Map mapCommand) {
+		Object o = ((Map) mapCommand.get(KEY_VALUES)).get(KEY_REPEAT_COUNT);
+		return (o instanceof Number) ? ((Number) o).longValue() : 1;
+	}
+
+	@Thunk
+	@WorkerThread
+	boolean send(List<Map> listCommands) {
+		List<Map> listToSend = new ArrayList<>(listCommands.size());
+		int seqID = 1;
+		for (Map mapCommand : listCommands) {
+			Map mapToSend = new HashMap(mapCommand);
+			mapToSend.remove(KEY_SIGNATURE);
+			mapToSend.put(KEY_SEQ_ID, seqID++);
+			listToSend.add(mapToSend);
+		}
+
+		Map mapPayLoad = new HashMap();
+		mapPayLoad.put(KEY_COMMANDS, listToSend);
+
+		try {
+			String payloadString = JSONUtils.encodeToJSON(mapPayLoad);
+			RequestBody requestBody = new MultipartBody.Builder().setType(
+					MultipartBody.FORM).addFormDataPart(PARAM_PAYLOAD,
+							payloadString).build();
+
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, payloadString);
+			}
+
+			Request request = new Request.Builder().url(
+					url + "?rnd=" + Math.random()) //NON-NLS
+					.header("User-Agent", AndroidUtils.BIGLYBT_USERAGENT) //NON-NLS
+					.post(requestBody).build();
+
+			Response response = getClient().newCall(request).execute();
+			int statusCode = response.code();
+			ResponseBody body = response.body();
+
+			if (AndroidUtils.DEBUG_RPC) {
+				if (statusCode != 200) {
+					Log.d(TAG, "StatusCode: " + statusCode);
+				} else {
+					Log.d(TAG, "Sent " + listToSend.size() + " commands. Response: "
+							+ (body == null ? "null" : body.string()));
+				}
+			}
+			if (body != null) {
+				body.close();
+			}
+
+			return statusCode == 200;
+		} catch (Throwable e) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "send", e);
+			}
+			return false;
+		}
+	}
+
+	private void appendToJournal() {
+		if (journalFile == null || listUnjournaled.size() == 0) {
+			listUnjournaled.clear();
+			return;
+		}
+		writeJournal(listUnjournaled, true);
+		listUnjournaled.clear();
+	}
+
+	private void rewriteJournal() {
+		listUnjournaled.clear();
+		if (journalFile == null) {
+			return;
+		}
+		if (listPending.size() == 0) {
+			//noinspection ResultOfMethodCallIgnored
+			journalFile.delete();
+			return;
+		}
+		writeJournal(listPending, false);
+	}
+
+	private void writeJournal(List<Map> listCommands, boolean append) {
+		Writer writer = null;
+		try {
+			//noinspection ConstantConditions
+			writer = new OutputStreamWriter(
+					new FileOutputStream(journalFile, append), "utf-8");
+			for (Map mapCommand : listCommands) {
+				writer.write(JSONUtils.encodeToJSON(mapCommand));
+				writer.write('\n');
+			}
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "writeJournal", t);
+			}
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	private void loadJournal() {
+		if (journalFile == null || !journalFile.exists()) {
+			return;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(journalFile), "utf-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() == 0) {
+					continue;
+				}
+				try {
+					Map<String, Object> mapCommand = JSONUtils.decodeJSON(line);
+					if (mapCommand.get(KEY_VALUES) instanceof Map) {
+						addPending(mapCommand);
+					}
+				} catch (Throwable ignore) {
+					// Partial line from a process that died mid-write
+				}
+			}
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "loadJournal", t);
+			}
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+		// Drops merged duplicates and partial lines
+		rewriteJournal();
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "loadJournal: " + listPending.size() + " commands pending");
+		}
+	}
+}
@@ -16,9 +16,8 @@
 
 package com.biglybt.android.client;
 
-import java.io.IOException;
+import java.io.File;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 import com.biglybt.android.util.JSONUtils;
 import com.biglybt.util.Thunk;
@@ -32,8 +31,6 @@ import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.util.Log;
 
-import okhttp3.*;
-
 /**
  * Bare Analytics Tracker that only tracks crashes and startup event.
  * Events sent to biglybt's server (no Google Analytics)
@@ -83,17 +80,10 @@ public class AnalyticsTrackerBare
 
 	private static final String KEY_OPID_LOG = "log";
 
-	private static final String KEY_LISTENER_ID = "listener-id";
-
-	private static final String KEY_OP_ID = "op-id";
-
-	private static final String KEY_SEQ_ID = "seq-id";
+	/** One per process, both the UI and the core log */
+	private static final String JOURNAL_FILENAME = "analytics_queue.jsonl";
 
-	private static final String KEY_VALUES = "values";
-
-	private static final String KEY_COMMANDS = "commands";
-
-	private static final String PARAM_PAYLOAD = "payload";
+	private static final String JOURNAL_FILENAME_CORE = "analytics_queue_core.jsonl";
 
 	private int densityDpi;
 
@@ -109,6 +99,8 @@ public class AnalyticsTrackerBare
 
 	private double screenInches;
 
+	private AnalyticsQueue queue;
+
 	protected AnalyticsTrackerBare() {
 	}
 
@@ -286,88 +278,24 @@ public class AnalyticsTrackerBare
 		log(KEY_LISTENERID_ANDROID, KEY_OPID_LOG, map, true);
 	}
 
-	private static void log(String listenerID, String opID, Map mapValues,
+	private void log(String listenerID, String opID, Map mapValues,
 			boolean async) {
-		Map mapCommand = new HashMap();
-		mapCommand.put(KEY_LISTENER_ID, listenerID);
-		mapCommand.put(KEY_OP_ID, opID);
-		mapCommand.put(KEY_SEQ_ID, 1);
-		mapCommand.put(KEY_VALUES, mapValues);
-
-		List listCommands = new ArrayList();
-		listCommands.add(mapCommand);
-
-		Map mapPayLoad = new HashMap();
-		mapPayLoad.put(KEY_COMMANDS, listCommands);
-
 		try {
-
-			OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
-			clientBuilder.retryOnConnectionFailure(true).connectTimeout(15,
-					TimeUnit.SECONDS).readTimeout(120L, TimeUnit.SECONDS).writeTimeout(
-							15L, TimeUnit.SECONDS);
-			OkHttpClient client = clientBuilder.build();
-
-			Request.Builder builder = new Request.Builder().url(
-					RPC_URL + "?rnd=" + Math.random()) //NON-NLS
-					.header("User-Agent", AndroidUtils.BIGLYBT_USERAGENT); //NON-NLS
-
-			String payloadString = JSONUtils.encodeToJSON(mapPayLoad);
-			RequestBody requestBody = new MultipartBody.Builder().setType(
-					MultipartBody.FORM).addFormDataPart(PARAM_PAYLOAD,
-							payloadString).build();
-
-			if (AndroidUtils.DEBUG_RPC) {
-				Log.d(TAG, payloadString);
-			}
-
-			builder.post(requestBody);
-
-			Request request = builder.build();
-			Call call = client.newCall(request);
-			if (async) {
-				call.enqueue(new Callback() {
-					@Override
-					public void onFailure(Call call, IOException e) {
-						if (AndroidUtils.DEBUG_RPC) {
-							Log.e(TAG, "Async Fail", e);
-						}
-					}
-
-					@Override
-					public void onResponse(Call call, Response response)
-							throws IOException {
-						int statusCode = response.code();
-
-						if (AndroidUtils.DEBUG_RPC) {
-							if (statusCode != 200) {
-								Log.d(TAG, "Async StatusCode: " + statusCode);
-							} else {
-								ResponseBody body = response.body();
-								Log.d(TAG, "Async Response: "
-										+ (body == null ? "null" : body.string()));
-							}
-						}
-
-					}
-				});
-			} else {
+			AnalyticsQueue queue = getQueue();
+			// Identical errors are merged into one command with a repeat count.
+			// Never a fatal crash, it would be counted as a repeat of a non-fatal
+			// error that's still queued
+			boolean isError = KEY_OPID_CRASH.equals(opID)
+					&& !Integer.valueOf(1).equals(mapValues.get(KEY_IS_CRASH));
+			String signature = isError
+					? mapValues.get(KEY_EXCEPTION_NAME) + "\n" + mapValues.get(KEY_STACK)
+					: null;
+			queue.add(listenerID, opID, mapValues, signature);
+			if (!async) {
 				StrictMode.ThreadPolicy old = enableNasty();
-				Response response = call.execute();
+				queue.flushNow();
 				revertNasty(old);
-				int statusCode = response.code();
-
-				if (AndroidUtils.DEBUG_RPC) {
-					if (statusCode != 200) {
-						Log.d(TAG, "Sync StatusCode: " + statusCode);
-					} else {
-						ResponseBody body = response.body();
-						Log.d(TAG,
-								"Sync Response: " + (body == null ? "null" : body.string()));
-					}
-				}
 			}
-
 		} catch (Throwable e) {
 			if (AndroidUtils.DEBUG) {
 				Log.e(TAG, "log", e);
@@ -375,6 +303,21 @@ public class AnalyticsTrackerBare
 		}
 	}
 
+	private synchronized AnalyticsQueue getQueue() {
+		if (queue == null) {
+			File journalFile = null;
+			try {
+				journalFile = new File(BiglyBTApp.getContext().getFilesDir(),
+						BiglyBTApp.isCoreProcess() ? JOURNAL_FILENAME_CORE
+								: JOURNAL_FILENAME);
+			} catch (Throwable ignore) {
+			}
+			queue = new AnalyticsQueue(journalFile, RPC_URL);
+			queue.start();
+		}
+		return queue;
+	}
+
 	private static StrictMode.ThreadPolicy enableNasty() {
 		StrictMode.ThreadPolicy oldThreadPolicy = StrictMode.getThreadPolicy();
 		StrictMode.ThreadPolicy policy = new StrictMode.ThreadPolicy.Builder().permitNetwork().build();
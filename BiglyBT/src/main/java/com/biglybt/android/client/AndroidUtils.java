@@ -82,29 +82,6 @@ public class AndroidUtils
 
 	private static final String TAG = "Utils";
 
-	private static final Object[] XMLescapes = new Object[] {
-		new String[] {
-			"&",
-			"&amp;"
-		},
-		new String[] {
-			">",
-			"&gt;"
-		},
-		new String[] {
-			"<",
-			"&lt;"
-		},
-		new String[] {
-			"\"",
-			"&quot;"
-		},
-		new String[] {
-			"'",
-			"&apos;"
-		},
-	};
-
 	// 	 . _ - \ /
 	private static final Pattern patLineBreakerAround = Pattern.compile(
 			"([._\\-\\\\/]+)([^\\s])");
@@ -1139,15 +1116,46 @@ public class AndroidUtils
 		if (s == null) {
 			return "";
 		}
-		if (s.indexOf('&') < 0) {
+		int pos = s.indexOf('&');
+		if (pos < 0) {
 			return s;
 		}
-		String ret = s;
-		for (Object XMLescape : XMLescapes) {
-			String[] escapeEntry = (String[]) XMLescape;
-			ret = ret.replace(escapeEntry[1], escapeEntry[0]);
+		// One pass, entities decoded once ("&amp;lt;" is "&lt;")
+		StringBuilder sb = null;
+		int last = 0;
+		while (pos >= 0) {
+			char c;
+			int entityLength;
+			if (s.startsWith("&amp;", pos)) {
+				c = '&';
+				entityLength = 5;
+			} else if (s.startsWith("&gt;", pos)) {
+				c = '>';
+				entityLength = 4;
+			} else if (s.startsWith("&lt;", pos)) {
+				c = '<';
+				entityLength = 4;
+			} else if (s.startsWith("&quot;", pos)) {
+				c = '"';
+				entityLength = 6;
+			} else if (s.startsWith("&apos;", pos)) {
+				c = '\'';
+				entityLength = 6;
+			} else {
+				pos = s.indexOf('&', pos + 1);
+				continue;
+			}
+			if (sb == null) {
+				sb = new StringBuilder(s.length());
+			}
+			sb.append(s, last, pos).append(c);
+			last = pos + entityLength;
+			pos = s.indexOf('&', last);
+		}
+		if (sb == null) {
+			return s;
 		}
-		return ret;
+		return sb.append(s, last, s.length()).toString();
 	}
 
 	public static long getTodayMS() {
@@ -21,6 +21,7 @@ import java.util.*;
 
 import com.biglybt.android.client.session.RemoteProfile;
 import com.biglybt.android.client.session.RemoteProfileFactory;
+import com.biglybt.android.client.session.SessionManager;
 import com.biglybt.android.util.FileUtils;
 import com.biglybt.android.util.JSONUtils;
 import com.biglybt.android.util.MapUtils;
@@ -46,6 +47,7 @@ import android.util.Log;
 import android.widget.Toast;
 
 import net.grandcentrix.tray.TrayPreferences;
+import net.grandcentrix.tray.core.TrayBatch;
 
 @SuppressWarnings("rawtypes")
 public class AppPreferences
@@ -57,6 +59,16 @@ public class AppPreferences
 
 	private static final String KEY_LASTUSED = "lastUsed";
 
+	private static final String KEY_REMOTE_IDS = "remoteIDs";
+
+	private static final String KEY_REMOTE_PREFIX = "remote.";
+
+	private static final String KEY_LASTUSED_REMOTE = "lastUsedRemote";
+
+	private static final int MAX_CACHED_REMOTES = 8;
+
+	private static final long SAVE_DELAY_MS = 100;
+
 	@Thunk
 	static final String TAG = "AppPrefs";
 
@@ -87,17 +99,53 @@ public class AppPreferences
 
 	private static final String KEY_IS_THEME_DARK = "isDarkTheme";
 
+	private static final String KEY_DASHBOARD_MODE = "dashboardMode";
+
+	private static final String KEY_COMPLETION_MONITOR = "completionMonitor";
+
 	private static final String KEY_OLD_AC = "ac";
 	// launches
 
 	@Thunk
 	final ImportPreferences preferences;
 
-	@Thunk
-	Map<String, Object> mapConfig;
+	/**
+	 * Profile IDs, in insertion order.  Always resident once loaded, so counts
+	 * and existence checks never touch storage.
+	 */
+	private Set<String> remoteIDs;
 
-	@Thunk
-	final Object mapConfigLock = new Object();
+	private String lastUsedID;
+
+	/**
+	 * LRU of profile ID to its stored JSON.  Bounded by
+	 * {@link #MAX_CACHED_REMOTES}, except entries waiting to be written, which
+	 * are pinned.
+	 */
+	private final LinkedHashMap<String, String> remoteCache = new LinkedHashMap<>(
+			MAX_CACHED_REMOTES, 0.75f, true);
+
+	private Map<String, String> pendingRemoteWrites = new HashMap<>(4);
+
+	private Map<String, String> inFlightRemoteWrites;
+
+	private Set<String> pendingRemoteRemoves = new HashSet<>(1);
+
+	private boolean remoteIDsDirty;
+
+	private boolean lastUsedDirty;
+
+	/**
+	 * Non-remote keys of a legacy config that still need to be written back
+	 * to {@link #KEY_CONFIG}
+	 */
+	private Map<String, Object> legacyConfigRemainder;
+
+	private final Object saveLock = new Object();
+
+	private long statsRemoteWrites;
+
+	private long statsSkippedRemoteWrites;
 
 	private final Application applicationContext;
 
@@ -141,27 +189,27 @@ public class AppPreferences
 	@Nullable
 	public RemoteProfile getLastUsedRemote() {
 		try {
-			Map<String, Object> mapConfig = getPrefs();
-			String lastUsed = (String) mapConfig.get(KEY_LASTUSED);
-			if (lastUsed == null) {
-				return null;
+			String lastUsed;
+			synchronized (mLock) {
+				ensureRemotesLoaded();
+				lastUsed = lastUsedID;
 			}
-
-			Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-			if (mapRemotes == null) {
+			if (lastUsed == null) {
 				return null;
 			}
 
-			Map mapRemote = (Map) mapRemotes.get(lastUsed);
+			Map mapRemote = getRemoteMap(lastUsed, true);
 			if (mapRemote == null) {
 				// backwards compat. KEY_LASTUSED used to be ac
-				for (Object o : mapRemotes.values()) {
-					if (o instanceof Map) {
-						String ac = MapUtils.getMapString((Map) o, KEY_OLD_AC, null);
-						if (ac != null && ac.equals(lastUsed)) {
-							mapRemote = (Map) o;
-							break;
-						}
+				for (String id : getRemoteIDs()) {
+					Map map = getRemoteMap(id, false);
+					if (map == null) {
+						continue;
+					}
+					String ac = MapUtils.getMapString(map, KEY_OLD_AC, null);
+					if (ac != null && ac.equals(lastUsed)) {
+						mapRemote = map;
+						break;
 					}
 				}
 			}
@@ -195,13 +243,34 @@ public class AppPreferences
 		preferences.put(KEY_IS_THEME_DARK, isDark);
 	}
 
+	/**
+	 * @return true if the profile list polls every remote for speeds
+	 */
+	public boolean isDashboardMode() {
+		return preferences.getBoolean(KEY_DASHBOARD_MODE, false);
+	}
+
+	public void setDashboardMode(boolean dashboardMode) {
+		preferences.put(KEY_DASHBOARD_MODE, dashboardMode);
+	}
+
+	/**
+	 * @return true if remotes are checked in the background for finished
+	 * downloads
+	 */
+	public boolean isCompletionMonitorEnabled() {
+		return preferences.getBoolean(KEY_COMPLETION_MONITOR, false);
+	}
+
+	public void setCompletionMonitorEnabled(boolean enabled) {
+		preferences.put(KEY_COMPLETION_MONITOR, enabled);
+	}
+
 	public boolean remoteExists(String profileID) {
 		try {
-			Map<String, Object> mapConfig = getPrefs();
-
-			Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-			if (mapRemotes != null) {
-				return mapRemotes.containsKey(profileID);
+			synchronized (mLock) {
+				ensureRemotesLoaded();
+				return remoteIDs.contains(profileID);
 			}
 		} catch (Throwable t) {
 			if (AndroidUtils.DEBUG) {
@@ -215,14 +284,9 @@ public class AppPreferences
 
 	public RemoteProfile getRemote(String profileID) {
 		try {
-			Map<String, Object> mapConfig = getPrefs();
-
-			Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-			if (mapRemotes != null) {
-				Object mapRemote = mapRemotes.get(profileID);
-				if (mapRemote instanceof Map) {
-					return RemoteProfileFactory.create((Map) mapRemote);
-				}
+			Map mapRemote = getRemoteMap(profileID, true);
+			if (mapRemote != null) {
+				return RemoteProfileFactory.create(mapRemote);
 			}
 		} catch (Throwable t) {
 			if (AndroidUtils.DEBUG) {
@@ -236,11 +300,9 @@ public class AppPreferences
 
 	public int getNumRemotes() {
 		try {
-			Map<String, Object> mapConfig = getPrefs();
-
-			Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-			if (mapRemotes != null) {
-				return mapRemotes.size();
+			synchronized (mLock) {
+				ensureRemotesLoaded();
+				return remoteIDs.size();
 			}
 		} catch (Throwable t) {
 			if (AndroidUtils.DEBUG) {
@@ -253,32 +315,72 @@ public class AppPreferences
 	}
 	
 	public boolean hasRemotes() {
-		try {
-			Map<String, Object> mapConfig = getPrefs();
+		return getNumRemotes() > 0;
+	}
 
-			Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-			return  mapRemotes != null && mapRemotes.size() > 0;
+	public RemoteProfile[] getRemotes() {
+		List<RemoteProfile> listRemotes = new ArrayList<>(1);
+		try {
+			// Full scans don't populate the cache, otherwise a list with more
+			// profiles than MAX_CACHED_REMOTES would evict everything each time
+			for (String id : getRemoteIDs()) {
+				Map mapRemote = getRemoteMap(id, false);
+				if (mapRemote != null) {
+					listRemotes.add(RemoteProfileFactory.create(mapRemote));
+				}
+			}
 		} catch (Throwable t) {
 			if (AndroidUtils.DEBUG) {
 				t.printStackTrace();
 			}
 			AnalyticsTracker.getInstance().logError(t);
 		}
-		return false;
+
+		return listRemotes.toArray(new RemoteProfile[listRemotes.size()]);
 	}
 
-	public RemoteProfile[] getRemotes() {
-		List<RemoteProfile> listRemotes = new ArrayList<>(1);
-		try {
-			Map<String, Object> mapConfig = getPrefs();
+	@NonNull
+	private List<String> getRemoteIDs() {
+		synchronized (mLock) {
+			ensureRemotesLoaded();
+			return new ArrayList<>(remoteIDs);
+		}
+	}
+
+	/**
+	 * Loads the remote ID index, migrating the legacy single-blob
+	 * {@link #KEY_CONFIG} layout to per-profile keys on first run.
+	 * <p/>
+	 * Must be called while holding {@link #mLock}
+	 */
+	private void ensureRemotesLoaded() {
+		if (remoteIDs != null) {
+			return;
+		}
 
-			Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-			if (mapRemotes != null) {
-				for (Object val : mapRemotes.values()) {
-					if (val instanceof Map) {
-						listRemotes.add(RemoteProfileFactory.create((Map) val));
+		remoteIDs = new LinkedHashSet<>();
+		try {
+			String ids = preferences.getString(KEY_REMOTE_IDS, null);
+			if (ids != null) {
+				List<Object> list = JSONUtils.decodeJSONList(ids);
+				if (list != null) {
+					for (Object o : list) {
+						if (o instanceof String) {
+							remoteIDs.add((String) o);
+						}
 					}
 				}
+				lastUsedID = preferences.getString(KEY_LASTUSED_REMOTE, null);
+				return;
+			}
+
+			String config = preferences.getString(KEY_CONFIG, null);
+			if (config == null) {
+				return;
+			}
+			Map<String, Object> mapConfig = JSONUtils.decodeJSON(config);
+			if (mapConfig != null) {
+				migrateConfig(mapConfig);
 			}
 		} catch (Throwable t) {
 			if (AndroidUtils.DEBUG) {
@@ -286,49 +388,123 @@ public class AppPreferences
 			}
 			AnalyticsTracker.getInstance().logError(t);
 		}
+	}
 
-		return listRemotes.toArray(new RemoteProfile[listRemotes.size()]);
+	/**
+	 * Splits a legacy config map ({@link #KEY_REMOTES} + {@link #KEY_LASTUSED})
+	 * into per-profile entries and queues them all for writing.  Any other keys
+	 * stay in {@link #KEY_CONFIG}.
+	 * <p/>
+	 * Must be called while holding {@link #mLock}
+	 */
+	private void migrateConfig(@NonNull Map<String, Object> mapConfig) {
+		Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
+		if (mapRemotes != null) {
+			for (Object key : mapRemotes.keySet()) {
+				Object val = mapRemotes.get(key);
+				if (!(key instanceof String) || !(val instanceof Map)) {
+					continue;
+				}
+				String id = (String) key;
+				remoteIDs.add(id);
+				pendingRemoteWrites.put(id, JSONUtils.encodeToJSON((Map) val));
+			}
+		}
+		Object lastUsed = mapConfig.get(KEY_LASTUSED);
+		lastUsedID = lastUsed instanceof String ? (String) lastUsed : null;
+
+		Map<String, Object> mapRemaining = new HashMap<>(mapConfig);
+		mapRemaining.remove(KEY_REMOTES);
+		mapRemaining.remove(KEY_LASTUSED);
+		legacyConfigRemainder = mapRemaining;
+
+		remoteIDsDirty = true;
+		lastUsedDirty = true;
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "Migrating " + remoteIDs.size() + " remotes from config");
+		}
+		savePrefs();
 	}
 
-	private @NonNull Map<String, Object> getPrefs() {
+	/**
+	 * @param addToCache false for full scans, so they don't push hot entries
+	 *                   out of the cache
+	 */
+	@Nullable
+	private Map getRemoteMap(String profileID, boolean addToCache) {
+		if (profileID == null) {
+			return null;
+		}
+		String json;
 		synchronized (mLock) {
-			if (mapConfig != null) {
-				return mapConfig;
+			ensureRemotesLoaded();
+			if (!remoteIDs.contains(profileID)) {
+				return null;
 			}
+			json = pendingRemoteWrites.get(profileID);
+			if (json == null && inFlightRemoteWrites != null) {
+				json = inFlightRemoteWrites.get(profileID);
+			}
+			if (json == null) {
+				json = remoteCache.get(profileID);
+			}
+		}
 
-			try {
-				String config = preferences.getString(KEY_CONFIG, null);
-				mapConfig = config == null ? new HashMap<String, Object>(4)
-						: JSONUtils.decodeJSON(config);
-
-				if (mapConfig == null) {
-					mapConfig = new HashMap<>(4);
-				}
-			} catch (Throwable t) {
-				if (AndroidUtils.DEBUG) {
-					t.printStackTrace();
+		if (json == null) {
+			json = preferences.getString(KEY_REMOTE_PREFIX + profileID, null);
+			if (json == null) {
+				return null;
+			}
+			if (addToCache) {
+				synchronized (mLock) {
+					// Don't resurrect a profile removed while we were reading
+					if (remoteIDs.contains(profileID)) {
+						remoteCache.put(profileID, json);
+						trimRemoteCache();
+					}
 				}
-				AnalyticsTracker.getInstance().logError(t);
 			}
 		}
-		return mapConfig;
+
+		// Cache holds JSON, not maps: RemoteProfile wraps (and mutates) the map
+		// it's given, so every caller needs its own copy
+		return JSONUtils.decodeJSONnoException(json);
 	}
 
 	@SuppressWarnings("unchecked")
 	public void addRemoteProfile(RemoteProfile rp) {
 		try {
 			boolean isNew;
+			String id = rp.getID();
+			String json = JSONUtils.encodeToJSON(rp.getAsMap(true));
 			synchronized (mLock) {
-				Map<String, Object> mapConfig = getPrefs();
+				ensureRemotesLoaded();
 
-				Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-				if (mapRemotes == null) {
-					mapRemotes = new HashMap(4);
-					mapConfig.put(KEY_REMOTES, mapRemotes);
+				isNew = !remoteIDs.contains(id);
+				if (!isNew) {
+					String existing = pendingRemoteWrites.get(id);
+					if (existing == null && inFlightRemoteWrites != null) {
+						existing = inFlightRemoteWrites.get(id);
+					}
+					if (existing == null) {
+						existing = remoteCache.get(id);
+					}
+					if (existing == null) {
+						existing = preferences.getString(KEY_REMOTE_PREFIX + id, null);
+					}
+					if (json.equals(existing)) {
+						statsSkippedRemoteWrites++;
+						return;
+					}
 				}
 
-				isNew = !mapRemotes.containsKey(rp.getID());
-				mapRemotes.put(rp.getID(), rp.getAsMap(true));
+				if (isNew) {
+					remoteIDs.add(id);
+					remoteIDsDirty = true;
+				}
+				pendingRemoteRemoves.remove(id);
+				pendingRemoteWrites.put(id, json);
+				remoteCache.put(id, json);
 
 				savePrefs();
 			}
@@ -350,23 +526,18 @@ public class AppPreferences
 	public void setLastRemote(@Nullable RemoteProfile remoteProfile) {
 		try {
 			synchronized (mLock) {
-				Map<String, Object> mapConfig = getPrefs();
+				ensureRemotesLoaded();
 
-				if (remoteProfile == null) {
-					mapConfig.remove(KEY_LASTUSED);
-				} else {
-					mapConfig.put(KEY_LASTUSED, remoteProfile.getID());
+				String id = remoteProfile == null ? null : remoteProfile.getID();
+				if (id == null ? lastUsedID == null : id.equals(lastUsedID)) {
+					return;
 				}
+				lastUsedID = id;
+				lastUsedDirty = true;
 
-				Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-				if (mapRemotes == null) {
-					mapRemotes = new HashMap(4);
-					mapConfig.put(KEY_REMOTES, mapRemotes);
-				}
+				savePrefs();
 			}
 
-			savePrefs();
-
 		} catch (Throwable t) {
 			if (AndroidUtils.DEBUG) {
 				t.printStackTrace();
@@ -376,9 +547,13 @@ public class AppPreferences
 
 	}
 
+	/**
+	 * Queue a write of everything that's dirty.  Multiple calls within
+	 * {@link #SAVE_DELAY_MS} coalesce into one write on a background thread.
+	 */
 	@Thunk
 	void savePrefs() {
-		synchronized (mapConfigLock) {
+		synchronized (mLock) {
 			if (saveQueued) {
 				if (AndroidUtils.DEBUG) {
 					Log.d(TAG, "Save Preferences Skipped: "
@@ -397,80 +572,141 @@ public class AppPreferences
 			@Override
 			public void run() {
 				try {
-					Thread.sleep(100);
+					Thread.sleep(SAVE_DELAY_MS);
 				} catch (InterruptedException ignore) {
 				}
 				savePrefsNow();
 			}
+		}, "SavePrefs").start();
 
-			private void savePrefsNow() {
-				String val;
-				synchronized (mapConfigLock) {
-					if (mapConfig == null) {
-						return;
-					}
-					val = JSONUtils.encodeToJSON(mapConfig);
-				}
+	}
 
-				saveQueued = false;
-				preferences.put(KEY_CONFIG, val);
+	@Thunk
+	@WorkerThread
+	void savePrefsNow() {
+		synchronized (saveLock) {
+			savePrefsNow_locked();
+		}
+	}
 
-				AppPreferencesChangedListener[] listeners = listAppPreferencesChangedListeners.toArray(
-						new AppPreferencesChangedListener[listAppPreferencesChangedListeners.size()]);
-				for (AppPreferencesChangedListener l : listeners) {
-					l.appPreferencesChanged();
-				}
+	private void savePrefsNow_locked() {
+		Map<String, String> writes;
+		Set<String> removes;
+		String ids = null;
+		String lastUsed;
+		boolean writeLastUsed;
+		Map<String, Object> remainder;
+		synchronized (mLock) {
+			saveQueued = false;
+
+			writes = pendingRemoteWrites;
+			pendingRemoteWrites = new HashMap<>(4);
+			removes = pendingRemoteRemoves;
+			pendingRemoteRemoves = new HashSet<>(1);
+			if (remoteIDsDirty) {
+				ids = JSONUtils.encodeToJSON(remoteIDs);
+				remoteIDsDirty = false;
+			}
+			writeLastUsed = lastUsedDirty;
+			lastUsed = lastUsedID;
+			lastUsedDirty = false;
+			remainder = legacyConfigRemainder;
+			legacyConfigRemainder = null;
+
+			if (writes.size() == 0 && removes.size() == 0 && ids == null
+					&& !writeLastUsed && remainder == null) {
+				return;
+			}
+			inFlightRemoteWrites = writes;
+		}
 
-				if (AndroidUtils.DEBUG) {
-					try {
-						Log.d(TAG, "Saved Preferences: ");
-						//		+ new org.json.JSONObject(mapConfig).toString(2));
-					} catch (Throwable t) {
-						t.printStackTrace();
-					}
-				}
+		// One transaction, so the index, the profiles and the trimmed legacy
+		// config are always consistent, and a big import is a single write
+		TrayBatch batch = preferences.batch();
+		for (String id : writes.keySet()) {
+			batch.put(KEY_REMOTE_PREFIX + id, writes.get(id));
+		}
+		for (String id : removes) {
+			batch.remove(KEY_REMOTE_PREFIX + id);
+		}
+		if (writeLastUsed) {
+			if (lastUsed == null) {
+				batch.remove(KEY_LASTUSED_REMOTE);
+			} else {
+				batch.put(KEY_LASTUSED_REMOTE, lastUsed);
+			}
+		}
+		if (ids != null) {
+			batch.put(KEY_REMOTE_IDS, ids);
+		}
+		if (remainder != null) {
+			if (remainder.size() == 0) {
+				batch.remove(KEY_CONFIG);
+			} else {
+				batch.put(KEY_CONFIG, JSONUtils.encodeToJSON(remainder));
+			}
+		}
+		if (!batch.commit() && AndroidUtils.DEBUG) {
+			Log.e(TAG, "Saving Preferences failed");
+		}
+		statsRemoteWrites += writes.size();
 
-				// After x seconds, null mapConfig to save memory
-				try {
-					Thread.sleep(2000);
-				} catch (InterruptedException ignore) {
-				}
+		synchronized (mLock) {
+			inFlightRemoteWrites = null;
+			// Entries were pinned while dirty; now they can be evicted again
+			trimRemoteCache();
+		}
 
-				synchronized (mLock) {
-					if (!saveQueued && mapConfig != null) {
-						mapConfig = null;
-						if (AndroidUtils.DEBUG) {
-							Log.d(TAG, "Clear map, save memory");
-						}
-					}
-				}
+		AppPreferencesChangedListener[] listeners = listAppPreferencesChangedListeners.toArray(
+				new AppPreferencesChangedListener[listAppPreferencesChangedListeners.size()]);
+		for (AppPreferencesChangedListener l : listeners) {
+			l.appPreferencesChanged();
+		}
 
-			}
-		}).start();
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG,
+					"Saved Preferences: " + writes.size() + " profiles written, "
+							+ removes.size() + " removed; " + statsRemoteWrites
+							+ " total writes, " + statsSkippedRemoteWrites
+							+ " unchanged skipped");
+		}
+	}
 
+	/**
+	 * Must be called while holding {@link #mLock}
+	 */
+	private void trimRemoteCache() {
+		Iterator<String> iterator = remoteCache.keySet().iterator();
+		while (remoteCache.size() > MAX_CACHED_REMOTES && iterator.hasNext()) {
+			String id = iterator.next();
+			if (!pendingRemoteWrites.containsKey(id) && (inFlightRemoteWrites == null
+					|| !inFlightRemoteWrites.containsKey(id))) {
+				iterator.remove();
+			}
+		}
 	}
 
 	public void removeRemoteProfile(String profileID) {
 		try {
-			Map<String, Object> mapConfig = getPrefs();
+			Map mapRemote = getRemoteMap(profileID, false);
 
-			Object mapRemote;
 			synchronized (mLock) {
-				Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
-				if (mapRemotes == null) {
-					return;
-				}
-
-				mapRemote = mapRemotes.remove(profileID);
-				if (mapRemote == null) {
+				ensureRemotesLoaded();
+				if (!remoteIDs.remove(profileID)) {
 					return;
 				}
+				remoteIDsDirty = true;
+				remoteCache.remove(profileID);
+				pendingRemoteWrites.remove(profileID);
+				pendingRemoteRemoves.add(profileID);
 
 				savePrefs();
 			}
 
-			if (mapRemote instanceof Map) {
-				RemoteProfile rp = RemoteProfileFactory.create((Map) mapRemote);
+			SessionManager.removeProfileData(profileID);
+
+			if (mapRemote != null) {
+				RemoteProfile rp = RemoteProfileFactory.create(mapRemote);
 				AnalyticsTracker.getInstance().sendEvent(AnalyticsTracker.CAT_PROFILE,
 						AnalyticsTracker.ACTION_REMOVED, rp.getRemoteTypeName(), null);
 			} else {
@@ -714,7 +950,8 @@ public class AppPreferences
 
 			@Override
 			public void run() {
-				String c = BiglyBTApp.getAppPreferences().getString(KEY_CONFIG, "");
+				String c = JSONUtils.encodeToJSON(
+						BiglyBTApp.getAppPreferences().getConfigAsMap());
 				final File directory = AndroidUtils.getDownloadDir();
 				final File outFile = new File(directory, "BiglyBTSettings.json");
 
@@ -745,17 +982,59 @@ public class AppPreferences
 		}).start();
 	}
 
+	/**
+	 * Builds the legacy single-map config (remotes + last used), which is
+	 * still the import/export format.
+	 */
+	@NonNull
+	Map<String, Object> getConfigAsMap() {
+		Map<String, Object> mapConfig = new HashMap<>(4);
+		try {
+			String config = preferences.getString(KEY_CONFIG, null);
+			if (config != null) {
+				Map<String, Object> map = JSONUtils.decodeJSON(config);
+				if (map != null) {
+					mapConfig.putAll(map);
+				}
+			}
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				t.printStackTrace();
+			}
+		}
+
+		Map<String, Object> mapRemotes = new HashMap<>();
+		for (String id : getRemoteIDs()) {
+			Map mapRemote = getRemoteMap(id, false);
+			if (mapRemote != null) {
+				mapRemotes.put(id, mapRemote);
+			}
+		}
+		mapConfig.put(KEY_REMOTES, mapRemotes);
+
+		synchronized (mLock) {
+			if (lastUsedID != null) {
+				mapConfig.put(KEY_LASTUSED, lastUsedID);
+			}
+		}
+		return mapConfig;
+	}
+
 	void replacePreferences(Map<String, Object> map) {
 		if (map == null || map.size() == 0) {
 			return;
 		}
 
 		synchronized (mLock) {
-			mapConfig.clear();
+			ensureRemotesLoaded();
 
-			mapConfig.putAll(map);
+			pendingRemoteRemoves.addAll(remoteIDs);
+			remoteIDs.clear();
+			remoteCache.clear();
+			pendingRemoteWrites.clear();
 
-			savePrefs();
+			migrateConfig(map);
+			pendingRemoteRemoves.removeAll(remoteIDs);
 		}
 
 		AnalyticsTracker.getInstance().sendEvent(AnalyticsTracker.CAT_PROFILE,
@@ -22,7 +22,9 @@ import java.lang.reflect.Field;
 import java.util.*;
 
 import com.biglybt.android.client.session.SessionManager;
+import com.biglybt.android.client.session.TorrentCompletionMonitor;
 import com.biglybt.android.util.NetworkState;
+import com.biglybt.android.util.StorageVolumeRegistry;
 import com.biglybt.util.Thunk;
 import com.jaredrummler.android.device.DeviceName;
 import com.squareup.picasso.*;
@@ -64,6 +66,8 @@ public class BiglyBTApp
 
 	private static NetworkState networkState = null;
 
+	private static StorageVolumeRegistry storageVolumes = null;
+
 	@Thunk
 	static Application applicationContext = null;
 
@@ -163,6 +167,7 @@ public class BiglyBTApp
 
 				if (!isCoreProcess) {
 					appPreferences.setNumOpens(appPreferences.getNumOpens() + 1);
+					TorrentCompletionMonitor.updateSchedule(applicationContext);
 
 					if (AndroidUtils.DEBUG) {
 						Log.d(TAG, "initMainApp: increased # opens");
@@ -375,7 +380,7 @@ public class BiglyBTApp
 				if (AndroidUtils.DEBUG) {
 					Log.d(TAG, "onTrimMemory Moderate");
 				}
-				SessionManager.clearTorrentFilesCaches(true);
+				SessionManager.trimTorrentLists(level); // cold files/peers lists
 				break;
 			case TRIM_MEMORY_COMPLETE:
 				if (AndroidUtils.DEBUG) {
@@ -390,6 +395,7 @@ public class BiglyBTApp
 				}
 				SessionManager.clearTorrentCaches(true); // clear all except
 				// current
+				SessionManager.trimTorrentLists(level); // cold files/peers lists
 				break;
 			case TRIM_MEMORY_RUNNING_LOW: // Low memory
 				if (AndroidUtils.DEBUG) {
@@ -397,7 +403,7 @@ public class BiglyBTApp
 				}
 				SessionManager.clearTorrentCaches(true); // clear all except
 				// current
-				SessionManager.clearTorrentFilesCaches(true); // clear all except last file
+				SessionManager.trimTorrentLists(level); // most cold files/peers lists
 				break;
 			case TRIM_MEMORY_RUNNING_CRITICAL:
 				if (AndroidUtils.DEBUG) {
@@ -405,7 +411,7 @@ public class BiglyBTApp
 				}
 				SessionManager.clearTorrentCaches(true); // clear all except
 				// current
-				SessionManager.clearTorrentFilesCaches(true); // clear all except last file
+				SessionManager.trimTorrentLists(level); // all but the visible torrent
 				break;
 			default:
 				if (AndroidUtils.DEBUG) {
@@ -477,6 +483,15 @@ public class BiglyBTApp
 		return networkState;
 	}
 
+	public static StorageVolumeRegistry getStorageVolumes() {
+		synchronized (lock) {
+			if (storageVolumes == null) {
+				storageVolumes = new StorageVolumeRegistry(applicationContext);
+			}
+		}
+		return storageVolumes;
+	}
+
 	public static Context getContext() {
 		return applicationContext;
 	}
@@ -23,11 +23,11 @@ import com.biglybt.android.client.dialog.DialogFragmentGenericRemoteProfile;
 import com.biglybt.android.client.dialog.DialogFragmentGenericRemoteProfile.GenericRemoteProfileListener;
 import com.biglybt.android.client.dialog.DialogFragmentGiveback;
 import com.biglybt.android.client.rpc.RPC;
-import com.biglybt.android.client.session.RemoteProfile;
-import com.biglybt.android.client.session.RemoteProfileFactory;
+import com.biglybt.android.client.session.*;
 import com.biglybt.android.util.BiglyCoreUtils;
 import com.biglybt.android.util.FileUtils;
 import com.biglybt.android.util.OnClearFromRecentService;
+import com.biglybt.util.DisplayFormatters;
 import com.biglybt.util.Thunk;
 
 import android.app.Activity;
@@ -54,7 +54,8 @@ import android.widget.ListView;
 public class IntentHandler
 	extends ThemedActivity
 	implements GenericRemoteProfileListener,
-	AppPreferences.AppPreferencesChangedListener
+	AppPreferences.AppPreferencesChangedListener,
+	RemoteDashboard.DashboardListener
 {
 
 	private static final String TAG = "ProfileSelector";
@@ -178,10 +179,61 @@ public class IntentHandler
 				if (adapter != null) {
 					adapter.refreshList();
 				}
+				updateDashboard();
 			}
 		});
 	}
 
+	@Override
+	public void remoteStatsChanged(@Nullable String profileID) {
+		runOnUiThread(new Runnable() {
+			public void run() {
+				if (isFinishing()) {
+					return;
+				}
+				if (adapter != null) {
+					adapter.notifyDataSetChanged();
+				}
+				updateDashboardSubtitle();
+			}
+		});
+	}
+
+	/**
+	 * Poll saved remotes for speeds while the list is showing, if the user
+	 * wants that.  Auto-detected local remotes aren't polled.
+	 */
+	@Thunk
+	void updateDashboard() {
+		RemoteDashboard dashboard = SessionManager.getRemoteDashboard();
+		if (BiglyBTApp.getAppPreferences().isDashboardMode()) {
+			dashboard.addListener(this);
+			dashboard.start(BiglyBTApp.getAppPreferences().getRemotes());
+		} else {
+			dashboard.removeListener(this);
+			dashboard.clear();
+		}
+		updateDashboardSubtitle();
+	}
+
+	@Thunk
+	void updateDashboardSubtitle() {
+		ActionBar actionBar = getSupportActionBar();
+		if (actionBar == null) {
+			return;
+		}
+		RemoteDashboard dashboard = SessionManager.getRemoteDashboard();
+		RemoteDashboard.RemoteStats totals = dashboard.getTotals();
+		if (totals == null) {
+			actionBar.setSubtitle(null);
+			return;
+		}
+		actionBar.setSubtitle(getString(R.string.dashboard_totals,
+				dashboard.getNumReplied(),
+				DisplayFormatters.formatByteCountToKiBEtcPerSec(totals.downloadSpeed),
+				DisplayFormatters.formatByteCountToKiBEtcPerSec(totals.uploadSpeed)));
+	}
+
 	private boolean handleIntent(Intent intent,
 			@Nullable Bundle savedInstanceState) {
 		boolean forceProfileListOpen = false;
@@ -378,6 +430,9 @@ public class IntentHandler
 		super.onPause();
 		AppPreferences appPreferences = BiglyBTApp.getAppPreferences();
 		appPreferences.removeAppPreferencesChangedListener(this);
+		RemoteDashboard dashboard = SessionManager.getRemoteDashboard();
+		dashboard.removeListener(this);
+		dashboard.stop();
 		isLocalVuzeRemoteAvailable = null;
 		isLocalVuzeAvailable = null;
 		AnalyticsTracker.getInstance(this).activityPause(this);
@@ -393,6 +448,9 @@ public class IntentHandler
 		}
 		AppPreferences appPreferences = BiglyBTApp.getAppPreferences();
 		appPreferences.addAppPreferencesChangedListener(this);
+		if (adapter != null) {
+			updateDashboard();
+		}
 		AnalyticsTracker.getInstance(this).activityResume(this);
 	}
 
@@ -409,6 +467,18 @@ public class IntentHandler
 			itemAddCoreProfile.setVisible(BiglyCoreUtils.isCoreAllowed()
 					&& RemoteUtils.getCoreProfile() == null);
 		}
+		MenuItem itemDashboardMode = menu.findItem(R.id.action_dashboard_mode);
+		if (itemDashboardMode != null) {
+			itemDashboardMode.setChecked(
+					BiglyBTApp.getAppPreferences().isDashboardMode());
+		}
+		MenuItem itemCompletionMonitor = menu.findItem(
+				R.id.action_completion_monitor);
+		if (itemCompletionMonitor != null) {
+			itemCompletionMonitor.setVisible(TorrentCompletionMonitor.isSupported());
+			itemCompletionMonitor.setChecked(
+					BiglyBTApp.getAppPreferences().isCompletionMonitorEnabled());
+		}
 
 		return super.onPrepareOptionsMenu(menu);
 	}
@@ -443,6 +513,19 @@ public class IntentHandler
 			DialogFragmentGiveback.openDialog(this, getSupportFragmentManager(), true,
 					TAG);
 			return true;
+		} else if (itemId == R.id.action_dashboard_mode) {
+			AppPreferences appPreferences = BiglyBTApp.getAppPreferences();
+			appPreferences.setDashboardMode(!appPreferences.isDashboardMode());
+			updateDashboard();
+			supportInvalidateOptionsMenu();
+			return true;
+		} else if (itemId == R.id.action_completion_monitor) {
+			AppPreferences appPreferences = BiglyBTApp.getAppPreferences();
+			appPreferences.setCompletionMonitorEnabled(
+					!appPreferences.isCompletionMonitorEnabled());
+			TorrentCompletionMonitor.updateSchedule(this);
+			supportInvalidateOptionsMenu();
+			return true;
 		} else if (itemId == R.id.action_export_prefs) {
 			AppPreferences.exportPrefs(this);
 		} else if (itemId == R.id.action_import_prefs) {
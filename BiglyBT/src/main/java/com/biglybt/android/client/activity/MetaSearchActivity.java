@@ -27,12 +27,12 @@ import com.biglybt.android.client.adapter.*;
 import com.biglybt.android.client.adapter.MetaSearchEnginesAdapter.MetaSearchEnginesInfo;
 import com.biglybt.android.client.dialog.DialogFragmentDateRange;
 import com.biglybt.android.client.dialog.DialogFragmentSizeRange;
-import com.biglybt.android.client.rpc.ReplyMapReceivedListener;
 import com.biglybt.android.client.rpc.TransmissionRPC;
 import com.biglybt.android.client.session.RemoteProfile;
 import com.biglybt.android.client.session.Session;
 import com.biglybt.android.client.spanbubbles.DrawableTag;
 import com.biglybt.android.client.spanbubbles.SpanTags;
+import com.biglybt.android.util.ResultsStateCache;
 import com.biglybt.android.widget.CustomToast;
 import com.biglybt.android.widget.PreCachingLayoutManager;
 import com.biglybt.util.DisplayFormatters;
@@ -86,7 +86,8 @@ public class MetaSearchActivity
 
 	private static final boolean DEFAULT_SORT_ASC = false;
 
-	private static final String SAVESTATE_LIST = "list";
+	/** Key into {@link ResultsStateCache}, not the list itself */
+	private static final String SAVESTATE_LIST_KEY = "listKey";
 
 	private static final String SAVESTATE_ENGINES = "engines";
 
@@ -118,6 +119,17 @@ public class MetaSearchActivity
 	@Thunk
 	HashMap<String, MetaSearchEnginesInfo> mapEngines;
 
+	/**
+	 * engineID + "\n" + hash of every result already merged into
+	 * {@link #mapResults}.  Only touched from RPC replies.
+	 */
+	private final Set<String> setEngineResultIDs = new HashSet<>();
+
+	/**
+	 * Number of unique results per engine
+	 */
+	private final Map<String, Integer> mapEngineResultCounts = new HashMap<>();
+
 	private TextView tvFilterAgeCurrent;
 
 	private TextView tvFilterSizeCurrent;
@@ -438,76 +450,60 @@ public class MetaSearchActivity
 		if (savedInstanceState != null) {
 			HashMap savedEngines = (HashMap) savedInstanceState.getSerializable(
 					SAVESTATE_ENGINES);
-			String list = savedInstanceState.getString(SAVESTATE_LIST);
+			String listKey = savedInstanceState.getString(SAVESTATE_LIST_KEY);
 			searchID = savedInstanceState.getSerializable(SAVESTATE_SEARCH_ID);
-			if (list != null && savedEngines != null) {
-				Map<String, Object> map = com.biglybt.android.util.JSONUtils.decodeJSONnoException(
-						list);
-
-				if (map != null) {
-					for (String key : map.keySet()) {
-						Object o = map.get(key);
-						if (o instanceof Map) {
-							mapResults.put(key, (Map) o);
-						}
-					}
-				}
-
+			if (listKey != null && savedEngines != null) {
 				mapEngines = savedEngines;
 
 				updateEngineList();
 
-				// hackkkkk.. should call a function like TransmissionRPC.continueMetaSearch(searchID, listener)
-				final Map<String, Object> mapResultsRequest = new HashMap<>();
-				mapResultsRequest.put(TransmissionVars.FIELD_SEARCHRESULT_SEARCH_ID,
-						searchID);
-				session.executeRpc(new Session.RpcExecuter() {
-					@Override
-					public void executeRpc(final TransmissionRPC rpc) {
-						rpc.simpleRpcCall(TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-								mapResultsRequest, new ReplyMapReceivedListener() {
-
-									@Override
-									public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-
-										boolean complete = com.biglybt.android.util.MapUtils.getMapBoolean(
-												optionalMap,
-												TransmissionVars.FIELD_SEARCHRESULT_COMPLETE, true);
-										if (!complete) {
-											try {
-												Thread.sleep(1500);
-											} catch (InterruptedException ignored) {
-											}
-											rpc.simpleRpcCall(
-													TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-													mapResultsRequest, this);
-										}
-
-										List listEngines = com.biglybt.android.util.MapUtils.getMapList(
-												optionalMap, SAVESTATE_ENGINES,
-												Collections.emptyList());
-
-										onMetaSearchGotResults(searchID, listEngines, complete);
-									}
-
-									@Override
-									public void rpcFailure(String id, String message) {
-									}
-
-									@Override
-									public void rpcError(String id, Exception e) {
-									}
-								});
-					}
-
-				});
+				// Polling must wait for the restored results, or it would add them
+				// again
+				ResultsStateCache.get(listKey,
+						new ResultsStateCache.RestoreListener() {
+							@Override
+							public void resultsRestored(@Nullable Map<String, Object> map) {
+								restoreResults(map);
+							}
+						});
+				return;
 			}
 			// What if the search was not done?
 		}
 
+		doMySearch();
+	}
+
+	@Thunk
+	void restoreResults(@Nullable Map<String, Object> map) {
+		if (isFinishing()) {
+			return;
+		}
+		if (map != null) {
+			synchronized (mapResults) {
+				for (String key : map.keySet()) {
+					Object o = map.get(key);
+					if (o instanceof Map) {
+						mapResults.put(key, (Map) o);
+						rememberEngineResults(key, (Map) o);
+					}
+				}
+			}
+		}
+
 		if (mapResults.size() == 0) {
 			doMySearch();
+			return;
 		}
+
+		metaSearchResultsAdapter.getFilter().refilter();
+
+		session.executeRpc(new Session.RpcExecuter() {
+			@Override
+			public void executeRpc(TransmissionRPC rpc) {
+				rpc.continueMetaSearch(searchID, MetaSearchActivity.this);
+			}
+		});
 	}
 
 	@Override
@@ -519,8 +515,12 @@ public class MetaSearchActivity
 		if (sideListHelper != null) {
 			sideListHelper.onSaveInstanceState(outState);
 		}
-		outState.putString(SAVESTATE_LIST,
-				com.biglybt.android.util.JSONUtils.encodeToJSON(mapResults));
+		String listKey = getResultsStateKey();
+		synchronized (mapResults) {
+			// RPC replies merge into mapResults on another thread
+			ResultsStateCache.put(listKey, mapResults);
+		}
+		outState.putString(SAVESTATE_LIST_KEY, listKey);
 		outState.putSerializable(SAVESTATE_ENGINES, mapEngines);
 		outState.putSerializable(SAVESTATE_SEARCH_ID, searchID);
 	}
@@ -619,6 +619,11 @@ public class MetaSearchActivity
 			}
 		});
 
+		// Sets: a poll can return thousands of results.  Linked, to keep
+		// the order the engines gave them in
+		final Set<String> newIDs = new LinkedHashSet<>();
+		final Set<String> changedIDs = new LinkedHashSet<>();
+
 		for (Object oEngine : engines) {
 			if (!(oEngine instanceof Map)) {
 				continue;
@@ -627,18 +632,10 @@ public class MetaSearchActivity
 			List listResults = com.biglybt.android.util.MapUtils.getMapList(mapEngine,
 					"results", null);
 
-			int count = (listResults == null) ? 0 : listResults.size();
 			String engineID = com.biglybt.android.util.MapUtils.getMapString(
 					mapEngine, "id", null);
-			if (metaSearchEnginesAdapter != null) {
-				String error = com.biglybt.android.util.MapUtils.getMapString(mapEngine,
-						"error", null);
-				metaSearchEnginesAdapter.refreshItem(engineID,
-						com.biglybt.android.util.MapUtils.getMapBoolean(mapEngine,
-								TransmissionVars.FIELD_SEARCHRESULT_COMPLETE, false),
-						error == null ? count : -1);
-			}
 
+			int count = 0;
 			if (listResults != null) {
 				for (Object oResult : listResults) {
 					if (!(oResult instanceof Map)) {
@@ -648,7 +645,28 @@ public class MetaSearchActivity
 						continue;
 					}
 
-					Map<String, Object> mapResult = fixupResultMap((Map) oResult);
+					Map rawResult = (Map) oResult;
+					String hash = com.biglybt.android.util.MapUtils.getMapString(
+							rawResult, TransmissionVars.FIELD_SEARCHRESULT_HASH, null);
+					if (hash == null) {
+						hash = com.biglybt.android.util.MapUtils.getMapString(rawResult,
+								TransmissionVars.FIELD_SEARCHRESULT_URL, null);
+					}
+					if (hash == null) {
+						if (AndroidUtils.DEBUG) {
+							Log.d(TAG, "onMetaSearchGotResults: No hash for " + rawResult);
+						}
+						continue;
+					}
+
+					// Skip results this engine already gave us in an earlier poll,
+					// before doing any parsing
+					if (!setEngineResultIDs.add(engineID + '\n' + hash)) {
+						continue;
+					}
+					count++;
+
+					Map<String, Object> mapResult = fixupResultMap(rawResult);
 
 					long size = com.biglybt.android.util.MapUtils.getMapLong(mapResult,
 							TransmissionVars.FIELD_SEARCHRESULT_SIZE, 0);
@@ -656,15 +674,9 @@ public class MetaSearchActivity
 						maxSize = size;
 					}
 
-					String hash = com.biglybt.android.util.MapUtils.getMapString(
-							mapResult, TransmissionVars.FIELD_SEARCHRESULT_HASH, null);
-					if (hash == null) {
-						hash = com.biglybt.android.util.MapUtils.getMapString(mapResult,
-								TransmissionVars.FIELD_SEARCHRESULT_URL, null);
-					}
-					if (hash != null) {
-						mapResult.put(TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID,
-								engineID);
+					mapResult.put(TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID,
+							engineID);
+					synchronized (mapResults) {
 						Map mapExisting = mapResults.get(hash);
 						if (mapExisting != null) {
 							List others = com.biglybt.android.util.MapUtils.getMapList(
@@ -676,27 +688,77 @@ public class MetaSearchActivity
 							others.add(mapResult);
 							mapExisting.put(TransmissionVars.FIELD_LAST_UPDATED,
 									System.currentTimeMillis());
+							if (!newIDs.contains(hash)) {
+								changedIDs.add(hash);
+							}
 						} else {
 							mapResults.put(hash, mapResult);
-						}
-					} else {
-						if (AndroidUtils.DEBUG) {
-							Log.d(TAG, "onMetaSearchGotResults: No hash for " + mapResult);
+							newIDs.add(hash);
 						}
 					}
 				}
 			}
+
+			Integer engineCount = mapEngineResultCounts.get(engineID);
+			engineCount = (engineCount == null ? 0 : engineCount) + count;
+			mapEngineResultCounts.put(engineID, engineCount);
+
+			if (metaSearchEnginesAdapter != null) {
+				String error = com.biglybt.android.util.MapUtils.getMapString(mapEngine,
+						"error", null);
+				metaSearchEnginesAdapter.refreshItem(engineID,
+						com.biglybt.android.util.MapUtils.getMapBoolean(mapEngine,
+								TransmissionVars.FIELD_SEARCHRESULT_COMPLETE, false),
+						error == null ? engineCount : -1);
+			}
+		}
+
+		if (newIDs.size() == 0 && changedIDs.size() == 0) {
+			return true;
 		}
 
 		runOnUiThread(new Runnable() {
 			@Override
 			public void run() {
-				metaSearchResultsAdapter.getFilter().refilter();
+				if (isFinishing()) {
+					return;
+				}
+				// Only the newly arrived results get filtered and placed
+				if (!metaSearchResultsAdapter.addNewResults(newIDs, changedIDs)) {
+					metaSearchResultsAdapter.getFilter().refilter();
+				}
+				updateHeader();
 			}
 		});
 		return true;
 	}
 
+	/**
+	 * Mark a restored result as already merged, so polling doesn't add it again
+	 */
+	private void rememberEngineResults(String hash, Map mapResult) {
+		rememberEngineResult(hash, mapResult);
+		List others = com.biglybt.android.util.MapUtils.getMapList(mapResult,
+				"others", null);
+		if (others != null) {
+			for (Object other : others) {
+				if (other instanceof Map) {
+					rememberEngineResult(hash, (Map) other);
+				}
+			}
+		}
+	}
+
+	private void rememberEngineResult(String hash, Map mapResult) {
+		String engineID = com.biglybt.android.util.MapUtils.getMapString(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, null);
+		if (setEngineResultIDs.add(engineID + '\n' + hash)) {
+			Integer engineCount = mapEngineResultCounts.get(engineID);
+			mapEngineResultCounts.put(engineID,
+					(engineCount == null ? 0 : engineCount) + 1);
+		}
+	}
+
 	/**
 	 * Unfortunately, the search results map returns just about everything in
 	 * Strings, including numbers.
@@ -1191,4 +1253,17 @@ public class MetaSearchActivity
 		super.onPause();
 		AnalyticsTracker.getInstance(this).activityPause(this);
 	}
+
+	@Override
+	protected void onDestroy() {
+		if (isFinishing()) {
+			ResultsStateCache.remove(getResultsStateKey());
+		}
+		super.onDestroy();
+	}
+
+	private String getResultsStateKey() {
+		return ResultsStateCache.buildKey("ms", remoteProfileID,
+				searchID == null ? String.valueOf(searchString) : searchID.toString());
+	}
 }
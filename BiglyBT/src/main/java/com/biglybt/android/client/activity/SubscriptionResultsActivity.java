@@ -30,6 +30,7 @@ import com.biglybt.android.client.session.SessionManager;
 import com.biglybt.android.client.session.Session_Subscription;
 import com.biglybt.android.client.spanbubbles.DrawableTag;
 import com.biglybt.android.client.spanbubbles.SpanTags;
+import com.biglybt.android.util.ResultsStateCache;
 import com.biglybt.android.widget.CustomToast;
 import com.biglybt.android.widget.PreCachingLayoutManager;
 import com.biglybt.android.widget.SwipeRefreshLayoutExtra;
@@ -89,7 +90,8 @@ public class SubscriptionResultsActivity
 
 	private static final String ID_SORT_FILTER = "-sub";
 
-	private static final String SAVESTATE_LIST = "list";
+	/** Key into {@link ResultsStateCache}, not the list itself */
+	private static final String SAVESTATE_LIST_KEY = "listKey";
 
 	private static final String SAVESTATE_LIST_NAME = "listName";
 
@@ -374,28 +376,15 @@ public class SubscriptionResultsActivity
 				sortDefinitions);
 
 		if (savedInstanceState != null) {
-			String list = savedInstanceState.getString(SAVESTATE_LIST);
-			if (list != null) {
-				Map<String, Object> map = com.biglybt.android.util.JSONUtils.decodeJSONnoException(
-						list);
-
-				if (map != null) {
-					numNew = 0;
-					for (String key : map.keySet()) {
-						Object o = map.get(key);
-						if (o instanceof Map) {
-							mapResults.put(key, (Map) o);
-
-							boolean isRead = com.biglybt.android.util.MapUtils.getMapBoolean(
-									(Map) o, TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD,
-									false);
-							if (!isRead) {
-								numNew++;
+			String listKey = savedInstanceState.getString(SAVESTATE_LIST_KEY);
+			if (listKey != null) {
+				ResultsStateCache.get(listKey,
+						new ResultsStateCache.RestoreListener() {
+							@Override
+							public void resultsRestored(@Nullable Map<String, Object> map) {
+								restoreResults(map);
 							}
-
-						}
-					}
-				}
+						});
 				listName = savedInstanceState.getString(SAVESTATE_LIST_NAME);
 			}
 
@@ -404,6 +393,38 @@ public class SubscriptionResultsActivity
 		session.subscription.refreshResults(subscriptionID);
 	}
 
+	/**
+	 * Show results saved before the activity was recreated, unless the
+	 * refresh started in onCreate beat them to it
+	 */
+	@Thunk
+	void restoreResults(@Nullable Map<String, Object> map) {
+		if (map == null || isFinishing()) {
+			return;
+		}
+		synchronized (mapResults) {
+			if (mapResults.size() > 0) {
+				return;
+			}
+			numNew = 0;
+			for (String key : map.keySet()) {
+				Object o = map.get(key);
+				if (o instanceof Map) {
+					mapResults.put(key, (Map) o);
+
+					boolean isRead = com.biglybt.android.util.MapUtils.getMapBoolean(
+							(Map) o, TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD,
+							false);
+					if (!isRead) {
+						numNew++;
+					}
+
+				}
+			}
+		}
+		subscriptionResultsAdapter.getFilter().refilter();
+	}
+
 	@Override
 	public void onDateRangeChanged(String callbackID, long start, long end) {
 		if (subscriptionResultsAdapter == null) {
@@ -551,6 +572,18 @@ public class SubscriptionResultsActivity
 		AnalyticsTracker.getInstance(this).activityPause(this);
 	}
 
+	@Override
+	protected void onDestroy() {
+		if (isFinishing() && subscriptionID != null) {
+			ResultsStateCache.remove(getResultsStateKey());
+		}
+		super.onDestroy();
+	}
+
+	private String getResultsStateKey() {
+		return ResultsStateCache.buildKey("sub", remoteProfileID, subscriptionID);
+	}
+
 	@Override
 	public boolean onPrepareOptionsMenu(Menu menu) {
 		MenuItem item = menu.findItem(R.id.action_auto_download);
@@ -602,8 +635,12 @@ public class SubscriptionResultsActivity
 		if (sideListHelper != null) {
 			sideListHelper.onSaveInstanceState(outState);
 		}
-		outState.putString(SAVESTATE_LIST,
-				com.biglybt.android.util.JSONUtils.encodeToJSON(mapResults));
+		String listKey = getResultsStateKey();
+		synchronized (mapResults) {
+			// RPC replies merge into mapResults on another thread
+			ResultsStateCache.put(listKey, mapResults);
+		}
+		outState.putString(SAVESTATE_LIST_KEY, listKey);
 		outState.putString(SAVESTATE_LIST_NAME, listName);
 	}
 
@@ -974,7 +1011,9 @@ public class SubscriptionResultsActivity
 				String hash = com.biglybt.android.util.MapUtils.getMapString(mapResult,
 						TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ID, null);
 				if (hash != null) {
-					mapResults.put(hash, mapResult);
+					synchronized (mapResults) {
+						mapResults.put(hash, mapResult);
+					}
 				} else {
 					if (AndroidUtils.DEBUG) {
 						Log.d(TAG, "rpcSubscriptionListReceived: No hash for " + mapResult);
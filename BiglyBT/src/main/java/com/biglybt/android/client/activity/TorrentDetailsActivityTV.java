@@ -110,6 +110,9 @@ public class TorrentDetailsActivityTV
 		BiglyBTApp.getNetworkState().removeListener(this);
 		super.onPause();
 		session.torrent.removeListReceivedListener(this);
+		if (torrentListRowFiller != null) {
+			torrentListRowFiller.stopEstimates();
+		}
 	}
 
 	@Override
@@ -167,6 +167,9 @@ public class TorrentDetailsCoordActivity
 		BiglyBTApp.getNetworkState().removeListener(this);
 		super.onPause();
 		session.torrent.removeListReceivedListener(this);
+		if (torrentListRowFiller != null) {
+			torrentListRowFiller.stopEstimates();
+		}
 		pagerAdapter.onPause();
 	}
 
@@ -29,6 +29,7 @@ import com.biglybt.android.client.rpc.TransmissionRPC;
 import com.biglybt.android.client.session.*;
 import com.biglybt.android.util.BiglyCoreUtils;
 import com.biglybt.android.util.NetworkState;
+import com.biglybt.android.widget.SparklineView;
 import com.biglybt.util.DisplayFormatters;
 import com.biglybt.util.Thunk;
 
@@ -95,6 +96,9 @@ public class TorrentViewActivity
 	@Thunk
 	TextView tvTVHeader;
 
+	@Thunk
+	SparklineView sparklineSpeed;
+
 	private boolean searchIsIconified = true;
 
 	@Thunk
@@ -158,6 +162,10 @@ public class TorrentViewActivity
 		tvDownSpeed = findViewById(R.id.wvDnSpeed);
 		tvCenter = findViewById(R.id.wvCenter);
 		tvTVHeader = findViewById(R.id.torrentview_tv_header);
+		sparklineSpeed = findViewById(R.id.sidelist_speed_history);
+		if (sparklineSpeed != null) {
+			sparklineSpeed.setHistory(session.getSpeedHistory());
+		}
 
 		RemoteProfile remoteProfile = session.getRemoteProfile();
 		setSubtitle(remoteProfile.getNick());
@@ -190,6 +198,9 @@ public class TorrentViewActivity
 	/** Called when a drawer has settled in a completely open state. */
 	public void onDrawerOpened(View drawerView) {
 		AndroidUtilsUI.invalidateOptionsMenuHC(TorrentViewActivity.this);
+		if (sparklineSpeed != null) {
+			sparklineSpeed.refresh();
+		}
 
 		TorrentListFragment frag = (TorrentListFragment) getSupportFragmentManager().findFragmentById(
 				R.id.frag_torrent_list);
@@ -216,6 +227,10 @@ public class TorrentViewActivity
 				if (view != null) {
 					view.setVisibility(refreshing ? View.VISIBLE : View.GONE);
 				}
+				if (!refreshing && sparklineSpeed != null) {
+					// Session stats come in with every refresh
+					sparklineSpeed.refresh();
+				}
 			}
 		}, 500);
 	}
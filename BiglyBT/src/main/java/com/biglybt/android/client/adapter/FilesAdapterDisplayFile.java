@@ -32,16 +32,14 @@ public class FilesAdapterDisplayFile
 {
 	final int fileIndex;
 
-	@SuppressWarnings({
-		"unchecked",
-		"rawtypes"
-	})
+	/**
+	 * The file's map is looked up when needed, see {@link #getMap}; it's a
+	 * view of the published files table, which must not be written to
+	 */
 	public FilesAdapterDisplayFile(int fileIndex, int level,
-			@Nullable FilesAdapterDisplayFolder parent, Map mapFile, String path,
-			String name) {
+			@Nullable FilesAdapterDisplayFolder parent, String path, String name) {
 		super(level, parent, path, name);
 		this.fileIndex = fileIndex;
-		mapFile.put(KEY_IS_FOLDER, false);
 	}
 
 	@Nullable
@@ -24,6 +24,7 @@ import com.biglybt.android.*;
 import com.biglybt.android.client.*;
 import com.biglybt.android.client.session.Session;
 import com.biglybt.android.client.session.SessionManager;
+import com.biglybt.android.util.IndexRangeSet;
 import com.biglybt.android.util.TextViewFlipper;
 import com.biglybt.android.util.TextViewFlipper.FlipValidator;
 import com.biglybt.util.ComparatorMapFields;
@@ -382,7 +383,7 @@ public class FilesTreeAdapter
 		}
 
 		boolean switchToWanted = false;
-		List<Integer> listIndexes = new ArrayList<>();
+		IndexRangeSet.Builder indexesBuilder = new IndexRangeSet.Builder();
 		for (Object oFile : listFiles) {
 			Map<?, ?> mapFile = (Map<?, ?>) oFile;
 			String name = com.biglybt.android.util.MapUtils.getMapString(mapFile,
@@ -397,28 +398,23 @@ public class FilesTreeAdapter
 						TransmissionVars.FIELD_FILES_INDEX, -1);
 				// NO INDEX!?
 				if (index >= 0) {
-					listIndexes.add(index);
+					indexesBuilder.add(index);
 				}
 			}
 		}
 
-		if (listIndexes.size() == 0) {
+		if (indexesBuilder.isEmpty()) {
 			// something went terribly wrong!
 			return;
 		}
 
-		final int[] fileIndexes = new int[listIndexes.size()];
-		for (int i = 0; i < fileIndexes.length; i++) {
-			fileIndexes[i] = listIndexes.get(i);
-			if (fileIndexes[i] < listFiles.size()) {
-				Map map = (Map) listFiles.get(fileIndexes[i]);
-				map.put(TransmissionVars.FIELD_FILESTATS_WANTED, switchToWanted);
-			}
-		}
-		rebuildList();
-		final boolean wanted = switchToWanted;
+		// Files of a folder are usually contiguous, so this is a few ranges
+		final IndexRangeSet fileIndexes = indexesBuilder.build();
+		// Rows are views of the published files table; the want state is set
+		// on a copy of it, which is published right away
 		session.torrent.setFileWantState("FolderWant", torrentID, fileIndexes,
-				wanted, null);
+				switchToWanted, null);
+		rebuildList();
 		notifyDataSetInvalidated();
 	}
 
@@ -542,8 +538,9 @@ public class FilesTreeAdapter
 
 		final boolean wanted = com.biglybt.android.util.MapUtils.getMapBoolean(map,
 				TransmissionVars.FIELD_FILESTATS_WANTED, true);
-		//noinspection unchecked
-		map.put(TransmissionVars.FIELD_FILESTATS_WANTED, !wanted);
+		// Publishes a copy of the files table with the new want state
+		session.torrent.setFileWantState("btnWant", torrentID,
+				IndexRangeSet.of(fileIndex), !wanted, null);
 
 		if (oFile.path == null || oFile.path.length() == 0) {
 			long length = com.biglybt.android.util.MapUtils.getMapLong(map,
@@ -561,10 +558,6 @@ public class FilesTreeAdapter
 		} else {
 			rebuildList();
 		}
-
-		session.torrent.setFileWantState("btnWant", torrentID, new int[] {
-			fileIndex
-		}, !wanted, null);
 	}
 
 	@Override
@@ -677,7 +670,7 @@ public class FilesTreeAdapter
 							folderWithSlash);
 					if (displayFolder == null) {
 						// probably root
-						list.add(new FilesAdapterDisplayFile(i, 0, null, mapFile, path,
+						list.add(new FilesAdapterDisplayFile(i, 0, null, path,
 								shortName));
 						if (path.length() == 0) {
 							long length = com.biglybt.android.util.MapUtils.getMapLong(
@@ -693,7 +686,7 @@ public class FilesTreeAdapter
 						displayFolder.summarize(mapFile);
 						if (displayFolder.expand && displayFolder.parentsExpanded()) {
 							list.add(new FilesAdapterDisplayFile(i, displayFolder.level + 1,
-									displayFolder, mapFile, path, shortName));
+									displayFolder, path, shortName));
 						}
 					}
 				}
@@ -154,6 +154,23 @@ public abstract class LetterFilter<T>
 
 	protected abstract String getStringToConstrain(T key);
 
+	/**
+	 * @return true if single keys can be checked with {@link #constraintCheck(Object)}.
+	 * False when letter counts are being built, which needs a full pass.
+	 */
+	protected boolean canCheckSingleKey() {
+		return !buildLetters;
+	}
+
+	/**
+	 * Check one key against the current constraint, without a full
+	 * {@link #filter(CharSequence)} pass
+	 */
+	protected boolean constraintCheck(T key) {
+		return constraintCheck(constraint, key, null, "", compactDigits,
+				compactNonLetters, compactPunctuation);
+	}
+
 	private static boolean isAlphabetic(int c) {
 		// Seems to return symbolic languages
 //		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
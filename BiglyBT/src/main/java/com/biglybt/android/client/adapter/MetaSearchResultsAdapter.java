@@ -330,6 +330,42 @@ public class MetaSearchResultsAdapter
 		return doSort(items, sorter, createNewList);
 	}
 
+	/**
+	 * Show results that arrived after the last full filter pass, without
+	 * refiltering and resorting everything.
+	 * <p/>
+	 * Must be called on the UI thread.
+	 *
+	 * @param newIDs Results that weren't in the result list before
+	 * @param changedIDs Results that were, but changed (new engine, etc)
+	 * @return false if a full {@link MetaSearchResultsAdapterFilter#refilter()}
+	 * is needed
+	 */
+	public boolean addNewResults(Collection<String> newIDs,
+			Collection<String> changedIDs) {
+		List<String> candidates = new ArrayList<>(newIDs);
+		for (String id : changedIDs) {
+			int position = getPositionForItem(id);
+			if (position >= 0) {
+				updateItem(position, id);
+			} else {
+				// may pass the engine filter now
+				candidates.add(id);
+			}
+		}
+		if (candidates.size() == 0) {
+			return true;
+		}
+		List<String> passed = getFilter().filterNewKeys(candidates);
+		if (passed == null) {
+			return false;
+		}
+		if (passed.size() == 0) {
+			return true;
+		}
+		return insertItemsSorted(passed, sorter);
+	}
+
 	public ComparatorMapFields getSorter() {
 		return sorter;
 	}
@@ -23,6 +23,7 @@ import com.biglybt.android.client.TransmissionVars;
 import com.biglybt.android.util.MapUtils;
 
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 /**
@@ -125,6 +126,30 @@ public class MetaSearchResultsAdapterFilter
 		return true;
 	}
 
+	/**
+	 * Filter keys that were added to the result list after the last full
+	 * filter pass.
+	 *
+	 * @return keys that pass the current filters, or null if a full
+	 * {@link #refilter()} is needed
+	 */
+	@Nullable
+	public List<String> filterNewKeys(List<String> keys) {
+		if (!canCheckSingleKey()) {
+			return null;
+		}
+		List<String> passed = new ArrayList<>();
+		synchronized (mLock) {
+			boolean hasEngines = engineIDs != null && engineIDs.size() > 0;
+			for (String key : keys) {
+				if (filterCheck(engineIDs, key, hasEngines) && constraintCheck(key)) {
+					passed.add(key);
+				}
+			}
+		}
+		return passed;
+	}
+
 	public boolean isFilterOnlyUnseen() {
 		return filterOnlyUnseen;
 	}
@@ -19,7 +19,10 @@ package com.biglybt.android.client.adapter;
 import java.util.Comparator;
 
 import com.biglybt.android.client.*;
+import com.biglybt.android.client.session.RemoteDashboard;
 import com.biglybt.android.client.session.RemoteProfile;
+import com.biglybt.android.client.session.SessionManager;
+import com.biglybt.util.DisplayFormatters;
 import com.biglybt.util.Thunk;
 
 import android.content.Context;
@@ -75,6 +78,7 @@ public class ProfileArrayAdapter
 		}
 		TextView tvNick = rowView.findViewById(R.id.profilerow_alias);
 		TextView tvSince = rowView.findViewById(R.id.profilerow_since);
+		TextView tvStats = rowView.findViewById(R.id.profilerow_stats);
 		ImageButton ibEdit = rowView.findViewById(R.id.profilerow_edit);
 
 		final RemoteProfile profile = getItem(position);
@@ -94,6 +98,17 @@ public class ProfileArrayAdapter
 			tvSince.setText(s);
 		}
 
+		if (tvStats != null) {
+			RemoteDashboard.RemoteStats stats = SessionManager.getRemoteDashboard().getStats(
+					profile.getID());
+			if (stats == null) {
+				tvStats.setVisibility(View.GONE);
+			} else {
+				tvStats.setText(buildStatsText(stats));
+				tvStats.setVisibility(View.VISIBLE);
+			}
+		}
+
 		if (ibEdit != null) {
 			ibEdit.setOnClickListener(new OnClickListener() {
 				@Override
@@ -107,6 +122,18 @@ public class ProfileArrayAdapter
 		return rowView;
 	}
 
+	private String buildStatsText(@NonNull RemoteDashboard.RemoteStats stats) {
+		if (stats.error != null) {
+			return context.getString(R.string.dashboard_unreachable, stats.error);
+		}
+		return "\u25BC "
+				+ DisplayFormatters.formatByteCountToKiBEtcPerSec(stats.downloadSpeed)
+				+ " \u25B2 "
+				+ DisplayFormatters.formatByteCountToKiBEtcPerSec(stats.uploadSpeed)
+				+ " \u2022 " + context.getString(R.string.dashboard_torrent_counts,
+						stats.activeCount, stats.torrentCount);
+	}
+
 	public void refreshList() {
 		AppPreferences appPreferences = BiglyBTApp.getAppPreferences();
 
@@ -239,6 +239,25 @@ public class TorrentListAdapter
 
 	private final boolean smallView;
 
+	/**
+	 * How often visible downloading rows have their progress estimated between
+	 * refreshes.  ETA is displayed in seconds, so no point going faster.
+	 */
+	static final long ESTIMATE_INTERVAL_MS = 1000;
+
+	@Thunk
+	boolean estimateTickScheduled;
+
+	private final Runnable estimateTicker = new Runnable() {
+		@Override
+		public void run() {
+			estimateTickScheduled = false;
+			if (fillVisibleEstimates()) {
+				scheduleEstimateTick();
+			}
+		}
+	};
+
 	public TorrentListAdapter(Context context, Lifecycle lifecycle,
 			FlexibleRecyclerSelectionListener selector, boolean smallView) {
 		super(lifecycle, selector);
@@ -552,6 +571,9 @@ public class TorrentListAdapter
 			Map<?, ?> item = getTorrentItem(position);
 			torrentListRowFiller.fillHolder((TorrentListViewHolder) holder, item,
 					session);
+			if (TorrentProgressEstimator.isEstimating(item)) {
+				scheduleEstimateTick();
+			}
 		} else if (holder instanceof TorrentListViewHeaderHolder) {
 			TorrentListAdapterItem item = getItem(position);
 			if (item instanceof TorrentListAdapterHeaderItem) {
@@ -561,6 +583,52 @@ public class TorrentListAdapter
 		}
 	}
 
+	@Thunk
+	void scheduleEstimateTick() {
+		RecyclerView rv = getRecyclerView();
+		if (estimateTickScheduled || rv == null) {
+			return;
+		}
+		estimateTickScheduled = true;
+		rv.postDelayed(estimateTicker, ESTIMATE_INTERVAL_MS);
+	}
+
+	/**
+	 * @return true if any visible row is still being estimated
+	 */
+	@Thunk
+	boolean fillVisibleEstimates() {
+		RecyclerView rv = getRecyclerView();
+		if (rv == null || session == null) {
+			return false;
+		}
+		boolean estimating = false;
+		for (int i = 0, count = rv.getChildCount(); i < count; i++) {
+			RecyclerView.ViewHolder holder = rv.getChildViewHolder(
+					rv.getChildAt(i));
+			if (!(holder instanceof TorrentListViewHolder)) {
+				continue;
+			}
+			int position = holder.getAdapterPosition();
+			if (position == RecyclerView.NO_POSITION) {
+				continue;
+			}
+			Map<?, ?> item = getTorrentItem(position);
+			if (torrentListRowFiller.fillEstimates((TorrentListViewHolder) holder,
+					item)) {
+				estimating = true;
+			}
+		}
+		return estimating;
+	}
+
+	@Override
+	public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+		recyclerView.removeCallbacks(estimateTicker);
+		estimateTickScheduled = false;
+		super.onDetachedFromRecyclerView(recyclerView);
+	}
+
 	@Override
 	public long getItemId(int position) {
 		return getTorrentID(position);
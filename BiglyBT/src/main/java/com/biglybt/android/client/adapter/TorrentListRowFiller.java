@@ -30,12 +30,14 @@ import com.biglybt.android.client.spanbubbles.SpanTags;
 import com.biglybt.android.util.MapUtils;
 import com.biglybt.android.util.TextViewFlipper;
 import com.biglybt.util.DisplayFormatters;
+import com.biglybt.util.Thunk;
 
 import android.content.Context;
 import android.content.res.Resources;
 import android.text.SpannableStringBuilder;
 import android.text.format.DateUtils;
 import android.view.View;
+import android.widget.TextView;
 
 /**
  * Fills one Torrent info row.
@@ -58,8 +60,32 @@ public class TorrentListRowFiller
 
 	private TorrentListViewHolder viewHolder;
 
+	/**
+	 * Single row mode only.  Torrent last passed to
+	 * {@link #fillHolder(Map, Session)}, estimated every
+	 * {@link TorrentListAdapter#ESTIMATE_INTERVAL_MS} until the next fill.
+	 */
+	@Thunk
+	Map<?, ?> estimateItem;
+
+	private View parentView;
+
+	@Thunk
+	boolean estimateTickScheduled;
+
+	private final Runnable estimateTicker = new Runnable() {
+		@Override
+		public void run() {
+			estimateTickScheduled = false;
+			if (estimateItem != null && fillEstimates(viewHolder, estimateItem)) {
+				scheduleEstimateTick();
+			}
+		}
+	};
+
 	public TorrentListRowFiller(Context context, View parentView) {
 		this(context);
+		this.parentView = parentView;
 		this.viewHolder = new TorrentListViewHolder(null, parentView, false);
 	}
 
@@ -73,8 +99,91 @@ public class TorrentListRowFiller
 		flipper = TextViewFlipper.create();
 	}
 
+	/**
+	 * Fills the single row, and keeps its progress and ETA moving until the
+	 * next fill while the torrent is downloading
+	 */
 	public void fillHolder(Map<?, ?> item, Session session) {
 		fillHolder(viewHolder, item, session);
+		estimateItem = item;
+		if (TorrentProgressEstimator.isEstimating(item)) {
+			scheduleEstimateTick();
+		}
+	}
+
+	/**
+	 * Stops the single row's estimate ticks until the next
+	 * {@link #fillHolder(Map, Session)}.  Call when the row is no longer shown.
+	 */
+	public void stopEstimates() {
+		estimateItem = null;
+		if (parentView != null) {
+			parentView.removeCallbacks(estimateTicker);
+		}
+		estimateTickScheduled = false;
+	}
+
+	@Thunk
+	void scheduleEstimateTick() {
+		if (estimateTickScheduled || parentView == null) {
+			return;
+		}
+		estimateTickScheduled = true;
+		parentView.postDelayed(estimateTicker,
+				TorrentListAdapter.ESTIMATE_INTERVAL_MS);
+	}
+
+	/**
+	 * Moves progress and ETA of a downloading torrent along between refreshes,
+	 * without animating.  Everything else is left as the last
+	 * {@link #fillHolder(TorrentListViewHolder, Map, Session)} set it.
+	 *
+	 * @return false if the torrent isn't downloading, so there's nothing to
+	 * estimate
+	 */
+	protected boolean fillEstimates(TorrentListViewHolder holder,
+			Map<?, ?> item) {
+		long torrentID = MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_TORRENT_ID, -1);
+		if (holder.torrentID != torrentID
+				|| !TorrentProgressEstimator.isEstimating(item)) {
+			return false;
+		}
+
+		long now = System.currentTimeMillis();
+		float pctDone = TorrentProgressEstimator.getPercentDone(item, now);
+		if (holder.tvProgress != null) {
+			setTextIfChanged(holder.tvProgress, formatProgress(holder, pctDone));
+		}
+		if (holder.pb != null && !holder.pb.isIndeterminate()
+				&& holder.pb.getProgress() != (int) (pctDone * 10000)) {
+			holder.pb.setProgress((int) (pctDone * 10000));
+		}
+		if (holder.tvETA != null) {
+			long etaSecs = TorrentProgressEstimator.getEtaSecs(item, now);
+			if (etaSecs > 0 && etaSecs * 1000L < DateUtils.WEEK_IN_MILLIS) {
+				setTextIfChanged(holder.tvETA,
+						DisplayFormatters.prettyFormatTimeDiffShort(
+								holder.tvETA.getResources(), etaSecs));
+			}
+		}
+		return true;
+	}
+
+	private static String formatProgress(TorrentListViewHolder holder,
+			float pctDone) {
+		if (pctDone < 0 || (!holder.isSmall && pctDone >= 1)) {
+			return "";
+		}
+		NumberFormat format = NumberFormat.getPercentInstance();
+		format.setMaximumFractionDigits(1);
+		return format.format(pctDone);
+	}
+
+	private static void setTextIfChanged(TextView tv, CharSequence s) {
+		if (!s.toString().equals(tv.getText().toString())) {
+			tv.setText(s);
+		}
 	}
 
 	protected void fillHolder(TorrentListViewHolder holder, Map<?, ?> item,
@@ -111,13 +220,10 @@ public class TorrentListRowFiller
 		long errorStat = MapUtils.getMapLong(item,
 				TransmissionVars.FIELD_TORRENT_ERROR, TransmissionVars.TR_STAT_OK);
 
-		float pctDone = MapUtils.getMapFloat(item,
-				TransmissionVars.FIELD_TORRENT_PERCENT_DONE, -1f);
+		long now = System.currentTimeMillis();
+		float pctDone = TorrentProgressEstimator.getPercentDone(item, now);
 		if (holder.tvProgress != null) {
-			NumberFormat format = NumberFormat.getPercentInstance();
-			format.setMaximumFractionDigits(1);
-			String s = pctDone < 0 || isMagnetDownload
-					|| (!holder.isSmall && pctDone >= 1) ? "" : format.format(pctDone);
+			String s = isMagnetDownload ? "" : formatProgress(holder, pctDone);
 			flipper.changeText(holder.tvProgress, s, holder.animateFlip, validator);
 		}
 		if (holder.pb != null) {
@@ -179,8 +285,7 @@ public class TorrentListRowFiller
 					holder.animateFlip, validator);
 		}
 		if (holder.tvETA != null) {
-			long etaSecs = MapUtils.getMapLong(item,
-					TransmissionVars.FIELD_TORRENT_ETA, -1);
+			long etaSecs = TorrentProgressEstimator.getEtaSecs(item, now);
 			CharSequence s = "";
 			if (etaSecs > 0 && etaSecs * 1000L < DateUtils.WEEK_IN_MILLIS) {
 				s = DisplayFormatters.prettyFormatTimeDiffShort(resources, etaSecs);
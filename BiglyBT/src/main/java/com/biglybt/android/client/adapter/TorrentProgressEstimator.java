@@ -0,0 +1,155 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.adapter;
+
+import java.util.Map;
+
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.util.MapUtils;
+
+/**
+ * Extrapolates progress of a downloading torrent between refreshes, using
+ * the download rate from the last update.  Transfer totals of any torrent
+ * moving data are extrapolated the same way from their rates.
+ * <p/>
+ * Estimates never go below what the server last reported and never reach
+ * 100%; the next real update replaces them.  After
+ * {@link #MAX_EXTRAPOLATE_MS} without an update, the rate is considered
+ * stale and the estimate stops moving.
+ */
+public final class TorrentProgressEstimator
+{
+	private static final long MAX_EXTRAPOLATE_MS = 60 * 1000L;
+
+	private static final float MAX_ESTIMATED_PCT = 0.999f;
+
+	private TorrentProgressEstimator() {
+	}
+
+	/**
+	 * @return true if values for this torrent will be estimated
+	 */
+	public static boolean isEstimating(Map<?, ?> item) {
+		if (item == null) {
+			return false;
+		}
+		int status = MapUtils.getMapInt(item,
+				TransmissionVars.FIELD_TORRENT_STATUS,
+				TransmissionVars.TR_STATUS_STOPPED);
+		if (status != TransmissionVars.TR_STATUS_DOWNLOAD) {
+			return false;
+		}
+		return MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD, 0) > 0
+				&& MapUtils.getMapLong(item,
+						TransmissionVars.FIELD_TORRENT_SIZE_WHEN_DONE, 0) > 0
+				&& MapUtils.getMapLong(item,
+						TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE, 0) > 0
+				&& MapUtils.getMapLong(item, TransmissionVars.FIELD_LAST_UPDATED,
+						0) > 0;
+	}
+
+	private static long getElapsedMS(Map<?, ?> item, long now) {
+		long lastUpdated = MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_LAST_UPDATED, 0);
+		return Math.max(0, Math.min(MAX_EXTRAPOLATE_MS, now - lastUpdated));
+	}
+
+	/**
+	 * @param now {@link System#currentTimeMillis()}, same clock as
+	 *            {@link TransmissionVars#FIELD_LAST_UPDATED}
+	 */
+	public static long getLeftUntilDone(Map<?, ?> item, long now) {
+		long left = MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE, 0);
+		if (!isEstimating(item)) {
+			return left;
+		}
+		long rate = MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD, 0);
+		// Only the server gets to say we are done
+		return Math.max(1, left - rate * getElapsedMS(item, now) / 1000);
+	}
+
+	public static float getPercentDone(Map<?, ?> item, long now) {
+		float pctDone = MapUtils.getMapFloat(item,
+				TransmissionVars.FIELD_TORRENT_PERCENT_DONE, -1f);
+		if (pctDone < 0 || !isEstimating(item)) {
+			return pctDone;
+		}
+		long size = MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_TORRENT_SIZE_WHEN_DONE, 0);
+		float estimate = 1.0f - (float) getLeftUntilDone(item, now) / size;
+		return Math.max(pctDone, Math.min(MAX_ESTIMATED_PCT, estimate));
+	}
+
+	/**
+	 * @return true if some value (progress, ETA, transfer totals) will still
+	 * change when estimated again later
+	 */
+	public static boolean isMoving(Map<?, ?> item, long now) {
+		if (item == null) {
+			return false;
+		}
+		long lastUpdated = MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_LAST_UPDATED, 0);
+		if (lastUpdated <= 0 || now - lastUpdated >= MAX_EXTRAPOLATE_MS) {
+			return false;
+		}
+		return MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD, 0) > 0
+				|| MapUtils.getMapLong(item,
+						TransmissionVars.FIELD_TORRENT_RATE_UPLOAD, 0) > 0;
+	}
+
+	public static long getDownloadedEver(Map<?, ?> item, long now) {
+		return getTotal(item, TransmissionVars.FIELD_TORRENT_DOWNLOADED_EVER,
+				TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD, now);
+	}
+
+	public static long getUploadedEver(Map<?, ?> item, long now) {
+		return getTotal(item, TransmissionVars.FIELD_TORRENT_UPLOADED_EVER,
+				TransmissionVars.FIELD_TORRENT_RATE_UPLOAD, now);
+	}
+
+	/**
+	 * @return -1 if the total is unknown
+	 */
+	private static long getTotal(Map<?, ?> item, String totalKey,
+			String rateKey, long now) {
+		long total = MapUtils.getMapLong(item, totalKey, -1);
+		if (total < 0
+				|| MapUtils.getMapLong(item, TransmissionVars.FIELD_LAST_UPDATED,
+						0) <= 0) {
+			return total;
+		}
+		long rate = MapUtils.getMapLong(item, rateKey, 0);
+		if (rate <= 0) {
+			return total;
+		}
+		return total + rate * getElapsedMS(item, now) / 1000;
+	}
+
+	public static long getEtaSecs(Map<?, ?> item, long now) {
+		long etaSecs = MapUtils.getMapLong(item, TransmissionVars.FIELD_TORRENT_ETA,
+				-1);
+		if (etaSecs <= 0 || !isEstimating(item)) {
+			return etaSecs;
+		}
+		return Math.max(1, etaSecs - getElapsedMS(item, now) / 1000);
+	}
+}
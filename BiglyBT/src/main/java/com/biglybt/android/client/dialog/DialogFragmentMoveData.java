@@ -29,6 +29,7 @@ import com.biglybt.android.util.FileUtils;
 import com.biglybt.android.util.FileUtils.PathInfo;
 import com.biglybt.android.util.MapUtils;
 import com.biglybt.android.util.PaulBurkeFileUtils;
+import com.biglybt.android.util.StorageVolumeRegistry;
 import com.biglybt.util.DisplayFormatters;
 import com.biglybt.util.Thunk;
 
@@ -368,6 +369,7 @@ public class DialogFragmentMoveData
 				protected List<PathInfo> doInBackground(View... views) {
 					this.view = views[0];
 					List<PathInfo> list = new ArrayList<>();
+					StorageVolumeRegistry volumes = BiglyBTApp.getStorageVolumes();
 
 					Context context = view.getContext();
 					Session session = SessionManager.findOrCreateSession(
@@ -388,26 +390,22 @@ public class DialogFragmentMoveData
 					if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
 						File[] externalFilesDirs = context.getExternalFilesDirs(null);
 						for (File externalFilesDir : externalFilesDirs) {
-							if (FileUtils.canWrite(externalFilesDir)) {
+							if (volumes.canWrite(externalFilesDir)) {
 								list.add(FileUtils.buildPathInfo(context, externalFilesDir));
 							}
 						}
 					}
 
 					File externalStorageDirectory = Environment.getExternalStorageDirectory();
-					if (FileUtils.canWrite(externalStorageDirectory)) {
+					if (volumes.canWrite(externalStorageDirectory)) {
 						list.add(
 								FileUtils.buildPathInfo(context, externalStorageDirectory));
 					}
 
-					String secondaryStorage = System.getenv("SECONDARY_STORAGE"); //NON-NLS
-					if (secondaryStorage != null) {
-						String[] split = secondaryStorage.split(File.pathSeparator);
-						for (String dir : split) {
-							File f = new File(dir);
-							if (FileUtils.canWrite(f)) {
-								list.add(FileUtils.buildPathInfo(context, f));
-							}
+					for (StorageVolumeRegistry.Volume volume : volumes.getVolumes()) {
+						File f = new File(volume.path);
+						if (!containsFile(list, f) && volumes.canWrite(f)) {
+							list.add(FileUtils.buildPathInfo(context, f));
 						}
 					}
 
@@ -421,7 +419,7 @@ public class DialogFragmentMoveData
 					};
 					for (String id : DIR_IDS) {
 						File directory = Environment.getExternalStoragePublicDirectory(id);
-						if (FileUtils.canWrite(directory)) {
+						if (volumes.canWrite(directory)) {
 							list.add(FileUtils.buildPathInfo(context, directory));
 						}
 					}
@@ -456,6 +454,16 @@ public class DialogFragmentMoveData
 		}
 	}
 
+	@Thunk
+	static boolean containsFile(List<PathInfo> list, File file) {
+		for (PathInfo pathInfo : list) {
+			if (pathInfo.file.equals(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public String getLogTag() {
 		return TAG;
@@ -548,7 +556,7 @@ public class DialogFragmentMoveData
 					item.isRemovable ? R.drawable.ic_sd_storage_gray_24dp
 							: R.drawable.ic_folder_gray_24dp);
 			String freeSpaceString = DisplayFormatters.formatByteCountToKiBEtc(
-					item.file.getFreeSpace());
+					BiglyBTApp.getStorageVolumes().getFreeSpace(item.file));
 			String s = context.getResources().getString(R.string.x_space_free,
 					freeSpaceString);
 			tvFree.setText(s + " - " + item.storagePath);
@@ -28,6 +28,7 @@ import com.biglybt.android.client.adapter.*;
 import com.biglybt.android.client.rpc.TorrentListReceivedListener;
 import com.biglybt.android.client.rpc.TransmissionRPC;
 import com.biglybt.android.client.session.Session;
+import com.biglybt.android.util.IndexRangeSet;
 import com.biglybt.android.util.MapUtils;
 import com.biglybt.android.widget.CustomToast;
 import com.biglybt.android.widget.PreCachingLayoutManager;
@@ -688,16 +689,14 @@ public class FilesFragment
 			return saveFile(selectedFile);
 		} else if (itemId == R.id.action_sel_wanted) {
 			showProgressBar();
-			session.torrent.setFileWantState(TAG, torrentID, new int[] {
-				getFocusedFileIndex()
-			}, true, null);
+			session.torrent.setFileWantState(TAG, torrentID,
+					IndexRangeSet.of(getFocusedFileIndex()), true, null);
 			return true;
 		} else if (itemId == R.id.action_sel_unwanted) {
 			// TODO: Delete Prompt
 			showProgressBar();
-			session.torrent.setFileWantState(TAG, torrentID, new int[] {
-				getFocusedFileIndex()
-			}, false, null);
+			session.torrent.setFileWantState(TAG, torrentID,
+					IndexRangeSet.of(getFocusedFileIndex()), false, null);
 			return true;
 		} else if (itemId == R.id.action_sel_priority_up) {
 
@@ -717,9 +716,8 @@ public class FilesFragment
 			session.executeRpc(new Session.RpcExecuter() {
 				@Override
 				public void executeRpc(TransmissionRPC rpc) {
-					rpc.setFilePriority(TAG, torrentID, new int[] {
-						getFocusedFileIndex()
-					}, fpriority, null);
+					rpc.setFilePriority(TAG, torrentID,
+							IndexRangeSet.of(getFocusedFileIndex()), fpriority, null);
 				}
 			});
 			return true;
@@ -739,9 +737,8 @@ public class FilesFragment
 
 				@Override
 				public void executeRpc(TransmissionRPC rpc) {
-					rpc.setFilePriority(TAG, torrentID, new int[] {
-						getFocusedFileIndex()
-					}, fpriority, null);
+					rpc.setFilePriority(TAG, torrentID,
+							IndexRangeSet.of(getFocusedFileIndex()), fpriority, null);
 				}
 
 			});
@@ -18,6 +18,7 @@ package com.biglybt.android.client.fragment;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -169,7 +170,13 @@ public class OpenOptionsGeneralFragment
 											new Runnable() {
 												@Override
 												public void run() {
-													updateFields(torrent);
+													// The reply replaced the cached map
+													Session session = SessionManager.getSession(
+															remoteProfileID, null, null);
+													Map<?, ?> mapTorrent = session == null ? null
+															: session.torrent.getCachedTorrent(torrentID);
+													updateFields(mapTorrent == null ? torrent
+															: mapTorrent);
 												}
 											});
 								}
@@ -285,12 +292,14 @@ public class OpenOptionsGeneralFragment
 		if (session == null) {
 			return;
 		}
-		Map torrent = session.torrent.getCachedTorrent(torrentID);
+		Map<?, ?> torrent = session.torrent.getCachedTorrent(torrentID);
 		if (torrent == null) {
 			return;
 		}
-		torrent.put(TransmissionVars.FIELD_TORRENT_DOWNLOAD_DIR, location);
-		updateFields(torrent);
+		// Cached maps are never modified; show the new location from a copy
+		Map<Object, Object> mapShown = new HashMap<Object, Object>(torrent);
+		mapShown.put(TransmissionVars.FIELD_TORRENT_DOWNLOAD_DIR, location);
+		updateFields(mapShown);
 	}
 
 }
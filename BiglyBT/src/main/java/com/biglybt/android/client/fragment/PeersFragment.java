@@ -83,6 +83,7 @@ public class PeersFragment
 		//System.out.println("torrent is " + torrent);
 		Session session = getSession();
 		if (isTorrent) {
+			session.torrent.listsViewed(torrentID);
 			session.executeRpc(new Session.RpcExecuter() {
 				@Override
 				public void executeRpc(TransmissionRPC rpc) {
@@ -123,6 +124,7 @@ public class PeersFragment
 		if (torrentID < 0) {
 			return;
 		}
+		session.torrent.listsViewed(torrentID);
 		session.executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
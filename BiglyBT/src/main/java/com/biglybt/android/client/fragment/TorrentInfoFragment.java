@@ -19,11 +19,14 @@ package com.biglybt.android.client.fragment;
 import java.util.*;
 
 import com.biglybt.android.client.*;
+import com.biglybt.android.client.adapter.TorrentProgressEstimator;
 import com.biglybt.android.client.rpc.TorrentListReceivedListener;
 import com.biglybt.android.client.rpc.TransmissionRPC;
 import com.biglybt.android.client.session.Session;
 import com.biglybt.android.client.session.Session.RpcExecuter;
+import com.biglybt.android.client.session.SpeedHistory;
 import com.biglybt.android.util.MapUtils;
+import com.biglybt.android.widget.SparklineView;
 import com.biglybt.android.widget.SwipeRefreshLayoutExtra;
 import com.biglybt.util.DisplayFormatters;
 import com.biglybt.util.Thunk;
@@ -70,8 +73,20 @@ public class TorrentInfoFragment
 		TransmissionVars.FIELD_TORRENT_UPLOAD_RATIO,
 		TransmissionVars.FIELD_TORRENT_SEEDS,
 		TransmissionVars.FIELD_TORRENT_PEERS,
+		// Estimating between refreshes
+		TransmissionVars.FIELD_TORRENT_STATUS,
+		TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD,
+		TransmissionVars.FIELD_TORRENT_RATE_UPLOAD,
+		TransmissionVars.FIELD_TORRENT_SIZE_WHEN_DONE,
+		TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE,
 	};
 
+	/**
+	 * How often ETA and transfer totals are estimated between refreshes.  ETA
+	 * is displayed in seconds, so no point going faster.
+	 */
+	private static final long ESTIMATE_INTERVAL_MS = 1000;
+
 	@Thunk
 	final Object mLock = new Object();
 
@@ -87,6 +102,19 @@ public class TorrentInfoFragment
 	@Thunk
 	long lastUpdated;
 
+	@Thunk
+	boolean estimateTickScheduled;
+
+	private final Runnable estimateTicker = new Runnable() {
+		@Override
+		public void run() {
+			estimateTickScheduled = false;
+			if (isResumed()) {
+				fillDisplay();
+			}
+		}
+	};
+
 	public TorrentInfoFragment() {
 		super();
 	}
@@ -262,13 +290,41 @@ public class TorrentInfoFragment
 		fillContent(activity, mapTorrent);
 
 		fillSharing(activity, mapTorrent);
+
+		fillSpeedHistory(activity, session.torrent.getSpeedHistory(torrentID));
+
+		if (TorrentProgressEstimator.isMoving(mapTorrent,
+				System.currentTimeMillis())) {
+			scheduleEstimateTick();
+		}
+	}
+
+	private void scheduleEstimateTick() {
+		View view = getView();
+		if (estimateTickScheduled || view == null) {
+			return;
+		}
+		estimateTickScheduled = true;
+		view.postDelayed(estimateTicker, ESTIMATE_INTERVAL_MS);
+	}
+
+	private static void fillSpeedHistory(FragmentActivity a,
+			SpeedHistory history) {
+		View viewRow = a.findViewById(R.id.torrentInfo_row_speedHistory);
+		SparklineView sparkline = a.findViewById(
+				R.id.torrentInfo_val_speedHistory);
+		if (viewRow == null || sparkline == null) {
+			return;
+		}
+		sparkline.setHistory(history);
+		viewRow.setVisibility(sparkline.getVisibility());
 	}
 
 	private static void fillSharing(FragmentActivity a, Map<?, ?> mapTorrent) {
 		String s;
 
-		long bytesUploaded = MapUtils.getMapLong(mapTorrent,
-				TransmissionVars.FIELD_TORRENT_UPLOADED_EVER, -1);
+		long bytesUploaded = TorrentProgressEstimator.getUploadedEver(mapTorrent,
+				System.currentTimeMillis());
 		s = bytesUploaded < 0 ? ""
 				: DisplayFormatters.formatByteCountToKiBEtc(bytesUploaded);
 		fillRow(a, R.id.torrentInfo_row_bytesUploaded,
@@ -380,8 +436,8 @@ public class TorrentInfoFragment
 		fillRow(a, R.id.torrentInfo_row_seedingFor, R.id.torrentInfo_val_seedingFor,
 				s);
 
-		long etaSecs = MapUtils.getMapLong(mapTorrent,
-				TransmissionVars.FIELD_TORRENT_ETA, -1);
+		long etaSecs = TorrentProgressEstimator.getEtaSecs(mapTorrent,
+				System.currentTimeMillis());
 		s = etaSecs > 0 && etaSecs * 1000 < DateUtils.WEEK_IN_MILLIS
 				? DisplayFormatters.prettyFormatTimeDiffShort(resources, etaSecs) : "";
 		fillRow(a, R.id.torrentInfo_row_eta, R.id.torrentInfo_val_eta, s);
@@ -412,6 +468,16 @@ public class TorrentInfoFragment
 		}
 	}
 
+	@Override
+	public void onDestroyView() {
+		View view = getView();
+		if (view != null) {
+			view.removeCallbacks(estimateTicker);
+		}
+		estimateTickScheduled = false;
+		super.onDestroyView();
+	}
+
 	@Override
 	public void pageDeactivated() {
 		synchronized (mLock) {
@@ -33,4 +33,6 @@ public interface RPCSupports
 	String SUPPORTS_SEARCH = "SEARCH";
 
 	String SUPPORTS_TORRENT_RENAAME = "TORRENTRENAME";
+
+	String SUPPORTS_FILE_INDEX_RANGES = "FILEINDEXRANGES";
 }
@@ -0,0 +1,191 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.rpc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.client.session.RemoteProfile;
+import com.biglybt.android.util.MapUtils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Small RPC calls to a remote without setting up a {@link TransmissionRPC}:
+ * no session-get, no torrent list, no listeners.  Used where a full session
+ * would be too much, like polling stats for the profile list or checking
+ * torrents in the background.
+ * <p/>
+ * Calls block; the caller supplies the thread.
+ */
+public class RemoteProbe
+{
+	private static final String TAG = "RemoteProbe";
+
+	@NonNull
+	private final RemoteProfile remoteProfile;
+
+	@Nullable
+	private String rpcURL;
+
+	@Nullable
+	private Map<String, String> headers;
+
+	/** Set after a failure, so a stale last binding isn't used again */
+	private boolean skipLastBinding;
+
+	public RemoteProbe(@NonNull RemoteProfile remoteProfile) {
+		this.remoteProfile = remoteProfile;
+	}
+
+	/**
+	 * @return false if the remote can only be reached by binding to another
+	 * app (I2P), which we only do for a full session
+	 */
+	public boolean canProbe() {
+		String host = remoteProfile.getHost();
+		return host == null || !host.endsWith(".i2p");
+	}
+
+	@NonNull
+	public Map<?, ?> getSessionStats(@Nullable String[] fields)
+			throws RPCException {
+		Map<String, Object> mapArguments = new HashMap<>();
+		if (fields != null) {
+			mapArguments.put(TransmissionRPC.RPCKEY_FIELDS, fields);
+		}
+		return call(TransmissionVars.METHOD_SESSION_STATS, mapArguments);
+	}
+
+	/**
+	 * torrent-get.  Replies to "recently-active" also have a "removed" list.
+	 * String values are normalized like a full session's.
+	 *
+	 * @param ids "recently-active", a long[], or null for all
+	 * @return arguments of the reply, with a "torrents" list
+	 */
+	@SuppressWarnings("rawtypes")
+	@NonNull
+	public Map<?, ?> getTorrents(@Nullable Object ids, @NonNull String[] fields)
+			throws RPCException {
+		Map<String, Object> mapArguments = new HashMap<>();
+		mapArguments.put(TransmissionRPC.RPCKEY_FIELDS, fields);
+		if (ids != null) {
+			mapArguments.put(TransmissionVars.ARG_IDS, ids);
+		}
+		Map<?, ?> reply = call(TransmissionVars.METHOD_TORRENT_GET, mapArguments);
+		List<?> listTorrents = MapUtils.getMapList(reply, "torrents", null);
+		if (listTorrents != null) {
+			for (Object o : listTorrents) {
+				if (o instanceof Map) {
+					TorrentMapNormalizer.normalizeTorrent((Map) o);
+				}
+			}
+		}
+		return reply;
+	}
+
+	@NonNull
+	private Map<?, ?> call(@NonNull String method,
+			@NonNull Map<String, Object> mapArguments)
+			throws RPCException {
+		String url = rpcURL;
+		if (url == null) {
+			url = resolveRpcURL();
+			rpcURL = url;
+		}
+
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionRPC.RPCKEY_METHOD, method);
+		map.put(TransmissionRPC.RPCKEY_ARGUMENTS, mapArguments);
+
+		RestJsonClient restJsonClient = RestJsonClient.getInstance(
+				remoteProfile.getRemoteType() == RemoteProfile.TYPE_CORE, false,
+				false);
+		boolean retried = false;
+		while (true) {
+			try {
+				Map<?, ?> reply = restJsonClient.connect(method, url, map, headers,
+						remoteProfile.getUser(), remoteProfile.getAC());
+				String result = MapUtils.getMapString(reply, "result", "");
+				if (!result.equals("success")) {
+					throw new RPCException(result);
+				}
+				skipLastBinding = false;
+				return MapUtils.getMapMap(reply, TransmissionRPC.RPCKEY_ARGUMENTS,
+						Collections.emptyMap());
+			} catch (RPCException e) {
+				if (e.getResponseCode() == 409 && !retried) {
+					// Transmission's CSRF token; first call always gets one
+					headers = e.getFirstHeader("X-Transmission-Session-Id");
+					retried = true;
+					continue;
+				}
+				if (remoteProfile.getRemoteType() == RemoteProfile.TYPE_LOOKUP) {
+					rpcURL = null;
+					skipLastBinding = true;
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Same endpoint a full session would open, minus the I2P and NetBIOS
+	 * fallbacks
+	 */
+	@NonNull
+	private String resolveRpcURL()
+			throws RPCException {
+		if (remoteProfile.getRemoteType() != RemoteProfile.TYPE_LOOKUP) {
+			return remoteProfile.getProtocol() + "://" + remoteProfile.getHost()
+					+ ":" + remoteProfile.getPort() + "/transmission/rpc";
+		}
+
+		Map<?, ?> bindingInfo = skipLastBinding ? null
+				: remoteProfile.getLastBindingInfo();
+		if (bindingInfo == null || bindingInfo.size() < 3) {
+			bindingInfo = RPC.getBindingInfo(remoteProfile);
+			Map<?, ?> error = MapUtils.getMapMap(bindingInfo, "error", null);
+			if (error != null) {
+				throw new RPCException(
+						MapUtils.getMapString(error, "msg", "Unknown Error"));
+			}
+		}
+
+		String host = MapUtils.getMapString(bindingInfo, "ip", null);
+		String protocol = MapUtils.getMapString(bindingInfo, "protocol", null);
+		int port = (int) MapUtils.parseMapLong(bindingInfo, "port", 0);
+		if (host == null || port == 0) {
+			throw new RPCException("No binding");
+		}
+		if (protocol == null || protocol.length() == 0) {
+			protocol = "http";
+		}
+		if (AndroidUtils.DEBUG_RPC) {
+			Log.d(TAG, remoteProfile.getNick() + " bound to " + protocol + "://"
+					+ host + ":" + port);
+		}
+		return protocol + "://" + host + ":" + port + "/transmission/rpc";
+	}
+}
@@ -25,6 +25,11 @@ public abstract class RestJsonClient
 {
 	private static RestJsonClient newClient = null;
 
+	private static RestJsonClient localCoreClient = null;
+
+	/** HTTP client {@link #localCoreClient} falls back to */
+	private static RestJsonClient localCoreFallback = null;
+
 	abstract Object connect(String url)
 			throws RPCException;
 
@@ -35,6 +40,13 @@ public abstract class RestJsonClient
 			Map<String, String> headers, String username, String password)
 			throws RPCException;
 
+	/**
+	 * Release anything held open (bindings, etc).  The client isn't used
+	 * afterwards.
+	 */
+	void release() {
+	}
+
 	public static RestJsonClient getInstance(boolean supportsSendingGZip,
 			boolean supportsChunkedRequests) {
 
@@ -45,4 +57,53 @@ public abstract class RestJsonClient
 				supportsChunkedRequests);
 		return newClient;
 	}
+
+	/**
+	 * @param isLocalCore true when talking to the core of this app
+	 *                    ({@link com.biglybt.android.client.session.RemoteProfile#TYPE_CORE}),
+	 *                    which may use an in-process transport instead of HTTP
+	 */
+	public static RestJsonClient getInstance(boolean isLocalCore,
+			boolean supportsSendingGZip, boolean supportsChunkedRequests) {
+		RestJsonClient httpClient = getInstance(supportsSendingGZip,
+				supportsChunkedRequests);
+		if (!isLocalCore) {
+			return httpClient;
+		}
+		synchronized (RestJsonClient.class) {
+			if (localCoreClient != null && localCoreFallback != httpClient) {
+				// Built around another HTTP client; don't keep using that one
+				localCoreClient.release();
+				localCoreClient = null;
+			}
+			if (localCoreClient == null) {
+				localCoreClient = RestJsonClientFactory.createLocalCoreClient(
+						httpClient);
+				if (localCoreClient == null) {
+					// flavor without core
+					return httpClient;
+				}
+				localCoreFallback = httpClient;
+			}
+			return localCoreClient;
+		}
+	}
+
+	/**
+	 * Drop idle HTTP connections.  Call when the active network changes; they
+	 * would otherwise fail on next use and be retried only after a timeout.
+	 */
+	public static void evictConnections() {
+		RestJsonClientOkHttp.evictConnections();
+	}
+
+	/**
+	 * Open an HTTP connection to url's host ahead of the next request.
+	 * Blocks, so call off the UI thread.
+	 *
+	 * @return true if the host replied
+	 */
+	public static boolean preconnect(String url) {
+		return RestJsonClientOkHttp.preconnect(url);
+	}
 }
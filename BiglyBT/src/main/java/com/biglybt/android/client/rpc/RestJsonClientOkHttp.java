@@ -57,6 +57,18 @@ public class RestJsonClientOkHttp
 	private static final MediaType MEDIATYPE_JSON = MediaType.parse(
 			"application/json; charset=utf-8");
 
+	/** Seconds to wait for a {@link #preconnect(String)} */
+	private static final long PRECONNECT_TIMEOUT_SECS = 5;
+
+	/**
+	 * Shared by every client we build, so switching gzip modes doesn't drop
+	 * open connections, and a {@link #preconnect(String)} is reused by the next
+	 * request.  Pooled connections must also share the ssl socket factory.
+	 */
+	private static OkHttpClient baseClient = null;
+
+	private static OkHttpClient preconnectClient = null;
+
 	private OkHttpClient client = null;
 
 	private boolean supportsSendingGzip = false;
@@ -314,12 +326,94 @@ public class RestJsonClientOkHttp
 			Log.d(TAG,
 					id + "] conn " + connSetupTime + "/" + connTime + "ms. Read "
 							+ bytesRead + " in " + readTime + "ms, parsed in " + (then - now)
-							+ "ms");
+							+ "ms; strings " + JSONUtils.getStringPoolStats());
 		}
 		return json;
 	}
 
+	/**
+	 * Close idle pooled connections, ex. when the network they were opened on
+	 * is gone.  Requests in progress keep their connection.
+	 */
+	static void evictConnections() {
+		OkHttpClient base;
+		synchronized (RestJsonClientOkHttp.class) {
+			base = baseClient;
+		}
+		if (base == null) {
+			return;
+		}
+		int numConnections = base.connectionPool().connectionCount();
+		base.connectionPool().evictAll();
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "evictConnections: " + numConnections + " pooled, "
+					+ base.connectionPool().connectionCount() + " in use");
+		}
+	}
+
+	/**
+	 * Open a connection (TCP, and TLS for https) to url's host and leave it in
+	 * the pool for the next request.  Sends a HEAD, so any reply, even an
+	 * error status, counts.
+	 *
+	 * @return false if the host couldn't be reached in
+	 * {@link #PRECONNECT_TIMEOUT_SECS}
+	 */
+	static boolean preconnect(String url) {
+		OkHttpClient localClient;
+		synchronized (RestJsonClientOkHttp.class) {
+			if (preconnectClient == null) {
+				preconnectClient = getBaseClient().newBuilder().retryOnConnectionFailure(
+						false).connectTimeout(PRECONNECT_TIMEOUT_SECS,
+								TimeUnit.SECONDS).readTimeout(PRECONNECT_TIMEOUT_SECS,
+										TimeUnit.SECONDS).build();
+			}
+			localClient = preconnectClient;
+		}
+		long start = System.currentTimeMillis();
+		Response response = null;
+		try {
+			Request request = new Request.Builder().url(url).head().header(
+					"User-Agent", AndroidUtils.BIGLYBT_USERAGENT).build();
+			response = localClient.newCall(request).execute();
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, "preconnect " + url + ": " + response.code() + " in "
+						+ (System.currentTimeMillis() - start) + "ms");
+			}
+			return true;
+		} catch (Exception e) {
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "preconnect " + url + " failed in "
+						+ (System.currentTimeMillis() - start) + "ms: " + e);
+			}
+			return false;
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+		}
+	}
+
 	private static OkHttpClient getUnsafeOkHttpClient(boolean sendChunkedGzip) {
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "getUnsafeOkHttpClient: sendChunkedGZip=" + sendChunkedGzip);
+		}
+		OkHttpClient base = getBaseClient();
+		if (!sendChunkedGzip) {
+			return base;
+		}
+		return base.newBuilder().addInterceptor(
+				new GzipRequestInterceptor()).build();
+	}
+
+	private static synchronized OkHttpClient getBaseClient() {
+		if (baseClient == null) {
+			baseClient = buildBaseClient();
+		}
+		return baseClient;
+	}
+
+	private static OkHttpClient buildBaseClient() {
 		try {
 			// Create a trust manager that does not validate certificate chains
 			final TrustManager[] trustAllCerts = new TrustManager[] {
@@ -350,12 +444,6 @@ public class RestJsonClientOkHttp
 			final SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
 
 			OkHttpClient.Builder builder = new OkHttpClient.Builder();
-			if (AndroidUtils.DEBUG) {
-				Log.d(TAG, "getUnsafeOkHttpClient: sendChunkedGZip=" + sendChunkedGzip);
-			}
-			if (sendChunkedGzip) {
-				builder.addInterceptor(new GzipRequestInterceptor());
-			}
 			builder.sslSocketFactory(sslSocketFactory);
 			builder.hostnameVerifier(new HostnameVerifier() {
 				@Override
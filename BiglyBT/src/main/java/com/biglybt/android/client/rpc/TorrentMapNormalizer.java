@@ -0,0 +1,105 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.rpc;
+
+import java.util.List;
+import java.util.Map;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.util.MapUtils;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Fixes up torrent maps as they come off the wire, once, before they reach
+ * listeners or the torrent cache.  Only the fields the remote sent are
+ * touched; values merged in later from the cache were normalized when they
+ * arrived.
+ * <ul>
+ * <li>XML entities in string values are decoded</li>
+ * <li>"fileStats" entries are merged into their "files" entry</li>
+ * <li>file entries without an "index" get their position</li>
+ * </ul>
+ * The ".dnd_az!" folder is removed from file names when the cache builds
+ * its file table.
+ */
+public final class TorrentMapNormalizer
+{
+	private TorrentMapNormalizer() {
+	}
+
+	/**
+	 * @return number of string values rewritten
+	 */
+	@SuppressWarnings({
+		"rawtypes",
+		"unchecked"
+	})
+	public static int normalizeTorrent(@NonNull Map mapTorrent) {
+		int numRewritten = 0;
+		// TODO: Send param to BiglyBT remote client to ensure it doesn't
+		// escape!
+		for (Object oEntry : mapTorrent.entrySet()) {
+			Map.Entry entry = (Map.Entry) oEntry;
+			Object value = entry.getValue();
+			if (value instanceof String) {
+				String unescaped = AndroidUtils.unescapeXML((String) value);
+				if (unescaped != value) {
+					entry.setValue(unescaped);
+					numRewritten++;
+				}
+			}
+		}
+
+		List<?> listFiles = MapUtils.getMapList(mapTorrent,
+				TransmissionVars.FIELD_TORRENT_FILES, null);
+		if (listFiles == null) {
+			return numRewritten;
+		}
+
+		List<?> listFileStats = MapUtils.getMapList(mapTorrent,
+				TransmissionVars.FIELD_TORRENT_FILESTATS, null);
+		if (listFileStats != null) {
+			int count = Math.min(listFiles.size(), listFileStats.size());
+			for (int i = 0; i < count; i++) {
+				Object oFile = listFiles.get(i);
+				Object oFileStats = listFileStats.get(i);
+				if ((oFile instanceof Map) && (oFileStats instanceof Map)) {
+					((Map) oFile).putAll((Map) oFileStats);
+				}
+			}
+			mapTorrent.remove(TransmissionVars.FIELD_TORRENT_FILESTATS);
+		}
+
+		// an "index" key, for places that only get the file map and have no
+		// reference to index
+		for (int i = 0; i < listFiles.size(); i++) {
+			Object oFile = listFiles.get(i);
+			if (!(oFile instanceof Map)) {
+				continue;
+			}
+			Map mapFile = (Map) oFile;
+			if (mapFile.containsKey(TransmissionVars.FIELD_FILES_INDEX)) {
+				// assume if one has index, they all do
+				break;
+			}
+			mapFile.put(TransmissionVars.FIELD_FILES_INDEX, i);
+		}
+		return numRewritten;
+	}
+}
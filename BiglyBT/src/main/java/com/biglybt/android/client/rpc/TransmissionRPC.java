@@ -23,6 +23,7 @@ import java.util.*;
 import com.biglybt.android.client.*;
 import com.biglybt.android.client.session.*;
 import com.biglybt.android.util.BiglyCoreUtils;
+import com.biglybt.android.util.IndexRangeSet;
 import com.biglybt.android.util.JSONUtils;
 import com.biglybt.android.util.MapUtils;
 import com.biglybt.util.Thunk;
@@ -38,12 +39,18 @@ import android.util.Log;
 })
 public class TransmissionRPC
 {
-	private static final String RPCKEY_METHOD = "method";
+	static final String RPCKEY_METHOD = "method";
 
-	private static final String RPCKEY_ARGUMENTS = "arguments";
+	static final String RPCKEY_ARGUMENTS = "arguments";
 
-	private static final String RPCKEY_FIELDS = "fields";
+	static final String RPCKEY_FIELDS = "fields";
 
+	/**
+	 * Reports the result of a request that changes torrents to the mutation
+	 * tracking it.  The change is already in the cache; on success it's
+	 * confirmed by later refreshes (or a fetch of just the affected torrents if
+	 * none come in time), on failure it's rolled back.
+	 */
 	private class ReplyMapReceivedListenerWithRefresh
 		implements ReplyMapReceivedListener
 	{
@@ -53,45 +60,58 @@ public class TransmissionRPC
 
 		final List<String> fields;
 
-		int[] fileIndexes;
+		IndexRangeSet fileIndexes;
 
 		String[] fileFields;
 
 		final String callID;
 
+		final long mutationID;
+
+		/**
+		 * For requests whose outcome can't be predicted.  Any update to the
+		 * torrents after success confirms.
+		 */
 		@Thunk
 		ReplyMapReceivedListenerWithRefresh(String callID,
 				@Nullable ReplyMapReceivedListener l, @Nullable long[] ids) {
+			this(callID, l, ids, session.torrent.mutateTorrents(ids,
+					Collections.<String, Object> emptyMap(), true));
+		}
+
+		@Thunk
+		ReplyMapReceivedListenerWithRefresh(String callID,
+				@Nullable ReplyMapReceivedListener l, @Nullable long[] ids,
+				long mutationID) {
 			this.callID = callID;
 			this.l = l;
 			this.ids = ids;
+			this.mutationID = mutationID;
 			this.fields = getBasicTorrentFieldIDs();
 		}
 
 		public ReplyMapReceivedListenerWithRefresh(String callID,
-				ReplyMapReceivedListener l, long[] torrentIDs, int[] fileIndexes,
-				@Nullable String[] fileFields) {
+				ReplyMapReceivedListener l, long[] torrentIDs,
+				IndexRangeSet fileIndexes,
+				@Nullable String[] fileFields, long mutationID) {
 			this.callID = callID;
 			this.l = l;
 			this.ids = torrentIDs;
 			this.fileIndexes = fileIndexes;
 			this.fileFields = fileFields;
+			this.mutationID = mutationID;
 			this.fields = getFileInfoFields();
 		}
 
 		@Override
 		public void rpcSuccess(String id, Map optionalMap) {
-			new Thread(new Runnable() {
+			session.torrent.mutationAccepted(mutationID, new Runnable() {
 				@Override
 				public void run() {
-					try {
-						Thread.sleep(800);
-					} catch (InterruptedException ignore) {
-					}
-
-					getTorrents(callID, ids, fields, fileIndexes, fileFields, null);
+					getTorrents(Session_Torrent.getMutationCallID(mutationID), ids,
+							fields, fileIndexes, fileFields, null);
 				}
-			}).start();
+			});
 			if (l != null) {
 				l.rpcSuccess(id, optionalMap);
 			}
@@ -99,6 +119,7 @@ public class TransmissionRPC
 
 		@Override
 		public void rpcFailure(String id, String message) {
+			rejected();
 			if (l != null) {
 				l.rpcFailure(id, message);
 			}
@@ -106,10 +127,18 @@ public class TransmissionRPC
 
 		@Override
 		public void rpcError(String id, Exception e) {
+			rejected();
 			if (l != null) {
 				l.rpcError(id, e);
 			}
 		}
+
+		private void rejected() {
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, callID + "] rejected, rolling back local changes");
+			}
+			session.torrent.mutationRejected(mutationID);
+		}
 	}
 
 	private static final String TAG = "RPC";
@@ -220,6 +249,8 @@ public class TransmissionRPC
 								listSupports.contains("method:tags-get-list"));
 						mapSupports.put(RPCSupports.SUPPORTS_SUBSCRIPTIONS,
 								listSupports.contains("method:subscription-get"));
+						mapSupports.put(RPCSupports.SUPPORTS_FILE_INDEX_RANGES,
+								listSupports.contains("field:file-index-ranges"));
 					}
 					mapSupports.put(RPCSupports.SUPPORTS_SEARCH, rpcVersionAZ >= 0);
 					map.put("supports", mapSupports);
@@ -229,7 +260,7 @@ public class TransmissionRPC
 					boolean goodAZ = azVersion == null
 							|| compareVersions(azVersion, "5.7.4.1_B02") >= 0;
 
-					restJsonClient = RestJsonClient.getInstance(
+					restJsonClient = RestJsonClient.getInstance(isLocalCore(),
 							getSupports(RPCSupports.SUPPORTS_GZIP), goodAZ);
 
 					if (AndroidUtils.DEBUG_RPC) {
@@ -362,7 +393,7 @@ public class TransmissionRPC
 
 	@Thunk
 	void getTorrents(final String callID, @Nullable final Object ids,
-			final List<String> fields, @Nullable final int[] fileIndexes,
+			final List<String> fields, @Nullable final IndexRangeSet fileIndexes,
 			@Nullable String[] fileFields,
 			@Nullable final TorrentListReceivedListener l) {
 
@@ -402,7 +433,8 @@ public class TransmissionRPC
 				}
 				for (long torrentID : torrentIDs) {
 					if (fileIndexes != null) {
-						mapArguments.put("file-indexes-" + torrentID, fileIndexes);
+						mapArguments.put("file-indexes-" + torrentID,
+								encodeFileIndexes(fileIndexes));
 					}
 
 					Map<?, ?> mapTorrent = session.torrent.getCachedTorrent(torrentID);
@@ -426,7 +458,7 @@ public class TransmissionRPC
 		String idList = (ids instanceof long[]) ? Arrays.toString(((long[]) ids))
 				: "" + ids;
 		sendRequest(
-				"getTorrents t=" + idList + "/f=" + Arrays.toString(fileIndexes) + ", "
+				"getTorrents t=" + idList + "/f=" + fileIndexes + ", "
 						+ (fields == null ? "null" : fields.size()) + "/"
 						+ (fileFields == null ? "null" : fileFields.length),
 				map, new ReplyMapReceivedListener() {
@@ -438,6 +470,11 @@ public class TransmissionRPC
 					public void rpcSuccess(String id, Map optionalMap) {
 						List list = MapUtils.getMapList(optionalMap, "torrents",
 								Collections.EMPTY_LIST);
+						for (Object o : list) {
+							if (o instanceof Map) {
+								TorrentMapNormalizer.normalizeTorrent((Map) o);
+							}
+						}
 						if (hasFileCountField == null || !hasFileCountField) {
 							for (Object o : list) {
 								if (!(o instanceof Map)) {
@@ -476,6 +513,18 @@ public class TransmissionRPC
 						//       back on "success", then we should populate the listRemoved
 						List listRemoved = MapUtils.getMapList(optionalMap, "removed",
 								null);
+						if (ids == null) {
+							// Full list; anything shown from the stored list but missing
+							// here was removed while we weren't looking
+							List<Long> listStoredOnly = session.torrent.takeStoredOnlyIDs(
+									list);
+							if (listStoredOnly != null) {
+								if (listRemoved != null) {
+									listStoredOnly.addAll(listRemoved);
+								}
+								listRemoved = listStoredOnly;
+							}
+						}
 
 						if (l != null) {
 							l.rpcTorrentListReceived(callID, list, listRemoved);
@@ -559,6 +608,11 @@ public class TransmissionRPC
 				});
 	}
 
+	@Thunk
+	boolean isLocalCore() {
+		return session.getRemoteProfile().getRemoteType() == RemoteProfile.TYPE_CORE;
+	}
+
 	public void destroy() {
 		torrentListReceivedListeners.clear();
 		sessionSettingsReceivedListeners.clear();
@@ -606,7 +660,8 @@ public class TransmissionRPC
 				RemoteProfile remoteProfile = session.getRemoteProfile();
 				try {
 					if (restJsonClient == null) {
-						restJsonClient = RestJsonClient.getInstance(false, false);
+						restJsonClient = RestJsonClient.getInstance(isLocalCore(), false,
+								false);
 					}
 					Map reply = restJsonClient.connect(id, rpcURL, data, headers,
 							remoteProfile.getUser(), remoteProfile.getAC());
@@ -683,6 +738,7 @@ public class TransmissionRPC
 			basicTorrentFieldIDs.add(TransmissionVars.FIELD_TORRENT_POSITION);
 			basicTorrentFieldIDs.add(TransmissionVars.FIELD_TORRENT_UPLOAD_RATIO);
 			basicTorrentFieldIDs.add(TransmissionVars.FIELD_TORRENT_DATE_ADDED);
+			// Sampled locally from rateDownload/rateUpload instead, see SpeedHistory
 			//basicTorrentFieldIDs.add("speedHistory");
 			basicTorrentFieldIDs.add(TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE);
 			basicTorrentFieldIDs.add(TransmissionVars.FIELD_TORRENT_TAG_UIDS);
@@ -741,7 +797,7 @@ public class TransmissionRPC
 	}
 
 	public void getTorrentFileInfo(String callID, Object ids,
-			@Nullable int[] fileIndexes, TorrentListReceivedListener l) {
+			@Nullable IndexRangeSet fileIndexes, TorrentListReceivedListener l) {
 		getTorrents(callID, ids, getFileInfoFields(), fileIndexes,
 				defaultFileFields, l);
 	}
@@ -816,12 +872,17 @@ public class TransmissionRPC
 			map.put(RPCKEY_ARGUMENTS, mapArguments);
 			mapArguments.put(TransmissionVars.ARG_IDS, ids);
 		}
-		sendRequest("stopTorrents", map,
-				new ReplyMapReceivedListenerWithRefresh(callID, l, ids));
+		Map<String, Object> changes = new HashMap<>();
+		changes.put(TransmissionVars.FIELD_TORRENT_STATUS,
+				TransmissionVars.TR_STATUS_STOPPED);
+		changes.put(TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD, 0);
+		changes.put(TransmissionVars.FIELD_TORRENT_RATE_UPLOAD, 0);
+		sendRequest("stopTorrents", map, new ReplyMapReceivedListenerWithRefresh(
+				callID, l, ids, session.torrent.mutateTorrents(ids, changes, false)));
 	}
 
-	public void setFilePriority(String callID, long torrentID, int[] fileIndexes,
-			int priority, @Nullable final ReplyMapReceivedListener l) {
+	public void setFilePriority(String callID, long torrentID,
+			IndexRangeSet fileIndexes, int priority, @Nullable final ReplyMapReceivedListener l) {
 		long[] ids = {
 			torrentID
 		};
@@ -849,14 +910,16 @@ public class TransmissionRPC
 				return;
 		}
 
-		mapArguments.put(key, fileIndexes);
+		mapArguments.put(key, encodeFileIndexes(fileIndexes));
 
-		sendRequest("setFilePriority", map, new ReplyMapReceivedListenerWithRefresh(
-				callID, l, ids, fileIndexes, null));
+		sendRequest("setFilePriority", map,
+				new ReplyMapReceivedListenerWithRefresh(callID, l, ids, fileIndexes,
+						null, session.torrent.mutateFiles(torrentID, fileIndexes,
+								TransmissionVars.FIELD_FILESTATS_PRIORITY, priority)));
 	}
 
-	public void setWantState(String callID, long torrentID, int[] fileIndexes,
-			boolean wanted, @Nullable final ReplyMapReceivedListener l) {
+	public void setWantState(String callID, long torrentID,
+			IndexRangeSet fileIndexes, boolean wanted, @Nullable final ReplyMapReceivedListener l) {
 		long[] torrentIDs = {
 			torrentID
 		};
@@ -865,10 +928,25 @@ public class TransmissionRPC
 		Map<String, Object> mapArguments = new HashMap<>();
 		map.put(RPCKEY_ARGUMENTS, mapArguments);
 		mapArguments.put(TransmissionVars.ARG_IDS, torrentIDs);
-		mapArguments.put(wanted ? "files-wanted" : "files-unwanted", fileIndexes);
+		mapArguments.put(wanted ? "files-wanted" : "files-unwanted",
+				encodeFileIndexes(fileIndexes));
+
+		sendRequest("setWantState", map,
+				new ReplyMapReceivedListenerWithRefresh(callID, l, torrentIDs,
+						fileIndexes, null, session.torrent.mutateFiles(torrentID,
+								fileIndexes, TransmissionVars.FIELD_FILESTATS_WANTED,
+								wanted)));
+	}
 
-		sendRequest("setWantState", map, new ReplyMapReceivedListenerWithRefresh(
-				callID, l, torrentIDs, fileIndexes, null));
+	/**
+	 * Remotes advertising "field:file-index-ranges" take a "0-99,105" string
+	 * anywhere a list of file indexes is expected.  Older ones get every index.
+	 */
+	private Object encodeFileIndexes(@NonNull IndexRangeSet fileIndexes) {
+		if (getSupports(RPCSupports.SUPPORTS_FILE_INDEX_RANGES)) {
+			return fileIndexes.toRangeString();
+		}
+		return fileIndexes.toArray();
 	}
 
 	public void setDisplayName(String callID, long torrentID, String newName) {
@@ -882,8 +960,11 @@ public class TransmissionRPC
 		mapArguments.put(TransmissionVars.ARG_IDS, torrentIDs);
 		mapArguments.put("name", newName);
 
+		Map<String, Object> changes = new HashMap<>();
+		changes.put(TransmissionVars.FIELD_TORRENT_NAME, newName);
 		sendRequest("setDisplayName", map,
-				new ReplyMapReceivedListenerWithRefresh(callID, null, torrentIDs));
+				new ReplyMapReceivedListenerWithRefresh(callID, null, torrentIDs,
+						session.torrent.mutateTorrents(torrentIDs, changes, false)));
 	}
 
 	public void addTagToTorrents(String callID, long[] torrentIDs,
@@ -899,7 +980,8 @@ public class TransmissionRPC
 		mapArguments.put("tagAdd", tags);
 
 		sendRequest("addTagToTorrent", map,
-				new ReplyMapReceivedListenerWithRefresh(callID, null, torrentIDs) {
+				new ReplyMapReceivedListenerWithRefresh(callID, null, torrentIDs,
+						mutateTagUIDs(torrentIDs, tags, true)) {
 					@Override
 					public void rpcSuccess(String id, Map optionalMap) {
 						boolean hasNewTag = false;
@@ -909,7 +991,11 @@ public class TransmissionRPC
 								break;
 							}
 						}
-						session.tag.refreshTags(!hasNewTag);
+						if (hasNewTag) {
+							// New tag definition.  Counts for existing tags follow from the
+							// torrents' tag-uids on the refresh below
+							session.tag.refreshTags(false);
+						}
 						super.rpcSuccess(id, optionalMap);
 					}
 				});
@@ -917,6 +1003,9 @@ public class TransmissionRPC
 
 	public void removeTagFromTorrents(String callID, long[] torrentIDs,
 			Object[] tags) {
+		// Before tags are turned into names below
+		long mutationID = mutateTagUIDs(torrentIDs, tags, false);
+
 		Map<String, Object> map = new HashMap<>();
 		map.put(RPCKEY_METHOD, TransmissionVars.METHOD_TORRENT_SET);
 		Map<String, Object> mapArguments = new HashMap<>();
@@ -936,7 +1025,52 @@ public class TransmissionRPC
 		mapArguments.put("tagRemove", tags);
 
 		sendRequest("removeTagFromTorrent", map,
-				new ReplyMapReceivedListenerWithRefresh(callID, null, torrentIDs));
+				new ReplyMapReceivedListenerWithRefresh(callID, null, torrentIDs,
+						mutationID));
+	}
+
+	/**
+	 * Tags given by name may not exist yet, so they can't be predicted.  When
+	 * there are any, confirm on any update instead of on matching tag-uids.
+	 */
+	private long mutateTagUIDs(long[] torrentIDs, Object[] tags, boolean add) {
+		if (torrentIDs.length != 1) {
+			// tag-uids differ per torrent, but a mutation sets one value
+			return session.torrent.mutateTorrents(torrentIDs,
+					Collections.<String, Object> emptyMap(), true);
+		}
+		Map<?, ?> mapTorrent = session.torrent.getCachedTorrent(torrentIDs[0]);
+		List<?> listTagUIDs = MapUtils.getMapList(mapTorrent,
+				TransmissionVars.FIELD_TORRENT_TAG_UIDS, null);
+		if (listTagUIDs == null) {
+			return session.torrent.mutateTorrents(torrentIDs,
+					Collections.<String, Object> emptyMap(), true);
+		}
+		List<Object> newTagUIDs = new ArrayList<Object>(listTagUIDs);
+		boolean hasNamedTag = false;
+		for (Object tag : tags) {
+			if (!(tag instanceof Number)) {
+				hasNamedTag = true;
+				continue;
+			}
+			long uid = ((Number) tag).longValue();
+			boolean found = false;
+			for (Iterator<Object> iter = newTagUIDs.iterator(); iter.hasNext();) {
+				Object o = iter.next();
+				if (o instanceof Number && ((Number) o).longValue() == uid) {
+					found = true;
+					if (!add) {
+						iter.remove();
+					}
+				}
+			}
+			if (add && !found) {
+				newTagUIDs.add(uid);
+			}
+		}
+		Map<String, Object> changes = new HashMap<>();
+		changes.put(TransmissionVars.FIELD_TORRENT_TAG_UIDS, newTagUIDs);
+		return session.torrent.mutateTorrents(torrentIDs, changes, hasNamedTag);
 	}
 
 	/**
@@ -998,8 +1132,12 @@ public class TransmissionRPC
 		mapArguments.put("move", true);
 		mapArguments.put("location", newLocation);
 
+		// downloadDir isn't in the basic fields, so any update confirms
+		Map<String, Object> changes = new HashMap<>();
+		changes.put(TransmissionVars.FIELD_TORRENT_DOWNLOAD_DIR, newLocation);
 		sendRequest(TransmissionVars.METHOD_TORRENT_SET_LOCATION, map,
-				new ReplyMapReceivedListenerWithRefresh(TAG, listener, ids));
+				new ReplyMapReceivedListenerWithRefresh(TAG, listener, ids,
+						session.torrent.mutateTorrents(ids, changes, true)));
 	}
 
 	public void removeTorrent(long[] ids, boolean deleteData,
@@ -1013,16 +1151,15 @@ public class TransmissionRPC
 		mapArguments.put(TransmissionVars.ARG_IDS, ids);
 		mapArguments.put("delete-local-data", deleteData);
 
+		final long mutationID = session.torrent.mutateRemove(ids);
+
 		sendRequest(TransmissionVars.METHOD_TORRENT_REMOVE, map,
 				new ReplyMapReceivedListener() {
 
 					@Override
 					public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-						try {
-							Thread.sleep(500);
-						} catch (InterruptedException ignore) {
-						}
-						getRecentTorrents(id, null);
+						// Already gone from the cache, nothing to fetch
+						session.torrent.mutationAccepted(mutationID, null);
 						if (listener != null) {
 							listener.rpcSuccess(id, optionalMap);
 						}
@@ -1030,6 +1167,7 @@ public class TransmissionRPC
 
 					@Override
 					public void rpcFailure(String id, String message) {
+						session.torrent.mutationRejected(mutationID);
 						if (listener != null) {
 							listener.rpcFailure(id, message);
 						}
@@ -1037,6 +1175,7 @@ public class TransmissionRPC
 
 					@Override
 					public void rpcError(String id, Exception e) {
+						session.torrent.mutationRejected(mutationID);
 						if (listener != null) {
 							listener.rpcError(id, e);
 						}
@@ -1133,9 +1272,6 @@ public class TransmissionRPC
 			public void rpcSuccess(String id, Map<?, ?> optionalMap) {
 
 				final Serializable searchID = (Serializable) optionalMap.get("sid");
-				final Map<String, Object> mapResultsRequest = new HashMap<>();
-
-				mapResultsRequest.put("sid", searchID);
 				if (searchID != null) {
 					List listEngines = MapUtils.getMapList(optionalMap, "engines",
 							Collections.emptyList());
@@ -1144,41 +1280,7 @@ public class TransmissionRPC
 						return;
 					}
 
-					simpleRpcCall(TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-							mapResultsRequest, new ReplyMapReceivedListener() {
-
-								@Override
-								public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-
-									boolean complete = MapUtils.getMapBoolean(optionalMap,
-											"complete", true);
-									List listEngines = MapUtils.getMapList(optionalMap, "engines",
-											Collections.emptyList());
-
-									if (!l.onMetaSearchGotResults(searchID, listEngines,
-											complete)) {
-										return;
-									}
-									if (!complete) {
-										try {
-											Thread.sleep(1500);
-										} catch (InterruptedException ignored) {
-										}
-										simpleRpcCall(
-												TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-												mapResultsRequest, this);
-									}
-
-								}
-
-								@Override
-								public void rpcFailure(String id, String message) {
-								}
-
-								@Override
-								public void rpcError(String id, Exception e) {
-								}
-							});
+					continueMetaSearch(searchID, l);
 				}
 			}
 
@@ -1192,6 +1294,136 @@ public class TransmissionRPC
 		});
 	}
 
+	/**
+	 * Poll results of a search started with {@link #startMetaSearch} until
+	 * the search completes or the listener returns false.
+	 * <p/>
+	 * Polls start fast and back off as engines complete and when a poll brings
+	 * nothing new.  Waiting is done on a timer, not on the RPC thread.
+	 */
+	public void continueMetaSearch(Serializable searchID,
+			MetaSearchResultsListener l) {
+		Map<String, Object> mapResultsRequest = new HashMap<>();
+		mapResultsRequest.put(TransmissionVars.FIELD_SEARCHRESULT_SEARCH_ID,
+				searchID);
+		new MetaSearchPoller(searchID, mapResultsRequest, l).poll();
+	}
+
+	private static final long METASEARCH_POLL_MIN_MS = 750;
+
+	private static final long METASEARCH_POLL_MAX_MS = 5000;
+
+	private static Timer metaSearchTimer;
+
+	private static synchronized Timer getMetaSearchTimer() {
+		if (metaSearchTimer == null) {
+			metaSearchTimer = new Timer("MetaSearchPoll", true);
+		}
+		return metaSearchTimer;
+	}
+
+	/**
+	 * @return ms to wait before the next results poll
+	 */
+	@Thunk
+	static long getNextMetaSearchPollDelay(long lastDelay, boolean gotNew,
+			int numEngines, int numEnginesComplete) {
+		long delay = gotNew ? METASEARCH_POLL_MIN_MS : lastDelay * 3 / 2;
+		if (numEngines > 0) {
+			// the remaining engines are the slow ones, move half way to max
+			delay += (METASEARCH_POLL_MAX_MS - delay) * numEnginesComplete
+					/ numEngines / 2;
+		}
+		return Math.max(METASEARCH_POLL_MIN_MS,
+				Math.min(METASEARCH_POLL_MAX_MS, delay));
+	}
+
+	private class MetaSearchPoller
+		implements ReplyMapReceivedListener
+	{
+		private final Serializable searchID;
+
+		private final Map<String, Object> mapResultsRequest;
+
+		private final MetaSearchResultsListener l;
+
+		/** engine id -> result count of last reply */
+		private final Map<String, Integer> mapEngineCounts = new HashMap<>();
+
+		private long delay = METASEARCH_POLL_MIN_MS;
+
+		MetaSearchPoller(Serializable searchID,
+				Map<String, Object> mapResultsRequest, MetaSearchResultsListener l) {
+			this.searchID = searchID;
+			this.mapResultsRequest = mapResultsRequest;
+			this.l = l;
+		}
+
+		void poll() {
+			simpleRpcCall(TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
+					mapResultsRequest, this);
+		}
+
+		@Override
+		public void rpcSuccess(String id, Map<?, ?> optionalMap) {
+			boolean complete = MapUtils.getMapBoolean(optionalMap,
+					TransmissionVars.FIELD_SEARCHRESULT_COMPLETE, true);
+			List listEngines = MapUtils.getMapList(optionalMap, "engines",
+					Collections.emptyList());
+
+			if (!l.onMetaSearchGotResults(searchID, listEngines, complete)
+					|| complete) {
+				return;
+			}
+
+			boolean gotNew = false;
+			int numEnginesComplete = 0;
+			for (Object oEngine : listEngines) {
+				if (!(oEngine instanceof Map)) {
+					continue;
+				}
+				Map mapEngine = (Map) oEngine;
+				if (MapUtils.getMapBoolean(mapEngine,
+						TransmissionVars.FIELD_SEARCHRESULT_COMPLETE, false)) {
+					numEnginesComplete++;
+				}
+				List listResults = MapUtils.getMapList(mapEngine, "results", null);
+				int count = listResults == null ? 0 : listResults.size();
+				Integer lastCount = mapEngineCounts.put(
+						MapUtils.getMapString(mapEngine, "id", ""), count);
+				if (count > 0 && (lastCount == null || lastCount != count)) {
+					gotNew = true;
+				}
+			}
+
+			delay = getNextMetaSearchPollDelay(delay, gotNew, listEngines.size(),
+					numEnginesComplete);
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, "MetaSearch " + searchID + ": " + numEnginesComplete + "/"
+						+ listEngines.size() + " engines done, next poll in " + delay);
+			}
+			try {
+				getMetaSearchTimer().schedule(new TimerTask() {
+					@Override
+					public void run() {
+						poll();
+					}
+				}, delay);
+			} catch (IllegalStateException e) {
+				// timer cancelled
+				Log.e(TAG, "continueMetaSearch: ", e);
+			}
+		}
+
+		@Override
+		public void rpcFailure(String id, String message) {
+		}
+
+		@Override
+		public void rpcError(String id, Exception e) {
+		}
+	}
+
 	/**
 	 * compare two version strings of form n.n.n.n (e.g. 1.2.3.4)
 	 *
@@ -0,0 +1,75 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.service;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.session.TorrentCompletionMonitor;
+import com.biglybt.util.Thunk;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.util.Log;
+
+/**
+ * Runs {@link TorrentCompletionMonitor} off the main thread when the
+ * scheduler says so
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class TorrentMonitorJobService
+	extends JobService
+{
+	private static final String TAG = "TorrentMonitorJob";
+
+	@Thunk
+	volatile boolean cancelled;
+
+	@Override
+	public boolean onStartJob(final JobParameters params) {
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "onStartJob");
+		}
+		cancelled = false;
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				TorrentCompletionMonitor.checkRemotes(getApplicationContext(),
+						new TorrentCompletionMonitor.Cancellable() {
+							@Override
+							public boolean isCancelled() {
+								return cancelled;
+							}
+						});
+				jobFinished(params, false);
+			}
+		}, TAG);
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	@Override
+	public boolean onStopJob(JobParameters params) {
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "onStopJob");
+		}
+		cancelled = true;
+		// Periodic; the next run picks up where we left off
+		return false;
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.concurrent.*;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.BiglyBTApp;
+import com.biglybt.android.client.rpc.RestJsonClient;
+import com.biglybt.util.Thunk;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+/**
+ * Gets sessions talking to their remote again after a network change.
+ * <p/>
+ * {@link com.biglybt.android.util.NetworkState} tells us when we go on or
+ * offline, but pooled HTTP connections opened on the old network are dead,
+ * and OkHttp only finds out when a request on one times out.  So when the
+ * active network changes, the pool is emptied.  A session on screen then
+ * opens a fresh connection to its remote and asks for recently changed
+ * torrents right away, instead of waiting for its next refresh.  If the
+ * remote can't be reached yet, it tries again a few times, backing off.
+ * <p/>
+ * Time from reconnect to first torrent list is kept, see {@link #getStats()}.
+ */
+final class ConnectionManager
+{
+	private static final String TAG = "ConnectionManager";
+
+	/** First wait before trying an unreachable remote again; doubles */
+	private static final long MIN_RETRY_SECS = 2;
+
+	/** After this, the regular refresh takes over */
+	private static final int MAX_RETRIES = 5;
+
+	private static final long THREAD_KEEPALIVE_SECS = 30;
+
+	enum State {
+		/** No network */
+		OFFLINE,
+		/** Network (maybe a new one), not yet caught up */
+		CONNECTING,
+		/** Remote unreachable after a network change; trying again soon */
+		WAITING_TO_RETRY,
+		CONNECTED
+	}
+
+	/**
+	 * State of one session.  Guarded by the manager.
+	 */
+	class Connection
+	{
+		@NonNull
+		final Session session;
+
+		@NonNull
+		State state = State.CONNECTED;
+
+		int seenGeneration;
+
+		/** elapsedRealtime we started catching up, 0 when not */
+		long reconnectStartedOn;
+
+		boolean awaitingFirstUpdate;
+
+		int numRetries;
+
+		@Nullable
+		ScheduledFuture<?> future;
+
+		private final Runnable checkRunnable = new Runnable() {
+			@Override
+			public void run() {
+				check();
+			}
+		};
+
+		Connection(@NonNull Session session, int seenGeneration) {
+			this.session = session;
+			this.seenGeneration = seenGeneration;
+		}
+
+		void onlineStateChanged(boolean isOnline) {
+			synchronized (ConnectionManager.this) {
+				cancelFuture();
+				if (!isOnline) {
+					setState(State.OFFLINE);
+					awaitingFirstUpdate = false;
+					return;
+				}
+				// Network info calls can be slow; check off the UI thread
+				future = getExecutor().schedule(checkRunnable, 0, TimeUnit.SECONDS);
+			}
+		}
+
+		/**
+		 * Catch up on a network change that happened while not visible
+		 */
+		void activityResumed() {
+			synchronized (ConnectionManager.this) {
+				if (state != State.CONNECTING || future != null) {
+					return;
+				}
+				future = getExecutor().schedule(checkRunnable, 0, TimeUnit.SECONDS);
+			}
+		}
+
+		void listReceived() {
+			long ms;
+			synchronized (ConnectionManager.this) {
+				if (!awaitingFirstUpdate) {
+					return;
+				}
+				awaitingFirstUpdate = false;
+				ms = SystemClock.elapsedRealtime() - reconnectStartedOn;
+				reconnectStartedOn = 0;
+				numMeasured++;
+				totalFirstUpdateMS += ms;
+				maxFirstUpdateMS = Math.max(maxFirstUpdateMS, ms);
+				lastFirstUpdateMS = ms;
+			}
+			if (AndroidUtils.DEBUG) {
+				session.logd(
+						"First update " + ms + "ms after reconnect; " + getStats());
+			}
+		}
+
+		void destroy() {
+			synchronized (ConnectionManager.this) {
+				cancelFuture();
+				setState(State.OFFLINE);
+				awaitingFirstUpdate = false;
+			}
+		}
+
+		@Thunk
+		@WorkerThread
+		void check() {
+			int generation = checkNetwork();
+			String url;
+			synchronized (ConnectionManager.this) {
+				future = null;
+				if (session.isDestroyed()) {
+					return;
+				}
+				boolean changed = generation != seenGeneration;
+				seenGeneration = generation;
+				if (changed) {
+					numRetries = 0;
+				}
+				if (!changed && state == State.CONNECTED) {
+					return;
+				}
+				if (!session.isReadyForUI()) {
+					// Still opening; its first refresh is our catch up
+					setState(State.CONNECTED);
+					return;
+				}
+				setState(State.CONNECTING);
+				if (!session.isActivityVisible()) {
+					// activityResumed will get us going
+					return;
+				}
+				if (reconnectStartedOn == 0) {
+					reconnectStartedOn = SystemClock.elapsedRealtime();
+				}
+				url = getPreconnectURL();
+			}
+
+			boolean reached = url == null || RestJsonClient.preconnect(url);
+
+			synchronized (ConnectionManager.this) {
+				if (session.isDestroyed() || state != State.CONNECTING
+						|| future != null) {
+					// Went offline, or another check is queued
+					return;
+				}
+				if (!reached && numRetries < MAX_RETRIES) {
+					long delay = MIN_RETRY_SECS << numRetries;
+					numRetries++;
+					setState(State.WAITING_TO_RETRY);
+					future = getExecutor().schedule(checkRunnable, delay,
+							TimeUnit.SECONDS);
+					return;
+				}
+				numRetries = 0;
+				setState(State.CONNECTED);
+				awaitingFirstUpdate = true;
+			}
+			session.triggerRefresh(true);
+		}
+
+		/**
+		 * @return null if this remote doesn't go over a plain HTTP connection
+		 */
+		@Nullable
+		private String getPreconnectURL() {
+			RemoteProfile remoteProfile = session.getRemoteProfile();
+			if (remoteProfile.getRemoteType() == RemoteProfile.TYPE_CORE) {
+				return null;
+			}
+			String rpcRoot = session.getRpcRoot();
+			if (rpcRoot == null || rpcRoot.contains(".i2p:")) {
+				return null;
+			}
+			return rpcRoot + "transmission/rpc";
+		}
+
+		private void setState(@NonNull State newState) {
+			if (state == newState) {
+				return;
+			}
+			if (AndroidUtils.DEBUG) {
+				session.logd("Connection " + state + " -> " + newState);
+			}
+			state = newState;
+		}
+
+		private void cancelFuture() {
+			if (future != null) {
+				future.cancel(false);
+				future = null;
+			}
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor executor;
+
+	/** Guarded by this */
+	private boolean networkKnown;
+
+	/** Guarded by this */
+	@Nullable
+	private String networkKey;
+
+	/** Guarded by this.  Bumped whenever the active network changes */
+	private int networkGeneration;
+
+	/** Guarded by this */
+	private int numNetworkChanges;
+
+	@Thunk
+	int numMeasured;
+
+	@Thunk
+	long totalFirstUpdateMS;
+
+	@Thunk
+	long maxFirstUpdateMS;
+
+	@Thunk
+	long lastFirstUpdateMS;
+
+	ConnectionManager() {
+	}
+
+	@NonNull
+	synchronized Connection createConnection(@NonNull Session session) {
+		return new Connection(session, networkGeneration);
+	}
+
+	@Thunk
+	static synchronized ScheduledExecutorService getExecutor() {
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(@NonNull Runnable r) {
+					Thread thread = new Thread(r, TAG);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.setKeepAliveTime(THREAD_KEEPALIVE_SECS, TimeUnit.SECONDS);
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Empties the HTTP connection pool if the active network isn't the one we
+	 * last saw.
+	 *
+	 * @return Current network generation
+	 */
+	@Thunk
+	@WorkerThread
+	int checkNetwork() {
+		String key = BiglyBTApp.getNetworkState().getActiveNetworkKey();
+		boolean evict;
+		int generation;
+		synchronized (this) {
+			if (networkKnown && (key == null ? networkKey == null
+					: key.equals(networkKey))) {
+				return networkGeneration;
+			}
+			// First look isn't a change; nothing pooled is stale yet, and
+			// connections were created with the generation we're still on
+			evict = networkKnown;
+			networkKnown = true;
+			networkKey = key;
+			if (evict) {
+				networkGeneration++;
+				numNetworkChanges++;
+			}
+			generation = networkGeneration;
+		}
+		if (evict) {
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "Active network changed to " + key);
+			}
+			RestJsonClient.evictConnections();
+		}
+		return generation;
+	}
+
+	/**
+	 * @return Network changes seen and time to first torrent list after a
+	 * reconnect, for logs
+	 */
+	@NonNull
+	synchronized String getStats() {
+		long avg = numMeasured == 0 ? 0 : totalFirstUpdateMS / numMeasured;
+		return "networkChanges=" + numNetworkChanges + ", firstUpdate: n="
+				+ numMeasured + ", avg=" + avg + "ms, max=" + maxFirstUpdateMS
+				+ "ms, last=" + lastFirstUpdateMS + "ms";
+	}
+}
@@ -0,0 +1,510 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.*;
+
+import com.biglybt.android.client.TransmissionVars;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * A torrent's "files" list, stored by column instead of one HashMap per file.
+ * <p/>
+ * Sizes, progress, priority, want state and index are primitive arrays.
+ * Names, full paths and content URLs are split after each path separator
+ * and stored as ids into a segment dictionary shared by the whole table, so
+ * a folder name repeated by 50k files is stored once.  Any other key gets an
+ * Object column, created the first time the key is seen.
+ * <p/>
+ * For existing callers, this is a {@link List} of {@link Map}s.  The maps are
+ * read-only views, created on {@link #get(int)} and not kept.  Path values
+ * are rebuilt on every get.
+ * <p/>
+ * A table is filled before it's published, and never changed afterwards;
+ * other threads may be reading it.  To change one, {@link #copy()} it and
+ * {@link #setValue(int, String, Object)} on the copy.
+ */
+final class FileTable
+	extends AbstractList<Map<String, Object>>
+	implements RandomAccess
+{
+	private static final String DND_SEGMENT = ".dnd_az!";
+
+	private static final int HAS_LENGTH = 1;
+
+	private static final int HAS_BYTES_COMPLETED = 1 << 1;
+
+	private static final int HAS_PRIORITY = 1 << 2;
+
+	private static final int HAS_WANTED = 1 << 3;
+
+	private static final int WANTED = 1 << 4;
+
+	private static final String[] PATH_KEYS = {
+		TransmissionVars.FIELD_FILES_NAME,
+		TransmissionVars.FIELD_FILES_FULL_PATH,
+		TransmissionVars.FIELD_FILES_CONTENT_URL
+	};
+
+	private final int size;
+
+	private final int[] index;
+
+	private final long[] length;
+
+	private final long[] bytesCompleted;
+
+	private final byte[] priority;
+
+	private final byte[] flags;
+
+	/** Segment ids per row, for each of {@link #PATH_KEYS}.  null row = absent */
+	private final int[][][] paths = new int[PATH_KEYS.length][][];
+
+	@NonNull
+	private final SegmentDictionary dictionary;
+
+	/** key -> column.  Replaced, never modified, when a column is added */
+	private volatile Map<String, Object[]> extras;
+
+	private FileTable(int size, @NonNull SegmentDictionary dictionary) {
+		this.size = size;
+		this.dictionary = dictionary;
+		index = new int[size];
+		length = new long[size];
+		bytesCompleted = new long[size];
+		priority = new byte[size];
+		flags = new byte[size];
+		extras = Collections.emptyMap();
+	}
+
+	/**
+	 * Build a table from file maps.  Rows without an index get their position.
+	 */
+	@NonNull
+	static FileTable from(@NonNull List<?> listFiles) {
+		FileTable table = new FileTable(listFiles.size(), new SegmentDictionary());
+		for (int row = 0; row < table.size; row++) {
+			table.index[row] = row;
+			Object o = listFiles.get(row);
+			if (o instanceof Map) {
+				table.setValues(row, (Map<?, ?>) o);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Copy that can be changed without affecting this table.  Arrays are
+	 * copied; the dictionary is shared, it only grows.
+	 */
+	@NonNull
+	FileTable copy() {
+		FileTable copy = new FileTable(size, dictionary);
+		System.arraycopy(index, 0, copy.index, 0, size);
+		System.arraycopy(length, 0, copy.length, 0, size);
+		System.arraycopy(bytesCompleted, 0, copy.bytesCompleted, 0, size);
+		System.arraycopy(priority, 0, copy.priority, 0, size);
+		System.arraycopy(flags, 0, copy.flags, 0, size);
+		for (int i = 0; i < paths.length; i++) {
+			// rows are never modified, only replaced
+			copy.paths[i] = paths[i] == null ? null : paths[i].clone();
+		}
+		Map<String, Object[]> extrasCopy = new HashMap<>();
+		for (Map.Entry<String, Object[]> entry : extras.entrySet()) {
+			extrasCopy.put(entry.getKey(), entry.getValue().clone());
+		}
+		copy.extras = extrasCopy;
+		return copy;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return A map view of the row
+	 */
+	@Override
+	public Map<String, Object> get(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException(row + " of " + size);
+		}
+		return new Row(row);
+	}
+
+	@Nullable
+	Object getValue(int row, Object key) {
+		if (TransmissionVars.FIELD_FILES_INDEX.equals(key)) {
+			return index[row];
+		}
+		if (TransmissionVars.FIELD_FILES_LENGTH.equals(key)) {
+			if ((flags[row] & HAS_LENGTH) != 0) {
+				return length[row];
+			}
+		} else if (TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED.equals(key)) {
+			if ((flags[row] & HAS_BYTES_COMPLETED) != 0) {
+				return bytesCompleted[row];
+			}
+		} else if (TransmissionVars.FIELD_FILESTATS_PRIORITY.equals(key)) {
+			if ((flags[row] & HAS_PRIORITY) != 0) {
+				return (int) priority[row];
+			}
+		} else if (TransmissionVars.FIELD_FILESTATS_WANTED.equals(key)) {
+			if ((flags[row] & HAS_WANTED) != 0) {
+				return (flags[row] & WANTED) != 0;
+			}
+		} else {
+			int pathColumn = getPathColumn(key);
+			if (pathColumn >= 0) {
+				int[] segments = paths[pathColumn] == null ? null
+						: paths[pathColumn][row];
+				if (segments != null) {
+					return dictionary.join(segments);
+				}
+			}
+		}
+		Object[] column = extras.get(key);
+		return column == null ? null : column[row];
+	}
+
+	boolean hasValue(int row, Object key) {
+		if (TransmissionVars.FIELD_FILES_INDEX.equals(key)) {
+			return true;
+		}
+		int pathColumn = getPathColumn(key);
+		if (pathColumn >= 0 && paths[pathColumn] != null
+				&& paths[pathColumn][row] != null) {
+			return true;
+		}
+		int flag = getFlag(key);
+		if (flag != 0 && (flags[row] & flag) != 0) {
+			return true;
+		}
+		Object[] column = extras.get(key);
+		return column != null && column[row] != null;
+	}
+
+	/**
+	 * Set a value.  Values of an unexpected type (ex. a String length) are kept
+	 * as is, in an Object column.  null removes.
+	 */
+	void setValue(int row, @NonNull String key, @Nullable Object value) {
+		removeValue(row, key);
+		if (value == null) {
+			return;
+		}
+		if (TransmissionVars.FIELD_FILES_INDEX.equals(key)) {
+			if (value instanceof Number) {
+				index[row] = ((Number) value).intValue();
+				return;
+			}
+		} else if (TransmissionVars.FIELD_FILES_LENGTH.equals(key)) {
+			if (value instanceof Number) {
+				length[row] = ((Number) value).longValue();
+				flags[row] |= HAS_LENGTH;
+				return;
+			}
+		} else if (TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED.equals(key)) {
+			if (value instanceof Number) {
+				bytesCompleted[row] = ((Number) value).longValue();
+				flags[row] |= HAS_BYTES_COMPLETED;
+				return;
+			}
+		} else if (TransmissionVars.FIELD_FILESTATS_PRIORITY.equals(key)) {
+			if (value instanceof Number) {
+				priority[row] = ((Number) value).byteValue();
+				flags[row] |= HAS_PRIORITY;
+				return;
+			}
+		} else if (TransmissionVars.FIELD_FILESTATS_WANTED.equals(key)) {
+			if (value instanceof Boolean) {
+				flags[row] |= HAS_WANTED;
+				if ((Boolean) value) {
+					flags[row] |= WANTED;
+				}
+				return;
+			}
+		} else {
+			int pathColumn = getPathColumn(key);
+			if (pathColumn >= 0 && (value instanceof String)) {
+				if (paths[pathColumn] == null) {
+					paths[pathColumn] = new int[size][];
+				}
+				paths[pathColumn][row] = dictionary.split((String) value,
+						pathColumn == 0);
+				return;
+			}
+		}
+		getOrCreateExtra(key)[row] = value;
+	}
+
+	void setValues(int row, @NonNull Map<?, ?> map) {
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			Object key = entry.getKey();
+			if (key instanceof String) {
+				setValue(row, (String) key, entry.getValue());
+			}
+		}
+	}
+
+	void removeValue(int row, @NonNull Object key) {
+		int flag = getFlag(key);
+		if (flag != 0) {
+			flags[row] &= ~flag;
+			if (flag == HAS_WANTED) {
+				flags[row] &= ~WANTED;
+			}
+		}
+		int pathColumn = getPathColumn(key);
+		if (pathColumn >= 0 && paths[pathColumn] != null) {
+			paths[pathColumn][row] = null;
+		}
+		Object[] column = extras.get(key);
+		if (column != null) {
+			column[row] = null;
+		}
+	}
+
+	/**
+	 * Rough heap use, comparable to
+	 * {@link TorrentCacheBudget#estimateListBytes(List)} of the maps
+	 */
+	long estimateBytes() {
+		long bytes = 96 + size * (4L + 8 + 8 + 1 + 1);
+		for (int[][] column : paths) {
+			if (column == null) {
+				continue;
+			}
+			bytes += 16 + 4L * size;
+			for (int[] segments : column) {
+				if (segments != null) {
+					bytes += 16 + 4L * segments.length;
+				}
+			}
+		}
+		for (Object[] column : extras.values()) {
+			bytes += 16 + 4L * size;
+			for (Object value : column) {
+				if (value instanceof String) {
+					bytes += 24 + 2L * ((String) value).length();
+				} else if (value != null && !(value instanceof Boolean)) {
+					bytes += 16;
+				}
+			}
+		}
+		return bytes + dictionary.estimateBytes();
+	}
+
+	private Object[] getOrCreateExtra(String key) {
+		Object[] column = extras.get(key);
+		if (column != null) {
+			return column;
+		}
+		synchronized (this) {
+			column = extras.get(key);
+			if (column == null) {
+				column = new Object[size];
+				Map<String, Object[]> newExtras = new HashMap<>(extras);
+				newExtras.put(key, column);
+				extras = newExtras;
+			}
+			return column;
+		}
+	}
+
+	private static int getFlag(Object key) {
+		if (TransmissionVars.FIELD_FILES_LENGTH.equals(key)) {
+			return HAS_LENGTH;
+		}
+		if (TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED.equals(key)) {
+			return HAS_BYTES_COMPLETED;
+		}
+		if (TransmissionVars.FIELD_FILESTATS_PRIORITY.equals(key)) {
+			return HAS_PRIORITY;
+		}
+		if (TransmissionVars.FIELD_FILESTATS_WANTED.equals(key)) {
+			return HAS_WANTED;
+		}
+		return 0;
+	}
+
+	private static int getPathColumn(Object key) {
+		for (int i = 0; i < PATH_KEYS.length; i++) {
+			if (PATH_KEYS[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Read-only map view of one row.  {@link #entrySet()} is a snapshot;
+	 * everything else reads the table.
+	 */
+	private final class Row
+		extends AbstractMap<String, Object>
+	{
+		private final int row;
+
+		Row(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public Object get(Object key) {
+			return getValue(row, key);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return hasValue(row, key);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object remove(Object key) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void clear() {
+			throw new UnsupportedOperationException();
+		}
+
+		@NonNull
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			Map<String, Object> map = new HashMap<>();
+			map.put(TransmissionVars.FIELD_FILES_INDEX, index[row]);
+			String[] keys = {
+				TransmissionVars.FIELD_FILES_LENGTH,
+				TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED,
+				TransmissionVars.FIELD_FILESTATS_PRIORITY,
+				TransmissionVars.FIELD_FILESTATS_WANTED
+			};
+			for (String key : keys) {
+				Object value = getValue(row, key);
+				if (value != null) {
+					map.put(key, value);
+				}
+			}
+			for (String key : PATH_KEYS) {
+				Object value = getValue(row, key);
+				if (value != null) {
+					map.put(key, value);
+				}
+			}
+			for (Map.Entry<String, Object[]> entry : extras.entrySet()) {
+				Object value = entry.getValue()[row];
+				if (value != null) {
+					map.put(entry.getKey(), value);
+				}
+			}
+			return Collections.unmodifiableMap(map).entrySet();
+		}
+	}
+
+	/**
+	 * Path segments, each including its trailing separator.  Ids are stable.
+	 */
+	private static final class SegmentDictionary
+	{
+		private final Map<String, Integer> ids = new HashMap<>();
+
+		/** Grown by copy, so readers don't need the lock */
+		private volatile String[] segments = new String[64];
+
+		private int count;
+
+		private long stringBytes;
+
+		/**
+		 * @param stripDND Drop the ".dnd_az!" folder BiglyBT puts skipped files
+		 *                 in.  The remote should really leave it out.
+		 */
+		synchronized int[] split(String path, boolean stripDND) {
+			int numSegments = 1;
+			for (int i = 0, len = path.length(); i < len - 1; i++) {
+				char c = path.charAt(i);
+				if (c == '/' || c == '\\') {
+					numSegments++;
+				}
+			}
+			int[] result = new int[numSegments];
+			int pos = 0;
+			int start = 0;
+			for (int i = 0, len = path.length(); i < len; i++) {
+				char c = path.charAt(i);
+				if (c == '/' || c == '\\' || i == len - 1) {
+					String segment = path.substring(start, i + 1);
+					start = i + 1;
+					if (stripDND && segment.length() == DND_SEGMENT.length() + 1
+							&& segment.startsWith(DND_SEGMENT) && i < len - 1) {
+						continue;
+					}
+					result[pos++] = idOf(segment);
+				}
+			}
+			return pos == result.length ? result : Arrays.copyOf(result, pos);
+		}
+
+		private int idOf(String segment) {
+			Integer id = ids.get(segment);
+			if (id != null) {
+				return id;
+			}
+			String[] current = segments;
+			if (count == current.length) {
+				current = Arrays.copyOf(current, count * 2);
+			}
+			current[count] = segment;
+			segments = current;
+			ids.put(segment, count);
+			stringBytes += 24 + 2L * segment.length();
+			return count++;
+		}
+
+		String join(int[] ids) {
+			String[] current = segments;
+			if (ids.length == 1) {
+				return current[ids[0]];
+			}
+			int len = 0;
+			for (int id : ids) {
+				len += current[id].length();
+			}
+			StringBuilder sb = new StringBuilder(len);
+			for (int id : ids) {
+				sb.append(current[id]);
+			}
+			return sb.toString();
+		}
+
+		synchronized long estimateBytes() {
+			// array slot + hash entry with boxed id, per segment
+			return 32 + stringBytes + count * (4L + 48);
+		}
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.client.rpc.RPCException;
+import com.biglybt.android.client.rpc.RemoteProbe;
+import com.biglybt.android.util.MapUtils;
+import com.biglybt.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Speeds and torrent counts of several remotes at once, for the profile list.
+ * <p/>
+ * Each remote is polled with a {@link RemoteProbe}, which only asks for
+ * "session-stats"; nothing is bound, no session-get, no torrent list.  All
+ * remotes share one small thread pool, so ten profiles don't mean ten
+ * threads.  A remote that has a full {@link Session} on screen is refreshing
+ * itself, so its stats are reused instead of polled.  Opening a remote from
+ * the list creates the full session as usual.
+ */
+public class RemoteDashboard
+{
+	private static final String TAG = "RemoteDashboard";
+
+	/** Most remotes polled at the same time, however many there are */
+	private static final int MAX_POLL_THREADS = 3;
+
+	/** Even if the profile asks for faster refreshes */
+	private static final long MIN_POLL_INTERVAL_SECS = 5;
+
+	private static final long THREAD_KEEPALIVE_SECS = 30;
+
+	public interface DashboardListener
+	{
+		/**
+		 * Called on a poll thread
+		 *
+		 * @param profileID null when many changed (remotes added or removed)
+		 */
+		void remoteStatsChanged(@Nullable String profileID);
+	}
+
+	public static class RemoteStats
+	{
+		public final long downloadSpeed;
+
+		public final long uploadSpeed;
+
+		public final int activeCount;
+
+		public final int pausedCount;
+
+		public final int torrentCount;
+
+		/** Non-null if the last poll failed; the other values are then 0 */
+		@Nullable
+		public final String error;
+
+		RemoteStats(long downloadSpeed, long uploadSpeed, int activeCount,
+				int pausedCount, int torrentCount, @Nullable String error) {
+			this.downloadSpeed = downloadSpeed;
+			this.uploadSpeed = uploadSpeed;
+			this.activeCount = activeCount;
+			this.pausedCount = pausedCount;
+			this.torrentCount = torrentCount;
+			this.error = error;
+		}
+
+		static RemoteStats fromMap(Map<?, ?> map) {
+			return new RemoteStats(
+					MapUtils.getMapLong(map,
+							TransmissionVars.TR_SESSION_STATS_DOWNLOAD_SPEED, 0),
+					MapUtils.getMapLong(map,
+							TransmissionVars.TR_SESSION_STATS_UPLOAD_SPEED, 0),
+					MapUtils.getMapInt(map,
+							TransmissionVars.TR_SESSION_STATS_ACTIVE_TORRENT_COUNT, 0),
+					MapUtils.getMapInt(map,
+							TransmissionVars.TR_SESSION_STATS_PAUSED_TORRENT_COUNT, 0),
+					MapUtils.getMapInt(map,
+							TransmissionVars.TR_SESSION_STATS_TORRENT_COUNT, 0),
+					null);
+		}
+	}
+
+	private class Poller
+		implements Runnable
+	{
+		@NonNull
+		final RemoteProfile remoteProfile;
+
+		@NonNull
+		final RemoteProbe probe;
+
+		volatile boolean stopped;
+
+		@Nullable
+		ScheduledFuture<?> future;
+
+		Poller(@NonNull RemoteProfile remoteProfile) {
+			this.remoteProfile = remoteProfile;
+			probe = new RemoteProbe(remoteProfile);
+		}
+
+		@Override
+		public void run() {
+			if (stopped) {
+				return;
+			}
+			String profileID = remoteProfile.getID();
+			RemoteStats stats;
+			Map<?, ?> sessionStats = getVisibleSessionStats(profileID);
+			if (sessionStats != null) {
+				stats = RemoteStats.fromMap(sessionStats);
+			} else {
+				try {
+					stats = RemoteStats.fromMap(
+							probe.getSessionStats(Session.SESSION_STATS_FIELDS));
+				} catch (RPCException e) {
+					if (AndroidUtils.DEBUG) {
+						Log.d(TAG, remoteProfile.getNick() + ": " + e);
+					}
+					String error = e.getMessage();
+					stats = new RemoteStats(0, 0, 0, 0, 0,
+							error == null ? e.toString() : error);
+				} catch (Throwable t) {
+					Log.e(TAG, "poll " + remoteProfile.getNick(), t);
+					stats = new RemoteStats(0, 0, 0, 0, 0, t.toString());
+				}
+			}
+			if (stopped) {
+				return;
+			}
+			mapStats.put(profileID, stats);
+			for (DashboardListener l : listeners) {
+				l.remoteStatsChanged(profileID);
+			}
+			scheduleNext();
+		}
+
+		void scheduleNext() {
+			long interval = remoteProfile.calcUpdateInterval();
+			if (interval <= 0) {
+				// Manual refresh only; the list shows what we got when opened
+				return;
+			}
+			synchronized (RemoteDashboard.this) {
+				if (!stopped) {
+					future = getExecutor().schedule(this,
+							Math.max(MIN_POLL_INTERVAL_SECS, interval), TimeUnit.SECONDS);
+				}
+			}
+		}
+
+		/** Caller holds dashboard lock */
+		void stop() {
+			stopped = true;
+			if (future != null) {
+				future.cancel(false);
+				future = null;
+			}
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor executor;
+
+	/** Guarded by this */
+	private final Map<String, Poller> pollers = new HashMap<>();
+
+	@Thunk
+	final Map<String, RemoteStats> mapStats = new ConcurrentHashMap<>();
+
+	@Thunk
+	final List<DashboardListener> listeners = new CopyOnWriteArrayList<>();
+
+	RemoteDashboard() {
+	}
+
+	@Thunk
+	static synchronized ScheduledExecutorService getExecutor() {
+		if (executor == null) {
+			final AtomicInteger threadNo = new AtomicInteger();
+			executor = new ScheduledThreadPoolExecutor(MAX_POLL_THREADS,
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(@NonNull Runnable r) {
+							Thread thread = new Thread(r,
+									"RemoteDashboard" + threadNo.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			// Let the pool empty out when the list isn't showing
+			executor.setKeepAliveTime(THREAD_KEEPALIVE_SECS, TimeUnit.SECONDS);
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Stats of a full session, if it's on screen and refreshing on its own
+	 */
+	@Thunk
+	@Nullable
+	static Map<?, ?> getVisibleSessionStats(String profileID) {
+		Session session = SessionManager.findSession(profileID);
+		if (session == null || !session.isReadyForUI()
+				|| !session.isActivityVisible()) {
+			return null;
+		}
+		return session.getLastSessionStats();
+	}
+
+	/**
+	 * Poll these remotes, and stop polling any others.  Remotes already being
+	 * polled keep their schedule and stats.
+	 */
+	public void start(@NonNull RemoteProfile[] remoteProfiles) {
+		List<String> ids = new ArrayList<>();
+		boolean changed = false;
+		int numPolled;
+		synchronized (this) {
+			for (RemoteProfile remoteProfile : remoteProfiles) {
+				String id = remoteProfile.getID();
+				ids.add(id);
+				if (pollers.containsKey(id)) {
+					continue;
+				}
+				Poller poller = new Poller(remoteProfile);
+				if (!poller.probe.canProbe()) {
+					continue;
+				}
+				pollers.put(id, poller);
+				poller.future = getExecutor().schedule(poller, 0, TimeUnit.SECONDS);
+				changed = true;
+			}
+			Iterator<Map.Entry<String, Poller>> iter = pollers.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry<String, Poller> entry = iter.next();
+				if (!ids.contains(entry.getKey())) {
+					entry.getValue().stop();
+					mapStats.remove(entry.getKey());
+					iter.remove();
+					changed = true;
+				}
+			}
+			numPolled = pollers.size();
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "start: polling " + numPolled + " of "
+					+ remoteProfiles.length + " remotes");
+		}
+		if (changed) {
+			for (DashboardListener l : listeners) {
+				l.remoteStatsChanged(null);
+			}
+		}
+	}
+
+	/**
+	 * Stop polling.  Last stats are kept, so the list doesn't blank out when
+	 * coming back to it.
+	 */
+	public synchronized void stop() {
+		for (Poller poller : pollers.values()) {
+			poller.stop();
+		}
+		pollers.clear();
+	}
+
+	/**
+	 * Stop polling and forget stats, ex. when dashboard mode is turned off
+	 */
+	public void clear() {
+		stop();
+		mapStats.clear();
+		for (DashboardListener l : listeners) {
+			l.remoteStatsChanged(null);
+		}
+	}
+
+	@Nullable
+	public RemoteStats getStats(@NonNull String profileID) {
+		return mapStats.get(profileID);
+	}
+
+	/**
+	 * @return Sum of remotes that replied, or null if none have.
+	 * {@link RemoteStats#error} is not set.
+	 */
+	@Nullable
+	public RemoteStats getTotals() {
+		long downloadSpeed = 0;
+		long uploadSpeed = 0;
+		int activeCount = 0;
+		int pausedCount = 0;
+		int torrentCount = 0;
+		int numReplied = 0;
+		for (RemoteStats stats : mapStats.values()) {
+			if (stats.error != null) {
+				continue;
+			}
+			numReplied++;
+			downloadSpeed += stats.downloadSpeed;
+			uploadSpeed += stats.uploadSpeed;
+			activeCount += stats.activeCount;
+			pausedCount += stats.pausedCount;
+			torrentCount += stats.torrentCount;
+		}
+		if (numReplied == 0) {
+			return null;
+		}
+		return new RemoteStats(downloadSpeed, uploadSpeed, activeCount,
+				pausedCount, torrentCount, null);
+	}
+
+	/**
+	 * @return Number of remotes with stats from their last poll
+	 */
+	public int getNumReplied() {
+		int numReplied = 0;
+		for (RemoteStats stats : mapStats.values()) {
+			if (stats.error == null) {
+				numReplied++;
+			}
+		}
+		return numReplied;
+	}
+
+	public void addListener(@NonNull DashboardListener l) {
+		if (!listeners.contains(l)) {
+			listeners.add(l);
+		}
+	}
+
+	public void removeListener(@NonNull DashboardListener l) {
+		listeners.remove(l);
+	}
+}
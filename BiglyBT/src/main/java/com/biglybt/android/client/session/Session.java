@@ -113,9 +113,13 @@ public class Session
 		TransmissionVars.FIELD_FILESTATS_WANTED,
 	};
 
-	private static final String[] SESSION_STATS_FIELDS = {
+	/** Counts are cheap, and let {@link RemoteDashboard} reuse our stats */
+	static final String[] SESSION_STATS_FIELDS = {
 		TransmissionVars.TR_SESSION_STATS_DOWNLOAD_SPEED,
-		TransmissionVars.TR_SESSION_STATS_UPLOAD_SPEED
+		TransmissionVars.TR_SESSION_STATS_UPLOAD_SPEED,
+		TransmissionVars.TR_SESSION_STATS_ACTIVE_TORRENT_COUNT,
+		TransmissionVars.TR_SESSION_STATS_PAUSED_TORRENT_COUNT,
+		TransmissionVars.TR_SESSION_STATS_TORRENT_COUNT
 	};
 
 	private SessionSettings sessionSettings;
@@ -145,6 +149,9 @@ public class Session
 
 	private Map<?, ?> mapSessionStats;
 
+	@NonNull
+	final SpeedHistoryStore speedHistoryStore;
+
 	private String rpcRoot;
 
 	private final List<RpcExecuter> rpcExecuteList = new ArrayList<>();
@@ -181,6 +188,13 @@ public class Session
 	 */
 	public final Session_Torrent torrent = new Session_Torrent(this);
 
+	/**
+	 * Catches up after network changes
+	 */
+	@NonNull
+	final ConnectionManager.Connection connection = SessionManager.connectionManager.createConnection(
+			this);
+
 	private long contentPort;
 
 	private final Runnable handlerRunnable;
@@ -190,7 +204,10 @@ public class Session
 	public Session(final @NonNull RemoteProfile _remoteProfile,
 			FragmentActivity currentActivity) {
 		this.remoteProfile = _remoteProfile;
+		speedHistoryStore = new SpeedHistoryStore(_remoteProfile.getID());
+		speedHistoryStore.loadAsync();
 		setCurrentActivity(currentActivity);
+		torrent.loadStoredListAsync();
 
 		handlerRunnable = new HandlerRunnable();
 
@@ -378,6 +395,14 @@ public class Session
 		}
 	}
 
+	/**
+	 * @return "protocol://host:port/" of the remote, or null if not opened yet
+	 */
+	@Nullable
+	String getRpcRoot() {
+		return rpcRoot;
+	}
+
 	public long getContentPort() {
 		return contentPort;
 	}
@@ -649,7 +674,9 @@ public class Session
 								List<?> addedTorrentMaps, List<?> removedTorrentIDs) {
 
 							torrent.lastListReceivedOn = System.currentTimeMillis();
-							// XXX If this is a full refresh, we should clear list!
+							connection.listReceived();
+							// Stored torrents missing from the first full list come in
+							// as removed, see Session_Torrent.takeStoredOnlyIDs
 							torrent.addRemoveTorrents(callID, addedTorrentMaps,
 									removedTorrentIDs);
 						}
@@ -858,6 +885,9 @@ public class Session
 		long newUploadSpeed = MapUtils.getMapLong(map,
 				TransmissionVars.TR_SESSION_STATS_UPLOAD_SPEED, 0);
 
+		speedHistoryStore.sessionHistory.record(System.currentTimeMillis(),
+				newDownloadSpeed, newUploadSpeed);
+
 		if (oldDownloadSpeed != newDownloadSpeed
 				|| oldUploadSpeed != newUploadSpeed) {
 			for (SessionSettingsChangedListener l : sessionSettingsChangedListeners) {
@@ -866,6 +896,22 @@ public class Session
 		}
 	}
 
+	/**
+	 * @return Last "session-stats" reply, or null if none yet
+	 */
+	@Nullable
+	Map<?, ?> getLastSessionStats() {
+		return mapSessionStats;
+	}
+
+	/**
+	 * @return Session wide download and upload speeds, sampled from refreshes
+	 */
+	@NonNull
+	public SpeedHistory getSpeedHistory() {
+		return speedHistoryStore.sessionHistory;
+	}
+
 	public void addSessionSettingsChangedListeners(
 			SessionSettingsChangedListener l) {
 		ensureNotDestroyed();
@@ -924,6 +970,8 @@ public class Session
 	public void onlineStateChanged(boolean isOnline, boolean isOnlineMobile) {
 		ensureNotDestroyed();
 
+		connection.onlineStateChanged(isOnline);
+
 		if (!readyForUI) {
 			return;
 		}
@@ -968,6 +1016,7 @@ public class Session
 
 			setupNextRefresh();
 		}
+		connection.activityResumed();
 	}
 
 	public void activityLostForeground(Activity currentActivity) {
@@ -979,6 +1028,9 @@ public class Session
 		if (this.currentActivity == currentActivity) {
 			SessionManager.setCurrentVisibleSession(null);
 			activityVisible = false;
+			// What TorrentCompletionMonitor compares against, and the next
+			// session shows first
+			torrent.saveStoredListAsync();
 		}
 	}
 
@@ -1073,9 +1125,16 @@ public class Session
 			logd("destroy: " + AndroidUtils.getCompressedStackTrace());
 		}
 		cancelRefreshHandler();
+		connection.destroy();
+		// Last chance to send read flags; any left are kept in the results store
+		subscription.flushResultReads();
 		if (transmissionRPC != null) {
 			transmissionRPC.destroy();
 		}
+		// Before the cache is cleared, it tells us which histories are stale
+		speedHistoryStore.retainTorrents(torrent.getCacheForRead());
+		speedHistoryStore.saveAsync();
+		torrent.saveStoredListAsync();
 		torrent.clearCache();
 		torrent.clearFilesCaches(false);
 		availabilityListeners.clear();
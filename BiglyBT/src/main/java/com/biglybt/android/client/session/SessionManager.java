@@ -24,6 +24,7 @@ import com.biglybt.android.client.fragment.SessionGetter;
 
 import android.app.Activity;
 import android.app.SearchManager;
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -46,6 +47,13 @@ public class SessionManager
 
 	private static Session currentVisibleSession = null;
 
+	/** Shared by all sessions, so one big torrent can push out another's */
+	static final TorrentCacheBudget cacheBudget = new TorrentCacheBudget();
+
+	private static final RemoteDashboard remoteDashboard = new RemoteDashboard();
+
+	static final ConnectionManager connectionManager = new ConnectionManager();
+
 	public interface SessionChangedListener
 	{
 		void sessionChanged(@Nullable Session newSession);
@@ -58,6 +66,21 @@ public class SessionManager
 		}
 	}
 
+	/**
+	 * @return Existing, non-destroyed session, without creating one
+	 */
+	@Nullable
+	static Session findSession(String profileID) {
+		synchronized (mapSessions) {
+			Session session = mapSessions.get(profileID);
+			return session == null || session.isDestroyed() ? null : session;
+		}
+	}
+
+	public static @NonNull RemoteDashboard getRemoteDashboard() {
+		return remoteDashboard;
+	}
+
 	public static @NonNull Session getSession(@NonNull String profileID,
 			@Nullable FragmentActivity activity, @Nullable SessionChangedListener l) {
 		synchronized (mapSessions) {
@@ -196,6 +219,15 @@ public class SessionManager
 		}
 	}
 
+	/**
+	 * Delete what's kept on disk for a remote profile that has been removed
+	 */
+	public static void removeProfileData(@NonNull String profileID) {
+		SubscriptionResultsStore.removeProfile(profileID);
+		SpeedHistoryStore.removeProfile(profileID);
+		TorrentListStore.removeProfile(profileID);
+	}
+
 	public static void clearTorrentCaches(boolean keepLastUsed) {
 		int numClears = 0;
 		synchronized (mapSessions) {
@@ -228,6 +260,36 @@ public class SessionManager
 		}
 	}
 
+	/**
+	 * Evict files and peers lists of least recently used torrents, harder as
+	 * pressure rises.  Lists of the torrent being viewed are always kept.
+	 *
+	 * @param level {@link android.content.ComponentCallbacks2} trim level
+	 */
+	public static void trimTorrentLists(int level) {
+		long target;
+		switch (level) {
+			case ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE:
+			case ComponentCallbacks2.TRIM_MEMORY_MODERATE:
+				target = cacheBudget.getBudget() / 2;
+				break;
+			case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+				target = cacheBudget.getBudget() / 4;
+				break;
+			case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+			case ComponentCallbacks2.TRIM_MEMORY_COMPLETE:
+				target = 0;
+				break;
+			default:
+				return;
+		}
+		long evicted = cacheBudget.trimTo(target);
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "trimTorrentLists(" + level + "): ~" + evicted
+					+ " bytes evicted; " + cacheBudget.getStats());
+		}
+	}
+
 	public static Session findOrCreateSession(Fragment fragment,
 			@Nullable SessionChangedListener l) {
 		FragmentActivity activity = fragment.getActivity();
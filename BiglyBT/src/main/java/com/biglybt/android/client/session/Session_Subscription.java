@@ -34,6 +34,7 @@ import android.content.res.Resources;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
+import android.support.annotation.WorkerThread;
 import android.support.v7.app.AlertDialog;
 import android.text.TextUtils;
 import android.util.Log;
@@ -47,6 +48,12 @@ public class Session_Subscription
 {
 	private static final String TAG = "SessionSubs";
 
+	/** How long read flag changes are collected before sending them */
+	private static final long RESULT_READ_SYNC_DELAY_MS = 2000;
+
+	/** Wait before sending read flags again after the remote failed them */
+	private static final long RESULT_READ_RETRY_DELAY_MS = 30000;
+
 	public interface SubscriptionsRemovedListener
 	{
 		void subscriptionsRemoved(List<String> subscriptionIDs);
@@ -72,6 +79,23 @@ public class Session_Subscription
 
 	private boolean refreshingList;
 
+	private SubscriptionResultsStore resultsStore;
+
+	/**
+	 * subscription ID -> stored results.  null value when looked up, but
+	 * nothing stored.  Guarded by receivedListeners, like mapSubscriptions
+	 */
+	@Thunk
+	final Map<String, SubscriptionResultsStore.Entry> mapStoreEntries = new HashMap<>();
+
+	/** subscription ID -> (result ID -> read flag) not sent yet */
+	@Thunk
+	final Map<String, Map<String, Boolean>> mapPendingReads = new HashMap<>();
+
+	private Timer readSyncTimer;
+
+	private TimerTask readSyncTask;
+
 	Session_Subscription(Session session) {
 		this.session = session;
 	}
@@ -125,6 +149,13 @@ public class Session_Subscription
 
 	void destroy() {
 		receivedListeners.clear();
+		synchronized (mapPendingReads) {
+			if (readSyncTimer != null) {
+				readSyncTimer.cancel();
+				readSyncTimer = null;
+				readSyncTask = null;
+			}
+		}
 	}
 
 	public Map<?, ?> getSubscription(String id) {
@@ -248,7 +279,74 @@ public class Session_Subscription
 		});
 	}
 
+	/**
+	 * Shows the stored copy of the subscription's results (if not already
+	 * showing), sends any queued read flags, and then merges in the results
+	 * from the remote.
+	 */
 	public void refreshResults(final String subscriptionID) {
+		session.ensureNotDestroyed();
+
+		boolean loaded;
+		synchronized (receivedListeners) {
+			loaded = mapStoreEntries.containsKey(subscriptionID);
+		}
+		if (loaded) {
+			flushResultReads();
+			fetchResults(subscriptionID);
+			return;
+		}
+
+		// First look at this subscription, hit the disk off the calling thread
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				loadStoredResults(subscriptionID);
+				flushResultReads();
+				fetchResults(subscriptionID);
+			}
+		}, "SubsLoadResults");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Thunk
+	@WorkerThread
+	void loadStoredResults(String subscriptionID) {
+		SubscriptionResultsStore.Entry entry = getStoreEntry(subscriptionID);
+		if (entry == null) {
+			return;
+		}
+
+		synchronized (receivedListeners) {
+			Map map = MapUtils.getMapMap(mapSubscriptions, subscriptionID, null);
+			if (map == null) {
+				// Subscription list not retrieved yet (offline, or still connecting)
+				map = new HashMap();
+				map.put(TransmissionVars.FIELD_SUBSCRIPTION_NAME, entry.name);
+				if (mapSubscriptions == null) {
+					mapSubscriptions = new HashMap<>();
+				}
+				mapSubscriptions.put(subscriptionID, map);
+			}
+			if (map.get(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS) != null) {
+				return;
+			}
+			map.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS,
+					entry.getResultList());
+		}
+
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "loadStoredResults: " + entry.results.size() + " results, "
+					+ entry.pendingReads.size() + " unsynced reads for "
+					+ subscriptionID);
+		}
+
+		triggerListReceived();
+	}
+
+	@Thunk
+	void fetchResults(final String subscriptionID) {
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
@@ -282,27 +380,184 @@ public class Session_Subscription
 								List listResults = MapUtils.getMapList(mapSubscription,
 										TransmissionVars.FIELD_SUBSCRIPTION_RESULTS, null);
 
-								synchronized (receivedListeners) {
-									Map map = MapUtils.getMapMap(mapSubscriptions, subscriptionID,
-											null);
-									if (map != null) {
-										map.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS,
-												listResults);
-									}
-								}
+								mergeResults(subscriptionID, listResults);
 
-								if (receivedListeners.size() > 0) {
-									List<String> list = session.subscription.getList();
-									for (SubscriptionListReceivedListener l : receivedListeners) {
-										l.rpcSubscriptionListReceived(list);
-									}
-								}
+								triggerListReceived();
 							}
 						});
 			}
 		});
 	}
 
+	/**
+	 * Replaces the subscription's results with the remote's, keeping the
+	 * existing map for every result that didn't change, and read flags the
+	 * remote hasn't confirmed yet.  The store is only written when something
+	 * was added, changed or removed.
+	 */
+	@Thunk
+	@WorkerThread
+	void mergeResults(String subscriptionID, @Nullable List listResults) {
+		if (listResults == null) {
+			synchronized (receivedListeners) {
+				Map map = MapUtils.getMapMap(mapSubscriptions, subscriptionID, null);
+				if (map != null) {
+					map.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS, null);
+				}
+			}
+			return;
+		}
+
+		SubscriptionResultsStore.Entry entry = getStoreEntry(subscriptionID);
+		if (entry == null) {
+			entry = new SubscriptionResultsStore.Entry(null,
+					new HashMap<String, Map>(), new HashMap<String, Boolean>());
+		}
+
+		int numAdded = 0;
+		int numChanged = 0;
+		int numRemoved;
+		boolean nameChanged = false;
+		Map<String, Map> newResults = new HashMap<>(listResults.size());
+		List<Map> list = new ArrayList<>(listResults.size());
+
+		synchronized (receivedListeners) {
+			for (Object o : listResults) {
+				if (!(o instanceof Map)) {
+					continue;
+				}
+				Map result = (Map) o;
+				String resultID = MapUtils.getMapString(result,
+						TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ID, null);
+				if (resultID == null) {
+					list.add(result);
+					continue;
+				}
+
+				Boolean pendingRead = entry.pendingReads.get(resultID);
+				if (pendingRead != null) {
+					// remote hasn't seen our change yet
+					result.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD,
+							pendingRead);
+				}
+
+				Map oldResult = entry.results.get(resultID);
+				if (oldResult == null) {
+					numAdded++;
+				} else if (isSameResult(oldResult, result)) {
+					result = oldResult;
+				} else {
+					numChanged++;
+				}
+				newResults.put(resultID, result);
+				list.add(result);
+			}
+			numRemoved = entry.results.size() - (newResults.size() - numAdded);
+
+			entry.results.clear();
+			entry.results.putAll(newResults);
+
+			Map map = MapUtils.getMapMap(mapSubscriptions, subscriptionID, null);
+			if (map != null) {
+				map.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS, list);
+				String name = MapUtils.getMapString(map,
+						TransmissionVars.FIELD_SUBSCRIPTION_NAME, null);
+				if (name != null && !name.equals(entry.name)) {
+					entry.name = name;
+					nameChanged = true;
+				}
+			}
+
+			mapStoreEntries.put(subscriptionID, entry);
+
+			if (numAdded > 0 || numChanged > 0 || numRemoved > 0 || nameChanged) {
+				getResultsStore().save(subscriptionID, entry);
+			}
+		}
+
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "mergeResults: " + subscriptionID + ": " + list.size()
+					+ " results; " + numAdded + " new, " + numChanged + " changed, "
+					+ numRemoved + " removed");
+		}
+	}
+
+	/**
+	 * Results from the remote have their numbers as Strings, our copy may have
+	 * been converted to numbers already, so compare String values.
+	 */
+	private static boolean isSameResult(Map<?, ?> oldResult, Map<?, ?> result) {
+		if (oldResult.size() != result.size()) {
+			return false;
+		}
+		for (Object key : result.keySet()) {
+			if (!oldResult.containsKey(key)) {
+				return false;
+			}
+			if (!String.valueOf(result.get(key)).equals(
+					String.valueOf(oldResult.get(key)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Nullable
+	@WorkerThread
+	private SubscriptionResultsStore.Entry getStoreEntry(String subscriptionID) {
+		synchronized (receivedListeners) {
+			if (mapStoreEntries.containsKey(subscriptionID)) {
+				return mapStoreEntries.get(subscriptionID);
+			}
+		}
+
+		SubscriptionResultsStore.Entry entry = getResultsStore().load(
+				subscriptionID);
+
+		synchronized (receivedListeners) {
+			if (mapStoreEntries.containsKey(subscriptionID)) {
+				// Loaded by someone else while we were reading
+				return mapStoreEntries.get(subscriptionID);
+			}
+			mapStoreEntries.put(subscriptionID, entry);
+		}
+
+		if (entry != null && entry.pendingReads.size() > 0) {
+			// Read flags from a previous session that never made it to the remote
+			synchronized (mapPendingReads) {
+				Map<String, Boolean> map = mapPendingReads.get(subscriptionID);
+				if (map == null) {
+					map = new HashMap<>();
+					mapPendingReads.put(subscriptionID, map);
+				}
+				for (String resultID : entry.pendingReads.keySet()) {
+					if (!map.containsKey(resultID)) {
+						map.put(resultID, entry.pendingReads.get(resultID));
+					}
+				}
+			}
+		}
+		return entry;
+	}
+
+	private synchronized SubscriptionResultsStore getResultsStore() {
+		if (resultsStore == null) {
+			resultsStore = new SubscriptionResultsStore(
+					session.getRemoteProfile().getID());
+		}
+		return resultsStore;
+	}
+
+	@Thunk
+	void triggerListReceived() {
+		if (receivedListeners.size() > 0) {
+			List<String> list = session.subscription.getList();
+			for (SubscriptionListReceivedListener l : receivedListeners) {
+				l.rpcSubscriptionListReceived(list);
+			}
+		}
+	}
+
 	public void removeSubscription(@NonNull Activity activity,
 			@NonNull final String[] subscriptionIDs,
 			@Nullable final SubscriptionsRemovedListener l) {
@@ -345,6 +600,12 @@ public class Session_Subscription
 
 							@Override
 							public void rpcSuccess(String id, Map<?, ?> optionalMap) {
+								for (String subscriptionID : subscriptionIDs) {
+									synchronized (receivedListeners) {
+										mapStoreEntries.remove(subscriptionID);
+									}
+									getResultsStore().remove(subscriptionID);
+								}
 								refreshList();
 								if (l == null) {
 									return;
@@ -384,63 +645,147 @@ public class Session_Subscription
 		}
 	}
 
+	/**
+	 * Marks results read or unread locally right away.  The remote is told in
+	 * one call for all changes made within {@link #RESULT_READ_SYNC_DELAY_MS}.
+	 */
 	public void setResultRead(final String subscriptionID,
 			final List<String> resultIDs, final boolean read) {
+		session.ensureNotDestroyed();
+
+		synchronized (receivedListeners) {
+			SubscriptionResultsStore.Entry entry = mapStoreEntries.get(
+					subscriptionID);
+
+			Map map = MapUtils.getMapMap(mapSubscriptions, subscriptionID, null);
+			List listResults = MapUtils.getMapList(map,
+					TransmissionVars.FIELD_SUBSCRIPTION_RESULTS, null);
+			if (listResults != null) {
+				Set<String> ids = new HashSet<>(resultIDs);
+				int numNew = 0;
+				for (Object o : listResults) {
+					if (!(o instanceof Map)) {
+						continue;
+					}
+					Map result = (Map) o;
+					if (ids.contains(MapUtils.getMapString(result,
+							TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ID, null))) {
+						result.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD,
+								read);
+					}
+					if (!MapUtils.getMapBoolean(result,
+							TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, false)) {
+						numNew++;
+					}
+				}
+				map.put(TransmissionVars.FIELD_SUBSCRIPTION_NEWCOUNT, numNew);
+			}
+
+			if (entry != null) {
+				for (String resultID : resultIDs) {
+					entry.pendingReads.put(resultID, read);
+				}
+				getResultsStore().save(subscriptionID, entry);
+			}
+		}
+
+		synchronized (mapPendingReads) {
+			Map<String, Boolean> map = mapPendingReads.get(subscriptionID);
+			if (map == null) {
+				map = new HashMap<>();
+				mapPendingReads.put(subscriptionID, map);
+			}
+			for (String resultID : resultIDs) {
+				map.put(resultID, read);
+			}
+
+			scheduleResultReadSync(RESULT_READ_SYNC_DELAY_MS);
+		}
+
+		triggerListReceived();
+	}
+
+	/**
+	 * Must be called while holding {@link #mapPendingReads}
+	 */
+	private void scheduleResultReadSync(long delayMS) {
+		if (readSyncTask != null) {
+			return;
+		}
+		if (readSyncTimer == null) {
+			readSyncTimer = new Timer("SubsReadSync", true);
+		}
+		readSyncTask = new TimerTask() {
+			@Override
+			public void run() {
+				flushResultReads();
+			}
+		};
+		readSyncTimer.schedule(readSyncTask, delayMS);
+	}
+
+	/**
+	 * Sends all queued read flags, over all subscriptions, in one call
+	 */
+	@Thunk
+	void flushResultReads() {
+		final Map<String, Map<String, Boolean>> mapToSend;
+		synchronized (mapPendingReads) {
+			if (readSyncTask != null) {
+				readSyncTask.cancel();
+				readSyncTask = null;
+			}
+			if (mapPendingReads.size() == 0) {
+				return;
+			}
+			mapToSend = new HashMap<>(mapPendingReads);
+			mapPendingReads.clear();
+		}
+		if (session.isDestroyed()) {
+			// Still in the store, will be sent next time the subscription is viewed
+			return;
+		}
+
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
 				Map<String, Object> map = new HashMap<>(2);
 				Map<String, Object> mapIDs = new HashMap<>(2);
-				Map<String, Object> mapFields = new HashMap<>(2);
-				Map<String, Object> mapResults = new HashMap<>(2);
-
-				for (String id : resultIDs) {
-					HashMap<String, Object> mapResultFields = new HashMap<>(2);
-					mapResultFields.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD,
-							read);
-					mapResults.put(id, mapResultFields);
-				}
 
-				mapFields.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS, mapResults);
-				mapIDs.put(subscriptionID, mapFields);
+				for (String subscriptionID : mapToSend.keySet()) {
+					Map<String, Boolean> mapReads = mapToSend.get(subscriptionID);
+					Map<String, Object> mapFields = new HashMap<>(2);
+					Map<String, Object> mapResults = new HashMap<>(mapReads.size());
+
+					for (String resultID : mapReads.keySet()) {
+						HashMap<String, Object> mapResultFields = new HashMap<>(2);
+						mapResultFields.put(
+								TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD,
+								mapReads.get(resultID));
+						mapResults.put(resultID, mapResultFields);
+					}
+
+					mapFields.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS,
+							mapResults);
+					mapIDs.put(subscriptionID, mapFields);
+				}
 				map.put("ids", mapIDs);
 
 				rpc.simpleRpcCall(TransmissionVars.METHOD_SUBSCRIPTION_SET, map,
 						new ReplyMapReceivedListener() {
 							@Override
 							public void rpcError(String id, Exception e) {
-
+								requeueResultReads(mapToSend);
 							}
 
 							@Override
 							public void rpcFailure(String id, String message) {
-
+								requeueResultReads(mapToSend);
 							}
 
 							@Override
 							public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-								if (optionalMap == null) {
-									return;
-								}
-
-								refreshResults(subscriptionID);
-								/* Instead of refreshSubscriptionResult, we could use this:
-								for (Object o: optionalMap.keySet()) {
-									String subID = (String) o;
-									Object v = optionalMap.get(o);
-									if (v instanceof Map) {
-										Map map = (Map) v;
-										if (map.size() > 1) {
-											Map<?, ?> mapSubscription = mapSubscriptions.get(subID);
-											if (mapSubscription != null) {
-												mapSubscription.clear();
-												mapSubscription.putAll(map);
-											}
-										}
-									}
-									// TODO: trigger
-								}
-								*/
+								confirmResultReads(mapToSend);
 
 								// newResultsCount probably changed
 								refreshList();
@@ -450,6 +795,55 @@ public class Session_Subscription
 		});
 	}
 
+	/**
+	 * Puts back read flags that failed to send, unless they've been changed
+	 * again since.  They go out with the next batch, or on their own after
+	 * {@link #RESULT_READ_RETRY_DELAY_MS}.
+	 */
+	@Thunk
+	void requeueResultReads(Map<String, Map<String, Boolean>> mapFailed) {
+		synchronized (mapPendingReads) {
+			for (String subscriptionID : mapFailed.keySet()) {
+				Map<String, Boolean> map = mapPendingReads.get(subscriptionID);
+				if (map == null) {
+					map = new HashMap<>();
+					mapPendingReads.put(subscriptionID, map);
+				}
+				Map<String, Boolean> mapReads = mapFailed.get(subscriptionID);
+				for (String resultID : mapReads.keySet()) {
+					if (!map.containsKey(resultID)) {
+						map.put(resultID, mapReads.get(resultID));
+					}
+				}
+			}
+			if (!session.isDestroyed()) {
+				scheduleResultReadSync(RESULT_READ_RETRY_DELAY_MS);
+			}
+		}
+	}
+
+	@Thunk
+	void confirmResultReads(Map<String, Map<String, Boolean>> mapSent) {
+		for (String subscriptionID : mapSent.keySet()) {
+			Map<String, Boolean> mapReads = mapSent.get(subscriptionID);
+			synchronized (receivedListeners) {
+				SubscriptionResultsStore.Entry entry = mapStoreEntries.get(
+						subscriptionID);
+				if (entry == null) {
+					continue;
+				}
+				for (String resultID : mapReads.keySet()) {
+					// Only if not flipped again while the call was running
+					if (mapReads.get(resultID).equals(
+							entry.pendingReads.get(resultID))) {
+						entry.pendingReads.remove(resultID);
+					}
+				}
+				getResultsStore().save(subscriptionID, entry);
+			}
+		}
+	}
+
 	public void setField(final String subscriptionID,
 			final Map<String, Object> itemsToSet) {
 		session._executeRpc(new Session.RpcExecuter() {
@@ -26,6 +26,7 @@ import com.biglybt.util.Thunk;
 
 import android.support.annotation.Nullable;
 import android.support.v4.util.LongSparseArray;
+import android.util.Log;
 
 /**
  * Tag methods for a {@link Session}
@@ -35,20 +36,59 @@ import android.support.v4.util.LongSparseArray;
 
 public class Session_Tag
 {
+	private static final String TAG = "SessionTag";
 
 	@Thunk
 	final Session session;
 
 	private final List<TagListReceivedListener> tagListReceivedListeners = new CopyOnWriteArrayList<>();
 
+	/**
+	 * Replaced as a whole, never modified once assigned, so readers can use it
+	 * without locking
+	 */
 	@Thunk
-	LongSparseArray<Map<?, ?>> mapTags;
+	volatile LongSparseArray<Map<?, ?>> mapTags;
 
 	@Thunk
 	boolean needsTagRefresh = false;
 
 	private Long tagAllUID = null;
 
+	/**
+	 * Tags whose count matched the torrents' tag-uids the last time the remote
+	 * sent counts.  Their counts are kept up to date locally, without asking
+	 * the remote.  Guarded by session.mLock
+	 */
+	private final Set<Long> setLocallyCountedUIDs = new HashSet<>();
+
+	/** User categories; a torrent with none of them is uncategorized */
+	private final Set<Long> setUserCategoryUIDs = new HashSet<>();
+
+	/** -1 if none */
+	private long uncategorizedUID = -1;
+
+	/**
+	 * Tag uids torrents had, and number of torrents, when the remote last sent
+	 * counts.  Guarded by session.mLock
+	 */
+	private Set<Long> remoteCountedTagUIDs = Collections.emptySet();
+
+	private int remoteCountedNumTorrents = -1;
+
+	/**
+	 * Torrents' tag-uids counted, plus the numbers the "All" and
+	 * "Uncategorized" categories are derived from
+	 */
+	static class TagUIDCounts
+	{
+		final Map<Long, Integer> counts = new HashMap<>();
+
+		int numTorrents;
+
+		int numUncategorized;
+	}
+
 	Session_Tag(Session session) {
 		this.session = session;
 	}
@@ -88,10 +128,11 @@ public class Session_Tag
 				}
 			}
 		}
-		if (mapTags == null) {
+		LongSparseArray<Map<?, ?>> tags = mapTags;
+		if (tags == null) {
 			return null;
 		}
-		Map<?, ?> map = mapTags.get(uid);
+		Map<?, ?> map = tags.get(uid);
 		if (map == null) {
 			needsTagRefresh = true;
 		}
@@ -100,25 +141,23 @@ public class Session_Tag
 
 	public Long getDownloadStateUID(int stateID) {
 		session.ensureNotDestroyed();
-		synchronized (session.mLock) {
-			if (mapTags == null) {
-				return null;
+		LongSparseArray<Map<?, ?>> tags = mapTags;
+		if (tags == null) {
+			return null;
+		}
+		for (int i = 0, num = tags.size(); i < num; i++) {
+			Map<?, ?> mapTag = tags.valueAt(i);
+			long tagType = MapUtils.getMapLong(mapTag,
+					TransmissionVars.FIELD_TAG_TYPE, -1);
+			if (tagType != 2) {
+				continue;
 			}
-			for (int i = 0, num = mapTags.size(); i < num; i++) {
-				Map<?, ?> mapTag = mapTags.valueAt(i);
-				long tagType = MapUtils.getMapLong(mapTag,
-						TransmissionVars.FIELD_TAG_TYPE, -1);
-				if (tagType != 2) {
-					continue;
-				}
-				long tagID = MapUtils.getMapLong(mapTag, TransmissionVars.FIELD_TAG_ID,
-						-1);
-				if (tagID == stateID) {
-					return ((Number) mapTag.get(
-							TransmissionVars.FIELD_TAG_UID)).longValue();
-				}
+			long tagID = MapUtils.getMapLong(mapTag, TransmissionVars.FIELD_TAG_ID,
+					-1);
+			if (tagID == stateID) {
+				return ((Number) mapTag.get(
+						TransmissionVars.FIELD_TAG_UID)).longValue();
 			}
-
 		}
 		return null;
 	}
@@ -132,16 +171,14 @@ public class Session_Tag
 	public List<Map<?, ?>> getTags() {
 		session.ensureNotDestroyed();
 
-		if (mapTags == null) {
+		LongSparseArray<Map<?, ?>> tags = mapTags;
+		if (tags == null) {
 			return null;
 		}
 
-		ArrayList<Map<?, ?>> list = new ArrayList<>();
-
-		synchronized (session.mLock) {
-			for (int i = 0, num = mapTags.size(); i < num; i++) {
-				list.add(mapTags.valueAt(i));
-			}
+		ArrayList<Map<?, ?>> list = new ArrayList<>(tags.size());
+		for (int i = 0, num = tags.size(); i < num; i++) {
+			list.add(tags.valueAt(i));
 		}
 		Collections.sort(list, new Comparator<Map<?, ?>>() {
 			@Override
@@ -229,6 +266,9 @@ public class Session_Tag
 			}
 
 			mapTags = mapNewTags;
+
+			updateCategoryUIDs();
+			calibrateLocalCounts();
 		}
 
 		if (tagListReceivedListeners.size() > 0) {
@@ -239,6 +279,149 @@ public class Session_Tag
 		}
 	}
 
+	/**
+	 * Decide which tags can have their count derived from torrents' tag-uids,
+	 * by comparing the remote's counts against our own.
+	 */
+	private void calibrateLocalCounts() {
+		setLocallyCountedUIDs.clear();
+		if (session.torrent.getLastListReceivedOn() == 0) {
+			// Torrent list not in yet, nothing to compare against
+			remoteCountedNumTorrents = -1;
+			return;
+		}
+		TagUIDCounts counts = session.torrent.countTagUIDs(setUserCategoryUIDs);
+		remoteCountedTagUIDs = counts.counts.keySet();
+		remoteCountedNumTorrents = counts.numTorrents;
+		for (int i = 0, num = mapTags.size(); i < num; i++) {
+			Map<?, ?> mapTag = mapTags.valueAt(i);
+			if (mapTag == null) {
+				continue;
+			}
+			long uid = mapTags.keyAt(i);
+			if (isDerivedCategory(uid)) {
+				setLocallyCountedUIDs.add(uid);
+				continue;
+			}
+			long count = MapUtils.getMapLong(mapTag,
+					TransmissionVars.FIELD_TAG_COUNT, -1);
+			if (count == getLocalCount(counts, uid)) {
+				setLocallyCountedUIDs.add(uid);
+			}
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "calibrateLocalCounts: " + setLocallyCountedUIDs.size()
+					+ " of " + mapTags.size() + " tags counted locally");
+		}
+	}
+
+	/**
+	 * Must be called while holding session.mLock
+	 */
+	private void updateCategoryUIDs() {
+		setUserCategoryUIDs.clear();
+		uncategorizedUID = -1;
+		for (int i = 0, num = mapTags.size(); i < num; i++) {
+			Map<?, ?> mapTag = mapTags.valueAt(i);
+			if (MapUtils.getMapInt(mapTag, TransmissionVars.FIELD_TAG_TYPE, 0) != 1) {
+				continue;
+			}
+			// USER=0,ALL=1,UNCAT=2
+			int catType = MapUtils.getMapInt(mapTag,
+					TransmissionVars.FIELD_TAG_CATEGORY_TYPE, -1);
+			if (catType == 0) {
+				setUserCategoryUIDs.add(mapTags.keyAt(i));
+			} else if (catType == 2) {
+				uncategorizedUID = mapTags.keyAt(i);
+			}
+		}
+	}
+
+	/**
+	 * @return true for the "All" and "Uncategorized" categories, whose members
+	 * aren't listed in tag-uids but follow from the torrent list
+	 */
+	private boolean isDerivedCategory(long uid) {
+		return (tagAllUID != null && uid == tagAllUID) || uid == uncategorizedUID;
+	}
+
+	private int getLocalCount(TagUIDCounts counts, long uid) {
+		if (tagAllUID != null && uid == tagAllUID) {
+			return counts.numTorrents;
+		}
+		if (uid == uncategorizedUID) {
+			return counts.numUncategorized;
+		}
+		Integer count = counts.counts.get(uid);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Called when torrents were added or removed, or their tag-uids changed.
+	 * Updates counts locally.  Tags whose count can't be derived (some state
+	 * tags) are only asked of the remote when torrents were added or removed,
+	 * or the set of tags torrents have changed, not on every tag-uids change.
+	 * An unknown tag uid triggers a full tag refresh on the next refresh
+	 * cycle.
+	 */
+	void updateCountsFromTorrents() {
+		if (!session.getSupports(RPCSupports.SUPPORTS_TAGS)) {
+			return;
+		}
+		boolean needRemoteCounts = false;
+		boolean changed = false;
+		synchronized (session.mLock) {
+			if (mapTags == null || mapTags.size() == 0) {
+				return;
+			}
+			TagUIDCounts counts = session.torrent.countTagUIDs(setUserCategoryUIDs);
+			for (Long uid : counts.counts.keySet()) {
+				if (mapTags.indexOfKey(uid) < 0) {
+					needsTagRefresh = true;
+					break;
+				}
+			}
+			boolean tagSetChanged = counts.numTorrents != remoteCountedNumTorrents
+					|| !counts.counts.keySet().equals(remoteCountedTagUIDs);
+			for (int i = 0, num = mapTags.size(); i < num; i++) {
+				long uid = mapTags.keyAt(i);
+				Map mapTag = mapTags.valueAt(i);
+				if (mapTag == null) {
+					continue;
+				}
+				if (!setLocallyCountedUIDs.contains(uid)
+						&& !isDerivedCategory(uid)) {
+					if (tagSetChanged) {
+						needRemoteCounts = true;
+					}
+					continue;
+				}
+				long count = getLocalCount(counts, uid);
+				//noinspection SynchronizationOnLocalVariableOrMethodParameter
+				synchronized (mapTag) {
+					if (MapUtils.getMapLong(mapTag, TransmissionVars.FIELD_TAG_COUNT,
+							-1) != count) {
+						//noinspection unchecked
+						mapTag.put(TransmissionVars.FIELD_TAG_COUNT, count);
+						changed = true;
+					}
+				}
+			}
+		}
+
+		if (needRemoteCounts && !needsTagRefresh) {
+			refreshTags(true);
+			return;
+		}
+
+		if (changed && tagListReceivedListeners.size() > 0) {
+			List<Map<?, ?>> tags = getTags();
+			for (TagListReceivedListener l : tagListReceivedListeners) {
+				l.tagListReceived(tags);
+			}
+		}
+	}
+
 	public void refreshTags(boolean onlyRefreshCount) {
 		if (!session.getSupports(RPCSupports.SUPPORTS_TAGS)) {
 			return;
@@ -20,12 +20,18 @@ import java.io.*;
 import java.net.ConnectException;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.biglybt.android.client.*;
 import com.biglybt.android.client.activity.TorrentOpenOptionsActivity;
 import com.biglybt.android.client.rpc.*;
 import com.biglybt.android.util.FileUtils;
+import com.biglybt.android.util.IndexRangeSet;
 import com.biglybt.android.util.MapUtils;
+import com.biglybt.android.util.StoreFiles;
 import com.biglybt.android.widget.CustomToast;
 import com.biglybt.util.Base64Encode;
 import com.biglybt.util.Thunk;
@@ -58,8 +64,27 @@ public class Session_Torrent
 	@Thunk
 	final Session session;
 
-	/** <Key, TorrentMap> */
-	private final LongSparseArray<Map<?, ?>> mapOriginal;
+	/**
+	 * &lt;Key, TorrentMap&gt;.  Readers use the current snapshot without locking,
+	 * writers hold {@link #cacheWriteLock} and publish a new snapshot
+	 */
+	private final AtomicReference<TorrentCacheSnapshot> cacheRef = new AtomicReference<>(
+			TorrentCacheSnapshot.EMPTY);
+
+	private final ReentrantLock cacheWriteLock = new ReentrantLock();
+
+	/** Number of snapshots published.  Guarded by cacheWriteLock */
+	private long statCacheWrites;
+
+	/** Writers that had to wait for another writer */
+	private long statCacheWriteContention;
+
+	private long statCacheWriteTotalMS;
+
+	private long statCacheWriteMaxMS;
+
+	/** Reads that happened during a write, and would have blocked on a lock */
+	private final AtomicLong statCacheReadsDuringWrite = new AtomicLong();
 
 	/**
 	 * Store the last torrent id that was retrieved with file info, so when we
@@ -75,14 +100,27 @@ public class Session_Torrent
 
 	private final List<TorrentListRefreshingListener> refreshingListeners = new CopyOnWriteArrayList<>();
 
-	private final List<TorrentListReceivedListener> receivedListeners = new CopyOnWriteArrayList<>();
+	private final TorrentListEventBus receivedBus = new TorrentListEventBus();
+
+	private final TorrentMutations mutations = new TorrentMutations(this);
 
 	@Thunk
 	long lastListReceivedOn;
 
+	/** Created on first use; the profile isn't set yet when we're constructed */
+	private TorrentListStore listStore;
+
+	/** Cache version last written to {@link #listStore} */
+	private long storedVersion = -1;
+
+	/**
+	 * Ids put in the cache from {@link #listStore}, until the first full list
+	 * tells us which of them the remote still has.  Guarded by cacheWriteLock
+	 */
+	private Set<Long> storedOnlyIDs;
+
 	Session_Torrent(Session session) {
 		this.session = session;
-		this.mapOriginal = new LongSparseArray<>();
 	}
 
 	private void activateOpenOptionsDialog(long torrentID, Map<?, ?> mapTorrent,
@@ -148,10 +186,14 @@ public class Session_Torrent
 						+ Arrays.toString(removedTorrentIDs.toArray()));
 			}
 		}
-		int numAddedOrRemoved = 0;
-		synchronized (session.mLock) {
+		boolean tagMembershipChanged = false;
+		Set<Long> droppedIDs = null;
+		// torrent id -> estimated bytes of its files and peers lists
+		Map<Long, Long> listSizes = null;
+		long startedOn = System.currentTimeMillis();
+		TorrentCacheSnapshot.Builder cache = beginCacheEdit();
+		try {
 			if (addedTorrentIDs.size() > 0) {
-				numAddedOrRemoved = addedTorrentIDs.size();
 				boolean addTorrentSilently = session.getRemoteProfile().isAddTorrentSilently();
 				List<String> listOpenOptionHashes = addTorrentSilently ? null
 						: session.remoteProfile.getOpenOptionsWaiterList();
@@ -165,29 +207,45 @@ public class Session_Torrent
 					if (!(key instanceof Number)) {
 						continue;
 					}
+					long torrentID = ((Number) key).longValue();
 					if (mapUpdatedTorrent.size() == 1) {
+						// id-only: a failed request
+						mutations.fetchFailed(callID, torrentID);
 						continue;
 					}
 
-					long torrentID = ((Number) key).longValue();
-
-					Map old = mapOriginal.get(torrentID, null);
-					mapOriginal.put(torrentID, mapUpdatedTorrent);
+					// Keys sent by the remote, before merging with the cached map
+					Set<?> incomingKeys = mutations.isEmpty() ? null
+							: new HashSet<>(mapUpdatedTorrent.keySet());
+
+					Map old = cache.get(torrentID);
+					cache.put(torrentID, mapUpdatedTorrent);
+
+					boolean hasLists = mapUpdatedTorrent.containsKey(
+							TransmissionVars.FIELD_TORRENT_FILES)
+							|| mapUpdatedTorrent.containsKey(
+									TransmissionVars.FIELD_TORRENT_PEERS);
+
+					if (old == null) {
+						tagMembershipChanged = true;
+					} else if (mapUpdatedTorrent.containsKey(
+							TransmissionVars.FIELD_TORRENT_TAG_UIDS)
+							&& !MapUtils.getMapList(mapUpdatedTorrent,
+									TransmissionVars.FIELD_TORRENT_TAG_UIDS,
+									Collections.emptyList()).equals(
+											MapUtils.getMapList(old,
+													TransmissionVars.FIELD_TORRENT_TAG_UIDS,
+													Collections.emptyList()))) {
+						tagMembershipChanged = true;
+					}
 
 					if (mapUpdatedTorrent.containsKey(
 							TransmissionVars.FIELD_TORRENT_FILES)) {
 						lastTorrentWithFiles = torrentID;
 					}
 
-					// TODO: Send param to BiglyBT remote client to ensure it doesn't
-					// escape!
-					for (Object torrentKey : mapUpdatedTorrent.keySet()) {
-						Object o = mapUpdatedTorrent.get(torrentKey);
-						if (o instanceof String) {
-							mapUpdatedTorrent.put(torrentKey,
-									AndroidUtils.unescapeXML((String) o));
-						}
-					}
+					// Strings were unescaped and files given an index by
+					// TorrentMapNormalizer when the reply was decoded
 
 					if (old != null) {
 						// merge anything missing in new map with old
@@ -199,63 +257,55 @@ public class Session_Torrent
 						}
 					}
 
-					List<?> listFiles = MapUtils.getMapList(mapUpdatedTorrent,
+					if (old != null) {
+						mergeList(TransmissionVars.FIELD_TORRENT_FILES, mapUpdatedTorrent,
+								old);
+					}
+
+					// ".dnd_az!" folder is removed from names while building the table
+					List<?> listMergedFiles = MapUtils.getMapList(mapUpdatedTorrent,
 							TransmissionVars.FIELD_TORRENT_FILES, null);
+					if (listMergedFiles != null
+							&& !(listMergedFiles instanceof FileTable)) {
+						FileTable table = FileTable.from(listMergedFiles);
+						mapUpdatedTorrent.put(TransmissionVars.FIELD_TORRENT_FILES, table);
+					}
 
-					if (listFiles != null) {
+					long now = System.currentTimeMillis();
+					mapUpdatedTorrent.put(TransmissionVars.FIELD_LAST_UPDATED, now);
 
-						// merge "fileStats" into "files"
-						List<?> listFileStats = MapUtils.getMapList(mapUpdatedTorrent,
-								TransmissionVars.FIELD_TORRENT_FILESTATS, null);
-						if (listFileStats != null) {
-							for (int i = 0; i < listFiles.size(); i++) {
-								Map mapFile = (Map) listFiles.get(i);
-								Map mapFileStats = (Map) listFileStats.get(i);
-								mapFile.putAll(mapFileStats);
-							}
-							mapUpdatedTorrent.remove(
-									TransmissionVars.FIELD_TORRENT_FILESTATS);
-						}
+					if (mapUpdatedTorrent.containsKey(
+							TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD)) {
+						session.speedHistoryStore.recordTorrent(torrentID, now,
+								MapUtils.getMapLong(mapUpdatedTorrent,
+										TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD, 0),
+								MapUtils.getMapLong(mapUpdatedTorrent,
+										TransmissionVars.FIELD_TORRENT_RATE_UPLOAD, 0));
+					}
 
-						// add an "index" key, for places that only get the file map
-						// and has no reference to index
-						for (int i = 0; i < listFiles.size(); i++) {
-							Map mapFile = (Map) listFiles.get(i);
-							if (!mapFile.containsKey(TransmissionVars.FIELD_FILES_INDEX)) {
-								mapFile.put(TransmissionVars.FIELD_FILES_INDEX, i);
-							} else {
-								// assume if one has index, they all do
-								break;
-							}
-						}
-						
-						// hack to remove .dnd_az! path
-						// The proper way to do this would be to get the "dnd" directory
-						// name from RPC, or have the RPC not include the "dnd" part of the
-						// path.  The latter would be preferable.
-						for (int i = 0; i < listFiles.size(); i++) {
-							Map mapFile = (Map) listFiles.get(i);
-							final Object o = mapFile.get(TransmissionVars.FIELD_FILES_NAME);
-							if (o instanceof String) {
-								String name = (String) o;
-
-								final int posDND = name.indexOf(".dnd_az!");
-								if (posDND >= 0 && posDND + 8 < name.length()) {
-									String s = name.substring(0, posDND) + name.substring(posDND + 9);
-									mapFile.put(TransmissionVars.FIELD_FILES_NAME, s);
-								}
-							}
+					if (incomingKeys != null && !mutations.reconcile(callID, torrentID,
+							mapUpdatedTorrent, incomingKeys)) {
+						cache.remove(torrentID);
+						if (droppedIDs == null) {
+							droppedIDs = new HashSet<>();
 						}
+						droppedIDs.add(torrentID);
+						continue;
 					}
 
-					if (old != null) {
-						mergeList(TransmissionVars.FIELD_TORRENT_FILES, mapUpdatedTorrent,
-								old);
+					if (hasLists) {
+						if (listSizes == null) {
+							listSizes = new HashMap<>();
+						}
+						listSizes.put(torrentID,
+								TorrentCacheBudget.estimateListBytes(MapUtils.getMapList(
+										mapUpdatedTorrent, TransmissionVars.FIELD_TORRENT_FILES,
+										null))
+										+ TorrentCacheBudget.estimateListBytes(
+												MapUtils.getMapList(mapUpdatedTorrent,
+														TransmissionVars.FIELD_TORRENT_PEERS, null)));
 					}
 
-					mapUpdatedTorrent.put(TransmissionVars.FIELD_LAST_UPDATED,
-							System.currentTimeMillis());
-
 					if (!addTorrentSilently) {
 						activateOpenOptionsDialog(torrentID, mapUpdatedTorrent,
 								listOpenOptionHashes);
@@ -273,9 +323,11 @@ public class Session_Torrent
 				for (Object removedItem : removedTorrentIDs) {
 					if (removedItem instanceof Number) {
 						long torrentID = ((Number) removedItem).longValue();
-						if (mapOriginal.indexOfKey(torrentID) >= 0) {
-							mapOriginal.remove(torrentID);
-							numAddedOrRemoved++;
+						session.speedHistoryStore.removeTorrent(torrentID);
+						SessionManager.cacheBudget.remove(this, torrentID);
+						if (cache.contains(torrentID)) {
+							cache.remove(torrentID);
+							tagMembershipChanged = true;
 						} else {
 							if (AndroidUtils.DEBUG) {
 								Log.d(TAG, "addRemoveTorrents: Can't remove " + torrentID
@@ -285,15 +337,187 @@ public class Session_Torrent
 					}
 				}
 			}
+			mutations.listReceived(callID);
+		} finally {
+			endCacheEdit(cache, startedOn);
+		}
+
+		if (listSizes != null) {
+			// after publishing, eviction takes the write lock again
+			for (Long torrentID : listSizes.keySet()) {
+				SessionManager.cacheBudget.record(this, torrentID,
+						listSizes.get(torrentID));
+			}
+		}
+
+		if (tagMembershipChanged) {
+			session.tag.updateCountsFromTorrents();
+		}
+
+		if (droppedIDs != null) {
+			// Removed locally, the remote just hadn't caught up yet
+			List<Object> list = new ArrayList<>(addedTorrentIDs.size());
+			for (Object item : addedTorrentIDs) {
+				Object id = (item instanceof Map) ? ((Map) item).get("id") : null;
+				if (!(id instanceof Number)
+						|| !droppedIDs.contains(((Number) id).longValue())) {
+					list.add(item);
+				}
+			}
+			addedTorrentIDs = list;
+		}
+
+		receivedBus.post(callID, addedTorrentIDs, removedTorrentIDs);
+	}
+
+	/**
+	 * @return callID that torrent lists fetched to confirm a mutation must use
+	 */
+	public static String getMutationCallID(long mutationID) {
+		return TorrentMutations.Mutation.getCallID(mutationID);
+	}
+
+	/**
+	 * Set torrent fields in the cache now, ahead of the remote.  Call
+	 * {@link #mutationAccepted(long, Runnable)} or
+	 * {@link #mutationRejected(long)} once the remote replies.
+	 *
+	 * @param torrentIDs null for all torrents.  Changes are ignored then, but
+	 *                   the next torrent list after acceptance confirms.
+	 * @param changes Field -> new value.  Can be empty, for requests with an
+	 *                outcome we can't predict
+	 * @param confirmOnAnyUpdate Any update to the torrent after the remote
+	 *                           accepted confirms, not only one having the
+	 *                           new values
+	 * @return mutation id
+	 */
+	public long mutateTorrents(@Nullable long[] torrentIDs,
+			@NonNull Map<String, Object> changes, boolean confirmOnAnyUpdate) {
+		return applyMutation(mutations.create(torrentIDs, changes, null, null,
+				null, false, confirmOnAnyUpdate || changes.size() == 0));
+	}
+
+	/**
+	 * Set a field on some files of a torrent in the cache now, ahead of the
+	 * remote.
+	 *
+	 * @see #mutateTorrents(long[], Map, boolean)
+	 */
+	public long mutateFiles(long torrentID, @NonNull IndexRangeSet fileIndexes,
+			@NonNull String fileField, @NonNull Object value) {
+		return applyMutation(mutations.create(new long[] {
+			torrentID
+		}, Collections.<String, Object> emptyMap(), fileIndexes, fileField,
+				value, false, false));
+	}
+
+	/**
+	 * Remove torrents from the cache now, ahead of the remote.  They come back
+	 * if the remote rejects the removal.
+	 */
+	public long mutateRemove(@NonNull long[] torrentIDs) {
+		return applyMutation(mutations.create(torrentIDs,
+				Collections.<String, Object> emptyMap(), null, null, null, true,
+				false));
+	}
+
+	/**
+	 * @param fetcher Fetches the affected torrents, using
+	 *                {@link #getMutationCallID(long)}, if the next refreshes
+	 *                don't confirm the change in time.  null if the change
+	 *                doesn't need confirming
+	 */
+	public void mutationAccepted(long mutationID, @Nullable Runnable fetcher) {
+		mutations.accepted(mutationID, fetcher);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void mutationRejected(long mutationID) {
+		TorrentMutations.Mutation mutation = mutations.remove(mutationID);
+		if (mutation == null || mutation.torrentIDs == null) {
+			return;
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "Rolling back " + mutation.getCallID());
+		}
+
+		List<Map<?, ?>> listChanged = new ArrayList<>();
+		long startedOn = System.currentTimeMillis();
+		TorrentCacheSnapshot.Builder cache = beginCacheEdit();
+		try {
+			for (long torrentID : mutation.torrentIDs) {
+				if (mutation.isRemove) {
+					Map<?, ?> map = mutation.removedMaps.get(torrentID);
+					if (map != null && !cache.contains(torrentID)) {
+						cache.put(torrentID, map);
+						listChanged.add(map);
+					}
+					continue;
+				}
+				Map<?, ?> map = cache.get(torrentID);
+				if (map == null) {
+					continue;
+				}
+				Map copy = new HashMap<>(map);
+				TorrentMutations.rollback(mutation, torrentID, copy);
+				copy.put(TransmissionVars.FIELD_LAST_UPDATED,
+						System.currentTimeMillis());
+				cache.put(torrentID, copy);
+				listChanged.add(copy);
+			}
+		} finally {
+			endCacheEdit(cache, startedOn);
+		}
+
+		if (mutation.isRemove || mutation.torrentChanges.containsKey(
+				TransmissionVars.FIELD_TORRENT_TAG_UIDS)) {
+			session.tag.updateCountsFromTorrents();
+		}
+		receivedBus.post(mutation.getCallID(), listChanged, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private long applyMutation(TorrentMutations.Mutation mutation) {
+		if (mutation.torrentIDs == null || (!mutation.isRemove
+				&& mutation.torrentChanges.size() == 0
+				&& mutation.fileIndexes == null)) {
+			// Nothing to show until the remote tells us
+			return mutation.id;
 		}
 
-		if (numAddedOrRemoved > 0) {
-			session.tag.refreshTags(true);
+		List<Map<?, ?>> listChanged = new ArrayList<>();
+		List<Long> listRemoved = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		TorrentCacheSnapshot.Builder cache = beginCacheEdit();
+		try {
+			for (long torrentID : mutation.torrentIDs) {
+				Map<?, ?> map = cache.get(torrentID);
+				if (map == null) {
+					continue;
+				}
+				if (mutation.isRemove) {
+					mutation.removedMaps.put(torrentID, map);
+					cache.remove(torrentID);
+					listRemoved.add(torrentID);
+					continue;
+				}
+				Map copy = new HashMap<>(map);
+				mutations.applyTo(mutation, torrentID, copy);
+				copy.put(TransmissionVars.FIELD_LAST_UPDATED, now);
+				cache.put(torrentID, copy);
+				listChanged.add(copy);
+			}
+		} finally {
+			endCacheEdit(cache, now);
 		}
 
-		for (TorrentListReceivedListener l : receivedListeners) {
-			l.rpcTorrentListReceived(callID, addedTorrentIDs, removedTorrentIDs);
+		if (listRemoved.size() > 0 || mutation.torrentChanges.containsKey(
+				TransmissionVars.FIELD_TORRENT_TAG_UIDS)) {
+			session.tag.updateCountsFromTorrents();
 		}
+		receivedBus.post(mutation.getCallID(), listChanged,
+				listRemoved.size() == 0 ? null : listRemoved);
+		return mutation.id;
 	}
 
 	public boolean addListReceivedListener(String callID,
@@ -313,16 +537,30 @@ public class Session_Torrent
 	@SuppressWarnings("WeakerAccess")
 	public boolean addListReceivedListener(String callID,
 			TorrentListReceivedListener l, boolean fire) {
+		return addListReceivedListener(callID, l, fire, null);
+	}
+
+	/**
+	 * Changes are merged and delivered at most every
+	 * {@link TorrentListEventBus#DEFAULT_MIN_INTERVAL_MS}.  When fire is set,
+	 * the current list is passed to the listener right away, on this thread.
+	 *
+	 * @param executor Where to call the listener for changes.  null for a
+	 *                 background thread
+	 */
+	public boolean addListReceivedListener(String callID,
+			TorrentListReceivedListener l, boolean fire,
+			@Nullable Executor executor) {
 		session.ensureNotDestroyed();
 
-		synchronized (receivedListeners) {
-			if (receivedListeners.contains(l)) {
+		synchronized (receivedBus) {
+			if (!receivedBus.subscribe(l, executor,
+					TorrentListEventBus.DEFAULT_MIN_INTERVAL_MS)) {
 				return false;
 			}
 			if (AndroidUtils.DEBUG) {
 				Log.d(TAG, "addTorrentListReceivedListener " + callID + "/" + l);
 			}
-			receivedListeners.add(l);
 			List<Map<?, ?>> torrentList = getList();
 			if (torrentList.size() > 0 && fire) {
 				l.rpcTorrentListReceived(callID, torrentList, null);
@@ -354,59 +592,331 @@ public class Session_Torrent
 	public void clearCache() {
 		session.ensureNotDestroyed();
 
-		synchronized (session.mLock) {
-			mapOriginal.clear();
+		long startedOn = System.currentTimeMillis();
+		TorrentCacheSnapshot.Builder builder = beginCacheEdit();
+		try {
+			builder.clear();
 			needsFullTorrentRefresh = true;
+		} finally {
+			endCacheEdit(builder, startedOn);
 		}
+		SessionManager.cacheBudget.removeAll(this);
 	}
 
 	public int clearFilesCaches(boolean keepLastUsedTorrentFiles) {
 		session.ensureNotDestroyed();
 
 		int num = 0;
-		synchronized (session.mLock) {
-			int size = mapOriginal.size();
-			if (size == 0) {
-				return num;
-			}
-			for (int i = size - 1; i >= 0; i--) {
-				long torrentID = mapOriginal.keyAt(i);
+		if (cacheRef.get().size() == 0) {
+			return num;
+		}
+		long startedOn = System.currentTimeMillis();
+		TorrentCacheSnapshot.Builder builder = beginCacheEdit();
+		try {
+			for (int i = builder.size() - 1; i >= 0; i--) {
+				long torrentID = builder.keyAt(i);
 				if (keepLastUsedTorrentFiles && lastTorrentWithFiles == torrentID) {
 					continue;
 				}
-				Map<?, ?> map = mapOriginal.valueAt(i);
+				Map<?, ?> map = builder.valueAt(i);
 				if (map.containsKey(TransmissionVars.FIELD_TORRENT_FILES)) {
-					map.remove(TransmissionVars.FIELD_TORRENT_FILES);
+					// Published maps are never modified, readers may be using it
+					Map<?, ?> copy = new HashMap<>(map);
+					copy.remove(TransmissionVars.FIELD_TORRENT_FILES);
+					builder.put(torrentID, copy);
+					SessionManager.cacheBudget.remove(this, torrentID);
 					num++;
 				}
 			}
+		} finally {
+			endCacheEdit(builder, startedOn);
 		}
 		return num;
 	}
 
+	/**
+	 * Drop the files and peers lists of some torrents.  Called by
+	 * {@link TorrentCacheBudget} when evicting.
+	 */
+	void dropLists(List<Long> torrentIDs) {
+		if (session.isDestroyed()) {
+			return;
+		}
+		long startedOn = System.currentTimeMillis();
+		TorrentCacheSnapshot.Builder builder = beginCacheEdit();
+		try {
+			for (long torrentID : torrentIDs) {
+				Map<?, ?> map = builder.get(torrentID);
+				if (map == null
+						|| (!map.containsKey(TransmissionVars.FIELD_TORRENT_FILES)
+								&& !map.containsKey(TransmissionVars.FIELD_TORRENT_PEERS))) {
+					continue;
+				}
+				// Published maps are never modified, readers may be using it
+				Map<?, ?> copy = new HashMap<>(map);
+				copy.remove(TransmissionVars.FIELD_TORRENT_FILES);
+				copy.remove(TransmissionVars.FIELD_TORRENT_PEERS);
+				builder.put(torrentID, copy);
+			}
+		} finally {
+			endCacheEdit(builder, startedOn);
+		}
+	}
+
 	public void destroy() {
+		mutations.destroy();
+		SessionManager.cacheBudget.removeAll(this);
 		refreshingListeners.clear();
 		lastListReceivedOn = 0;
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "destroy: cache " + getCacheStats() + "; list events "
+					+ receivedBus.getStats());
+		}
+	}
+
+	private TorrentCacheSnapshot.Builder beginCacheEdit() {
+		boolean contended = !cacheWriteLock.tryLock();
+		if (contended) {
+			cacheWriteLock.lock();
+			statCacheWriteContention++;
+		}
+		return cacheRef.get().edit();
+	}
+
+	private void endCacheEdit(TorrentCacheSnapshot.Builder builder,
+			long startedOn) {
+		try {
+			if (builder.isChanged()) {
+				cacheRef.set(builder.build());
+				statCacheWrites++;
+			}
+			long diff = System.currentTimeMillis() - startedOn;
+			statCacheWriteTotalMS += diff;
+			if (diff > statCacheWriteMaxMS) {
+				statCacheWriteMaxMS = diff;
+			}
+		} finally {
+			cacheWriteLock.unlock();
+		}
+	}
+
+	/**
+	 * @return Download and upload speeds of the torrent, sampled from
+	 * refreshes.  null if it hasn't transferred anything since we started
+	 * tracking it
+	 */
+	@Nullable
+	public SpeedHistory getSpeedHistory(long torrentID) {
+		return session.speedHistoryStore.getTorrentHistory(torrentID);
+	}
+
+	private synchronized TorrentListStore getListStore() {
+		if (listStore == null) {
+			listStore = new TorrentListStore(session.getRemoteProfile().getID());
+		}
+		return listStore;
+	}
+
+	/**
+	 * Fill an empty cache with the list stored last time, so there's something
+	 * to show until the first refresh arrives.  Ignored once a list has been
+	 * received.
+	 */
+	void loadStoredListAsync() {
+		final TorrentListStore store = getListStore();
+		StoreFiles.execute(new Runnable() {
+			@Override
+			public void run() {
+				Map<Long, Map<String, Object>> stored = store.load();
+				if (stored == null || stored.size() == 0 || session.isDestroyed()) {
+					return;
+				}
+				List<Map<String, Object>> list = new ArrayList<>(stored.values());
+				long startedOn = System.currentTimeMillis();
+				TorrentCacheSnapshot.Builder builder = beginCacheEdit();
+				try {
+					// Checked under the write lock, a received list always wins
+					if (builder.size() > 0 || lastListReceivedOn > 0) {
+						return;
+					}
+					storedOnlyIDs = new HashSet<>();
+					for (Map<String, Object> mapTorrent : list) {
+						long torrentID = MapUtils.getMapLong(mapTorrent,
+								TransmissionVars.FIELD_TORRENT_ID, -1);
+						builder.put(torrentID, mapTorrent);
+						storedOnlyIDs.add(torrentID);
+					}
+				} finally {
+					endCacheEdit(builder, startedOn);
+				}
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, "Showing " + list.size() + " stored torrents");
+				}
+				session.tag.updateCountsFromTorrents();
+				receivedBus.post(TAG, list, null);
+			}
+		});
+	}
+
+	/**
+	 * Store the list for next time, if it changed since last stored
+	 */
+	void saveStoredListAsync() {
+		final TorrentCacheSnapshot snapshot = getCacheForRead();
+		if (lastListReceivedOn == 0 || snapshot.size() == 0
+				|| snapshot.version == storedVersion) {
+			return;
+		}
+		storedVersion = snapshot.version;
+		final TorrentListStore store = getListStore();
+		StoreFiles.execute(new Runnable() {
+			@Override
+			public void run() {
+				List<Map<?, ?>> list = new ArrayList<>(snapshot.size());
+				for (int i = 0, size = snapshot.size(); i < size; i++) {
+					list.add(snapshot.valueAt(i));
+				}
+				store.save(list);
+			}
+		});
+	}
+
+	/**
+	 * Torrents shown from the stored list that the remote no longer has.
+	 * Only the first full list after the stored one was shown is checked;
+	 * after that, the remote tells us what it removed.
+	 *
+	 * @param listTorrents Every torrent of the remote
+	 * @return null if there's nothing to remove
+	 */
+	@Nullable
+	public List<Long> takeStoredOnlyIDs(@NonNull List<?> listTorrents) {
+		Set<Long> ids;
+		cacheWriteLock.lock();
+		try {
+			ids = storedOnlyIDs;
+			storedOnlyIDs = null;
+		} finally {
+			cacheWriteLock.unlock();
+		}
+		if (ids == null) {
+			return null;
+		}
+		for (Object o : listTorrents) {
+			if (o instanceof Map) {
+				ids.remove(MapUtils.getMapLong((Map<?, ?>) o,
+						TransmissionVars.FIELD_TORRENT_ID, -1));
+			}
+		}
+		if (ids.size() == 0) {
+			return null;
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "Removing stored torrents the remote no longer has: " + ids);
+		}
+		return new ArrayList<>(ids);
+	}
+
+	TorrentCacheSnapshot getCacheForRead() {
+		if (cacheWriteLock.isLocked()) {
+			statCacheReadsDuringWrite.incrementAndGet();
+		}
+		return cacheRef.get();
+	}
+
+	/**
+	 * @return Counters showing how often cache writers collided, how long
+	 * merges took, and how many reads went through during a merge instead of
+	 * blocking
+	 */
+	public String getCacheStats() {
+		cacheWriteLock.lock();
+		try {
+			return "v" + cacheRef.get().version + ", " + statCacheWrites
+					+ " writes, " + statCacheWriteContention + " contended, "
+					+ statCacheWriteTotalMS + "ms total, " + statCacheWriteMaxMS
+					+ "ms max, " + statCacheReadsDuringWrite.get()
+					+ " reads during write";
+		} finally {
+			cacheWriteLock.unlock();
+		}
 	}
 
 	public long getLastListReceivedOn() {
 		return lastListReceivedOn;
 	}
 
-	public Map<?, ?> getCachedTorrent(long id) {
-		synchronized (session.mLock) {
-			return mapOriginal.get(id, null);
+	/**
+	 * Counts torrents per uid in their
+	 * {@link TransmissionVars#FIELD_TORRENT_TAG_UIDS}
+	 *
+	 * @param userCategoryUIDs Torrents with none of these are counted as
+	 *                         uncategorized
+	 */
+	@NonNull
+	Session_Tag.TagUIDCounts countTagUIDs(
+			@NonNull Collection<Long> userCategoryUIDs) {
+		Session_Tag.TagUIDCounts tagUIDCounts = new Session_Tag.TagUIDCounts();
+		Map<Long, Integer> counts = tagUIDCounts.counts;
+		TorrentCacheSnapshot snapshot = getCacheForRead();
+		tagUIDCounts.numTorrents = snapshot.size();
+		for (int i = 0, size = snapshot.size(); i < size; i++) {
+			List<?> listTagUIDs = MapUtils.getMapList(snapshot.valueAt(i),
+					TransmissionVars.FIELD_TORRENT_TAG_UIDS, null);
+			boolean categorized = false;
+			if (listTagUIDs != null) {
+				for (Object o : listTagUIDs) {
+					if (o instanceof Number) {
+						Long uid = ((Number) o).longValue();
+						Integer count = counts.get(uid);
+						counts.put(uid, count == null ? 1 : count + 1);
+						if (!categorized && userCategoryUIDs.contains(uid)) {
+							categorized = true;
+						}
+					}
+				}
+			}
+			if (!categorized) {
+				tagUIDCounts.numUncategorized++;
+			}
 		}
+		return tagUIDCounts;
+	}
+
+	public Map<?, ?> getCachedTorrent(long id) {
+		return getCacheForRead().get(id);
 	}
 	
 	public void clearTorrentFromCache(long id) {
-		synchronized (session.mLock) {
-			mapOriginal.remove(id);
+		long startedOn = System.currentTimeMillis();
+		TorrentCacheSnapshot.Builder builder = beginCacheEdit();
+		try {
+			if (builder.contains(id)) {
+				builder.remove(id);
+			}
+		} finally {
+			endCacheEdit(builder, startedOn);
 		}
 	}
 
+	/**
+	 * The user is looking at this torrent's files or peers; keep its lists
+	 * over those of other torrents
+	 */
+	public void listsViewed(long torrentID) {
+		SessionManager.cacheBudget.touch(this, torrentID);
+	}
+
 	public void getFileInfo(final String callID, final Object ids,
-			@Nullable final int[] fileIndexes, final TorrentListReceivedListener l) {
+			@Nullable final IndexRangeSet fileIndexes,
+			final TorrentListReceivedListener l) {
+		if (ids instanceof Number) {
+			listsViewed(((Number) ids).longValue());
+		} else if (ids instanceof long[]) {
+			for (long torrentID : (long[]) ids) {
+				listsViewed(torrentID);
+			}
+		}
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
@@ -421,12 +931,10 @@ public class Session_Torrent
 	private List<Map<?, ?>> getList() {
 		session.ensureNotDestroyed();
 
-		ArrayList<Map<?, ?>> list = new ArrayList<>();
-
-		synchronized (session.mLock) {
-			for (int i = 0, num = mapOriginal.size(); i < num; i++) {
-				list.add(mapOriginal.valueAt(i));
-			}
+		TorrentCacheSnapshot snapshot = getCacheForRead();
+		ArrayList<Map<?, ?>> list = new ArrayList<>(snapshot.size());
+		for (int i = 0, num = snapshot.size(); i < num; i++) {
+			list.add(snapshot.valueAt(i));
 		}
 		return list;
 	}
@@ -434,15 +942,13 @@ public class Session_Torrent
 	public int getCount() {
 		session.ensureNotDestroyed();
 
-		return mapOriginal.size();
+		return cacheRef.get().size();
 	}
 
 	public LongSparseArray<Map<?, ?>> getListAsSparseArray() {
 		session.ensureNotDestroyed();
 
-		synchronized (session.mLock) {
-			return mapOriginal.clone();
-		}
+		return getCacheForRead().toSparseArray();
 	}
 
 	public boolean isRefreshingList() {
@@ -642,11 +1148,11 @@ public class Session_Torrent
 	}
 
 	public void removeListReceivedListener(TorrentListReceivedListener l) {
-		synchronized (receivedListeners) {
+		synchronized (receivedBus) {
 			if (AndroidUtils.DEBUG) {
 				Log.d(TAG, "removeTorrentListReceivedListener " + l);
 			}
-			receivedListeners.remove(l);
+			receivedBus.unsubscribe(l);
 		}
 	}
 
@@ -682,7 +1188,7 @@ public class Session_Torrent
 	}
 
 	public void setFileWantState(final String callID, final long torrentID,
-			final int[] fileIndexes, final boolean wanted,
+			final IndexRangeSet fileIndexes, final boolean wanted,
 			@Nullable final ReplyMapReceivedListener l) {
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
@@ -850,7 +1356,28 @@ public class Session_Torrent
 	})
 	private static void mergeList(String key, Map mapTorrent, Map old) {
 		List listOldFiles = MapUtils.getMapList(old, key, null);
-		if (listOldFiles != null) {
+		if (listOldFiles instanceof FileTable) {
+			List listUpdatedFiles = MapUtils.getMapList(mapTorrent, key, null);
+			if (listUpdatedFiles != null) {
+				// old table may be published, change a copy
+				FileTable newTable = ((FileTable) listOldFiles).copy();
+				for (Object oUpdatedFile : listUpdatedFiles) {
+					if (!(oUpdatedFile instanceof Map)) {
+						continue;
+					}
+					Map mapUpdatedFile = (Map) oUpdatedFile;
+					int index = MapUtils.getMapInt(mapUpdatedFile,
+							TransmissionVars.FIELD_FILES_INDEX, -1);
+					if (index < 0 || index >= newTable.size()) {
+						continue;
+					}
+					synchronized (mapUpdatedFile) {
+						newTable.setValues(index, mapUpdatedFile);
+					}
+				}
+				mapTorrent.put(key, newTable);
+			}
+		} else if (listOldFiles != null) {
 			// files: merge special case
 			List listUpdatedFiles = MapUtils.getMapList(mapTorrent, key, null);
 			if (listUpdatedFiles != null) {
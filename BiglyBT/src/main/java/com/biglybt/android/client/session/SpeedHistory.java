@@ -0,0 +1,174 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Download and upload speed, in KB/s, sampled every
+ * {@link #SAMPLE_SPACING_MS} into fixed size ring buffers.
+ * <p/>
+ * Speeds come from whatever refresh happens to run, so samples are placed by
+ * time, not by call.  A refresh covering several sample slots fills all of
+ * them; slots more than {@link #MAX_FILL_SLOTS} back are considered unknown
+ * and filled with 0.  Recording never allocates.
+ */
+public final class SpeedHistory
+{
+	public static final long SAMPLE_SPACING_MS = 5000;
+
+	/** 10 minutes */
+	public static final int CAPACITY = 120;
+
+	private static final int MAX_FILL_SLOTS = 12;
+
+	private final int[] down = new int[CAPACITY];
+
+	private final int[] up = new int[CAPACITY];
+
+	/** Index of the newest sample */
+	private int head = -1;
+
+	private int count;
+
+	/** Slot (time / {@link #SAMPLE_SPACING_MS}) of the newest sample */
+	private long lastSlot;
+
+	public synchronized void record(long now, long downBytesPerSec,
+			long upBytesPerSec) {
+		int downKB = toKB(downBytesPerSec);
+		int upKB = toKB(upBytesPerSec);
+		long slot = now / SAMPLE_SPACING_MS;
+
+		if (count > 0 && slot <= lastSlot) {
+			// Same slot (or clock went back): keep the latest value
+			down[head] = downKB;
+			up[head] = upKB;
+			return;
+		}
+
+		long numSlots = count == 0 ? 1 : slot - lastSlot;
+		if (numSlots > CAPACITY) {
+			numSlots = CAPACITY;
+		}
+		for (long i = numSlots - 1; i >= 0; i--) {
+			boolean known = i < MAX_FILL_SLOTS;
+			head = (head + 1) % CAPACITY;
+			down[head] = known ? downKB : 0;
+			up[head] = known ? upKB : 0;
+			if (count < CAPACITY) {
+				count++;
+			}
+		}
+		lastSlot = slot;
+	}
+
+	private static int toKB(long bytesPerSec) {
+		if (bytesPerSec <= 0) {
+			return 0;
+		}
+		return (int) Math.min(Integer.MAX_VALUE, (bytesPerSec + 1023) / 1024);
+	}
+
+	/**
+	 * Copy samples, oldest first, into arrays of at least {@link #CAPACITY}.
+	 * Samples newer than the last recorded one (up to <code>now</code>) are
+	 * 0, so idle time shows up without a refresh.
+	 *
+	 * @return number of samples copied
+	 */
+	public synchronized int copyTo(long now, @NonNull int[] downOut,
+			@NonNull int[] upOut) {
+		if (count == 0) {
+			return 0;
+		}
+		long idleSlots = now / SAMPLE_SPACING_MS - lastSlot - MAX_FILL_SLOTS;
+		idleSlots = Math.max(0, Math.min(CAPACITY, idleSlots));
+		int numSamples = (int) Math.min(CAPACITY, count + idleSlots);
+		int numRecorded = numSamples - (int) idleSlots;
+		int start = head - numRecorded + 1;
+		for (int i = 0; i < numRecorded; i++) {
+			int src = (start + i + CAPACITY) % CAPACITY;
+			downOut[i] = down[src];
+			upOut[i] = up[src];
+		}
+		for (int i = numRecorded; i < numSamples; i++) {
+			downOut[i] = 0;
+			upOut[i] = 0;
+		}
+		return numSamples;
+	}
+
+	public synchronized boolean isEmpty() {
+		return count == 0;
+	}
+
+	synchronized void writeTo(@NonNull DataOutputStream out)
+			throws IOException {
+		out.writeLong(lastSlot);
+		out.writeShort(count);
+		int start = head - count + 1;
+		for (int i = 0; i < count; i++) {
+			int src = (start + i + CAPACITY) % CAPACITY;
+			out.writeInt(down[src]);
+			out.writeInt(up[src]);
+		}
+	}
+
+	/**
+	 * Take other's samples, unless we already have some.  Checked and copied
+	 * in one go, so a sample recorded meanwhile isn't overwritten.
+	 *
+	 * @return false if we had samples and nothing was copied
+	 */
+	synchronized boolean copyFromIfEmpty(@NonNull SpeedHistory other) {
+		if (count != 0) {
+			return false;
+		}
+		synchronized (other) {
+			lastSlot = other.lastSlot;
+			count = other.count;
+			head = other.head;
+			System.arraycopy(other.down, 0, down, 0, CAPACITY);
+			System.arraycopy(other.up, 0, up, 0, CAPACITY);
+		}
+		return true;
+	}
+
+	synchronized void readFrom(@NonNull DataInputStream in)
+			throws IOException {
+		lastSlot = in.readLong();
+		int numStored = in.readShort();
+		count = 0;
+		head = -1;
+		for (int i = 0; i < numStored; i++) {
+			int d = in.readInt();
+			int u = in.readInt();
+			if (i < numStored - CAPACITY) {
+				continue;
+			}
+			head = (head + 1) % CAPACITY;
+			down[head] = d;
+			up[head] = u;
+			count++;
+		}
+	}
+}
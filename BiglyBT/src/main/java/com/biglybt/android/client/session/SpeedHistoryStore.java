@@ -0,0 +1,219 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.io.*;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.BiglyBTApp;
+import com.biglybt.android.util.StoreFiles;
+import com.biglybt.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+/**
+ * Speed history of a session and its torrents, kept in a small binary file
+ * per remote profile so the graphs survive the session being recreated.
+ * <p/>
+ * Torrents only get a history once they've had some transfer.
+ */
+class SpeedHistoryStore
+{
+	private static final String TAG = "SpeedHistoryStore";
+
+	private static final String DIR_NAME = "speed_history";
+
+	private static final int FILE_VERSION = 1;
+
+	@NonNull
+	private final String profileID;
+
+	@NonNull
+	final SpeedHistory sessionHistory = new SpeedHistory();
+
+	/** Guarded by itself */
+	@Thunk
+	final LongSparseArray<SpeedHistory> torrentHistories = new LongSparseArray<>();
+
+	SpeedHistoryStore(@NonNull String profileID) {
+		this.profileID = profileID;
+	}
+
+	@Nullable
+	SpeedHistory getTorrentHistory(long torrentID) {
+		synchronized (torrentHistories) {
+			return torrentHistories.get(torrentID);
+		}
+	}
+
+	void recordTorrent(long torrentID, long now, long downBytesPerSec,
+			long upBytesPerSec) {
+		SpeedHistory history;
+		synchronized (torrentHistories) {
+			history = torrentHistories.get(torrentID);
+			if (history == null) {
+				if (downBytesPerSec <= 0 && upBytesPerSec <= 0) {
+					return;
+				}
+				history = new SpeedHistory();
+				torrentHistories.put(torrentID, history);
+			}
+		}
+		history.record(now, downBytesPerSec, upBytesPerSec);
+	}
+
+	void removeTorrent(long torrentID) {
+		synchronized (torrentHistories) {
+			torrentHistories.remove(torrentID);
+		}
+	}
+
+	/**
+	 * Drop histories of torrents no longer in the cache
+	 */
+	void retainTorrents(@NonNull TorrentCacheSnapshot snapshot) {
+		if (snapshot.size() == 0) {
+			// never received a list, can't tell what's gone
+			return;
+		}
+		synchronized (torrentHistories) {
+			for (int i = torrentHistories.size() - 1; i >= 0; i--) {
+				if (snapshot.get(torrentHistories.keyAt(i)) == null) {
+					torrentHistories.removeAt(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads on the {@link StoreFiles} thread.  Histories that already have
+	 * samples by the time the file is read are kept as is.
+	 */
+	void loadAsync() {
+		StoreFiles.execute(new Runnable() {
+			@Override
+			public void run() {
+				load();
+			}
+		});
+	}
+
+	void saveAsync() {
+		StoreFiles.execute(new Runnable() {
+			@Override
+			public void run() {
+				save();
+			}
+		});
+	}
+
+	/**
+	 * Deletes the stored history of a profile, in the background
+	 */
+	static void removeProfile(@NonNull String profileID) {
+		StoreFiles.deleteAsync(getDir(), profileID + ".");
+	}
+
+	@Thunk
+	@WorkerThread
+	void load() {
+		File file = getFile();
+		if (file == null || !file.exists()) {
+			return;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != FILE_VERSION) {
+				return;
+			}
+			SpeedHistory storedSessionHistory = new SpeedHistory();
+			storedSessionHistory.readFrom(in);
+			sessionHistory.copyFromIfEmpty(storedSessionHistory);
+			int numTorrents = in.readInt();
+			for (int i = 0; i < numTorrents; i++) {
+				long torrentID = in.readLong();
+				SpeedHistory history = new SpeedHistory();
+				history.readFrom(in);
+				synchronized (torrentHistories) {
+					if (torrentHistories.get(torrentID) == null) {
+						torrentHistories.put(torrentID, history);
+					}
+				}
+			}
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "load", t);
+			}
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	@Thunk
+	@WorkerThread
+	void save() {
+		File file = getFile();
+		if (file == null) {
+			return;
+		}
+		StoreFiles.writeAtomic(file, new StoreFiles.StreamWriter() {
+			@Override
+			public void writeTo(@NonNull OutputStream os)
+					throws IOException {
+				DataOutputStream out = new DataOutputStream(os);
+				out.writeInt(FILE_VERSION);
+				sessionHistory.writeTo(out);
+
+				LongSparseArray<SpeedHistory> copy;
+				synchronized (torrentHistories) {
+					copy = torrentHistories.clone();
+				}
+				out.writeInt(copy.size());
+				for (int i = 0, size = copy.size(); i < size; i++) {
+					out.writeLong(copy.keyAt(i));
+					copy.valueAt(i).writeTo(out);
+				}
+				out.flush();
+			}
+		});
+	}
+
+	@Nullable
+	private File getFile() {
+		return StoreFiles.getFile(getDir(), profileID, ".bin");
+	}
+
+	@Nullable
+	private static File getDir() {
+		try {
+			return new File(BiglyBTApp.getContext().getFilesDir(), DIR_NAME);
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.io.File;
+import java.util.*;
+
+import com.biglybt.android.client.BiglyBTApp;
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.util.MapUtils;
+import com.biglybt.android.util.StoreFiles;
+import com.biglybt.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Persistent copy of subscription results for one remote profile, so a
+ * subscription can be browsed before (or without) the remote replying.
+ * <p/>
+ * One gzipped JSON file per subscription in the files dir, holding the
+ * results indexed by result ID, and read flags that haven't made it to the
+ * remote yet.  Writes are coalesced and done on the
+ * {@link StoreFiles} thread.
+ */
+class SubscriptionResultsStore
+{
+	private static final String DIR_NAME = "subscription_results";
+
+	private static final String KEY_NAME = "name";
+
+	private static final String KEY_RESULTS = "results";
+
+	private static final String KEY_PENDING_READS = "pendingReads";
+
+	static class Entry
+	{
+		String name;
+
+		/** result ID -> result map */
+		@NonNull
+		final Map<String, Map> results;
+
+		/** result ID -> read flag not yet sent to the remote */
+		@NonNull
+		final Map<String, Boolean> pendingReads;
+
+		Entry(String name, @NonNull Map<String, Map> results,
+				@NonNull Map<String, Boolean> pendingReads) {
+			this.name = name;
+			this.results = results;
+			this.pendingReads = pendingReads;
+		}
+
+		/**
+		 * @return results, newest publish date first
+		 */
+		@NonNull
+		List<Map> getResultList() {
+			List<Map> list = new ArrayList<>(results.values());
+			Collections.sort(list, new Comparator<Map>() {
+				@Override
+				public int compare(Map lhs, Map rhs) {
+					long l = MapUtils.getMapLong(lhs,
+							TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE, 0);
+					long r = MapUtils.getMapLong(rhs,
+							TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE, 0);
+					return l > r ? -1 : l < r ? 1 : 0;
+				}
+			});
+			return list;
+		}
+	}
+
+	@NonNull
+	private final String profileID;
+
+	private final StoreFiles.GzipJSONQueue queue = new StoreFiles.GzipJSONQueue() {
+		@Nullable
+		@Override
+		protected File getFile(@NonNull String subscriptionID) {
+			return StoreFiles.getFile(getDir(), profileID + "." + subscriptionID,
+					".json.gz");
+		}
+	};
+
+	SubscriptionResultsStore(@NonNull String profileID) {
+		this.profileID = profileID;
+	}
+
+	/**
+	 * @return Stored results for the subscription, null if none
+	 */
+	@Nullable
+	@WorkerThread
+	Entry load(@NonNull String subscriptionID) {
+		Map<String, Object> map = queue.read(subscriptionID);
+		if (map == null) {
+			return null;
+		}
+
+		Map<String, Map> results = new HashMap<>();
+		Map<?, ?> mapResults = MapUtils.getMapMap(map, KEY_RESULTS,
+				Collections.emptyMap());
+		for (Object key : mapResults.keySet()) {
+			Object o = mapResults.get(key);
+			if (key instanceof String && o instanceof Map) {
+				// copy, the stored maps may still be waiting to be encoded
+				results.put((String) key, new HashMap<>((Map<?, ?>) o));
+			}
+		}
+
+		Map<String, Boolean> pendingReads = new HashMap<>();
+		Map<?, ?> mapPendingReads = MapUtils.getMapMap(map, KEY_PENDING_READS,
+				Collections.emptyMap());
+		for (Object key : mapPendingReads.keySet()) {
+			Object o = mapPendingReads.get(key);
+			if (key instanceof String && o instanceof Boolean) {
+				pendingReads.put((String) key, (Boolean) o);
+			}
+		}
+
+		return new Entry(MapUtils.getMapString(map, KEY_NAME, null), results,
+				pendingReads);
+	}
+
+	/**
+	 * Queue a write of the subscription's results.  Must be called while
+	 * holding the lock that guards the Entry and its result maps; they're
+	 * copied before returning, and may be modified again afterwards.
+	 */
+	void save(@NonNull String subscriptionID, @NonNull Entry entry) {
+		Map<String, Object> map = new HashMap<>(4);
+		if (entry.name != null) {
+			map.put(KEY_NAME, entry.name);
+		}
+		// Result maps are shared with the UI, which flips read flags in them
+		Map<String, Map> results = new HashMap<>(entry.results.size() * 4 / 3 + 1);
+		for (Map.Entry<String, Map> result : entry.results.entrySet()) {
+			results.put(result.getKey(), new HashMap<>(result.getValue()));
+		}
+		map.put(KEY_RESULTS, results);
+		map.put(KEY_PENDING_READS, new HashMap<>(entry.pendingReads));
+
+		queue.write(subscriptionID, map);
+	}
+
+	void remove(@NonNull String subscriptionID) {
+		queue.delete(subscriptionID);
+	}
+
+	/**
+	 * Deletes stored results of all subscriptions of a profile, in the
+	 * background
+	 */
+	static void removeProfile(@NonNull String profileID) {
+		StoreFiles.deleteAsync(getDir(), profileID + ".");
+	}
+
+	@Thunk
+	@Nullable
+	static File getDir() {
+		try {
+			return new File(BiglyBTApp.getContext().getFilesDir(), DIR_NAME);
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+}
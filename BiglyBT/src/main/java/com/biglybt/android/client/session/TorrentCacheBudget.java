@@ -0,0 +1,269 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.*;
+
+import com.biglybt.android.client.AndroidUtils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Keeps the "files" and "peers" lists held in torrent caches, across all
+ * sessions, within a byte budget.  Sizes are estimates.
+ * <p/>
+ * Torrents are ordered by when the user last viewed their files or peers.
+ * A refresh only updates sizes; it covers many torrents in no particular
+ * order, so it says nothing about which one is on screen.
+ * When over budget, the least recently used torrents lose their lists; they
+ * get fetched again when viewed.  The most recently used torrent is never
+ * evicted, it's the one on screen.
+ */
+final class TorrentCacheBudget
+{
+	private static final String TAG = "TorrentCacheBudget";
+
+	/** Fraction of the heap the lists may use */
+	private static final int HEAP_DIVISOR = 8;
+
+	private static final long MIN_BUDGET = 4 * 1024 * 1024;
+
+	private static final class Key
+	{
+		final Session_Torrent owner;
+
+		final long torrentID;
+
+		Key(Session_Torrent owner, long torrentID) {
+			this.owner = owner;
+			this.torrentID = torrentID;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Key) && ((Key) o).owner == owner
+					&& ((Key) o).torrentID == torrentID;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(owner) * 31
+					+ (int) (torrentID ^ (torrentID >>> 32));
+		}
+	}
+
+	private static final class Entry
+	{
+		final Session_Torrent owner;
+
+		final long torrentID;
+
+		long bytes;
+
+		Entry(Session_Torrent owner, long torrentID) {
+			this.owner = owner;
+			this.torrentID = torrentID;
+		}
+	}
+
+	private final long budget;
+
+	/**
+	 * Least recently viewed first.  Only {@link #touch} and new entries
+	 * change the order.  Guarded by this
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>();
+
+	private long bytesHeld;
+
+	private long statBytesEvicted;
+
+	private long statEvictions;
+
+	private long statPeakHeld;
+
+	TorrentCacheBudget() {
+		this(Math.max(MIN_BUDGET, Runtime.getRuntime().maxMemory() / HEAP_DIVISOR));
+	}
+
+	TorrentCacheBudget(long budget) {
+		this.budget = budget;
+	}
+
+	long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Update the size of a torrent's lists.  A torrent new to us counts as
+	 * most recently viewed, its lists were just requested; others keep their
+	 * place.  Evicts others if that puts us over budget.
+	 */
+	void record(@NonNull Session_Torrent owner, long torrentID, long bytes) {
+		List<Entry> victims;
+		synchronized (this) {
+			Key key = new Key(owner, torrentID);
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				if (bytes <= 0) {
+					return;
+				}
+				entry = new Entry(owner, torrentID);
+				entries.put(key, entry);
+			}
+			bytesHeld += bytes - entry.bytes;
+			entry.bytes = bytes;
+			if (bytesHeld > statPeakHeld) {
+				statPeakHeld = bytesHeld;
+			}
+			victims = pickVictims(budget);
+		}
+		evict(victims);
+	}
+
+	/**
+	 * Mark as most recently viewed, ex. when the user opens its files
+	 */
+	synchronized void touch(@NonNull Session_Torrent owner, long torrentID) {
+		Key key = new Key(owner, torrentID);
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Lists were dropped by someone else
+	 */
+	synchronized void remove(@NonNull Session_Torrent owner, long torrentID) {
+		Entry entry = entries.remove(new Key(owner, torrentID));
+		if (entry != null) {
+			bytesHeld -= entry.bytes;
+		}
+	}
+
+	synchronized void removeAll(@NonNull Session_Torrent owner) {
+		Iterator<Entry> iter = entries.values().iterator();
+		while (iter.hasNext()) {
+			Entry entry = iter.next();
+			if (entry.owner == owner) {
+				bytesHeld -= entry.bytes;
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Evict least recently used lists until no more than <code>target</code>
+	 * bytes are held.  The most recently used torrent is kept regardless.
+	 *
+	 * @return bytes evicted
+	 */
+	long trimTo(long target) {
+		List<Entry> victims;
+		synchronized (this) {
+			victims = pickVictims(Math.max(0, target));
+		}
+		return evict(victims);
+	}
+
+	/** Caller holds lock */
+	@Nullable
+	private List<Entry> pickVictims(long target) {
+		if (bytesHeld <= target || entries.size() <= 1) {
+			return null;
+		}
+		List<Entry> victims = new ArrayList<>();
+		Iterator<Entry> iter = entries.values().iterator();
+		int remaining = entries.size();
+		while (bytesHeld > target && remaining > 1 && iter.hasNext()) {
+			Entry entry = iter.next();
+			iter.remove();
+			remaining--;
+			bytesHeld -= entry.bytes;
+			statBytesEvicted += entry.bytes;
+			statEvictions++;
+			victims.add(entry);
+		}
+		return victims;
+	}
+
+	/**
+	 * Runs without holding our lock; the owners take their cache write lock
+	 */
+	private static long evict(@Nullable List<Entry> victims) {
+		if (victims == null || victims.size() == 0) {
+			return 0;
+		}
+		long bytes = 0;
+		Map<Session_Torrent, List<Long>> byOwner = new HashMap<>();
+		for (Entry entry : victims) {
+			bytes += entry.bytes;
+			List<Long> ids = byOwner.get(entry.owner);
+			if (ids == null) {
+				ids = new ArrayList<>();
+				byOwner.put(entry.owner, ids);
+			}
+			ids.add(entry.torrentID);
+		}
+		for (Session_Torrent owner : byOwner.keySet()) {
+			owner.dropLists(byOwner.get(owner));
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "evicted lists of " + victims.size() + " torrents, ~"
+					+ bytes + " bytes");
+		}
+		return bytes;
+	}
+
+	synchronized String getStats() {
+		return "~" + bytesHeld + " of " + budget + " bytes held in "
+				+ entries.size() + " torrents (peak ~" + statPeakHeld + "), ~"
+				+ statBytesEvicted + " bytes evicted in " + statEvictions
+				+ " evictions";
+	}
+
+	/**
+	 * Rough heap cost of a list of maps (file or peer entries)
+	 */
+	static long estimateListBytes(@Nullable List<?> list) {
+		if (list == null) {
+			return 0;
+		}
+		if (list instanceof FileTable) {
+			return ((FileTable) list).estimateBytes();
+		}
+		long bytes = 16 + 4L * list.size();
+		for (Object o : list) {
+			if (!(o instanceof Map)) {
+				bytes += 16;
+				continue;
+			}
+			Map<?, ?> map = (Map<?, ?>) o;
+			// HashMap + table + one node per entry + boxed value
+			bytes += 48 + 8L * map.size() + 48L * map.size();
+			for (Object value : map.values()) {
+				if (value instanceof String) {
+					bytes += 24 + 2L * ((String) value).length();
+				}
+			}
+		}
+		return bytes;
+	}
+}
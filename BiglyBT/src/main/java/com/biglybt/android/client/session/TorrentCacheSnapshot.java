@@ -0,0 +1,154 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LongSparseArray;
+
+/**
+ * Immutable, versioned view of the torrent cache: torrent id -&gt; torrent
+ * map, sorted by id.
+ * <p/>
+ * Readers grab the current snapshot and use it without locking.  Writers
+ * {@link #edit()} a copy and publish the result.  Torrent maps are shared
+ * between snapshots; a changed torrent gets a new map, it is never modified
+ * after being published.
+ */
+final class TorrentCacheSnapshot
+{
+	static final TorrentCacheSnapshot EMPTY = new TorrentCacheSnapshot(0,
+			new long[0], new Map<?, ?>[0]);
+
+	final long version;
+
+	private final long[] keys;
+
+	private final Map<?, ?>[] values;
+
+	private TorrentCacheSnapshot(long version, long[] keys,
+			Map<?, ?>[] values) {
+		this.version = version;
+		this.keys = keys;
+		this.values = values;
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	long keyAt(int index) {
+		return keys[index];
+	}
+
+	Map<?, ?> valueAt(int index) {
+		return values[index];
+	}
+
+	@Nullable
+	Map<?, ?> get(long id) {
+		int i = Arrays.binarySearch(keys, id);
+		return i >= 0 ? values[i] : null;
+	}
+
+	/**
+	 * @return A new, modifiable array.  Changes do not affect this snapshot.
+	 */
+	@NonNull
+	LongSparseArray<Map<?, ?>> toSparseArray() {
+		LongSparseArray<Map<?, ?>> array = new LongSparseArray<>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			// keys are ordered, so append doesn't need to search
+			array.append(keys[i], values[i]);
+		}
+		return array;
+	}
+
+	@NonNull
+	Builder edit() {
+		return new Builder(this);
+	}
+
+	static final class Builder
+	{
+		private final long version;
+
+		private final LongSparseArray<Map<?, ?>> array;
+
+		private boolean changed;
+
+		Builder(TorrentCacheSnapshot base) {
+			version = base.version;
+			array = base.toSparseArray();
+		}
+
+		int size() {
+			return array.size();
+		}
+
+		long keyAt(int index) {
+			return array.keyAt(index);
+		}
+
+		Map<?, ?> valueAt(int index) {
+			return array.valueAt(index);
+		}
+
+		@Nullable
+		Map<?, ?> get(long id) {
+			return array.get(id, null);
+		}
+
+		boolean contains(long id) {
+			return array.indexOfKey(id) >= 0;
+		}
+
+		void put(long id, @NonNull Map<?, ?> map) {
+			array.put(id, map);
+			changed = true;
+		}
+
+		void remove(long id) {
+			array.remove(id);
+			changed = true;
+		}
+
+		void clear() {
+			array.clear();
+			changed = true;
+		}
+
+		boolean isChanged() {
+			return changed;
+		}
+
+		@NonNull
+		TorrentCacheSnapshot build() {
+			int size = array.size();
+			long[] keys = new long[size];
+			Map<?, ?>[] values = new Map<?, ?>[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = array.keyAt(i);
+				values[i] = array.valueAt(i);
+			}
+			return new TorrentCacheSnapshot(version + 1, keys, values);
+		}
+	}
+}
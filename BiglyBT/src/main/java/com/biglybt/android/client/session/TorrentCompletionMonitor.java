@@ -0,0 +1,355 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.*;
+
+import com.biglybt.android.client.*;
+import com.biglybt.android.client.activity.TorrentViewActivity;
+import com.biglybt.android.client.rpc.RPCException;
+import com.biglybt.android.client.rpc.RemoteProbe;
+import com.biglybt.android.client.service.TorrentMonitorJobService;
+import com.biglybt.android.util.MapUtils;
+import com.biglybt.android.util.NetworkState;
+import com.biglybt.util.Thunk;
+
+import android.annotation.TargetApi;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+/**
+ * Checks remotes for finished or failed downloads while the app isn't
+ * showing them, and posts a notification for each.
+ * <p/>
+ * Runs as a periodic job on unmetered networks (Lollipop and up).  Each
+ * check asks for {@link #FIELDS} only: first "recently-active" torrents,
+ * then any stored incomplete torrent the remote didn't mention, since one
+ * that finished a while ago may no longer be recently active.  Changes are
+ * written back to the {@link TorrentListStore}, which a session shows first
+ * when opened.
+ * <p/>
+ * Remotes that have never been opened have no stored list and aren't
+ * checked; neither are core remotes, which have their own notification.
+ */
+public class TorrentCompletionMonitor
+{
+	private static final String TAG = "CompletionMonitor";
+
+	private static final int JOB_ID = 0x0B16B7;
+
+	private static final long JOB_INTERVAL_MS = 15 * 60 * 1000;
+
+	private static final String CHANNEL_ID = "torrent_events";
+
+	private static final String[] FIELDS = {
+		TransmissionVars.FIELD_TORRENT_ID,
+		TransmissionVars.FIELD_TORRENT_PERCENT_DONE,
+		TransmissionVars.FIELD_TORRENT_STATUS,
+		TransmissionVars.FIELD_TORRENT_ERROR,
+	};
+
+	public interface Cancellable
+	{
+		boolean isCancelled();
+	}
+
+	private TorrentCompletionMonitor() {
+	}
+
+	public static boolean isSupported() {
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+	}
+
+	/**
+	 * Schedule or cancel the job to match the user's setting.  Safe to call
+	 * repeatedly; an existing schedule is replaced.
+	 */
+	public static void updateSchedule(@NonNull Context context) {
+		if (!isSupported()) {
+			return;
+		}
+		if (BiglyBTApp.getAppPreferences().isCompletionMonitorEnabled()) {
+			schedule(context);
+		} else {
+			cancel(context);
+		}
+	}
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private static void schedule(@NonNull Context context) {
+		JobScheduler jobScheduler = (JobScheduler) context.getSystemService(
+				Context.JOB_SCHEDULER_SERVICE);
+		if (jobScheduler == null) {
+			return;
+		}
+		JobInfo.Builder builder = new JobInfo.Builder(JOB_ID,
+				new ComponentName(context, TorrentMonitorJobService.class));
+		builder.setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED);
+		builder.setPeriodic(JOB_INTERVAL_MS);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+			builder.setRequiresBatteryNotLow(true);
+		}
+		int result = jobScheduler.schedule(builder.build());
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "schedule: " + result);
+		}
+	}
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private static void cancel(@NonNull Context context) {
+		JobScheduler jobScheduler = (JobScheduler) context.getSystemService(
+				Context.JOB_SCHEDULER_SERVICE);
+		if (jobScheduler != null) {
+			jobScheduler.cancel(JOB_ID);
+		}
+	}
+
+	/**
+	 * Check every remote once
+	 */
+	@WorkerThread
+	public static void checkRemotes(@NonNull Context context,
+			@NonNull Cancellable cancellable) {
+		NetworkState networkState = BiglyBTApp.getNetworkState();
+		if (!networkState.isOnline() || networkState.isOnlineMobile()) {
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "checkRemotes: skipped, "
+						+ networkState.getOnlineStateReason());
+			}
+			return;
+		}
+		for (RemoteProfile remoteProfile : BiglyBTApp.getAppPreferences().getRemotes()) {
+			if (cancellable.isCancelled()) {
+				return;
+			}
+			if (remoteProfile.getRemoteType() == RemoteProfile.TYPE_CORE) {
+				continue;
+			}
+			Session session = SessionManager.findSession(remoteProfile.getID());
+			if (session != null && session.isActivityVisible()) {
+				// On screen, so it's refreshing on its own
+				continue;
+			}
+			try {
+				checkRemote(context, remoteProfile);
+			} catch (RPCException e) {
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, remoteProfile.getNick() + ": " + e);
+				}
+			} catch (Throwable t) {
+				Log.e(TAG, "checkRemote " + remoteProfile.getNick(), t);
+			}
+		}
+	}
+
+	@WorkerThread
+	private static void checkRemote(@NonNull final Context context,
+			@NonNull final RemoteProfile remoteProfile)
+			throws RPCException {
+		RemoteProbe probe = new RemoteProbe(remoteProfile);
+		if (!probe.canProbe()) {
+			return;
+		}
+		TorrentListStore store = new TorrentListStore(remoteProfile.getID());
+		Map<Long, Map<String, Object>> stored = store.load();
+		if (stored == null) {
+			return;
+		}
+
+		Map<?, ?> reply = probe.getTorrents("recently-active", FIELDS);
+		final List<Object> listUpdated = new ArrayList<Object>(
+				MapUtils.getMapList(reply, "torrents", Collections.emptyList()));
+		Set<Long> seen = new HashSet<>();
+		for (Object o : listUpdated) {
+			if (o instanceof Map) {
+				seen.add(MapUtils.getMapLong((Map<?, ?>) o,
+						TransmissionVars.FIELD_TORRENT_ID, -1));
+			}
+		}
+
+		List<Long> unseenIncomplete = new ArrayList<>();
+		for (Map<String, Object> mapTorrent : stored.values()) {
+			long id = MapUtils.getMapLong(mapTorrent,
+					TransmissionVars.FIELD_TORRENT_ID, -1);
+			if (!seen.contains(id) && !isComplete(mapTorrent)) {
+				unseenIncomplete.add(id);
+			}
+		}
+		if (unseenIncomplete.size() > 0) {
+			long[] ids = new long[unseenIncomplete.size()];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = unseenIncomplete.get(i);
+			}
+			Map<?, ?> replyIncomplete = probe.getTorrents(ids, FIELDS);
+			List<?> listIncomplete = MapUtils.getMapList(replyIncomplete,
+					"torrents", Collections.emptyList());
+			listUpdated.addAll(listIncomplete);
+			for (Object o : listIncomplete) {
+				if (o instanceof Map) {
+					unseenIncomplete.remove(MapUtils.getMapLong((Map<?, ?>) o,
+							TransmissionVars.FIELD_TORRENT_ID, -1));
+				}
+			}
+		}
+
+		// Asked for by id but not returned: removed from the remote
+		final List<Object> listRemoved = new ArrayList<Object>(unseenIncomplete);
+		listRemoved.addAll(
+				MapUtils.getMapList(reply, "removed", Collections.emptyList()));
+
+		// The RPCs took a while; a session may have stored a newer list since
+		// we loaded it, so apply our changes to what's there now
+		store.edit(new TorrentListStore.Editor() {
+			@Override
+			public boolean edit(@NonNull Map<Long, Map<String, Object>> current) {
+				boolean changed = merge(context, remoteProfile, current, listUpdated,
+						listRemoved);
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, remoteProfile.getNick() + ": " + listUpdated.size()
+							+ " updated of " + current.size() + "; changed=" + changed);
+				}
+				return changed;
+			}
+		});
+	}
+
+	/**
+	 * Notify of torrents that finished or failed, and copy the updated
+	 * fields into the stored list
+	 *
+	 * @return true if stored changed
+	 */
+	@Thunk
+	static boolean merge(@NonNull Context context,
+			@NonNull RemoteProfile remoteProfile,
+			@NonNull Map<Long, Map<String, Object>> stored,
+			@NonNull List<Object> listUpdated, @NonNull List<Object> listRemoved) {
+		boolean changed = false;
+		for (Object o : listRemoved) {
+			if (o instanceof Number
+					&& stored.remove(((Number) o).longValue()) != null) {
+				changed = true;
+			}
+		}
+
+		for (Object o : listUpdated) {
+			if (!(o instanceof Map)) {
+				continue;
+			}
+			Map<?, ?> mapUpdated = (Map<?, ?>) o;
+			long id = MapUtils.getMapLong(mapUpdated,
+					TransmissionVars.FIELD_TORRENT_ID, -1);
+			Map<String, Object> mapStored = stored.get(id);
+			if (mapStored == null) {
+				// Added elsewhere; no name to show until a session stores one
+				mapStored = new HashMap<>();
+				stored.put(id, mapStored);
+			} else if (!isComplete(mapStored) && isComplete(mapUpdated)) {
+				notify(context, remoteProfile, mapStored, false);
+			} else if (!hasLocalError(mapStored) && hasLocalError(mapUpdated)) {
+				notify(context, remoteProfile, mapStored, true);
+			}
+			for (String field : FIELDS) {
+				Object value = mapUpdated.get(field);
+				if (value != null && !value.equals(mapStored.get(field))) {
+					mapStored.put(field, value);
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+
+	private static boolean isComplete(@NonNull Map<?, ?> mapTorrent) {
+		return MapUtils.getMapFloat(mapTorrent,
+				TransmissionVars.FIELD_TORRENT_PERCENT_DONE, 0) >= 1.0f;
+	}
+
+	private static boolean hasLocalError(@NonNull Map<?, ?> mapTorrent) {
+		// Tracker warnings and errors come and go, they'd be noise
+		return MapUtils.getMapLong(mapTorrent, TransmissionVars.FIELD_TORRENT_ERROR,
+				TransmissionVars.TR_STAT_OK) == TransmissionVars.TR_STAT_LOCAL_ERROR;
+	}
+
+	private static void notify(@NonNull Context context,
+			@NonNull RemoteProfile remoteProfile, @NonNull Map<?, ?> mapStored,
+			boolean isError) {
+		NotificationManager notificationManager = (NotificationManager) context.getSystemService(
+				Context.NOTIFICATION_SERVICE);
+		if (notificationManager == null) {
+			return;
+		}
+		initChannel(context, notificationManager);
+
+		String name = MapUtils.getMapString(mapStored,
+				TransmissionVars.FIELD_TORRENT_NAME, null);
+		String title = context.getString(isError ? R.string.monitor_noti_error_title
+				: R.string.monitor_noti_complete_title);
+		String text = name == null ? remoteProfile.getNick()
+				: context.getString(R.string.monitor_noti_text, name,
+						remoteProfile.getNick());
+
+		Intent intent = new Intent(Intent.ACTION_VIEW, null, context,
+				TorrentViewActivity.class);
+		intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+		intent.putExtra(SessionManager.BUNDLE_KEY, remoteProfile.getID());
+		PendingIntent pi = PendingIntent.getActivity(context,
+				remoteProfile.getID().hashCode(), intent,
+				PendingIntent.FLAG_UPDATE_CURRENT);
+
+		NotificationCompat.Builder builder = new NotificationCompat.Builder(
+				context, CHANNEL_ID);
+		builder.setSmallIcon(R.drawable.ic_core_statusbar);
+		builder.setContentTitle(title);
+		builder.setContentText(text);
+		builder.setContentIntent(pi);
+		builder.setAutoCancel(true);
+		builder.setCategory(isError ? NotificationCompat.CATEGORY_ERROR
+				: NotificationCompat.CATEGORY_STATUS);
+
+		String hashString = MapUtils.getMapString(mapStored,
+				TransmissionVars.FIELD_TORRENT_HASH_STRING, null);
+		notificationManager.notify(remoteProfile.getID(),
+				hashString == null ? MapUtils.getMapInt(mapStored,
+						TransmissionVars.FIELD_TORRENT_ID, 0) : hashString.hashCode(),
+				builder.build());
+	}
+
+	private static void initChannel(@NonNull Context context,
+			@NonNull NotificationManager notificationManager) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+			return;
+		}
+		NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+				context.getString(R.string.monitor_channel_name),
+				NotificationManager.IMPORTANCE_DEFAULT);
+		channel.setDescription(
+				context.getString(R.string.monitor_channel_description));
+		notificationManager.createNotificationChannel(channel);
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.AnalyticsTracker;
+import com.biglybt.android.client.rpc.TorrentListReceivedListener;
+import com.biglybt.util.Thunk;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Delivers torrent list changes to {@link TorrentListReceivedListener}s,
+ * merging changes that arrive close together.
+ * <p/>
+ * Each subscriber has its own pending change set.  A torrent updated several
+ * times before delivery is only delivered in its latest state, and an add
+ * followed by a remove (or the reverse) cancels out.  The first change after
+ * a quiet period is delivered on the next frame boundary; after that, a
+ * subscriber gets at most one change set per {@link #DEFAULT_MIN_INTERVAL_MS}.
+ */
+class TorrentListEventBus
+{
+	private static final String TAG = "TorrentListBus";
+
+	/** Delivery is aligned to this, roughly one display frame */
+	private static final long FRAME_MS = 16;
+
+	static final long DEFAULT_MIN_INTERVAL_MS = 250;
+
+	private static ScheduledExecutorService scheduler;
+
+	private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+	private long statPosts;
+
+	private long statDeliveries;
+
+	@NonNull
+	@Thunk
+	static synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(@NonNull Runnable r) {
+							Thread thread = new Thread(r, TAG);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return scheduler;
+	}
+
+	/**
+	 * @param executor Where to call the listener.  null to call it on the
+	 *                 bus thread
+	 * @return false if already subscribed
+	 */
+	boolean subscribe(@NonNull TorrentListReceivedListener l,
+			@Nullable Executor executor, long minIntervalMS) {
+		synchronized (subscribers) {
+			if (isSubscribed(l)) {
+				return false;
+			}
+			subscribers.add(new Subscriber(this, l, executor, minIntervalMS));
+			return true;
+		}
+	}
+
+	boolean isSubscribed(@NonNull TorrentListReceivedListener l) {
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.l == l) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Pending changes for the listener are dropped
+	 */
+	void unsubscribe(@NonNull TorrentListReceivedListener l) {
+		synchronized (subscribers) {
+			for (Subscriber subscriber : subscribers) {
+				if (subscriber.l == l) {
+					subscriber.active = false;
+					subscribers.remove(subscriber);
+					return;
+				}
+			}
+		}
+	}
+
+	void post(String callID, @NonNull List<?> addedTorrentMaps,
+			@Nullable List<?> removedTorrentIDs) {
+		synchronized (this) {
+			statPosts++;
+		}
+		for (Subscriber subscriber : subscribers) {
+			subscriber.merge(callID, addedTorrentMaps, removedTorrentIDs);
+		}
+	}
+
+	@Thunk
+	synchronized void countDelivery() {
+		statDeliveries++;
+	}
+
+	/**
+	 * @return posts vs. deliveries to subscribers
+	 */
+	synchronized String getStats() {
+		return statPosts + " posts, " + statDeliveries + " deliveries to "
+				+ subscribers.size() + " subscribers";
+	}
+
+	private static final class Subscriber
+		implements Runnable
+	{
+		private final TorrentListEventBus bus;
+
+		@Thunk
+		final TorrentListReceivedListener l;
+
+		@Nullable
+		private final Executor executor;
+
+		private final long minIntervalMS;
+
+		@Thunk
+		volatile boolean active = true;
+
+		// Guarded by this
+
+		private String callID;
+
+		/** torrent id -> latest torrent map.  Insertion ordered */
+		private final Map<Long, Object> mapAdded = new LinkedHashMap<>();
+
+		/** Entries without an id, passed through as is */
+		private final List<Object> listAddedOther = new ArrayList<>();
+
+		private final Set<Long> setRemoved = new LinkedHashSet<>();
+
+		private boolean scheduled;
+
+		private long lastDeliveredOn;
+
+		Subscriber(TorrentListEventBus bus, TorrentListReceivedListener l,
+				@Nullable Executor executor, long minIntervalMS) {
+			this.bus = bus;
+			this.l = l;
+			this.executor = executor;
+			this.minIntervalMS = minIntervalMS;
+		}
+
+		synchronized void merge(String callID, List<?> addedTorrentMaps,
+				@Nullable List<?> removedTorrentIDs) {
+			if (!active) {
+				return;
+			}
+			this.callID = callID;
+
+			for (Object item : addedTorrentMaps) {
+				Object id = (item instanceof Map) ? ((Map) item).get("id") : null;
+				if (!(id instanceof Number)) {
+					listAddedOther.add(item);
+					continue;
+				}
+				Long torrentID = ((Number) id).longValue();
+				setRemoved.remove(torrentID);
+				Object existing = mapAdded.remove(torrentID);
+				if (existing instanceof Map && ((Map) item).size() <= 1
+						&& ((Map) existing).size() > 1) {
+					// id-only placeholder (failed request), keep the real state
+					item = existing;
+				}
+				mapAdded.put(torrentID, item);
+			}
+
+			if (removedTorrentIDs != null) {
+				for (Object id : removedTorrentIDs) {
+					if (id instanceof Number) {
+						Long torrentID = ((Number) id).longValue();
+						mapAdded.remove(torrentID);
+						setRemoved.add(torrentID);
+					}
+				}
+			}
+
+			if (scheduled) {
+				return;
+			}
+			scheduled = true;
+
+			long now = SystemClock.uptimeMillis();
+			long due = Math.max(now, lastDeliveredOn + minIntervalMS);
+			// round up to the next frame
+			due += FRAME_MS - (due % FRAME_MS);
+			getScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (executor == null) {
+						Subscriber.this.run();
+					} else {
+						executor.execute(Subscriber.this);
+					}
+				}
+			}, due - now, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void run() {
+			String callID;
+			List<Object> listAdded;
+			List<Object> listRemoved;
+			synchronized (this) {
+				scheduled = false;
+				lastDeliveredOn = SystemClock.uptimeMillis();
+				callID = this.callID;
+				listAdded = new ArrayList<>(mapAdded.size() + listAddedOther.size());
+				listAdded.addAll(mapAdded.values());
+				listAdded.addAll(listAddedOther);
+				listRemoved = setRemoved.size() == 0 ? null
+						: new ArrayList<Object>(setRemoved);
+				mapAdded.clear();
+				listAddedOther.clear();
+				setRemoved.clear();
+			}
+			if (!active) {
+				return;
+			}
+			bus.countDelivery();
+			try {
+				l.rpcTorrentListReceived(callID, listAdded, listRemoved);
+			} catch (Throwable t) {
+				if (AndroidUtils.DEBUG) {
+					Log.e(TAG, "deliver to " + l, t);
+				}
+				AnalyticsTracker.getInstance().logError(t);
+			}
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.io.*;
+import java.util.*;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.BiglyBTApp;
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.util.JSONUtils;
+import com.biglybt.android.util.MapUtils;
+import com.biglybt.android.util.StoreFiles;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+/**
+ * Last known torrent list of a remote profile, kept in a small JSON file.
+ * <p/>
+ * Written when the app leaves a session and by
+ * {@link TorrentCompletionMonitor}, read to show the list straight away when
+ * a session is created, before the first refresh completes.  Only fields the
+ * list rows need are kept; no files, peers or speeds.
+ */
+class TorrentListStore
+{
+	private static final String TAG = "TorrentListStore";
+
+	private static final String DIR_NAME = "torrent_list";
+
+	private static final int FILE_VERSION = 1;
+
+	private static final String KEY_VERSION = "v";
+
+	private static final String KEY_TORRENTS = "torrents";
+
+	private static final String[] STORED_FIELDS = {
+		TransmissionVars.FIELD_TORRENT_ID,
+		TransmissionVars.FIELD_TORRENT_HASH_STRING,
+		TransmissionVars.FIELD_TORRENT_NAME,
+		TransmissionVars.FIELD_TORRENT_PERCENT_DONE,
+		TransmissionVars.FIELD_TORRENT_SIZE_WHEN_DONE,
+		TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE,
+		TransmissionVars.FIELD_TORRENT_STATUS,
+		TransmissionVars.FIELD_TORRENT_ERROR,
+		TransmissionVars.FIELD_TORRENT_ERROR_STRING,
+		TransmissionVars.FIELD_TORRENT_DATE_ADDED,
+		TransmissionVars.FIELD_TORRENT_DATE_ACTIVITY,
+		TransmissionVars.FIELD_TORRENT_POSITION,
+		TransmissionVars.FIELD_TORRENT_UPLOAD_RATIO,
+		TransmissionVars.FIELD_TORRENT_FILE_COUNT,
+		TransmissionVars.FIELD_TORRENT_TAG_UIDS,
+	};
+
+	/**
+	 * Sessions and {@link TorrentCompletionMonitor} both save, from different
+	 * threads; one at a time, so the last save is what's on disk.  Also held
+	 * across {@link #edit(Editor)}, so an edit doesn't undo a save
+	 */
+	private static final Object saveLock = new Object();
+
+	interface Editor
+	{
+		/**
+		 * @param stored Stored torrents by id, to be changed in place
+		 * @return true if stored changed and needs saving
+		 */
+		boolean edit(@NonNull Map<Long, Map<String, Object>> stored);
+	}
+
+	@NonNull
+	private final String profileID;
+
+	TorrentListStore(@NonNull String profileID) {
+		this.profileID = profileID;
+	}
+
+	/**
+	 * @return Stored torrents by id, or null if nothing was stored
+	 */
+	@WorkerThread
+	@Nullable
+	LinkedHashMap<Long, Map<String, Object>> load() {
+		File file = getFile();
+		if (file == null || !file.exists()) {
+			return null;
+		}
+		Reader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			Map<String, Object> map = JSONUtils.decodeJSON(reader);
+			if (MapUtils.getMapInt(map, KEY_VERSION, 0) != FILE_VERSION) {
+				return null;
+			}
+			List<?> list = MapUtils.getMapList(map, KEY_TORRENTS, null);
+			if (list == null) {
+				return null;
+			}
+			LinkedHashMap<Long, Map<String, Object>> torrents = new LinkedHashMap<>();
+			for (Object o : list) {
+				if (!(o instanceof Map)) {
+					continue;
+				}
+				//noinspection unchecked
+				Map<String, Object> mapTorrent = (Map<String, Object>) o;
+				long id = MapUtils.getMapLong(mapTorrent,
+						TransmissionVars.FIELD_TORRENT_ID, -1);
+				if (id >= 0) {
+					torrents.put(id, mapTorrent);
+				}
+			}
+			return torrents;
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "load", t);
+			}
+			return null;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param torrents Torrent maps; only {@link #STORED_FIELDS} are written
+	 */
+	@WorkerThread
+	void save(@NonNull Collection<? extends Map<?, ?>> torrents) {
+		File file = getFile();
+		if (file == null) {
+			return;
+		}
+
+		List<Map<String, Object>> list = new ArrayList<>(torrents.size());
+		for (Map<?, ?> mapTorrent : torrents) {
+			Map<String, Object> mapStored = new HashMap<>();
+			for (String field : STORED_FIELDS) {
+				Object value = mapTorrent.get(field);
+				if (value != null) {
+					mapStored.put(field, value);
+				}
+			}
+			list.add(mapStored);
+		}
+		final Map<String, Object> map = new HashMap<>();
+		map.put(KEY_VERSION, FILE_VERSION);
+		map.put(KEY_TORRENTS, list);
+
+		synchronized (saveLock) {
+			StoreFiles.writeAtomic(file, new StoreFiles.StreamWriter() {
+				@Override
+				public void writeTo(@NonNull OutputStream out)
+						throws IOException {
+					Writer writer = new OutputStreamWriter(out, "utf-8");
+					writer.write(JSONUtils.encodeToJSON(map));
+					writer.flush();
+				}
+			});
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "saved " + list.size() + " torrents of " + profileID);
+		}
+	}
+
+	/**
+	 * Load, change and save the stored list, with no other save in between.
+	 * Nothing happens if there's no stored list.
+	 */
+	@WorkerThread
+	void edit(@NonNull Editor editor) {
+		synchronized (saveLock) {
+			Map<Long, Map<String, Object>> stored = load();
+			if (stored != null && editor.edit(stored)) {
+				save(stored.values());
+			}
+		}
+	}
+
+	/**
+	 * Deletes the stored list of a profile, in the background
+	 */
+	static void removeProfile(@NonNull String profileID) {
+		StoreFiles.deleteAsync(getDir(), profileID + ".");
+	}
+
+	@Nullable
+	private File getFile() {
+		return StoreFiles.getFile(getDir(), profileID, ".json");
+	}
+
+	@Nullable
+	private static File getDir() {
+		try {
+			return new File(BiglyBTApp.getContext().getFilesDir(), DIR_NAME);
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,523 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.*;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.TransmissionVars;
+import com.biglybt.android.util.IndexRangeSet;
+import com.biglybt.android.util.MapUtils;
+import com.biglybt.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Changes made to the torrent cache ahead of the remote confirming them.
+ * <p/>
+ * A mutation is applied to the cache as soon as the request is made, and
+ * stays pending until a torrent update shows the remote has the new values.
+ * While pending, updates that still have the old values (ex. a refresh that
+ * was already in flight) get the new values laid over them, so the UI doesn't
+ * flip back and forth.  If no confirming update arrives within
+ * {@link #CONFIRM_DEADLINE_MS} of the remote accepting the request, the
+ * affected torrents are fetched once; whatever that returns is taken as is.
+ * A rejected request rolls the changed fields back.
+ * <p/>
+ * All methods that touch the cache must be called while holding the cache
+ * write lock of {@link Session_Torrent}, which is always taken before this
+ * object's lock.
+ */
+class TorrentMutations
+{
+	private static final String TAG = "TorrentMutations";
+
+	static final long CONFIRM_DEADLINE_MS = 3000;
+
+	private static final String CALLID_PREFIX = "mutation-";
+
+	static final class Mutation
+	{
+		final long id;
+
+		/** null for a mutation affecting all torrents */
+		@Nullable
+		final long[] torrentIDs;
+
+		/** Torrent field -> new value */
+		@NonNull
+		final Map<String, Object> torrentChanges;
+
+		@Nullable
+		final IndexRangeSet fileIndexes;
+
+		@Nullable
+		final String fileField;
+
+		@Nullable
+		final Object fileValue;
+
+		final boolean isRemove;
+
+		/**
+		 * Any update to the torrent after the request was accepted confirms,
+		 * for requests whose outcome can't be predicted
+		 */
+		final boolean confirmOnAnyUpdate;
+
+		/** torrent id -> field -> value before the mutation */
+		final Map<Long, Map<String, Object>> originals = new HashMap<>();
+
+		/** torrent id -> file index -> file value before the mutation */
+		final Map<Long, Map<Integer, Object>> originalFileValues = new HashMap<>();
+
+		/** torrent id -> torrent map, for removals */
+		final Map<Long, Map<?, ?>> removedMaps = new HashMap<>();
+
+		final Set<Long> unconfirmed = new HashSet<>();
+
+		/** Remote accepted the request */
+		boolean accepted;
+
+		boolean fetched;
+
+		@Nullable
+		Runnable fetcher;
+
+		Mutation(long id, @Nullable long[] torrentIDs,
+				@NonNull Map<String, Object> torrentChanges,
+				@Nullable IndexRangeSet fileIndexes, @Nullable String fileField,
+				@Nullable Object fileValue, boolean isRemove,
+				boolean confirmOnAnyUpdate) {
+			this.id = id;
+			this.torrentIDs = torrentIDs;
+			this.torrentChanges = torrentChanges;
+			this.fileIndexes = fileIndexes;
+			this.fileField = fileField;
+			this.fileValue = fileValue;
+			this.isRemove = isRemove;
+			this.confirmOnAnyUpdate = confirmOnAnyUpdate;
+			if (torrentIDs != null) {
+				for (long torrentID : torrentIDs) {
+					unconfirmed.add(torrentID);
+				}
+			}
+		}
+
+		String getCallID() {
+			return getCallID(id);
+		}
+
+		static String getCallID(long id) {
+			return CALLID_PREFIX + id;
+		}
+
+		boolean affects(long torrentID) {
+			return torrentIDs == null || unconfirmed.contains(torrentID);
+		}
+	}
+
+	private final Map<Long, Mutation> mapPending = new LinkedHashMap<>();
+
+	private long nextID = 1;
+
+	private Timer timer;
+
+	@Thunk
+	final Session_Torrent torrent;
+
+	TorrentMutations(Session_Torrent torrent) {
+		this.torrent = torrent;
+	}
+
+	synchronized Mutation create(@Nullable long[] torrentIDs,
+			@NonNull Map<String, Object> torrentChanges,
+			@Nullable IndexRangeSet fileIndexes, @Nullable String fileField,
+			@Nullable Object fileValue, boolean isRemove,
+			boolean confirmOnAnyUpdate) {
+		Mutation mutation = new Mutation(nextID++, torrentIDs, torrentChanges,
+				fileIndexes, fileField, fileValue, isRemove, confirmOnAnyUpdate);
+		mapPending.put(mutation.id, mutation);
+		return mutation;
+	}
+
+	@Nullable
+	synchronized Mutation get(long mutationID) {
+		return mapPending.get(mutationID);
+	}
+
+	synchronized boolean isEmpty() {
+		return mapPending.size() == 0;
+	}
+
+	/**
+	 * Apply the mutation to a torrent map that hasn't been published yet,
+	 * remembering the values it replaces.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized void applyTo(Mutation mutation, long torrentID,
+			Map mapTorrent) {
+		if (mutation.torrentChanges.size() > 0) {
+			Map<String, Object> originals = new HashMap<>();
+			for (String key : mutation.torrentChanges.keySet()) {
+				originals.put(key, mapTorrent.get(key));
+				mapTorrent.put(key, mutation.torrentChanges.get(key));
+			}
+			mutation.originals.put(torrentID, originals);
+		}
+
+		if (mutation.fileIndexes != null && mutation.fileField != null) {
+			Map<Integer, Object> originals = new HashMap<>();
+			setFileValues(mapTorrent, mutation.fileIndexes, mutation.fileField,
+					mutation.fileValue, originals);
+			mutation.originalFileValues.put(torrentID, originals);
+		}
+	}
+
+	/**
+	 * Remote accepted the request.  Starts the confirm deadline.
+	 *
+	 * @param fetcher Fetches the affected torrents, using
+	 *                {@link Mutation#getCallID()}.  null if no fetch is needed
+	 *                (ex. removals)
+	 */
+	void accepted(long mutationID, @Nullable Runnable fetcher) {
+		synchronized (this) {
+			Mutation mutation = mapPending.get(mutationID);
+			if (mutation == null) {
+				return;
+			}
+			mutation.accepted = true;
+			mutation.fetcher = fetcher;
+			if (mutation.torrentIDs != null && mutation.unconfirmed.size() == 0) {
+				mapPending.remove(mutationID);
+				return;
+			}
+		}
+		scheduleDeadline(mutationID);
+	}
+
+	/**
+	 * Called for every torrent in an incoming update, after it has been merged
+	 * with the cached one.
+	 *
+	 * @param incomingKeys Keys the remote sent, before merging.  Fields not
+	 *                     sent can't confirm anything
+	 * @return false if the torrent should be dropped (removal pending)
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized boolean reconcile(String callID, long torrentID,
+			Map mapTorrent, Set<?> incomingKeys) {
+		boolean keep = true;
+		for (Iterator<Mutation> iter = mapPending.values().iterator(); iter.hasNext();) {
+			Mutation mutation = iter.next();
+			if (!mutation.affects(torrentID)) {
+				continue;
+			}
+
+			if (mutation.getCallID().equals(callID)) {
+				// Our own fetch: the remote's word is final
+				mutation.unconfirmed.remove(torrentID);
+			} else if (mutation.isRemove) {
+				// Stale update from before the removal
+				keep = false;
+				continue;
+			} else if (mutation.accepted
+					&& (mutation.confirmOnAnyUpdate
+							|| isConfirmedBy(mutation, mapTorrent, incomingKeys))) {
+				mutation.unconfirmed.remove(torrentID);
+			} else if (mutation.torrentIDs != null) {
+				// Not there yet, keep showing what we expect
+				for (String key : mutation.torrentChanges.keySet()) {
+					mapTorrent.put(key, mutation.torrentChanges.get(key));
+				}
+				if (mutation.fileIndexes != null && mutation.fileField != null) {
+					setFileValues(mapTorrent, mutation.fileIndexes, mutation.fileField,
+							mutation.fileValue, null);
+				}
+			}
+
+			if (mutation.torrentIDs != null && mutation.unconfirmed.size() == 0) {
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, "confirmed " + mutation.getCallID());
+				}
+				iter.remove();
+			}
+		}
+		return keep;
+	}
+
+	/**
+	 * A torrent list was received.  Mutations on all torrents are confirmed by
+	 * any list received after the remote accepted them.
+	 */
+	synchronized void listReceived(String callID) {
+		for (Iterator<Mutation> iter = mapPending.values().iterator(); iter.hasNext();) {
+			Mutation mutation = iter.next();
+			if (mutation.torrentIDs == null
+					&& (mutation.accepted || mutation.getCallID().equals(callID))) {
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Our fetch failed for a torrent.  Stop waiting on it, the next refresh
+	 * will sort it out.
+	 */
+	synchronized void fetchFailed(String callID, long torrentID) {
+		if (!callID.startsWith(CALLID_PREFIX)) {
+			return;
+		}
+		for (Iterator<Mutation> iter = mapPending.values().iterator(); iter.hasNext();) {
+			Mutation mutation = iter.next();
+			if (mutation.getCallID().equals(callID)) {
+				mutation.unconfirmed.remove(torrentID);
+				if (mutation.unconfirmed.size() == 0) {
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the mutation, returning it so the caller can roll it back.
+	 */
+	@Nullable
+	synchronized Mutation remove(long mutationID) {
+		return mapPending.remove(mutationID);
+	}
+
+	/**
+	 * Restore the fields the mutation changed, unless something else changed
+	 * them since.
+	 */
+	@SuppressWarnings("unchecked")
+	static void rollback(Mutation mutation, long torrentID, Map mapTorrent) {
+		Map<String, Object> originals = mutation.originals.get(torrentID);
+		if (originals != null) {
+			for (String key : originals.keySet()) {
+				if (valuesMatch(mapTorrent.get(key), mutation.torrentChanges.get(key))) {
+					mapTorrent.put(key, originals.get(key));
+				}
+			}
+		}
+
+		Map<Integer, Object> originalFileValues = mutation.originalFileValues.get(
+				torrentID);
+		if (originalFileValues != null && mutation.fileField != null) {
+			List<?> listFiles = MapUtils.getMapList(mapTorrent,
+					TransmissionVars.FIELD_TORRENT_FILES, null);
+			if (listFiles == null) {
+				return;
+			}
+			if (listFiles instanceof FileTable) {
+				FileTable table = ((FileTable) listFiles).copy();
+				for (Integer index : originalFileValues.keySet()) {
+					if (index < table.size()) {
+						table.setValue(index, mutation.fileField,
+								originalFileValues.get(index));
+					}
+				}
+				mapTorrent.put(TransmissionVars.FIELD_TORRENT_FILES, table);
+				return;
+			}
+			List<Object> listNewFiles = new ArrayList<Object>(listFiles);
+			for (Integer index : originalFileValues.keySet()) {
+				if (index >= listNewFiles.size()
+						|| !(listNewFiles.get(index) instanceof Map)) {
+					continue;
+				}
+				Map mapFile = new HashMap((Map) listNewFiles.get(index));
+				mapFile.put(mutation.fileField, originalFileValues.get(index));
+				listNewFiles.set(index, mapFile);
+			}
+			mapTorrent.put(TransmissionVars.FIELD_TORRENT_FILES, listNewFiles);
+		}
+	}
+
+	private static boolean isConfirmedBy(Mutation mutation, Map<?, ?> mapTorrent,
+			Set<?> incomingKeys) {
+		boolean checkedSomething = false;
+		for (String key : mutation.torrentChanges.keySet()) {
+			if (!incomingKeys.contains(key)) {
+				continue;
+			}
+			checkedSomething = true;
+			if (!valuesMatch(mapTorrent.get(key), mutation.torrentChanges.get(key))) {
+				return false;
+			}
+		}
+
+		if (mutation.fileIndexes != null && mutation.fileField != null) {
+			if (!incomingKeys.contains(TransmissionVars.FIELD_TORRENT_FILES)) {
+				return false;
+			}
+			List<?> listFiles = MapUtils.getMapList(mapTorrent,
+					TransmissionVars.FIELD_TORRENT_FILES, Collections.emptyList());
+			IndexRangeSet fileIndexes = mutation.fileIndexes;
+			for (int run = 0; run < fileIndexes.getRunCount(); run++) {
+				int end = Math.min(fileIndexes.getRunEnd(run), listFiles.size() - 1);
+				for (int index = fileIndexes.getRunStart(run); index <= end; index++) {
+					if (!(listFiles.get(index) instanceof Map)) {
+						continue;
+					}
+					Object value = ((Map) listFiles.get(index)).get(mutation.fileField);
+					if (!valuesMatch(value, mutation.fileValue)) {
+						return false;
+					}
+					checkedSomething = true;
+				}
+			}
+		}
+		return checkedSomething;
+	}
+
+	/**
+	 * Copies the file list and the changed file maps; the originals may belong
+	 * to a published torrent map
+	 */
+	@SuppressWarnings("unchecked")
+	private static void setFileValues(Map mapTorrent,
+			IndexRangeSet fileIndexes,
+			String fileField, Object value,
+			@Nullable Map<Integer, Object> originals) {
+		List<?> listFiles = MapUtils.getMapList(mapTorrent,
+				TransmissionVars.FIELD_TORRENT_FILES, null);
+		if (listFiles == null) {
+			return;
+		}
+		if (listFiles instanceof FileTable) {
+			FileTable table = ((FileTable) listFiles).copy();
+			for (int run = 0; run < fileIndexes.getRunCount(); run++) {
+				int end = Math.min(fileIndexes.getRunEnd(run), table.size() - 1);
+				for (int index = fileIndexes.getRunStart(run); index <= end; index++) {
+					if (originals != null) {
+						originals.put(index, table.getValue(index, fileField));
+					}
+					table.setValue(index, fileField, value);
+				}
+			}
+			mapTorrent.put(TransmissionVars.FIELD_TORRENT_FILES, table);
+			return;
+		}
+		List<Object> listNewFiles = new ArrayList<Object>(listFiles);
+		for (int run = 0; run < fileIndexes.getRunCount(); run++) {
+			int end = Math.min(fileIndexes.getRunEnd(run), listNewFiles.size() - 1);
+			for (int index = fileIndexes.getRunStart(run); index <= end; index++) {
+				if (!(listNewFiles.get(index) instanceof Map)) {
+					continue;
+				}
+				Map mapFile = new HashMap((Map) listNewFiles.get(index));
+				if (originals != null) {
+					originals.put(index, mapFile.get(fileField));
+				}
+				mapFile.put(fileField, value);
+				listNewFiles.set(index, mapFile);
+			}
+		}
+		mapTorrent.put(TransmissionVars.FIELD_TORRENT_FILES, listNewFiles);
+	}
+
+	/**
+	 * Numbers compare by value (JSON may give us Integer or Long), lists
+	 * compare as sets
+	 */
+	static boolean valuesMatch(@Nullable Object a, @Nullable Object b) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null) {
+			return false;
+		}
+		if (a instanceof Number && b instanceof Number) {
+			return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+		}
+		if (a instanceof Collection && b instanceof Collection) {
+			Collection<?> ca = (Collection<?>) a;
+			Collection<?> cb = (Collection<?>) b;
+			if (ca.size() != cb.size()) {
+				return false;
+			}
+			for (Object o : ca) {
+				boolean found = false;
+				for (Object o2 : cb) {
+					if (valuesMatch(o, o2)) {
+						found = true;
+						break;
+					}
+				}
+				if (!found) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return a.equals(b);
+	}
+
+	private void scheduleDeadline(final long mutationID) {
+		getTimer().schedule(new TimerTask() {
+			@Override
+			public void run() {
+				deadlineReached(mutationID);
+			}
+		}, CONFIRM_DEADLINE_MS);
+	}
+
+	@Thunk
+	void deadlineReached(long mutationID) {
+		Runnable fetcher;
+		synchronized (this) {
+			Mutation mutation = mapPending.get(mutationID);
+			if (mutation == null) {
+				return;
+			}
+			if (mutation.fetched || mutation.fetcher == null) {
+				// Fetch didn't settle it either, or there's nothing to fetch.
+				// Stop overlaying and let refreshes take over
+				mapPending.remove(mutationID);
+				return;
+			}
+			mutation.fetched = true;
+			fetcher = mutation.fetcher;
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "Not confirmed in time, fetching for "
+					+ Mutation.getCallID(mutationID));
+		}
+		fetcher.run();
+		scheduleDeadline(mutationID);
+	}
+
+	private synchronized Timer getTimer() {
+		if (timer == null) {
+			timer = new Timer(TAG, true);
+		}
+		return timer;
+	}
+
+	synchronized void destroy() {
+		mapPending.clear();
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+	}
+}
@@ -17,7 +17,6 @@
 package com.biglybt.android.util;
 
 import java.io.*;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -25,6 +24,7 @@ import java.util.zip.ZipInputStream;
 
 import com.biglybt.android.client.AndroidUtils;
 import com.biglybt.android.client.AndroidUtilsUI;
+import com.biglybt.android.client.BiglyBTApp;
 import com.biglybt.android.client.R;
 import com.biglybt.android.widget.CustomToast;
 
@@ -39,16 +39,12 @@ import android.content.pm.ResolveInfo;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
-import android.os.Environment;
 import android.os.Parcelable;
-import android.os.storage.StorageManager;
-import android.os.storage.StorageVolume;
 import android.provider.OpenableColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.support.v4.app.DialogFragment;
-import android.support.v4.content.ContextCompat;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -234,6 +230,11 @@ public class FileUtils
 		}
 	}
 
+	/**
+	 * Resolves <code>f</code> against the cached volumes from
+	 * {@link BiglyBTApp#getStorageVolumes()}; cheap enough for the UI thread
+	 * once volumes have been discovered.
+	 */
 	public static PathInfo buildPathInfo(Context context, File f) {
 		String absolutePath = f.getAbsolutePath();
 
@@ -241,91 +242,14 @@ public class FileUtils
 		pathInfo.file = f;
 		pathInfo.storagePath = f.getParent();
 
-		File[] externalFilesDirs = ContextCompat.getExternalFilesDirs(context,
-				null);
-		if (externalFilesDirs.length > 1 && externalFilesDirs[1] != null) {
-			String sdPath = externalFilesDirs[1].getAbsolutePath();
-			if (absolutePath.startsWith(sdPath)) {
-				pathInfo.storageVolumeName = context.getString(
-						R.string.private_external_storage);
-				pathInfo.storagePath = sdPath;
-				pathInfo.shortName = absolutePath.substring(sdPath.length());
-				pathInfo.isRemovable = true;
-			}
-		}
-
-		if (pathInfo.shortName == null && externalFilesDirs.length > 0
-				&& externalFilesDirs[0] != null) {
-			String internalPath = externalFilesDirs[0].getAbsolutePath();
-			if (absolutePath.startsWith(internalPath)) {
-				pathInfo.storageVolumeName = context.getString(
-						R.string.private_internal_storage);
-				pathInfo.storagePath = internalPath;
-				pathInfo.shortName = absolutePath.substring(internalPath.length());
-				pathInfo.isRemovable = false;
-			}
-		}
-
-		if (pathInfo.shortName == null) {
-			String path = Environment.getExternalStorageDirectory().getAbsolutePath();
-			if (absolutePath.startsWith(path)) {
-				boolean isRemovable = Environment.isExternalStorageRemovable();
-				pathInfo.shortName = absolutePath.substring(path.length());
-				pathInfo.storagePath = path;
-				pathInfo.isRemovable = isRemovable;
-			}
-		}
-
-		if (pathInfo.shortName == null) {
-			String secondaryStorage = System.getenv("SECONDARY_STORAGE");
-			if (secondaryStorage != null) {
-				String[] split = secondaryStorage.split(File.pathSeparator);
-				for (String dir : split) {
-					String path = new File(dir).getAbsolutePath();
-					if (absolutePath.startsWith(path)) {
-						boolean isRemovable = true;
-						pathInfo.storagePath = path;
-						pathInfo.shortName = absolutePath.substring(path.length());
-						pathInfo.isRemovable = isRemovable;
-					}
-				}
-			}
-		}
-
-		if (pathInfo.shortName == null) {
-			if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
-				StorageManager sm = (StorageManager) context.getSystemService(
-						Context.STORAGE_SERVICE);
-
-				try {
-					StorageVolume storageVolume = null;
-					assert sm != null;
-					storageVolume = sm.getStorageVolume(f);
-
-					Method mGetPath = storageVolume.getClass().getMethod("getPath");
-					Object oPath = mGetPath.invoke(storageVolume);
-					if (oPath instanceof String) {
-						String path = (String) oPath;
-						if (absolutePath.startsWith(path)) {
-							pathInfo.storageVolumeName = storageVolume.getDescription(
-									context);
-							pathInfo.storagePath = path;
-							pathInfo.shortName = absolutePath.substring(path.length());
-							if (pathInfo.shortName.startsWith("/")) {
-								pathInfo.shortName = pathInfo.shortName.substring(1);
-							}
-							pathInfo.isRemovable = storageVolume.isRemovable();
-							return pathInfo;
-						}
-					}
-				} catch (Throwable ignore) {
-				}
-
-			}
-
-		}
-
-		if (pathInfo.shortName == null) {
+		StorageVolumeRegistry.Volume volume = BiglyBTApp.getStorageVolumes().findVolume(
+				f);
+		if (volume != null) {
+			pathInfo.storageVolumeName = volume.name;
+			pathInfo.storagePath = volume.path;
+			pathInfo.shortName = absolutePath.substring(volume.path.length());
+			pathInfo.isRemovable = volume.isRemovable;
+		} else {
 			pathInfo.shortName = f.toString();
 		}
 		if (pathInfo.shortName.startsWith("/")) {
@@ -336,7 +260,7 @@ public class FileUtils
 
 	public static void unzip(InputStream stream, File destination,
 			boolean overwrite) {
-		dirChecker(destination, "");
+		dirChecker(destination);
 		byte[] buffer = new byte[10240];
 		try {
 			int numCopied = 0;
@@ -345,10 +269,15 @@ public class FileUtils
 
 			while ((ze = zin.getNextEntry()) != null) {
 
+				File f = getZipEntryFile(destination, ze.getName());
+				if (f == null) {
+					Log.w(TAG, "unzip: skipping " + ze.getName());
+					continue;
+				}
+
 				if (ze.isDirectory()) {
-					dirChecker(destination, ze.getName());
+					dirChecker(f);
 				} else {
-					File f = new File(destination, ze.getName());
 					if (overwrite || !f.exists() || f.length() != ze.getSize()
 							|| f.lastModified() != ze.getTime()) {
 						FileOutputStream fout = new FileOutputStream(f);
@@ -375,9 +304,27 @@ public class FileUtils
 
 	}
 
-	private static void dirChecker(File destination, String dir) {
-		File f = new File(destination, dir);
+	/**
+	 * Where a zip entry goes when extracted into destination.
+	 *
+	 * @return null if the entry name would put it outside of destination
+	 * ("../", absolute paths, etc)
+	 */
+	@Nullable
+	public static File getZipEntryFile(@NonNull File destination,
+			@NonNull String entryName)
+			throws IOException {
+		String destPath = destination.getCanonicalPath();
+		File f = new File(destination, entryName);
+		String path = f.getCanonicalPath();
+		if (!path.equals(destPath)
+				&& !path.startsWith(destPath + File.separator)) {
+			return null;
+		}
+		return f;
+	}
 
+	private static void dirChecker(File f) {
 		if (!f.isDirectory()) {
 			boolean success = f.mkdirs();
 			if (!success) {
@@ -0,0 +1,186 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Immutable set of non-negative indexes (ex. file indexes), stored as sorted,
+ * non-overlapping runs.  Selecting a whole folder of a large torrent is
+ * usually a handful of runs rather than one int per file.
+ * <p/>
+ * {@link #toRangeString()} is the wire form for remotes that understand it,
+ * {@link #toArray()} expands for those that don't.
+ */
+public final class IndexRangeSet
+{
+	public static final IndexRangeSet EMPTY = new IndexRangeSet(new int[0], 0);
+
+	/** start0, end0, start1, end1, ...  Ends are inclusive */
+	private final int[] runs;
+
+	private final int size;
+
+	private IndexRangeSet(int[] runs, int size) {
+		this.runs = runs;
+		this.size = size;
+	}
+
+	@NonNull
+	public static IndexRangeSet of(int... indexes) {
+		Builder builder = new Builder();
+		for (int index : indexes) {
+			builder.add(index);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return number of indexes
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getRunCount() {
+		return runs.length / 2;
+	}
+
+	public int getRunStart(int run) {
+		return runs[run * 2];
+	}
+
+	/** Inclusive */
+	public int getRunEnd(int run) {
+		return runs[run * 2 + 1];
+	}
+
+	public boolean contains(int index) {
+		int lo = 0;
+		int hi = getRunCount() - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (index < runs[mid * 2]) {
+				hi = mid - 1;
+			} else if (index > runs[mid * 2 + 1]) {
+				lo = mid + 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Every index, ascending
+	 */
+	@NonNull
+	public int[] toArray() {
+		int[] array = new int[size];
+		int pos = 0;
+		for (int i = 0; i < runs.length; i += 2) {
+			for (int index = runs[i]; index <= runs[i + 1]; index++) {
+				array[pos++] = index;
+			}
+		}
+		return array;
+	}
+
+	/**
+	 * @return "0-99,105,200-300" style list
+	 */
+	@NonNull
+	public String toRangeString() {
+		StringBuilder sb = new StringBuilder(runs.length * 4);
+		for (int i = 0; i < runs.length; i += 2) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(runs[i]);
+			if (runs[i + 1] != runs[i]) {
+				sb.append('-').append(runs[i + 1]);
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof IndexRangeSet
+				&& Arrays.equals(runs, ((IndexRangeSet) o).runs);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(runs);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + toRangeString() + "]";
+	}
+
+	/**
+	 * Indexes can be added in any order, duplicates are ignored
+	 */
+	public static final class Builder
+	{
+		private final BitSet bits = new BitSet();
+
+		public Builder add(int index) {
+			if (index >= 0) {
+				bits.set(index);
+			}
+			return this;
+		}
+
+		public Builder addRange(int start, int endInclusive) {
+			if (start >= 0 && endInclusive >= start) {
+				bits.set(start, endInclusive + 1);
+			}
+			return this;
+		}
+
+		public boolean isEmpty() {
+			return bits.isEmpty();
+		}
+
+		@NonNull
+		public IndexRangeSet build() {
+			if (bits.isEmpty()) {
+				return EMPTY;
+			}
+			int numRuns = 0;
+			for (int start = bits.nextSetBit(0); start >= 0; start = bits.nextSetBit(
+					bits.nextClearBit(start))) {
+				numRuns++;
+			}
+			int[] runs = new int[numRuns * 2];
+			int pos = 0;
+			for (int start = bits.nextSetBit(0); start >= 0; start = bits.nextSetBit(
+					bits.nextClearBit(start))) {
+				int end = bits.nextClearBit(start) - 1;
+				runs[pos++] = start;
+				runs[pos++] = end;
+			}
+			return new IndexRangeSet(runs, bits.cardinality());
+		}
+	}
+}
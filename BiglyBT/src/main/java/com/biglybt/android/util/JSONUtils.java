@@ -23,6 +23,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONReader;
 import com.alibaba.fastjson.parser.Feature;
 import com.biglybt.android.client.AnalyticsTracker;
+import com.biglybt.android.client.TransmissionVars;
 
 import android.support.annotation.Nullable;
 import android.util.Log;
@@ -45,6 +46,19 @@ public class JSONUtils
 
 	private static final String DEFAULT_MAP_KEY = "value";
 
+	/**
+	 * Decoded values go through here, so a refresh returning the same names,
+	 * hashes and statuses as the last one doesn't keep new copies of them.
+	 * <p/>
+	 * File and peer lists are skipped: one big torrent would replace every
+	 * slot with file names and addresses.  FileTable shares file path
+	 * segments itself.
+	 */
+	private static final StringPool stringPool = new StringPool(8192, 256,
+			TransmissionVars.FIELD_TORRENT_FILES,
+			TransmissionVars.FIELD_TORRENT_FILESTATS,
+			TransmissionVars.FIELD_TORRENT_PEERS);
+
 	/**
 	 * decodes JSON formatted text into a map.
 	 * 
@@ -95,7 +109,7 @@ public class JSONUtils
 
 	private static Object parseWithException(String json) {
 		//return new JSONParser(JSONParser.MODE_PERMISSIVE).parse(json);
-		return JSON.parse(json, features);
+		return stringPool.internAll(JSON.parse(json, features));
 	}
 
 	private static Object parseWithException(Reader reader) {
@@ -103,7 +117,7 @@ public class JSONUtils
 		JSONReader jsonReader = new JSONReader(reader);
 		Object readObject = jsonReader.readObject();
 		jsonReader.close();
-		return readObject;
+		return stringPool.internAll(readObject);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -139,6 +153,10 @@ public class JSONUtils
 	}
 	*/
 
+	public static String getStringPoolStats() {
+		return stringPool.getStats();
+	}
+
 	public static String encodeToJSON(@Nullable Map<?, ?> map) {
 		return JSON.toJSONString(map);
 	}
@@ -225,6 +225,26 @@ public class NetworkState
 		return false;
 	}
 
+	/**
+	 * @return A key that changes when the active network does (wifi to mobile,
+	 * another access point, a new address), or null when there is none.
+	 * Sockets opened on the old network are dead once it changes.
+	 */
+	@Nullable
+	public String getActiveNetworkKey() {
+		ConnectivityManager cm = (ConnectivityManager) applicationContext.getSystemService(
+				Context.CONNECTIVITY_SERVICE);
+		if (cm == null) {
+			return null;
+		}
+		NetworkInfo netInfo = cm.getActiveNetworkInfo();
+		if (netInfo == null || !netInfo.isConnected()) {
+			return null;
+		}
+		return netInfo.getType() + "/" + netInfo.getExtraInfo() + "/"
+				+ getActiveIpAddress();
+	}
+
 	public String getActiveIpAddress() {
 		String ipAddress = "127.0.0.1";
 
@@ -0,0 +1,246 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.util;
+
+import java.io.File;
+import java.util.*;
+
+import com.biglybt.android.client.BiglyBTApp;
+import com.biglybt.util.Thunk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Holds result lists (subscription results, metasearch results) across
+ * activity recreation, so only a key needs to go into the saved instance
+ * state Bundle.
+ * <p/>
+ * Lists stay in memory (bounded by total result count), and are spilled to a
+ * gzipped JSON file in the cache dir in the background, so they survive the
+ * process being killed while in the background.
+ * <p/>
+ * Lists are deep copied going in and coming out, so what is cached or being
+ * written is never shared with an activity that keeps modifying its results.
+ */
+public class ResultsStateCache
+{
+	private static final String DIR_NAME = "results_state";
+
+	/** Total number of results kept in memory over all lists */
+	private static final int MAX_RESULTS_IN_MEMORY = 5000;
+
+	private static final int MAX_SPILL_FILES = 16;
+
+	/** key -> results.  Access ordered, eldest first */
+	private static final LinkedHashMap<String, Map<String, Object>> mapCache = new LinkedHashMap<>(
+			8, 0.75f, true);
+
+	private static int numResultsInMemory = 0;
+
+	/** Spill files, gzipped JSON */
+	@Thunk
+	static final StoreFiles.GzipJSONQueue spillQueue = new StoreFiles.GzipJSONQueue() {
+		@Nullable
+		@Override
+		protected File getFile(@NonNull String key) {
+			return StoreFiles.getFile(getSpillDir(), key, ".json.gz");
+		}
+
+		@Override
+		protected void written(@NonNull String key, @NonNull File file) {
+			trimSpillFiles();
+		}
+	};
+
+	private ResultsStateCache() {
+	}
+
+	/**
+	 * @param type Kind of list, ex. "sub", "ms"
+	 * @param id subscription id, search id, etc
+	 * @return key to store in the Bundle
+	 */
+	@NonNull
+	public static String buildKey(@NonNull String type, @Nullable String profileID,
+			@NonNull String id) {
+		return type + "." + profileID + "." + id;
+	}
+
+	/**
+	 * Store a snapshot of results.  The disk write happens on a background
+	 * thread.  Caller must not modify results from another thread while this
+	 * runs.
+	 */
+	public static void put(@NonNull String key, @NonNull Map<String, ?> results) {
+		// The caller keeps modifying its own maps, and the writer encodes ours
+		Map<String, Object> copy = deepCopy(results);
+		synchronized (mapCache) {
+			Map<String, Object> old = mapCache.put(key, copy);
+			if (old != null) {
+				numResultsInMemory -= old.size();
+			}
+			numResultsInMemory += copy.size();
+			trimMemory(key);
+		}
+		spillQueue.write(key, copy);
+	}
+
+	public interface RestoreListener
+	{
+		/**
+		 * @param results null if not found.  Caller may modify it
+		 */
+		@UiThread
+		void resultsRestored(@Nullable Map<String, Object> results);
+	}
+
+	/**
+	 * Get results previously {@link #put(String, Map)}.  When still in memory,
+	 * l is called before this returns.  Otherwise the spill file is read in
+	 * the background, and l is called later on the main thread.
+	 */
+	@UiThread
+	public static void get(@NonNull final String key,
+			@NonNull final RestoreListener l) {
+		Map<String, Object> results = null;
+		synchronized (mapCache) {
+			Map<String, Object> map = mapCache.get(key);
+			if (map != null) {
+				results = deepCopy(map);
+			}
+		}
+		if (results != null) {
+			l.resultsRestored(results);
+			return;
+		}
+		StoreFiles.execute(new Runnable() {
+			@Override
+			public void run() {
+				// A snapshot still waiting to be written is shared with the writer
+				Map<String, Object> map = spillQueue.read(key);
+				final Map<String, Object> results = map == null ? null
+						: deepCopy(map);
+				new Handler(Looper.getMainLooper()).post(new Runnable() {
+					@Override
+					public void run() {
+						l.resultsRestored(results);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Forget results.  The spill file is deleted in the background; this is
+	 * called from onDestroy.
+	 */
+	public static void remove(@NonNull String key) {
+		synchronized (mapCache) {
+			Map<String, Object> old = mapCache.remove(key);
+			if (old != null) {
+				numResultsInMemory -= old.size();
+			}
+		}
+		spillQueue.delete(key);
+	}
+
+	/**
+	 * Copies maps and lists all the way down.  Other values (strings,
+	 * numbers, booleans) are immutable and shared.
+	 */
+	@Thunk
+	@NonNull
+	static Map<String, Object> deepCopy(@NonNull Map<String, ?> map) {
+		Map<String, Object> copy = new HashMap<>(map.size() * 4 / 3 + 1);
+		for (Map.Entry<String, ?> entry : map.entrySet()) {
+			copy.put(entry.getKey(), deepCopyValue(entry.getValue()));
+		}
+		return copy;
+	}
+
+	private static Object deepCopyValue(Object o) {
+		if (o instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) o;
+			Map<Object, Object> copy = new HashMap<>(map.size() * 4 / 3 + 1);
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				copy.put(entry.getKey(), deepCopyValue(entry.getValue()));
+			}
+			return copy;
+		}
+		if (o instanceof List) {
+			List<?> list = (List<?>) o;
+			List<Object> copy = new ArrayList<>(list.size());
+			for (Object item : list) {
+				copy.add(deepCopyValue(item));
+			}
+			return copy;
+		}
+		return o;
+	}
+
+	private static void trimMemory(String keepKey) {
+		Iterator<Map.Entry<String, Map<String, Object>>> iterator = mapCache.entrySet().iterator();
+		while (numResultsInMemory > MAX_RESULTS_IN_MEMORY && iterator.hasNext()) {
+			Map.Entry<String, Map<String, Object>> entry = iterator.next();
+			if (entry.getKey().equals(keepKey)) {
+				continue;
+			}
+			numResultsInMemory -= entry.getValue().size();
+			iterator.remove();
+		}
+	}
+
+	@Thunk
+	@WorkerThread
+	static void trimSpillFiles() {
+		File dir = getSpillDir();
+		if (dir == null) {
+			return;
+		}
+		File[] files = dir.listFiles();
+		if (files == null || files.length <= MAX_SPILL_FILES) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				long l = lhs.lastModified();
+				long r = rhs.lastModified();
+				return l < r ? -1 : l > r ? 1 : 0;
+			}
+		});
+		for (int i = 0; i < files.length - MAX_SPILL_FILES; i++) {
+			//noinspection ResultOfMethodCallIgnored
+			files[i].delete();
+		}
+	}
+
+	@Thunk
+	@Nullable
+	static File getSpillDir() {
+		try {
+			return new File(BiglyBTApp.getContext().getCacheDir(), DIR_NAME);
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.util;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.R;
+import com.biglybt.util.Thunk;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.os.storage.StorageManager;
+import android.os.storage.StorageVolume;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+
+/**
+ * Storage volumes of the device, discovered once and rediscovered when media
+ * is mounted or unmounted.  A path resolves to the volume with the longest
+ * matching prefix.
+ * <p/>
+ * Writability probes and free space are cached for a short while, since the
+ * move data dialog asks for both on every candidate directory.
+ */
+public class StorageVolumeRegistry
+{
+	private static final String TAG = "StorageVolumes";
+
+	private static final long CANWRITE_TTL_MS = 30 * 1000;
+
+	private static final long FREESPACE_TTL_MS = 5 * 1000;
+
+	public static class Volume
+	{
+		@NonNull
+		public final String path;
+
+		/** null when there's no better name than Internal/External */
+		@Nullable
+		public final String name;
+
+		public final boolean isRemovable;
+
+		Volume(@NonNull String path, @Nullable String name, boolean isRemovable) {
+			this.path = path;
+			this.name = name;
+			this.isRemovable = isRemovable;
+		}
+
+		boolean contains(@NonNull String absolutePath) {
+			return absolutePath.startsWith(path)
+					&& (absolutePath.length() == path.length()
+							|| absolutePath.charAt(path.length()) == File.separatorChar
+							|| path.endsWith(File.separator));
+		}
+
+		@Override
+		public String toString() {
+			return path + (isRemovable ? " (removable) " : " ") + name;
+		}
+	}
+
+	private static class CachedValue
+	{
+		final long value;
+
+		final long time;
+
+		CachedValue(long value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	@Thunk
+	final Application applicationContext;
+
+	/** null until discovered.  Guarded by this */
+	@Nullable
+	private List<Volume> volumes;
+
+	/** Guarded by this */
+	private final Map<String, CachedValue> mapCanWrite = new HashMap<>();
+
+	/** Guarded by this */
+	private final Map<String, CachedValue> mapFreeSpace = new HashMap<>();
+
+	public StorageVolumeRegistry(Application applicationContext) {
+		this.applicationContext = applicationContext;
+
+		BroadcastReceiver mediaReceiver = new BroadcastReceiver() {
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, intent.getAction() + " " + intent.getData());
+				}
+				invalidate();
+			}
+		};
+		IntentFilter filter = new IntentFilter();
+		filter.addAction(Intent.ACTION_MEDIA_MOUNTED);
+		filter.addAction(Intent.ACTION_MEDIA_UNMOUNTED);
+		filter.addAction(Intent.ACTION_MEDIA_REMOVED);
+		filter.addAction(Intent.ACTION_MEDIA_BAD_REMOVAL);
+		filter.addAction(Intent.ACTION_MEDIA_EJECT);
+		filter.addDataScheme("file");
+		applicationContext.registerReceiver(mediaReceiver, filter);
+	}
+
+	/**
+	 * Forget volumes and cached values.  Next lookup rediscovers.
+	 */
+	public synchronized void invalidate() {
+		volumes = null;
+		mapCanWrite.clear();
+		mapFreeSpace.clear();
+	}
+
+	@NonNull
+	public synchronized List<Volume> getVolumes() {
+		if (volumes == null) {
+			volumes = discoverVolumes();
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "discovered " + volumes);
+			}
+		}
+		return volumes;
+	}
+
+	/**
+	 * @return Volume with the longest path that contains <code>f</code>
+	 */
+	@Nullable
+	public Volume findVolume(@NonNull File f) {
+		String absolutePath = f.getAbsolutePath();
+		Volume best = null;
+		for (Volume volume : getVolumes()) {
+			if (volume.contains(absolutePath)
+					&& (best == null || volume.path.length() > best.path.length())) {
+				best = volume;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * {@link FileUtils#canWrite(File)}, remembered for
+	 * {@link #CANWRITE_TTL_MS}
+	 */
+	public boolean canWrite(@Nullable File f) {
+		if (f == null) {
+			return false;
+		}
+		String key = f.getAbsolutePath();
+		long now = SystemClock.elapsedRealtime();
+		synchronized (this) {
+			CachedValue cached = mapCanWrite.get(key);
+			if (cached != null && now - cached.time < CANWRITE_TTL_MS) {
+				return cached.value != 0;
+			}
+		}
+		boolean canWrite = FileUtils.canWrite(f);
+		synchronized (this) {
+			mapCanWrite.put(key, new CachedValue(canWrite ? 1 : 0, now));
+		}
+		return canWrite;
+	}
+
+	/**
+	 * Free space of the volume holding <code>f</code>, remembered for
+	 * {@link #FREESPACE_TTL_MS}
+	 */
+	public long getFreeSpace(@NonNull File f) {
+		Volume volume = findVolume(f);
+		File target = volume == null ? f : new File(volume.path);
+		String key = target.getAbsolutePath();
+		long now = SystemClock.elapsedRealtime();
+		synchronized (this) {
+			CachedValue cached = mapFreeSpace.get(key);
+			if (cached != null && now - cached.time < FREESPACE_TTL_MS) {
+				return cached.value;
+			}
+		}
+		long freeSpace = target.getFreeSpace();
+		synchronized (this) {
+			mapFreeSpace.put(key, new CachedValue(freeSpace, now));
+		}
+		return freeSpace;
+	}
+
+	/**
+	 * Earlier sources win when two report the same path, so the primary
+	 * storage keeps its plain "Internal Storage" naming.
+	 */
+	@NonNull
+	private List<Volume> discoverVolumes() {
+		List<Volume> list = new ArrayList<>();
+
+		File[] externalFilesDirs = null;
+		try {
+			externalFilesDirs = ContextCompat.getExternalFilesDirs(
+					applicationContext, null);
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "getExternalFilesDirs", t);
+			}
+		}
+		if (externalFilesDirs != null) {
+			if (externalFilesDirs.length > 1 && externalFilesDirs[1] != null) {
+				addVolume(list, externalFilesDirs[1].getAbsolutePath(),
+						applicationContext.getString(R.string.private_external_storage),
+						true);
+			}
+			if (externalFilesDirs.length > 0 && externalFilesDirs[0] != null) {
+				addVolume(list, externalFilesDirs[0].getAbsolutePath(),
+						applicationContext.getString(R.string.private_internal_storage),
+						false);
+			}
+		}
+
+		addVolume(list,
+				Environment.getExternalStorageDirectory().getAbsolutePath(), null,
+				Environment.isExternalStorageRemovable());
+
+		String secondaryStorage = System.getenv("SECONDARY_STORAGE"); //NON-NLS
+		if (secondaryStorage != null) {
+			String[] split = secondaryStorage.split(File.pathSeparator);
+			for (String dir : split) {
+				if (dir.length() > 0) {
+					addVolume(list, new File(dir).getAbsolutePath(), null, true);
+				}
+			}
+		}
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+			addStorageManagerVolumes(list);
+		}
+
+		return list;
+	}
+
+	@RequiresApi(api = Build.VERSION_CODES.N)
+	private void addStorageManagerVolumes(List<Volume> list) {
+		StorageManager sm = (StorageManager) applicationContext.getSystemService(
+				Context.STORAGE_SERVICE);
+		if (sm == null) {
+			return;
+		}
+		try {
+			Method mGetPath = null;
+			for (StorageVolume storageVolume : sm.getStorageVolumes()) {
+				if (mGetPath == null) {
+					mGetPath = storageVolume.getClass().getMethod("getPath");
+				}
+				Object oPath = mGetPath.invoke(storageVolume);
+				if (oPath instanceof String) {
+					addVolume(list, (String) oPath,
+							storageVolume.getDescription(applicationContext),
+							storageVolume.isRemovable());
+				}
+			}
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "getStorageVolumes", t);
+			}
+		}
+	}
+
+	private static void addVolume(List<Volume> list, String path,
+			@Nullable String name, boolean isRemovable) {
+		for (Volume volume : list) {
+			if (volume.path.equals(path)) {
+				return;
+			}
+		}
+		list.add(new Volume(path, name, isRemovable));
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.util;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.biglybt.android.client.AndroidUtils;
+import com.biglybt.android.client.AnalyticsTracker;
+import com.biglybt.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+/**
+ * Small files the app keeps about remotes (stored lists, histories, result
+ * snapshots) in its files or cache dir.
+ * <p/>
+ * Files are replaced by writing a temp file and renaming it over, so a
+ * reader never sees half a file.  Each write gets its own temp file, so two
+ * writers of the same file don't clobber each other's.  Disk work goes
+ * through one shared background thread.
+ */
+public class StoreFiles
+{
+	private static final String TAG = "StoreFiles";
+
+	private static final long THREAD_KEEPALIVE_SECS = 30;
+
+	private static ThreadPoolExecutor executor;
+
+	public interface StreamWriter
+	{
+		void writeTo(@NonNull OutputStream out)
+				throws IOException;
+	}
+
+	private StoreFiles() {
+	}
+
+	/**
+	 * Run on the shared store thread.  Jobs run one at a time, in order.
+	 */
+	public static void execute(@NonNull Runnable runnable) {
+		getExecutor().execute(runnable);
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(1, 1, THREAD_KEEPALIVE_SECS,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(@NonNull Runnable r) {
+							Thread thread = new Thread(r, TAG);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * @param name Not yet sanitized; anything outside [A-Za-z0-9._-] becomes _
+	 * @return null if dir isn't available (no context yet)
+	 */
+	@Nullable
+	public static File getFile(@Nullable File dir, @NonNull String name,
+			@NonNull String extension) {
+		if (dir == null) {
+			return null;
+		}
+		return new File(dir, sanitize(name) + extension);
+	}
+
+	@NonNull
+	public static String sanitize(@NonNull String name) {
+		return name.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	/**
+	 * Write file by way of a temp file in the same dir.
+	 *
+	 * @return false if the file wasn't replaced
+	 */
+	@WorkerThread
+	public static boolean writeAtomic(@NonNull File file,
+			@NonNull StreamWriter writer) {
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			return false;
+		}
+		File tmp = null;
+		OutputStream out = null;
+		try {
+			tmp = File.createTempFile(file.getName(), ".tmp", dir);
+			out = new BufferedOutputStream(new FileOutputStream(tmp));
+			writer.writeTo(out);
+			out.close();
+			out = null;
+			if (tmp.renameTo(file)) {
+				tmp = null;
+				return true;
+			}
+			return false;
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "writeAtomic " + file, t);
+			}
+			AnalyticsTracker.getInstance().logError(t);
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ignore) {
+				}
+			}
+			if (tmp != null) {
+				//noinspection ResultOfMethodCallIgnored
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * @param map Must not be modified by anyone while this runs
+	 */
+	@WorkerThread
+	public static boolean writeGzipJSON(@NonNull File file,
+			@NonNull final Map<String, Object> map) {
+		return writeAtomic(file, new StreamWriter() {
+			@Override
+			public void writeTo(@NonNull OutputStream out)
+					throws IOException {
+				Writer writer = new OutputStreamWriter(new GZIPOutputStream(out),
+						"utf-8");
+				writer.write(JSONUtils.encodeToJSON(map));
+				// closes out too; closing it again is harmless
+				writer.close();
+			}
+		});
+	}
+
+	/**
+	 * @return null if file doesn't exist.  A file that can't be read is deleted
+	 */
+	@Nullable
+	@WorkerThread
+	public static Map<String, Object> readGzipJSON(@NonNull File file) {
+		if (!file.exists()) {
+			return null;
+		}
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(
+					new GZIPInputStream(new FileInputStream(file)), "utf-8");
+			// Not JSONUtils.decodeJSON(Reader), fastjson's stream reader has issues
+			// with large objects
+			StringBuilder sb = new StringBuilder((int) file.length() * 4);
+			char[] buf = new char[8192];
+			int len;
+			while ((len = reader.read(buf)) > 0) {
+				sb.append(buf, 0, len);
+			}
+			return JSONUtils.decodeJSON(sb.toString());
+		} catch (Throwable t) {
+			if (AndroidUtils.DEBUG) {
+				Log.e(TAG, "readGzipJSON " + file, t);
+			}
+			//noinspection ResultOfMethodCallIgnored
+			file.delete();
+			return null;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delete, on the store thread, all files in dir whose name starts with
+	 * prefix (sanitized the same as {@link #getFile(File, String, String)}).
+	 * Queued after any write already queued, so those don't bring a file back.
+	 */
+	public static void deleteAsync(@Nullable final File dir,
+			@NonNull String prefix) {
+		if (dir == null) {
+			return;
+		}
+		final String sanitizedPrefix = sanitize(prefix);
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				File[] files = dir.listFiles();
+				if (files == null) {
+					return;
+				}
+				for (File file : files) {
+					if (file.getName().startsWith(sanitizedPrefix)) {
+						//noinspection ResultOfMethodCallIgnored
+						file.delete();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gzipped JSON files written in the background, keyed by a String.
+	 * Writes to the same key that haven't happened yet are coalesced, so only
+	 * the latest snapshot is written.
+	 */
+	public abstract static class GzipJSONQueue
+	{
+		/**
+		 * Marks a file to be deleted by the writer.  Compared by identity, so
+		 * it's our own map, not one a caller could also write
+		 */
+		private static final Map<String, Object> PENDING_DELETE = new HashMap<>();
+
+		/**
+		 * key -> snapshot waiting to be written, or {@link #PENDING_DELETE}
+		 */
+		private final Map<String, Map<String, Object>> mapPending = new LinkedHashMap<>();
+
+		/**
+		 * Being written right now, so still what a read should see.  Guarded by
+		 * mapPending, like inFlightMap
+		 */
+		private String inFlightKey;
+
+		private Map<String, Object> inFlightMap;
+
+		private boolean writerQueued = false;
+
+		/**
+		 * @return null if not available
+		 */
+		@Nullable
+		protected abstract File getFile(@NonNull String key);
+
+		/**
+		 * Called on the store thread after a key was written
+		 */
+		@WorkerThread
+		protected void written(@NonNull String key, @NonNull File file) {
+		}
+
+		/**
+		 * Queue a write.  Nothing may modify map afterwards.
+		 */
+		public void write(@NonNull String key, @NonNull Map<String, Object> map) {
+			queue(key, map);
+		}
+
+		/**
+		 * Queue a delete.  Any write still queued for key is dropped.
+		 */
+		public void delete(@NonNull String key) {
+			queue(key, PENDING_DELETE);
+		}
+
+		/**
+		 * @return The queued snapshot if there's one, else the file's contents.
+		 * null when there's neither, or a delete is queued.  A queued snapshot
+		 * is returned as is, and must not be modified
+		 */
+		@Nullable
+		@WorkerThread
+		public Map<String, Object> read(@NonNull String key) {
+			synchronized (mapPending) {
+				Map<String, Object> map = mapPending.get(key);
+				if (map == null && key.equals(inFlightKey)) {
+					map = inFlightMap;
+				}
+				if (map == PENDING_DELETE) {
+					return null;
+				}
+				if (map != null) {
+					return map;
+				}
+			}
+			File file = getFile(key);
+			return file == null ? null : readGzipJSON(file);
+		}
+
+		private void queue(@NonNull String key, @NonNull Map<String, Object> map) {
+			synchronized (mapPending) {
+				// re-add so it goes to the end, behind keys waiting longer
+				mapPending.remove(key);
+				mapPending.put(key, map);
+				if (writerQueued) {
+					return;
+				}
+				writerQueued = true;
+			}
+			execute(new Runnable() {
+				@Override
+				public void run() {
+					writePending();
+				}
+			});
+		}
+
+		@Thunk
+		@WorkerThread
+		void writePending() {
+			while (true) {
+				String key;
+				Map<String, Object> map;
+				synchronized (mapPending) {
+					inFlightKey = null;
+					inFlightMap = null;
+					Iterator<Map.Entry<String, Map<String, Object>>> iterator = mapPending.entrySet().iterator();
+					if (!iterator.hasNext()) {
+						writerQueued = false;
+						return;
+					}
+					Map.Entry<String, Map<String, Object>> entry = iterator.next();
+					key = entry.getKey();
+					map = entry.getValue();
+					iterator.remove();
+					inFlightKey = key;
+					inFlightMap = map;
+				}
+				File file = getFile(key);
+				if (file == null) {
+					continue;
+				}
+				if (map == PENDING_DELETE) {
+					//noinspection ResultOfMethodCallIgnored
+					file.delete();
+				} else if (writeGzipJSON(file, map)) {
+					if (AndroidUtils.DEBUG) {
+						Log.d(TAG, "wrote " + key + ", " + file.length() + " bytes");
+					}
+					written(key, file);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.util;
+
+import java.util.*;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Bounded pool of recently seen strings, so values that arrive on every
+ * refresh (names, hashes, tracker status, tag names) are held once instead of
+ * once per decode.
+ * <p/>
+ * Direct mapped: each string has one slot, picked by hash, and a different
+ * string landing in the same slot replaces it.  Memory use is fixed, strings
+ * that keep coming back win their slot back, and nothing needs to be
+ * expired.  Lookups never block; a lost race only costs a duplicate.
+ */
+public final class StringPool
+{
+	private final String[] slots;
+
+	private final int mask;
+
+	private final int maxLength;
+
+	@NonNull
+	private final Set<String> skipKeys;
+
+	/** Approximate, updated without locking */
+	private long statLookups;
+
+	private long statHits;
+
+	/**
+	 * @param capacity  Rounded up to a power of 2
+	 * @param maxLength Longer strings are rarely repeated and not pooled
+	 * @param skipKeys  {@link #internAll(Object)} leaves values under these map
+	 *                  keys alone.  For large lists of mostly unique strings,
+	 *                  which would push everything else out of the pool
+	 */
+	public StringPool(int capacity, int maxLength, @NonNull String... skipKeys) {
+		int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+		slots = new String[size];
+		mask = size - 1;
+		this.maxLength = maxLength;
+		this.skipKeys = new HashSet<>(Arrays.asList(skipKeys));
+	}
+
+	/**
+	 * @return The pooled equal string, or <code>s</code> after pooling it
+	 */
+	public String intern(@Nullable String s) {
+		if (s == null || s.length() > maxLength) {
+			return s;
+		}
+		statLookups++;
+		int h = s.hashCode();
+		int slot = (h ^ (h >>> 16)) & mask;
+		String pooled = slots[slot];
+		if (pooled != null && pooled.equals(s)) {
+			statHits++;
+			return pooled;
+		}
+		slots[slot] = s;
+		return s;
+	}
+
+	/**
+	 * Replace String values inside decoded JSON (maps and lists, any depth)
+	 * with pooled ones.  Keys are left alone; the JSON parser already shares
+	 * those.  So are values under the skip keys, at any depth.
+	 *
+	 * @return <code>o</code>, or the pooled string if <code>o</code> is one
+	 */
+	@SuppressWarnings({
+		"unchecked",
+		"rawtypes"
+	})
+	public Object internAll(@Nullable Object o) {
+		if (o instanceof String) {
+			return intern((String) o);
+		}
+		if (o instanceof Map) {
+			for (Object oEntry : ((Map) o).entrySet()) {
+				Map.Entry entry = (Map.Entry) oEntry;
+				if (skipKeys.contains(entry.getKey())) {
+					continue;
+				}
+				Object value = entry.getValue();
+				if (value instanceof String) {
+					String pooled = intern((String) value);
+					if (pooled != value) {
+						entry.setValue(pooled);
+					}
+				} else if (value instanceof Map || value instanceof List) {
+					internAll(value);
+				}
+			}
+		} else if (o instanceof List) {
+			ListIterator iter = ((List) o).listIterator();
+			while (iter.hasNext()) {
+				Object value = iter.next();
+				if (value instanceof String) {
+					String pooled = intern((String) value);
+					if (pooled != value) {
+						iter.set(pooled);
+					}
+				} else if (value instanceof Map || value instanceof List) {
+					internAll(value);
+				}
+			}
+		}
+		return o;
+	}
+
+	public String getStats() {
+		long lookups = statLookups;
+		long hits = statHits;
+		return hits + "/" + lookups + " hits ("
+				+ (lookups == 0 ? 0 : hits * 100 / lookups) + "%), " + slots.length
+				+ " slots";
+	}
+}
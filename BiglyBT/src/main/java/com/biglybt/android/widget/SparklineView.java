@@ -0,0 +1,134 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.widget;
+
+import com.biglybt.android.client.R;
+import com.biglybt.android.client.session.SpeedHistory;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Small graph of a {@link SpeedHistory}: download as a filled area, upload as
+ * a line, both on the same scale.  Newest sample on the right.
+ * <p/>
+ * Samples are copied into buffers owned by the view on {@link #refresh()},
+ * drawing doesn't allocate.
+ */
+public class SparklineView
+	extends View
+{
+	private final int[] down = new int[SpeedHistory.CAPACITY];
+
+	private final int[] up = new int[SpeedHistory.CAPACITY];
+
+	private int numSamples;
+
+	private int max;
+
+	private final Paint paintDown = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+	private final Paint paintUp = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+	private final Path path = new Path();
+
+	private SpeedHistory history;
+
+	public SparklineView(Context context) {
+		this(context, null);
+	}
+
+	public SparklineView(Context context, @Nullable AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public SparklineView(Context context, @Nullable AttributeSet attrs,
+			int defStyleAttr) {
+		super(context, attrs, defStyleAttr);
+		float density = getResources().getDisplayMetrics().density;
+
+		paintDown.setStyle(Paint.Style.FILL);
+		paintDown.setColor(ContextCompat.getColor(context, R.color.sparkline_down));
+
+		paintUp.setStyle(Paint.Style.STROKE);
+		paintUp.setStrokeWidth(1.5f * density);
+		paintUp.setColor(ContextCompat.getColor(context, R.color.sparkline_up));
+	}
+
+	public void setHistory(@Nullable SpeedHistory history) {
+		this.history = history;
+		refresh();
+	}
+
+	/**
+	 * Pick up new samples.  Call after a refresh.
+	 */
+	public void refresh() {
+		numSamples = history == null ? 0
+				: history.copyTo(System.currentTimeMillis(), down, up);
+		max = 0;
+		for (int i = 0; i < numSamples; i++) {
+			max = Math.max(max, Math.max(down[i], up[i]));
+		}
+		setVisibility(numSamples < 2 ? GONE : VISIBLE);
+		invalidate();
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+		if (numSamples < 2) {
+			return;
+		}
+		float left = getPaddingLeft();
+		float top = getPaddingTop();
+		float width = getWidth() - left - getPaddingRight();
+		float height = getHeight() - top - getPaddingBottom();
+		float bottom = top + height;
+		// Always use the full capacity for x, so the graph scrolls steadily
+		float stepX = width / (SpeedHistory.CAPACITY - 1);
+		float startX = left + width - stepX * (numSamples - 1);
+		float scaleY = max == 0 ? 0 : height / max;
+
+		path.rewind();
+		path.moveTo(startX, bottom);
+		for (int i = 0; i < numSamples; i++) {
+			path.lineTo(startX + stepX * i, bottom - down[i] * scaleY);
+		}
+		path.lineTo(startX + stepX * (numSamples - 1), bottom);
+		path.close();
+		canvas.drawPath(path, paintDown);
+
+		path.rewind();
+		for (int i = 0; i < numSamples; i++) {
+			float x = startX + stepX * i;
+			float y = bottom - up[i] * scaleY;
+			if (i == 0) {
+				path.moveTo(x, y);
+			} else {
+				path.lineTo(x, y);
+			}
+		}
+		canvas.drawPath(path, paintUp);
+	}
+}
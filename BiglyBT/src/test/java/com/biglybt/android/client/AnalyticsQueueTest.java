@@ -0,0 +1,189 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.biglybt.android.util.JSONUtils;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link AnalyticsQueue} against a local {@link MockWebServer}
+ */
+public class AnalyticsQueueTest
+{
+	private static final long SHORT_DELAY_MS = 500;
+
+	private MockWebServer server;
+
+	@Before
+	public void setUp()
+			throws IOException {
+		server = new MockWebServer();
+		server.start();
+	}
+
+	@After
+	public void tearDown()
+			throws IOException {
+		server.shutdown();
+	}
+
+	@Test
+	public void flushesAtThreshold()
+			throws Exception {
+		AnalyticsQueue queue = new AnalyticsQueue(null, getURL());
+		server.enqueue(new MockResponse());
+
+		for (int i = 1; i < AnalyticsQueue.FLUSH_THRESHOLD; i++) {
+			queue.add("listener", "op", values("n", i), null);
+		}
+		assertNull(server.takeRequest(SHORT_DELAY_MS, TimeUnit.MILLISECONDS));
+
+		queue.add("listener", "op", values("n", AnalyticsQueue.FLUSH_THRESHOLD),
+				null);
+		RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+		assertNotNull(request);
+
+		List<?> listCommands = getCommands(request);
+		assertEquals(AnalyticsQueue.FLUSH_THRESHOLD, listCommands.size());
+		for (int i = 0; i < listCommands.size(); i++) {
+			Map<?, ?> mapCommand = (Map<?, ?>) listCommands.get(i);
+			assertEquals(i + 1,
+					((Number) mapCommand.get(AnalyticsQueue.KEY_SEQ_ID)).intValue());
+			assertEquals(i + 1, ((Number) ((Map<?, ?>) mapCommand.get(
+					AnalyticsQueue.KEY_VALUES)).get("n")).intValue());
+		}
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void flushesAfterDelay()
+			throws Exception {
+		assertEquals(60 * 1000L, AnalyticsQueue.FLUSH_DELAY_MS);
+
+		AnalyticsQueue queue = new AnalyticsQueue(null, getURL(),
+				SHORT_DELAY_MS);
+		server.enqueue(new MockResponse());
+
+		long start = System.currentTimeMillis();
+		queue.add("listener", "op", values("n", 1), null);
+		queue.add("listener", "op", values("n", 2), null);
+		assertNull(
+				server.takeRequest(SHORT_DELAY_MS / 2, TimeUnit.MILLISECONDS));
+
+		RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+		assertNotNull(request);
+		assertTrue(System.currentTimeMillis() - start >= SHORT_DELAY_MS);
+		// one send for both, timer isn't restarted by the second add
+		assertEquals(2, getCommands(request).size());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void mergesDuplicateErrors()
+			throws Exception {
+		AnalyticsQueue queue = new AnalyticsQueue(null, getURL());
+		server.enqueue(new MockResponse());
+
+		for (int i = 0; i < 3; i++) {
+			queue.add("listener", "error", values("ex", "NPE"), "NPE\nstack");
+		}
+		queue.add("listener", "error", values("ex", "OOM"), "OOM\nstack");
+		queue.add("listener", "screen", values("n", 1), null);
+		queue.flushNow();
+
+		RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+		assertNotNull(request);
+		List<?> listCommands = getCommands(request);
+		assertEquals(3, listCommands.size());
+
+		Map<?, ?> mapNPE = (Map<?, ?>) listCommands.get(0);
+		Map<?, ?> mapValues = (Map<?, ?>) mapNPE.get(AnalyticsQueue.KEY_VALUES);
+		assertEquals("NPE", mapValues.get("ex"));
+		assertEquals(3, ((Number) mapValues.get(
+				AnalyticsQueue.KEY_REPEAT_COUNT)).intValue());
+		// signature is only for merging, not sent
+		assertFalse(mapNPE.containsKey("sig"));
+
+		Map<?, ?> mapOOM = (Map<?, ?>) listCommands.get(1);
+		assertFalse(((Map<?, ?>) mapOOM.get(
+				AnalyticsQueue.KEY_VALUES)).containsKey(
+						AnalyticsQueue.KEY_REPEAT_COUNT));
+	}
+
+	@Test
+	public void failedSendIsRetried()
+			throws Exception {
+		AnalyticsQueue queue = new AnalyticsQueue(null, getURL());
+		server.enqueue(new MockResponse().setResponseCode(500));
+		server.enqueue(new MockResponse());
+
+		queue.add("listener", "error", values("ex", "NPE"), "NPE\nstack");
+		assertFalse(queue.flush());
+		queue.add("listener", "error", values("ex", "NPE"), "NPE\nstack");
+		assertTrue(queue.flush());
+
+		server.takeRequest(5, TimeUnit.SECONDS);
+		RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+		assertNotNull(request);
+		List<?> listCommands = getCommands(request);
+		assertEquals(1, listCommands.size());
+		assertEquals(2, ((Number) ((Map<?, ?>) ((Map<?, ?>) listCommands.get(
+				0)).get(AnalyticsQueue.KEY_VALUES)).get(
+						AnalyticsQueue.KEY_REPEAT_COUNT)).intValue());
+		assertTrue(queue.flush());
+		assertEquals(2, server.getRequestCount());
+	}
+
+	private String getURL() {
+		return server.url("/analytics").toString();
+	}
+
+	private static Map<String, Object> values(String key, Object value) {
+		Map<String, Object> map = new HashMap<>();
+		map.put(key, value);
+		return map;
+	}
+
+	/**
+	 * Pulls the JSON payload out of the multipart form body
+	 */
+	private static List<?> getCommands(RecordedRequest request)
+			throws Exception {
+		String body = request.getBody().readUtf8();
+		int start = body.indexOf('{');
+		int end = body.lastIndexOf('}');
+		assertTrue(body, start >= 0 && end > start);
+		Map<String, Object> mapPayload = JSONUtils.decodeJSON(
+				body.substring(start, end + 1));
+		Object commands = mapPayload.get(AnalyticsQueue.KEY_COMMANDS);
+		assertTrue(String.valueOf(commands), commands instanceof List);
+		return (List<?>) commands;
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.rpc;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import org.junit.Test;
+
+import com.biglybt.android.client.TransmissionVars;
+
+import static org.junit.Assert.*;
+
+public class TorrentMapNormalizerTest
+{
+	private static final int NUM_BENCHMARK_TORRENTS = 10000;
+
+	@Test
+	public void decodesEntities() {
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionVars.FIELD_TORRENT_NAME, "Tom &amp; Jerry &lt;1080p&gt;");
+		map.put(TransmissionVars.FIELD_TORRENT_ERROR_STRING,
+				"&quot;quoted&quot; &apos;x&apos;");
+		map.put("plain", "no entities & no change");
+		map.put(TransmissionVars.FIELD_TORRENT_ID, 5L);
+
+		assertEquals(2, TorrentMapNormalizer.normalizeTorrent(map));
+		assertEquals("Tom & Jerry <1080p>",
+				map.get(TransmissionVars.FIELD_TORRENT_NAME));
+		assertEquals("\"quoted\" 'x'",
+				map.get(TransmissionVars.FIELD_TORRENT_ERROR_STRING));
+		assertEquals("no entities & no change", map.get("plain"));
+		assertEquals(5L, map.get(TransmissionVars.FIELD_TORRENT_ID));
+	}
+
+	@Test
+	public void decodesOnce() {
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionVars.FIELD_TORRENT_NAME, "a &amp;lt; b &amp;amp; c");
+
+		assertEquals(1, TorrentMapNormalizer.normalizeTorrent(map));
+		assertEquals("a &lt; b &amp; c",
+				map.get(TransmissionVars.FIELD_TORRENT_NAME));
+	}
+
+	@Test
+	public void unchangedStringsAreKept() {
+		String name = "Ubuntu 18.04";
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionVars.FIELD_TORRENT_NAME, name);
+		map.put(TransmissionVars.FIELD_TORRENT_ERROR_STRING, "&nbsp; stays");
+
+		assertEquals(0, TorrentMapNormalizer.normalizeTorrent(map));
+		assertSame(name, map.get(TransmissionVars.FIELD_TORRENT_NAME));
+		assertEquals("&nbsp; stays",
+				map.get(TransmissionVars.FIELD_TORRENT_ERROR_STRING));
+	}
+
+	@Test
+	public void mergesFileStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionVars.FIELD_TORRENT_FILES,
+				new ArrayList<Object>(Arrays.asList(file("a", 10), file("b", 20))));
+		List<Object> listFileStats = new ArrayList<>();
+		listFileStats.add(fileStats(5, true));
+		listFileStats.add(fileStats(0, false));
+		map.put(TransmissionVars.FIELD_TORRENT_FILESTATS, listFileStats);
+
+		TorrentMapNormalizer.normalizeTorrent(map);
+
+		assertFalse(map.containsKey(TransmissionVars.FIELD_TORRENT_FILESTATS));
+		List<?> listFiles = (List<?>) map.get(TransmissionVars.FIELD_TORRENT_FILES);
+		Map<?, ?> mapFile = (Map<?, ?>) listFiles.get(1);
+		assertEquals("b", mapFile.get(TransmissionVars.FIELD_FILES_NAME));
+		assertEquals(20L, mapFile.get(TransmissionVars.FIELD_FILES_LENGTH));
+		assertEquals(0L,
+				mapFile.get(TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED));
+		assertEquals(false, mapFile.get(TransmissionVars.FIELD_FILESTATS_WANTED));
+		assertEquals(5L, ((Map<?, ?>) listFiles.get(0)).get(
+				TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED));
+	}
+
+	@Test
+	public void mergesShorterFileStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionVars.FIELD_TORRENT_FILES,
+				new ArrayList<Object>(Arrays.asList(file("a", 10), file("b", 20))));
+		map.put(TransmissionVars.FIELD_TORRENT_FILESTATS,
+				new ArrayList<Object>(Collections.singletonList(fileStats(1, true))));
+
+		TorrentMapNormalizer.normalizeTorrent(map);
+
+		List<?> listFiles = (List<?>) map.get(TransmissionVars.FIELD_TORRENT_FILES);
+		assertEquals(true, ((Map<?, ?>) listFiles.get(0)).get(
+				TransmissionVars.FIELD_FILESTATS_WANTED));
+		assertFalse(((Map<?, ?>) listFiles.get(1)).containsKey(
+				TransmissionVars.FIELD_FILESTATS_WANTED));
+	}
+
+	@Test
+	public void assignsMissingIndexes() {
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionVars.FIELD_TORRENT_FILES, new ArrayList<Object>(
+				Arrays.asList(file("a", 1), "not a map", file("c", 3))));
+
+		TorrentMapNormalizer.normalizeTorrent(map);
+
+		List<?> listFiles = (List<?>) map.get(TransmissionVars.FIELD_TORRENT_FILES);
+		assertEquals(0,
+				((Map<?, ?>) listFiles.get(0)).get(TransmissionVars.FIELD_FILES_INDEX));
+		assertEquals(2,
+				((Map<?, ?>) listFiles.get(2)).get(TransmissionVars.FIELD_FILES_INDEX));
+	}
+
+	@Test
+	public void keepsSentIndexes() {
+		Map<String, Object> mapFile = file("a", 1);
+		mapFile.put(TransmissionVars.FIELD_FILES_INDEX, 7L);
+		Map<String, Object> map = new HashMap<>();
+		map.put(TransmissionVars.FIELD_TORRENT_FILES,
+				new ArrayList<Object>(Arrays.asList(mapFile, file("b", 2))));
+
+		TorrentMapNormalizer.normalizeTorrent(map);
+
+		List<?> listFiles = (List<?>) map.get(TransmissionVars.FIELD_TORRENT_FILES);
+		assertEquals(7L,
+				((Map<?, ?>) listFiles.get(0)).get(TransmissionVars.FIELD_FILES_INDEX));
+		// a partial file list sends indexes for all of its entries
+		assertFalse(((Map<?, ?>) listFiles.get(1)).containsKey(
+				TransmissionVars.FIELD_FILES_INDEX));
+	}
+
+	/**
+	 * Bytes allocated normalizing torrents that have nothing to decode, the
+	 * usual case.  Strings without an entity are returned as-is, so this
+	 * should be little more than the entry iterators.  Prints the result.
+	 */
+	@Test
+	public void benchmarkAllocations() {
+		List<Map<String, Object>> list = new ArrayList<>(NUM_BENCHMARK_TORRENTS);
+		for (int i = 0; i < NUM_BENCHMARK_TORRENTS; i++) {
+			Map<String, Object> map = new HashMap<>();
+			map.put(TransmissionVars.FIELD_TORRENT_ID, (long) i);
+			map.put(TransmissionVars.FIELD_TORRENT_NAME, "Torrent number " + i);
+			map.put(TransmissionVars.FIELD_TORRENT_ERROR_STRING, "");
+			map.put(TransmissionVars.FIELD_TORRENT_HASH_STRING,
+					"0123456789abcdef0123456789abcdef0123" + i);
+			map.put(TransmissionVars.FIELD_TORRENT_DOWNLOAD_DIR,
+					"/storage/emulated/0/Download/BiglyBT & more");
+			list.add(map);
+		}
+		// warm up, so class loading isn't counted
+		for (Map<String, Object> map : list) {
+			TorrentMapNormalizer.normalizeTorrent(map);
+		}
+
+		long before = allocatedBytes();
+		if (before < 0) {
+			System.out.println("benchmarkAllocations: not supported by this JVM");
+			return;
+		}
+		int numRewritten = 0;
+		for (Map<String, Object> map : list) {
+			numRewritten += TorrentMapNormalizer.normalizeTorrent(map);
+		}
+		long bytes = allocatedBytes() - before;
+
+		System.out.println(NUM_BENCHMARK_TORRENTS + " torrents: " + bytes
+				+ " bytes allocated, " + (bytes / NUM_BENCHMARK_TORRENTS)
+				+ " per torrent");
+		assertEquals(0, numRewritten);
+		assertTrue("allocated " + bytes,
+				bytes / NUM_BENCHMARK_TORRENTS < 128);
+	}
+
+	/**
+	 * @return bytes allocated by this thread so far, or -1 if the JVM can't
+	 * tell
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+				Thread.currentThread().getId());
+	}
+
+	private static Map<String, Object> file(String name, long length) {
+		Map<String, Object> mapFile = new HashMap<>();
+		mapFile.put(TransmissionVars.FIELD_FILES_NAME, name);
+		mapFile.put(TransmissionVars.FIELD_FILES_LENGTH, length);
+		return mapFile;
+	}
+
+	private static Map<String, Object> fileStats(long bytesCompleted,
+			boolean wanted) {
+		Map<String, Object> mapFileStats = new HashMap<>();
+		mapFileStats.put(TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED,
+				bytesCompleted);
+		mapFileStats.put(TransmissionVars.FIELD_FILESTATS_WANTED, wanted);
+		mapFileStats.put(TransmissionVars.FIELD_FILESTATS_PRIORITY, 0L);
+		return mapFileStats;
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.client.session;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.biglybt.android.client.TransmissionVars;
+
+import static org.junit.Assert.*;
+
+public class FileTableTest
+{
+	private static final int NUM_BENCHMARK_FILES = 100000;
+
+	@Test
+	public void valuesRoundTrip() {
+		List<Map<String, Object>> listFiles = new ArrayList<>();
+		listFiles.add(buildFile(0, "Show/Season 1/e01.mkv", 1000, 250, true));
+		listFiles.add(buildFile(1, "Show/.dnd_az!/e02.mkv", 2000, 0, false));
+		Map<String, Object> mapOther = buildFile(2, "Show/Extras\\notes.txt", 10,
+				10, true);
+		mapOther.put("custom", "value");
+		mapOther.put(TransmissionVars.FIELD_FILES_LENGTH, "not a number");
+		listFiles.add(mapOther);
+
+		FileTable table = FileTable.from(listFiles);
+
+		assertEquals(3, table.size());
+		Map<String, Object> row = table.get(0);
+		assertEquals("Show/Season 1/e01.mkv",
+				row.get(TransmissionVars.FIELD_FILES_NAME));
+		assertEquals(1000L, row.get(TransmissionVars.FIELD_FILES_LENGTH));
+		assertEquals(250L, row.get(TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED));
+		assertEquals(1, row.get(TransmissionVars.FIELD_FILESTATS_PRIORITY));
+		assertEquals(true, row.get(TransmissionVars.FIELD_FILESTATS_WANTED));
+		assertEquals(0, row.get(TransmissionVars.FIELD_FILES_INDEX));
+
+		// skipped files' folder is dropped from the name only
+		assertEquals("Show/e02.mkv",
+				table.get(1).get(TransmissionVars.FIELD_FILES_NAME));
+		assertEquals(false,
+				table.get(1).get(TransmissionVars.FIELD_FILESTATS_WANTED));
+
+		Map<String, Object> rowOther = table.get(2);
+		assertEquals("Show/Extras\\notes.txt",
+				rowOther.get(TransmissionVars.FIELD_FILES_NAME));
+		assertEquals("value", rowOther.get("custom"));
+		assertEquals("not a number",
+				rowOther.get(TransmissionVars.FIELD_FILES_LENGTH));
+		assertFalse(rowOther.containsKey("missing"));
+		assertEquals(rowOther.get("custom"), new HashMap<>(rowOther).get("custom"));
+	}
+
+	@Test
+	public void missingIndexIsPosition() {
+		Map<String, Object> mapFile = new HashMap<>();
+		mapFile.put(TransmissionVars.FIELD_FILES_NAME, "a");
+		FileTable table = FileTable.from(Arrays.asList(mapFile, mapFile));
+		assertEquals(1, table.get(1).get(TransmissionVars.FIELD_FILES_INDEX));
+	}
+
+	@Test
+	public void rowsAreReadOnly() {
+		FileTable table = FileTable.from(
+				Collections.singletonList(buildFile(0, "a/b", 1, 0, true)));
+		Map<String, Object> row = table.get(0);
+		try {
+			row.put(TransmissionVars.FIELD_FILESTATS_WANTED, false);
+			fail("put");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			row.putAll(Collections.singletonMap("x", (Object) "y"));
+			fail("putAll");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			row.remove(TransmissionVars.FIELD_FILES_NAME);
+			fail("remove");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			row.entrySet().iterator().next().setValue("z");
+			fail("setValue");
+		} catch (UnsupportedOperationException expected) {
+		}
+		assertEquals(true, row.get(TransmissionVars.FIELD_FILESTATS_WANTED));
+		assertEquals("a/b", row.get(TransmissionVars.FIELD_FILES_NAME));
+	}
+
+	@Test
+	public void copyDoesNotChangeOriginal() {
+		FileTable table = FileTable.from(
+				Collections.singletonList(buildFile(0, "a/b", 1, 0, true)));
+		FileTable copy = table.copy();
+		copy.setValue(0, TransmissionVars.FIELD_FILESTATS_WANTED, false);
+		copy.setValue(0, TransmissionVars.FIELD_FILES_NAME, "a/c");
+		copy.setValue(0, "custom", 5);
+
+		assertEquals(false, copy.get(0).get(TransmissionVars.FIELD_FILESTATS_WANTED));
+		assertEquals("a/c", copy.get(0).get(TransmissionVars.FIELD_FILES_NAME));
+		assertEquals(5, copy.get(0).get("custom"));
+
+		assertEquals(true, table.get(0).get(TransmissionVars.FIELD_FILESTATS_WANTED));
+		assertEquals("a/b", table.get(0).get(TransmissionVars.FIELD_FILES_NAME));
+		assertNull(table.get(0).get("custom"));
+	}
+
+	/**
+	 * Heap held by 100k file maps, as the reply decodes them, against the
+	 * same files in a table.  Prints both.
+	 */
+	@Test
+	public void benchmarkMemory100kFiles() {
+		long before = usedHeap();
+		List<Map<String, Object>> listFiles = buildFiles(NUM_BENCHMARK_FILES);
+		long mapsBytes = usedHeap() - before;
+
+		FileTable table = FileTable.from(listFiles);
+		assertEquals("Show 3/Season 4/Disc 4/episode 99999.mkv",
+				table.get(NUM_BENCHMARK_FILES - 1).get(
+						TransmissionVars.FIELD_FILES_NAME));
+		//noinspection UnusedAssignment
+		listFiles = null;
+		long tableBytes = usedHeap() - before;
+
+		System.out.println(NUM_BENCHMARK_FILES + " files: " + mapsBytes
+				+ " bytes as maps, " + tableBytes + " bytes as table, estimated "
+				+ table.estimateBytes());
+		assertTrue("table " + tableBytes + " vs maps " + mapsBytes,
+				tableBytes * 2 < mapsBytes);
+		assertTrue(table.size() > 0);
+	}
+
+	private static List<Map<String, Object>> buildFiles(int numFiles) {
+		List<Map<String, Object>> listFiles = new ArrayList<>(numFiles);
+		for (int i = 0; i < numFiles; i++) {
+			String name = "Show " + (i / 25000) + "/Season " + (i / 5000 % 5)
+					+ "/Disc " + (i / 1000 % 5) + "/episode " + i + ".mkv";
+			listFiles.add(buildFile(i, name, 700000000L + i, i % 3 == 0 ? 0 : i,
+					i % 7 != 0));
+		}
+		return listFiles;
+	}
+
+	private static Map<String, Object> buildFile(int index, String name,
+			long length, long bytesCompleted, boolean wanted) {
+		// One HashMap per file, like a decoded reply
+		Map<String, Object> mapFile = new HashMap<>();
+		mapFile.put(TransmissionVars.FIELD_FILES_INDEX, index);
+		mapFile.put(TransmissionVars.FIELD_FILES_NAME, name);
+		mapFile.put(TransmissionVars.FIELD_FILES_LENGTH, length);
+		mapFile.put(TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED,
+				bytesCompleted);
+		mapFile.put(TransmissionVars.FIELD_FILESTATS_PRIORITY, 1);
+		mapFile.put(TransmissionVars.FIELD_FILESTATS_WANTED, wanted);
+		return mapFile;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException ignore) {
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
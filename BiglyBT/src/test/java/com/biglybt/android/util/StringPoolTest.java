@@ -0,0 +1,77 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.biglybt.android.util;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StringPoolTest
+{
+	@Test
+	public void poolsRepeatedValues() {
+		StringPool pool = new StringPool(64, 256);
+		Map<String, Object> first = torrent(new String("Ubuntu"));
+		Map<String, Object> second = torrent(new String("Ubuntu"));
+		pool.internAll(first);
+		pool.internAll(second);
+		assertSame(first.get("name"), second.get("name"));
+	}
+
+	@Test
+	public void skipKeysAreNotPooled() {
+		StringPool pool = new StringPool(64, 256, "files");
+		Map<String, Object> first = torrent("x");
+		Map<String, Object> second = torrent("x");
+		pool.internAll(first);
+		pool.internAll(second);
+		assertNotSame(fileName(first), fileName(second));
+		assertEquals(fileName(first), fileName(second));
+	}
+
+	@Test
+	public void bigFileListKeepsTorrentNames() {
+		StringPool pool = new StringPool(64, 256, "files");
+		Map<String, Object> first = torrent(new String("Ubuntu"));
+		pool.internAll(first);
+
+		Map<String, Object> big = torrent(new String("Ubuntu"));
+		List<Object> files = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			files.add(Collections.singletonMap("name", "file " + i));
+		}
+		big.put("files", files);
+		pool.internAll(big);
+
+		assertSame(first.get("name"), big.get("name"));
+	}
+
+	private static Map<String, Object> torrent(String name) {
+		Map<String, Object> mapFile = new HashMap<>();
+		mapFile.put("name", new String("dir/file.iso"));
+		Map<String, Object> map = new HashMap<>();
+		map.put("name", name);
+		map.put("files", new ArrayList<Object>(Collections.singletonList(mapFile)));
+		return map;
+	}
+
+	private static Object fileName(Map<String, Object> torrent) {
+		return ((Map<?, ?>) ((List<?>) torrent.get("files")).get(0)).get("name");
+	}
+}
@@ -27,6 +27,10 @@ import org.mockito.internal.util.reflection.Whitebox;
 import android.net.Uri;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -46,6 +50,41 @@ public class ContentProviderStorageTest extends TrayProviderTestCase {
 
     final String TEST_STRING2 = "fooBar2";
 
+    public void testApplyBatch() throws Exception {
+        final ContentProviderStorage storage = new ContentProviderStorage(getProviderMockContext(),
+                "testApplyBatch", TrayStorage.Type.USER);
+        assertTrue(storage.put(TEST_KEY2, TEST_STRING2));
+        assertUserDatabaseSize(1);
+
+        final Map<String, Object> puts = new LinkedHashMap<>();
+        puts.put(TEST_KEY, TEST_STRING);
+        puts.put("number", 42);
+        assertTrue(storage.applyBatch(puts, Collections.singletonList(TEST_KEY2)));
+
+        assertUserDatabaseSize(2);
+        assertDeviceDatabaseSize(0);
+        assertEquals(TEST_STRING, storage.get(TEST_KEY).value());
+        assertEquals("42", storage.get("number").value());
+        assertNull(storage.get(TEST_KEY2));
+    }
+
+    public void testApplyBatchUpdatesCachedItem() throws Exception {
+        final ContentProviderStorage storage = new ContentProviderStorage(getProviderMockContext(),
+                "testApplyBatchCached", TrayStorage.Type.DEVICE);
+        assertTrue(storage.put(TEST_KEY, TEST_STRING));
+        // read twice, second read may come from the cache
+        assertEquals(TEST_STRING, storage.get(TEST_KEY).value());
+        assertEquals(TEST_STRING, storage.get(TEST_KEY).value());
+
+        final Map<String, Object> puts = new HashMap<>();
+        puts.put(TEST_KEY, TEST_STRING2);
+        assertTrue(storage.applyBatch(puts, Collections.<String>emptyList()));
+        assertEquals(TEST_STRING2, storage.get(TEST_KEY).value());
+
+        assertTrue(storage.remove(TEST_KEY));
+        assertNull(storage.get(TEST_KEY));
+    }
+
     public void testClear() throws Exception {
         final ContentProviderStorage storage1 = new ContentProviderStorage(getProviderMockContext(),
                 "testClear1", TrayStorage.Type.USER);
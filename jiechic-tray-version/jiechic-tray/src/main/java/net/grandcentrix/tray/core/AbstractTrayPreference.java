@@ -31,6 +31,17 @@ public abstract class AbstractTrayPreference<T extends TrayStorage> extends
         super(storage, version);
     }
 
+    /**
+     * starts collecting changes which will be written together in a single transaction when
+     * {@link TrayBatch#commit()} is called. Use it when writing many items at once.
+     *
+     * @return a new, empty batch for this preference
+     */
+    @NonNull
+    public TrayBatch batch() {
+        return new TrayBatch(this);
+    }
+
     @Override
     public boolean getBoolean(@NonNull final String key, final boolean defaultValue) {
         try {
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015 grandcentrix GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.grandcentrix.tray.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static net.grandcentrix.tray.core.TrayLog.v;
+
+/**
+ * Collects changes for a {@link AbstractTrayPreference} and writes them with one call to {@link
+ * TrayStorage#applyBatch(Map, java.util.Collection)} when {@link #commit()} is called.
+ * <pre>
+ * preferences.batch()
+ *         .put("a", "foo")
+ *         .put("b", 42)
+ *         .remove("c")
+ *         .commit();
+ * </pre>
+ * A later change of the same key replaces an earlier one within the same batch.
+ */
+public class TrayBatch {
+
+    @NonNull
+    private final AbstractTrayPreference<?> mPreference;
+
+    private final Map<String, Object> mPuts = new LinkedHashMap<>();
+
+    private final Set<String> mRemoves = new LinkedHashSet<>();
+
+    TrayBatch(@NonNull final AbstractTrayPreference<?> preference) {
+        mPreference = preference;
+    }
+
+    /**
+     * writes all collected changes. The batch is empty afterwards and can be reused.
+     *
+     * @return whether all changes were saved
+     */
+    public boolean commit() {
+        if (!mPreference.isVersionChangeChecked()) {
+            return false;
+        }
+        if (mPuts.isEmpty() && mRemoves.isEmpty()) {
+            return true;
+        }
+        v("commit batch of " + mPuts.size() + " puts and " + mRemoves.size() + " removes into "
+                + mPreference);
+        final boolean success = mPreference.getStorage().applyBatch(mPuts, mRemoves);
+        mPuts.clear();
+        mRemoves.clear();
+        return success;
+    }
+
+    public boolean isEmpty() {
+        return mPuts.isEmpty() && mRemoves.isEmpty();
+    }
+
+    public TrayBatch put(@NonNull final String key, @Nullable final String value) {
+        return putData(key, value);
+    }
+
+    public TrayBatch put(@NonNull final String key, final int value) {
+        return putData(key, value);
+    }
+
+    public TrayBatch put(@NonNull final String key, final float value) {
+        return putData(key, value);
+    }
+
+    public TrayBatch put(@NonNull final String key, final long value) {
+        return putData(key, value);
+    }
+
+    public TrayBatch put(@NonNull final String key, final boolean value) {
+        return putData(key, value);
+    }
+
+    public TrayBatch remove(@NonNull final String key) {
+        mPuts.remove(key);
+        mRemoves.add(key);
+        return this;
+    }
+
+    private TrayBatch putData(@NonNull final String key, @Nullable final Object value) {
+        if (TextUtils.isEmpty(key)) {
+            throw new IllegalArgumentException("Preference key value cannot be empty.");
+        }
+        mRemoves.remove(key);
+        mPuts.put(key, value);
+        return this;
+    }
+}
@@ -20,6 +20,9 @@ import net.grandcentrix.tray.TrayPreferences;
 
 import android.support.annotation.NonNull;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Created by pascalwelsch on 11/20/14.
  * <p>
@@ -75,6 +78,28 @@ public abstract class TrayStorage implements PreferenceStorage<TrayItem> {
      */
     public abstract void annex(final TrayStorage oldStorage);
 
+    /**
+     * writes and removes many items at once. Storages which support transactions override this
+     * to apply all changes atomically; this default implementation simply puts and removes one
+     * after another.
+     *
+     * @param puts    key to data, saved like {@link #put(String, Object)}
+     * @param removes keys to remove like {@link #remove(String)}, applied after the puts
+     * @return whether all changes were successful
+     * @see TrayBatch
+     */
+    public boolean applyBatch(@NonNull final Map<String, Object> puts,
+            @NonNull final Collection<String> removes) {
+        boolean success = true;
+        for (final Map.Entry<String, Object> entry : puts.entrySet()) {
+            success &= put(entry.getKey(), entry.getValue());
+        }
+        for (final String key : removes) {
+            remove(key);
+        }
+        return success;
+    }
+
     public String getModuleName() {
         return mModuleName;
     }
@@ -25,6 +25,7 @@ import net.grandcentrix.tray.core.TrayRuntimeException;
 import net.grandcentrix.tray.core.TrayStorage;
 
 import android.annotation.TargetApi;
+import android.content.ContentProviderOperation;
 import android.content.Context;
 import android.database.ContentObserver;
 import android.net.Uri;
@@ -36,6 +37,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -54,6 +56,9 @@ import java.util.WeakHashMap;
  * This class represents a simple key value storage solution based on a {@link
  * android.content.ContentProvider}. Replacing this class with a {@link java.util.HashMap}
  * implementation for testing works seamless.
+ * <p>
+ * Single item lookups with {@link #get(String)} are served from a process wide cache which is
+ * invalidated on every change, so repeated reads don't query the provider.
  */
 public class ContentProviderStorage extends TrayStorage {
 
@@ -84,6 +89,7 @@ public class ContentProviderStorage extends TrayStorage {
                 // return all data for this module
                 uri = mTrayUri.builder().setModule(getModuleName()).build();
             }
+            TrayItemCache.invalidate(uri);
 
             // query only the changed items
             final List<TrayItem> trayItems = mProviderHelper.queryProviderSafe(uri);
@@ -148,6 +154,7 @@ public class ContentProviderStorage extends TrayStorage {
         mContext = context.getApplicationContext();
         mTrayUri = new TrayUri(mContext);
         mProviderHelper = new TrayProviderHelper(mContext);
+        TrayItemCache.ensureObserving(mContext, mTrayUri);
     }
 
     @Override
@@ -159,24 +166,68 @@ public class ContentProviderStorage extends TrayStorage {
         oldStorage.wipe();
     }
 
+    /**
+     * writes all puts and removes in one provider transaction. Observers get notified once the
+     * whole batch is committed.
+     */
+    @Override
+    public boolean applyBatch(@NonNull final Map<String, Object> puts,
+            @NonNull final Collection<String> removes) {
+        if (getType() == Type.UNDEFINED) {
+            throw new TrayRuntimeException(
+                    "writing data into a storage with type UNDEFINED is forbidden. Only Read and delete is allowed.");
+        }
+
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>(
+                puts.size() + removes.size());
+        for (final Map.Entry<String, Object> entry : puts.entrySet()) {
+            final Object data = entry.getValue();
+            final String value = data == null ? null : String.valueOf(data);
+            operations.add(mProviderHelper.buildPersistOperation(buildUri(entry.getKey()), value,
+                    null));
+        }
+        for (final String key : removes) {
+            operations.add(mProviderHelper.buildRemoveOperation(buildUri(key)));
+        }
+        final boolean success = mProviderHelper.applyBatch(operations);
+
+        for (final String key : puts.keySet()) {
+            TrayItemCache.invalidate(getModuleName(), key);
+        }
+        for (final String key : removes) {
+            TrayItemCache.invalidate(getModuleName(), key);
+        }
+        return success;
+    }
+
     @Override
     public boolean clear() {
         final Uri uri = mTrayUri.builder()
                 .setModule(getModuleName())
                 .setType(getType())
                 .build();
-        return mProviderHelper.remove(uri);
+        final boolean removed = mProviderHelper.remove(uri);
+        TrayItemCache.invalidateModule(getModuleName());
+        return removed;
     }
 
     @Override
     @Nullable
     public TrayItem get(@NonNull final String key) {
-        final Uri uri = mTrayUri.builder()
-                .setType(getType())
-                .setModule(getModuleName())
-                .setKey(key)
-                .build();
-        final List<TrayItem> prefs = mProviderHelper.queryProviderSafe(uri);
+        final TrayItem[] cached = new TrayItem[1];
+        if (TrayItemCache.get(getType(), getModuleName(), key, cached)) {
+            return cached[0];
+        }
+        final long generation = TrayItemCache.getGeneration();
+
+        final Uri uri = buildUri(key);
+        final List<TrayItem> prefs;
+        try {
+            prefs = mProviderHelper.queryProvider(uri);
+        } catch (TrayException e) {
+            // don't cache errors
+            return null;
+        }
         final int size = prefs.size();
         if (size > 1) {
             TrayLog.w("found more than one item for key '" + key
@@ -187,7 +238,9 @@ public class ContentProviderStorage extends TrayStorage {
                 TrayLog.d("item #" + i + " " + pref);
             }
         }
-        return size > 0 ? prefs.get(0) : null;
+        final TrayItem item = size > 0 ? prefs.get(0) : null;
+        TrayItemCache.put(getType(), getModuleName(), key, item, generation);
+        return item;
     }
 
     @NonNull
@@ -255,12 +308,9 @@ public class ContentProviderStorage extends TrayStorage {
 
         final String value = data == null ? null : String.valueOf(data);
 
-        final Uri uri = mTrayUri.builder()
-                .setType(getType())
-                .setModule(getModuleName())
-                .setKey(key)
-                .build();
-        return mProviderHelper.persist(uri, value, migrationKey);
+        final boolean persisted = mProviderHelper.persist(buildUri(key), value, migrationKey);
+        TrayItemCache.invalidate(getModuleName(), key);
+        return persisted;
     }
 
     /**
@@ -334,12 +384,18 @@ public class ContentProviderStorage extends TrayStorage {
             throw new IllegalArgumentException(
                     "null is not valid. use clear or wipe to delete all preferences");
         }
-        final Uri uri = mTrayUri.builder()
+        final boolean removed = mProviderHelper.removeAndCount(buildUri(key)) > 0;
+        TrayItemCache.invalidate(getModuleName(), key);
+        return removed;
+    }
+
+    @NonNull
+    private Uri buildUri(@NonNull final String key) {
+        return mTrayUri.builder()
                 .setType(getType())
                 .setModule(getModuleName())
                 .setKey(key)
                 .build();
-        return mProviderHelper.removeAndCount(uri) > 0;
     }
 
     @Override
@@ -19,8 +19,11 @@ package net.grandcentrix.tray.provider;
 import net.grandcentrix.tray.core.TrayLog;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.content.pm.ProviderInfo;
 import android.database.Cursor;
@@ -31,7 +34,10 @@ import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * The ContentProvider which stores all data for Tray. It accesses two databases {@link
@@ -44,6 +50,9 @@ import java.util.Date;
  * TrayContract.Preferences.Columns#MODULE} overrides the already
  * existing data. So <code>insert</code> works as <code>insertOrUpdate</code>.
  * <p>
+ * {@link #applyBatch(ArrayList)} runs all operations in one transaction per database and sends
+ * the change notifications after the commit.
+ * <p>
  * Created by jannisveerkamp on 16.09.14.
  */
 public class TrayContentProvider extends ContentProvider {
@@ -66,6 +75,50 @@ public class TrayContentProvider extends ContentProvider {
 
     TrayDBHelper mUserDbHelper;
 
+    /**
+     * uris changed by the {@link #applyBatch(ArrayList)} running on the current thread, null when
+     * no batch is running
+     */
+    private final ThreadLocal<Set<Uri>> mBatchChangedUris = new ThreadLocal<>();
+
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull final ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase userDb = mUserDbHelper.getWritableDatabase();
+        final SQLiteDatabase deviceDb = mDeviceDbHelper.getWritableDatabase();
+        final Set<Uri> changedUris = new LinkedHashSet<>();
+        mBatchChangedUris.set(changedUris);
+        boolean successful = false;
+        userDb.beginTransaction();
+        try {
+            deviceDb.beginTransaction();
+            try {
+                final ContentProviderResult[] results = super.applyBatch(operations);
+                deviceDb.setTransactionSuccessful();
+                userDb.setTransactionSuccessful();
+                successful = true;
+                return results;
+            } finally {
+                deviceDb.endTransaction();
+            }
+        } finally {
+            userDb.endTransaction();
+            mBatchChangedUris.remove();
+            if (successful) {
+                for (Uri uri : changedUris) {
+                    getContext().getContentResolver().notifyChange(uri, null);
+                }
+            } else {
+                // rolled back, cached values of the failed batch are wrong
+                for (Uri uri : changedUris) {
+                    TrayItemCache.invalidate(uri);
+                }
+            }
+        }
+    }
+
     @Override
     public int delete(final Uri uri, String selection, String[] selectionArgs) {
 
@@ -107,7 +160,7 @@ public class TrayContentProvider extends ContentProvider {
 
         // Don't force an UI refresh if nothing has changed
         if (rows > 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         return rows;
@@ -189,7 +242,7 @@ public class TrayContentProvider extends ContentProvider {
                 prefSelection, prefSelectionArgs, values, excludeForUpdate);
 
         if (status >= 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
             return uri;
 
         } else if (status == -1) {
@@ -213,6 +266,8 @@ public class TrayContentProvider extends ContentProvider {
     public boolean onCreate() {
         mUserDbHelper = new TrayDBHelper(getContext(), true);
         mDeviceDbHelper = new TrayDBHelper(getContext(), false);
+        // new databases, nothing cached before is trustworthy
+        TrayItemCache.invalidateAll();
         return true;
     }
 
@@ -316,6 +371,20 @@ public class TrayContentProvider extends ContentProvider {
         return rows;*/
     }
 
+    /**
+     * drops the cached value of this process right away and notifies observers. Inside {@link
+     * #applyBatch(ArrayList)} the notification is delayed until the transaction is committed.
+     */
+    private void notifyChange(@NonNull final Uri uri) {
+        TrayItemCache.invalidate(uri);
+        final Set<Uri> batchChangedUris = mBatchChangedUris.get();
+        if (batchChangedUris != null) {
+            batchChangedUris.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
     /**
      * checks the uri for the backup param. default is that
      *
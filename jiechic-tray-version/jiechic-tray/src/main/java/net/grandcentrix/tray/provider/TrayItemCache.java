@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2015 grandcentrix GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.grandcentrix.tray.provider;
+
+import net.grandcentrix.tray.core.TrayItem;
+import net.grandcentrix.tray.core.TrayStorage;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process wide read-through cache for single {@link TrayItem} lookups done by {@link
+ * ContentProviderStorage#get(String)}.
+ * <p>
+ * Entries are dropped when
+ * <ul>
+ * <li>the {@link TrayContentProvider} of this process changes data (synchronously)</li>
+ * <li>a {@link ContentProviderStorage} of this process writes data (synchronously)</li>
+ * <li>a change notification arrives from another process (via a {@link ContentObserver})</li>
+ * </ul>
+ * A generation counter prevents a slow query from putting a value into the cache which was
+ * already invalidated while the query was running.
+ */
+final class TrayItemCache {
+
+    /**
+     * marker for "queried, but there is no such item"
+     */
+    private static final TrayItem MISSING = new TrayItem(null, null, null, null, null, null);
+
+    private static final int MAX_ENTRIES = 512;
+
+    private static final Map<String, TrayItem> sItems = new HashMap<>();
+
+    private static long sGeneration;
+
+    private static boolean sObserverRegistered;
+
+    private static long sHits;
+
+    private static long sMisses;
+
+    private TrayItemCache() {
+    }
+
+    /**
+     * registers one observer per process which drops entries changed by other processes
+     */
+    static synchronized void ensureObserving(@NonNull final Context context,
+            @NonNull final TrayUri trayUri) {
+        if (sObserverRegistered) {
+            return;
+        }
+        sObserverRegistered = true;
+        try {
+            // null handler: onChange runs directly on the binder thread, no looper required
+            context.getContentResolver().registerContentObserver(trayUri.get(), true,
+                    new ContentObserver(null) {
+                        @Override
+                        public void onChange(final boolean selfChange) {
+                            onChange(selfChange, null);
+                        }
+
+                        @Override
+                        public void onChange(final boolean selfChange, final Uri uri) {
+                            invalidate(uri);
+                        }
+                    });
+        } catch (Throwable e) {
+            // without an observer cross process changes would go unnoticed
+            sObserverRegistered = false;
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the current generation, pass it to {@link #put(TrayStorage.Type, String, String,
+     * TrayItem, long)} after querying the provider
+     */
+    static synchronized long getGeneration() {
+        return sGeneration;
+    }
+
+    /**
+     * @return true when an entry (including "missing") exists. The item itself is written into
+     * {@code out[0]}, null when the item doesn't exist
+     */
+    static synchronized boolean get(@NonNull final TrayStorage.Type type,
+            @NonNull final String module, @NonNull final String key,
+            @NonNull final TrayItem[] out) {
+        if (!sObserverRegistered) {
+            return false;
+        }
+        final TrayItem item = sItems.get(buildKey(type, module, key));
+        if (item == null) {
+            sMisses++;
+            return false;
+        }
+        sHits++;
+        out[0] = item == MISSING ? null : item;
+        return true;
+    }
+
+    static synchronized long getHits() {
+        return sHits;
+    }
+
+    static synchronized long getMisses() {
+        return sMisses;
+    }
+
+    /**
+     * drops everything, e.g. when the provider (and its databases) got recreated
+     */
+    static synchronized void invalidateAll() {
+        sGeneration++;
+        sItems.clear();
+    }
+
+    /**
+     * drops the entries affected by a change of the given uri
+     *
+     * @param uri changed uri, null when unknown (sdk 15)
+     */
+    static synchronized void invalidate(@Nullable final Uri uri) {
+        if (uri == null) {
+            invalidateAll();
+            return;
+        }
+        final List<String> segments = uri.getPathSegments();
+        if (segments.size() == 0
+                || !TrayContract.Preferences.BASE_PATH.equals(segments.get(0))) {
+            // internal data (version) isn't cached
+            return;
+        }
+        if (segments.size() < 2) {
+            invalidateAll();
+            return;
+        }
+        final String module = segments.get(1);
+        if (segments.size() < 3) {
+            invalidateModule(module);
+            return;
+        }
+        invalidate(module, segments.get(2));
+    }
+
+    static synchronized void invalidate(@NonNull final String module,
+            @NonNull final String key) {
+        sGeneration++;
+        // a write to USER or DEVICE also changes what UNDEFINED reads
+        for (TrayStorage.Type type : TrayStorage.Type.values()) {
+            sItems.remove(buildKey(type, module, key));
+        }
+    }
+
+    static synchronized void invalidateModule(@NonNull final String module) {
+        sGeneration++;
+        final Iterator<String> iterator = sItems.keySet().iterator();
+        while (iterator.hasNext()) {
+            final String cacheKey = iterator.next();
+            // skip the "<type>/" prefix
+            if (cacheKey.startsWith(module + "/", cacheKey.indexOf('/') + 1)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * stores the result of a provider query, unless something changed since {@code generation}
+     * was read
+     *
+     * @param item the queried item, null when not found
+     */
+    static synchronized void put(@NonNull final TrayStorage.Type type,
+            @NonNull final String module, @NonNull final String key,
+            @Nullable final TrayItem item, final long generation) {
+        if (!sObserverRegistered || generation != sGeneration) {
+            return;
+        }
+        if (sItems.size() >= MAX_ENTRIES) {
+            sItems.clear();
+        }
+        sItems.put(buildKey(type, module, key), item == null ? MISSING : item);
+    }
+
+    private static String buildKey(@NonNull final TrayStorage.Type type,
+            @NonNull final String module, @NonNull final String key) {
+        return type.ordinal() + "/" + module + "/" + key;
+    }
+}
@@ -21,6 +21,7 @@ import net.grandcentrix.tray.core.AbstractTrayPreference;
 import net.grandcentrix.tray.core.TrayException;
 import net.grandcentrix.tray.core.TrayItem;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
@@ -107,6 +108,48 @@ public class TrayProviderHelper {
     }
 
 
+    /**
+     * applies all operations in a single transaction
+     *
+     * @param operations inserts and deletes built with {@link #buildPersistOperation(Uri,
+     *                   String, String)} and {@link #buildRemoveOperation(Uri)}
+     * @return true when all operations were committed, false when the whole batch was rolled back
+     */
+    public boolean applyBatch(@NonNull final ArrayList<ContentProviderOperation> operations) {
+        if (operations.isEmpty()) {
+            return true;
+        }
+        try {
+            mContext.getContentResolver().applyBatch(mTrayUri.get().getAuthority(), operations);
+            return true;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * @return an operation for {@link #applyBatch(ArrayList)} which does the same as {@link
+     * #persist(Uri, String, String)}
+     */
+    @NonNull
+    public ContentProviderOperation buildPersistOperation(@NonNull final Uri uri,
+            @Nullable final String value, @Nullable final String previousKey) {
+        return ContentProviderOperation.newInsert(uri)
+                .withValue(TrayContract.Preferences.Columns.VALUE, value)
+                .withValue(TrayContract.Preferences.Columns.MIGRATED_KEY, previousKey)
+                .build();
+    }
+
+    /**
+     * @return an operation for {@link #applyBatch(ArrayList)} which does the same as {@link
+     * #remove(Uri)}
+     */
+    @NonNull
+    public ContentProviderOperation buildRemoveOperation(@NonNull final Uri uri) {
+        return ContentProviderOperation.newDelete(uri).build();
+    }
+
     /**
      * saves the value into the database.
      *